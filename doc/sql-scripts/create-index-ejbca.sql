@@ -56,6 +56,8 @@ CREATE INDEX certificatedata_idx18 ON CertificateData (issuerDN, status, crlPart
 -- CREATE NONCLUSTERED INDEX certificatedata_idx19 ON CertificateData (issuerDN, status, revocationDate, fingerprint, crlPartitionIndex) INCLUDE (expireDate, revocationReason, serialNumber);
 -- Index useful when searching for certificates with an invalidity date.
 -- CREATE INDEX certificatedata_idx20 ON CertificateData (invalidityDate);
+-- Index useful when the in-memory revocation index of the OCSP responder is enabled (ocsp.revocationindex.refreshinterval).
+-- CREATE INDEX certificatedata_idx21 ON CertificateData (issuerDN, updateTime);
 -- The following indexes can be beneficial to perfomance for certificate search in RA web and REST AAPI
 CREATE INDEX certificatedata_idx_serial ON CertificateData (serialNumber);
 -- The accountBindingId is often not used, but even if it is not used, it is necessary to have an index (EJBCA will still search by this column)
@@ -127,4 +129,5 @@ CREATE INDEX sctdata_idx1 ON SctData (fingerprint);
 CREATE INDEX ocspresponsedata_idx1 ON OcspResponseData (cAId);
 CREATE INDEX ocspresponsedata_idx2 ON OcspResponseData (serialNumber);
 CREATE INDEX ocspresponsedata_idx3 ON OcspResponseData (producedAt);
+CREATE INDEX ocspresponsedata_idx4 ON OcspResponseData (nextUpdate);
 
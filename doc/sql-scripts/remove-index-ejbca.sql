@@ -28,6 +28,7 @@ DROP INDEX certificatedata_idx17 ON CertificateData;
 DROP INDEX certificatedata_idx18 ON CertificateData;
 DROP INDEX certificatedata_idx19 ON CertificateData;
 DROP INDEX certificatedata_idx20 ON CertificateData;
+DROP INDEX certificatedata_idx21 ON CertificateData;
 
 DROP INDEX historydata_idx1 ON CertReqHistoryData;
 DROP INDEX historydata_idx3 ON CertReqHistoryData;
@@ -62,3 +63,4 @@ DROP INDEX acmechallengedata_idx1 ON AcmeChallengeData;
 DROP INDEX ocspresponsedata_idx1 ON OcspResponseData;
 DROP INDEX ocspresponsedata_idx2 ON OcspResponseData;
 DROP INDEX ocspresponsedata_idx3 ON OcspResponseData;
+DROP INDEX ocspresponsedata_idx4 ON OcspResponseData;
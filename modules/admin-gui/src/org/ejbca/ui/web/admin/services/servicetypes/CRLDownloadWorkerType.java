@@ -31,6 +31,7 @@ public class CRLDownloadWorkerType extends BaseWorkerType {
     
     private boolean ignoreNextUpdate = false;
     private String maxDownloadSize = String.valueOf(CRLDownloadWorker.DEFAULT_MAX_DOWNLOAD_SIZE);
+    private String downloadThreads = String.valueOf(CRLDownloadWorker.DEFAULT_DOWNLOAD_THREADS);
 
     private static final String CRLDOWNLOADWORKER_SUB_PAGE = "crldownloadworker.xhtml";
     
@@ -62,6 +63,16 @@ public class CRLDownloadWorkerType extends BaseWorkerType {
         this.maxDownloadSize = maxDownloadSize;
     }
 
+    /** @return the number of CRLs that are downloaded at the same time. */
+    public String getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    /** Set the number of CRLs that are downloaded at the same time. */
+    public void setDownloadThreads(String downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
     @Override
     public Properties getProperties(final ArrayList<String> errorMessages) throws IOException {
         Properties ret = super.getProperties(errorMessages);
@@ -76,6 +87,15 @@ public class CRLDownloadWorkerType extends BaseWorkerType {
         } catch (NumberFormatException e) {
             errorMessages.add("Invalid maximum download size.");
         }
+        try {
+            if (Integer.parseInt(downloadThreads) >= 1) {
+                ret.setProperty(CRLDownloadWorker.PROP_DOWNLOAD_THREADS, downloadThreads);
+            } else {
+                errorMessages.add("The number of parallel downloads must be at least 1.");
+            }
+        } catch (NumberFormatException e) {
+            errorMessages.add("Invalid number of parallel downloads.");
+        }
         return ret;
     }
     
@@ -84,5 +104,6 @@ public class CRLDownloadWorkerType extends BaseWorkerType {
         super.setProperties(properties);
         ignoreNextUpdate = Boolean.valueOf(properties.getProperty(CRLDownloadWorker.PROP_IGNORE_NEXT_UPDATE, Boolean.valueOf(ignoreNextUpdate).toString()));
         maxDownloadSize = properties.getProperty(CRLDownloadWorker.PROP_MAX_DOWNLOAD_SIZE, maxDownloadSize);
+        downloadThreads = properties.getProperty(CRLDownloadWorker.PROP_DOWNLOAD_THREADS, downloadThreads);
     }
 }
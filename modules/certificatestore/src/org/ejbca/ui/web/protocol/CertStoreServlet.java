@@ -15,6 +15,7 @@ package org.ejbca.ui.web.protocol;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 
@@ -41,6 +42,8 @@ import com.keyfactor.util.StringTools;
 /** 
  * Servlet implementing server side of the Certificate Store.
  * For a detailed description see RFC 4387.
+ * <p>
+ * The ETag of a certificate is its fingerprint, so that clients and caches can revalidate a certificate with a conditional request.
  * 
  * @version  $Id$
  */
@@ -60,13 +63,13 @@ public class CertStoreServlet extends StoreServletBase {
 
 	@Override
 	public void iHash(String iHash, HttpServletResponse resp, HttpServletRequest req) throws IOException, ServletException {
-	    returnCerts( this.certCache.findLatestByIssuerDN(HashID.getFromB64(iHash)), resp, iHash );
+	    returnCerts( this.certCache.findLatestByIssuerDN(HashID.getFromB64(iHash)), req, resp, iHash );
 	}
 
 
 	@Override
 	public void sKIDHash(String sKIDHash, HttpServletResponse resp, HttpServletRequest req, String name) throws IOException, ServletException {
-	    returnCert( this.certCache.findBySubjectKeyIdentifier(HashID.getFromB64(sKIDHash)), resp, name );
+	    returnCert( this.certCache.findBySubjectKeyIdentifier(HashID.getFromB64(sKIDHash)), req, resp, name );
 	}
 
 	@Override
@@ -77,7 +80,7 @@ public class CertStoreServlet extends StoreServletBase {
 	@Override
 	public void sHash(String sHash, HttpServletResponse resp, HttpServletRequest req) throws IOException, ServletException {
 	    final X509Certificate cert = this.certCache.findLatestBySubjectDN(HashID.getFromB64(sHash));
-		returnCert( cert, resp, sHash);
+		returnCert( cert, req, resp, sHash);
 	}
 
 	@Override
@@ -94,7 +97,7 @@ public class CertStoreServlet extends StoreServletBase {
 		return "CA certificates";
 	}
 
-	private void returnCert(X509Certificate cert, HttpServletResponse resp, String name) throws IOException, ServletException {
+	private void returnCert(X509Certificate cert, HttpServletRequest req, HttpServletResponse resp, String name) throws IOException, ServletException {
 		if (cert==null) {
 			resp.sendError(HttpServletResponse.SC_NO_CONTENT, "No certificate with hash: "+HTMLTools.htmlescape(name));
 			return;
@@ -107,15 +110,25 @@ public class CertStoreServlet extends StoreServletBase {
 		}
 		resp.setContentType("application/pkix-cert");
 		resp.setHeader("Content-disposition", "attachment; filename=\"" + StringTools.stripFilename(name+".der") + "\"");
-		resp.setContentLength(encoded.length);
-		resp.getOutputStream().write(encoded);
+		ConditionalResponse.write(req, resp, encoded, ConditionalResponse.createEntityTag(CertTools.getFingerprintAsString(encoded)), null, null);
 	}
 	
-	private void returnCerts(X509Certificate[] certs, HttpServletResponse resp, String name) throws IOException, ServletException {
+	private void returnCerts(X509Certificate[] certs, HttpServletRequest req, HttpServletResponse resp, String name) throws IOException, ServletException {
 		if (certs==null) {
 			resp.sendError(HttpServletResponse.SC_NO_CONTENT, "No certificates with issuer hash DN: "+HTMLTools.htmlescape(name));
 			return;
 		}
+		// The multipart boundary differs between responses, so only conditional requests are supported, not ranges
+		final StringBuilder fingerprints = new StringBuilder();
+		for (final X509Certificate cert : certs) {
+			fingerprints.append(CertTools.getFingerprintAsString(cert));
+		}
+		final String entityTag = ConditionalResponse.createEntityTag(CertTools.getFingerprintAsString(fingerprints.toString().getBytes(StandardCharsets.US_ASCII)));
+		resp.setHeader("ETag", entityTag);
+		if (ConditionalResponse.isNotModified(req, entityTag, null)) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
 		final Multipart mp = new MimeMultipart();// mixed is default
 		try {
 			resp.setContentType(mp.getContentType());
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,11 +38,16 @@ import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.KeyPurposeId;
 import org.bouncycastle.asn1.x509.qualified.ETSIQCObjectIdentifiers;
+import org.bouncycastle.jce.X509KeyUsage;
 import org.cesecore.certificates.ca.ApprovalRequestType;
+import org.cesecore.certificates.ca.CA;
+import org.cesecore.certificates.ca.CAInfo;
 import org.cesecore.certificates.certificate.CertificateConstants;
+import org.cesecore.certificates.certificate.certextensions.CertificateExtension;
 import org.cesecore.certificates.certificate.IllegalKeyException;
 import org.cesecore.certificates.util.DNFieldExtractor;
 import org.cesecore.internal.UpgradeableDataHashMap;
+import org.easymock.EasyMock;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -1029,4 +1035,87 @@ public class CertificateProfileTest {
         assertTrue(cpServer.getKeyUsage(CertificateConstants.DIGITALSIGNATURE));
         assertTrue(cpServer.getKeyUsage(CertificateConstants.KEYENCIPHERMENT));
     }
+
+    @Test
+    public void testCompiledProfile() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        final CertificateProfile profile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        profile.setKeyUsageForbidEncryptionUsageForECC(true);
+        profile.setKeyUsage(CertificateConstants.KEYENCIPHERMENT, true);
+        profile.setKeyUsage(CertificateConstants.DATAENCIPHERMENT, true);
+        profile.setUseCustomDnOrder(true);
+        profile.setCustomDnOrder(new ArrayList<>(Arrays.asList("C", "O", "CN")));
+        final CompiledCertificateProfile compiledProfile = profile.getCompiledProfile();
+        assertEquals(CertificateConstants.CERTTYPE_ENDENTITY, compiledProfile.getType());
+        assertEquals(Arrays.asList("C", "O", "CN"), Arrays.asList(compiledProfile.getCustomDnOrder()));
+        assertFalse(compiledProfile.getBasicConstraints().isCA());
+        assertEquals(profile.getExtendedKeyUsageOids(), compiledProfile.getExtendedKeyUsageOids());
+        assertEquals(profile.getExtendedKeyUsageOids().size(), compiledProfile.getExtendedKeyUsage().getUsages().length);
+        assertEquals(profile.getUsedStandardCertificateExtensions().size(), compiledProfile.getStandardCertificateExtensions().size());
+        // Encryption usages are removed for ECC keys only
+        final int keyUsage = CertTools.sunKeyUsageToBC(profile.getKeyUsage());
+        final KeyPair rsaKeyPair = KeyTools.genKeys("1024", AlgorithmConstants.KEYALGORITHM_RSA);
+        final KeyPair ecKeyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+        assertEquals(keyUsage, compiledProfile.getKeyUsage(rsaKeyPair.getPublic()));
+        assertEquals(keyUsage & ~(X509KeyUsage.keyEncipherment | X509KeyUsage.dataEncipherment), compiledProfile.getKeyUsage(ecKeyPair.getPublic()));
+        // The snapshot is shared with clones, until they are modified
+        final CertificateProfile clone = profile.clone();
+        assertTrue(compiledProfile == clone.getCompiledProfile());
+        clone.setType(CertificateConstants.CERTTYPE_SUBCA);
+        clone.setUsePathLengthConstraint(true);
+        clone.setPathLengthConstraint(1);
+        assertEquals(CertificateConstants.CERTTYPE_SUBCA, clone.getCompiledProfile().getType());
+        assertEquals(1, clone.getCompiledProfile().getBasicConstraints().getPathLenConstraint().intValue());
+        assertTrue(compiledProfile == profile.getCompiledProfile());
+        // Collections returned by the getters are copies, that can not modify the profile behind the snapshot's back
+        profile.getCustomDnOrder().add("OU");
+        profile.getExtendedKeyUsageOids().add(KeyPurposeId.id_kp_OCSPSigning.getId());
+        profile.getUsedCertificateExtensions().add(1);
+        profile.getOverridableExtensionOIDs().add(Extension.keyUsage.getId());
+        profile.getNonOverridableExtensionOIDs().add(Extension.keyUsage.getId());
+        assertEquals(Arrays.asList("C", "O", "CN"), profile.getCustomDnOrder());
+        assertEquals(compiledProfile.getExtendedKeyUsageOids(), profile.getExtendedKeyUsageOids());
+        assertTrue(profile.getUsedCertificateExtensions().isEmpty());
+        assertTrue(profile.getOverridableExtensionOIDs().isEmpty());
+        assertTrue(profile.getNonOverridableExtensionOIDs().isEmpty());
+        assertTrue(compiledProfile == profile.getCompiledProfile());
+        profile.setKeyUsage(CertificateConstants.DIGITALSIGNATURE, !profile.getKeyUsage(CertificateConstants.DIGITALSIGNATURE));
+        assertFalse(compiledProfile == profile.getCompiledProfile());
+    }
+
+    @Test
+    public void testCompiledProfileStaticExtensionValues() throws Exception {
+        final CertificateProfile profile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        final CompiledCertificateProfile compiledProfile = profile.getCompiledProfile();
+        CertificateExtension basicConstraints = null;
+        for (final CertificateExtension certExt : compiledProfile.getStandardCertificateExtensions()) {
+            if (Extension.basicConstraints.getId().equals(certExt.getOID())) {
+                basicConstraints = certExt;
+            }
+        }
+        assertNotNull("Basic constraints should be used by the profile", basicConstraints);
+        final PublicKey caPublicKey = KeyTools.genKeys("1024", AlgorithmConstants.KEYALGORITHM_RSA).getPublic();
+        final CA ca = mockCa(new Date(1700000000000L));
+        final byte[] value = compiledProfile.getStandardCertificateExtensionValueEncoded(basicConstraints, null, ca, profile, null, caPublicKey, null);
+        assertNotNull(value);
+        // The encoded value is reused for the same CA
+        assertTrue(value == compiledProfile.getStandardCertificateExtensionValueEncoded(basicConstraints, null, ca, profile, null, caPublicKey, null));
+        // ...but not after the CA is updated
+        final byte[] updatedValue = compiledProfile.getStandardCertificateExtensionValueEncoded(basicConstraints, null, mockCa(new Date(1700000001000L)),
+                profile, null, caPublicKey, null);
+        assertFalse(value == updatedValue);
+        assertTrue(Arrays.equals(value, updatedValue));
+        // ...or without a CA public key
+        assertFalse(value == compiledProfile.getStandardCertificateExtensionValueEncoded(basicConstraints, null, ca, profile, null, null, null));
+    }
+
+    private static CA mockCa(final Date updateTime) {
+        final CAInfo caInfo = EasyMock.createNiceMock(CAInfo.class);
+        EasyMock.expect(caInfo.getUpdateTime()).andStubReturn(updateTime);
+        final CA ca = EasyMock.createNiceMock(CA.class);
+        EasyMock.expect(ca.getCAId()).andStubReturn(4711);
+        EasyMock.expect(ca.getCAInfo()).andStubReturn(caInfo);
+        EasyMock.replay(caInfo, ca);
+        return ca;
+    }
 }
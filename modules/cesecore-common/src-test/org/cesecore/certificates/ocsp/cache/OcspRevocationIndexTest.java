@@ -0,0 +1,121 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests of the in-memory {@link OcspRevocationIndex}.
+ */
+public class OcspRevocationIndexTest {
+
+    private static final String ISSUER_DN = "CN=OcspRevocationIndexTest CA";
+    private static final String OTHER_ISSUER_DN = "CN=OcspRevocationIndexTest Other CA";
+
+    @After
+    public void after() {
+        OcspRevocationIndex.INSTANCE.flush();
+    }
+
+    @Test
+    public void testIssuedAndNotActiveCertificates() {
+        final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.createIndex(Arrays.asList("2", "4", "CVCSERIAL"), 4, 0);
+        for (final String serialNumber : Arrays.asList("1", "2", "3", "4", "CVCSERIAL")) {
+            index.addIssued(serialNumber);
+        }
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_DN, index);
+        assertTrue(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.ONE));
+        assertTrue(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(3)));
+        assertFalse("Revoked certificates must be looked up in the database.", OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(2)));
+        assertFalse("Revoked certificates must be looked up in the database.", OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(4)));
+        assertFalse("Certificates that were not issued must be looked up in the database.",
+                OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(5)));
+        assertFalse("CAs without an index must be looked up in the database.", OcspRevocationIndex.INSTANCE.isNotRevoked(OTHER_ISSUER_DN, BigInteger.ONE));
+        assertEquals("Non decimal serial numbers should have been ignored.", 2, index.getNotActiveCount());
+        assertFalse(index.isRebuildNeeded());
+    }
+
+    @Test
+    public void testChangedCertificates() {
+        final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.createIndex(Collections.emptyList(), 2, 1234);
+        index.addIssued("1");
+        index.addIssued("2");
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_DN, index);
+        assertEquals(1234, index.getUpdateTime());
+        OcspRevocationIndex.INSTANCE.markChanged(ISSUER_DN, "2");
+        OcspRevocationIndex.INSTANCE.markChanged(OTHER_ISSUER_DN, "1");
+        assertTrue("Changes of other CAs should not affect the index.", OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.ONE));
+        assertFalse("Changed certificates must be looked up in the database.", OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(2)));
+        // Adding the certificate as issued again must not make it "good", since it could have been revoked in between
+        index.addIssued("2");
+        assertFalse(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(2)));
+        OcspRevocationIndex.INSTANCE.removeIndex(ISSUER_DN);
+        assertNull(OcspRevocationIndex.INSTANCE.getIndex(ISSUER_DN));
+        assertFalse(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.ONE));
+    }
+
+    @Test
+    public void testChangesWhileBuilding() {
+        final OcspRevocationIndex.IssuerIndex oldIndex = OcspRevocationIndex.createIndex(Collections.emptyList(), 2, 0);
+        oldIndex.addIssued("1");
+        oldIndex.addIssued("2");
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_DN, oldIndex);
+        OcspRevocationIndex.INSTANCE.startBuildingIndex(ISSUER_DN);
+        // The new index is built from a database read that does not include the change
+        final OcspRevocationIndex.IssuerIndex newIndex = OcspRevocationIndex.createIndex(Collections.emptyList(), 2, 0);
+        newIndex.addIssued("1");
+        OcspRevocationIndex.INSTANCE.markChanged(ISSUER_DN, "1");
+        newIndex.addIssued("2");
+        assertFalse("The change should apply to the current index.", OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.ONE));
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_DN, newIndex);
+        assertFalse("The change should have been applied to the new index.", OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.ONE));
+        assertTrue(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(2)));
+        // Changes after the index was added are applied to it directly
+        OcspRevocationIndex.INSTANCE.markChanged(ISSUER_DN, "2");
+        assertFalse(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.valueOf(2)));
+        assertEquals(2, newIndex.getNotActiveCount());
+    }
+
+    @Test
+    public void testRemovedWhileBuilding() {
+        OcspRevocationIndex.INSTANCE.startBuildingIndex(ISSUER_DN);
+        final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.createIndex(Collections.emptyList(), 1, 0);
+        index.addIssued("1");
+        OcspRevocationIndex.INSTANCE.removeIndex(ISSUER_DN);
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_DN, index);
+        assertNull("An index built from data read before the CA was removed should be discarded.", OcspRevocationIndex.INSTANCE.getIndex(ISSUER_DN));
+        // The next build is used
+        OcspRevocationIndex.INSTANCE.startBuildingIndex(ISSUER_DN);
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_DN, index);
+        assertTrue(OcspRevocationIndex.INSTANCE.isNotRevoked(ISSUER_DN, BigInteger.ONE));
+    }
+
+    @Test
+    public void testRebuildWhenOverfilled() {
+        final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.createIndex(Collections.emptyList(), 0, 0);
+        for (int i = 0; i < 5000; i++) {
+            index.addIssued(String.valueOf(i));
+        }
+        assertTrue("Adding many more certificates than expected should require a rebuild.", index.isRebuildNeeded());
+    }
+}
@@ -0,0 +1,147 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.cesecore.certificates.certificate.CertificateStatus;
+import org.cesecore.keybind.impl.OcspKeyBinding;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.keyfactor.util.CertTools;
+import com.keyfactor.util.CryptoProviderTools;
+import com.keyfactor.util.crypto.algorithm.AlgorithmConstants;
+import com.keyfactor.util.keys.KeyTools;
+
+/**
+ * Unit tests of the snapshot based {@link OcspSigningCache}.
+ */
+public class OcspSigningCacheTest {
+
+    private static KeyPair keys;
+    private static X509Certificate caCertificate;
+    private static X509Certificate externalCaCertificate;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        keys = KeyTools.genKeys("1024", AlgorithmConstants.KEYALGORITHM_RSA);
+        caCertificate = CertTools.genSelfCert("CN=OcspSigningCacheTest CA", 365, null, keys.getPrivate(), keys.getPublic(),
+                AlgorithmConstants.SIGALG_SHA256_WITH_RSA, true);
+        final KeyPair externalKeys = KeyTools.genKeys("1024", AlgorithmConstants.KEYALGORITHM_RSA);
+        externalCaCertificate = CertTools.genSelfCert("CN=OcspSigningCacheTest External CA", 365, null, externalKeys.getPrivate(),
+                externalKeys.getPublic(), AlgorithmConstants.SIGALG_SHA256_WITH_RSA, true);
+    }
+
+    @Before
+    public void before() {
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+    }
+
+    @Test
+    public void testLookupForAllHashAlgorithms() {
+        final OcspSigningCacheEntry entry = createCaEntry();
+        commit(entry, null);
+        assertEquals("Entry should have been registered for SHA-1, SHA-256, SHA-384 and SHA-512.", 4, entry.getCertificateID().size());
+        for (final CertificateID certId : entry.getCertificateID()) {
+            assertSame("Lookup with CertID using " + certId.getHashAlgOID() + " failed.", entry, OcspSigningCache.INSTANCE.getEntry(certId));
+        }
+        for (final CertificateID certId : createPlaceholder().getCertificateID()) {
+            assertNull("Unknown issuer should not have been found.", OcspSigningCache.INSTANCE.getEntry(certId));
+        }
+    }
+
+    @Test
+    public void testPlaceholderReplacedWithDefaultResponder() {
+        final OcspSigningCacheEntry entry = createCaEntry();
+        commit(entry, createPlaceholder(), CertTools.getSubjectDN(caCertificate));
+        assertSame("Default responder was not set.", entry, OcspSigningCache.INSTANCE.getDefaultEntry());
+        final OcspSigningCacheEntry replaced = OcspSigningCache.INSTANCE.getEntry(createPlaceholder().getCertificateID().get(0));
+        assertEquals("Placeholder should have been replaced with the default responder.", caCertificate, replaced.getSigningCertificate());
+        for (final CertificateID certId : createPlaceholder().getCertificateID()) {
+            assertSame("Placeholder should only be replaced once for all hash algorithms.", replaced, OcspSigningCache.INSTANCE.getEntry(certId));
+        }
+    }
+
+    @Test
+    public void testPlaceholderRemovedWithoutDefaultResponder() {
+        commit(createCaEntry(), createPlaceholder(), null);
+        assertNull("No default responder was configured.", OcspSigningCache.INSTANCE.getDefaultEntry());
+        assertNull("Placeholder should have been removed.", OcspSigningCache.INSTANCE.getEntry(createPlaceholder().getCertificateID().get(0)));
+    }
+
+    @Test
+    public void testSnapshotIsNotModifiedByWriters() {
+        final OcspSigningCacheEntry entry = createCaEntry();
+        commit(entry, null);
+        final long version = OcspSigningCache.INSTANCE.getVersion();
+        final Collection<OcspSigningCacheEntry> entriesBefore = OcspSigningCache.INSTANCE.getEntries();
+        final OcspSigningCacheEntry external = createExternalEntry();
+        OcspSigningCache.INSTANCE.addSingleEntry(external);
+        assertTrue("Adding an entry should publish a new version.", OcspSigningCache.INSTANCE.getVersion() > version);
+        assertEquals("Previously published entries should not have been modified.", 4, entriesBefore.size());
+        assertEquals(8, OcspSigningCache.INSTANCE.getEntries().size());
+        assertSame(external, OcspSigningCache.INSTANCE.getEntry(external.getCertificateID().get(0)));
+        // Existing entries are never replaced by addSingleEntry
+        OcspSigningCache.INSTANCE.addSingleEntry(createCaEntry());
+        assertSame(entry, OcspSigningCache.INSTANCE.getEntry(entry.getCertificateID().get(0)));
+    }
+
+    private void commit(final OcspSigningCacheEntry entry, final String defaultResponderSubjectDn) {
+        commit(entry, null, defaultResponderSubjectDn);
+    }
+
+    private void commit(final OcspSigningCacheEntry entry, final OcspSigningCacheEntry placeholder, final String defaultResponderSubjectDn) {
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingAdd(entry);
+            if (placeholder != null) {
+                OcspSigningCache.INSTANCE.stagingAdd(placeholder);
+            }
+            OcspSigningCache.INSTANCE.stagingCommit(defaultResponderSubjectDn);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+    }
+
+    private OcspSigningCacheEntry createCaEntry() {
+        return new OcspSigningCacheEntry(caCertificate, CertificateStatus.OK, Collections.singletonList(caCertificate), null, keys.getPrivate(),
+                "BC", null, OcspKeyBinding.ResponderIdType.KEYHASH);
+    }
+
+    private OcspSigningCacheEntry createExternalEntry() {
+        return new OcspSigningCacheEntry(externalCaCertificate, CertificateStatus.OK, Collections.singletonList(externalCaCertificate), null,
+                keys.getPrivate(), "BC", null, OcspKeyBinding.ResponderIdType.KEYHASH);
+    }
+
+    private OcspSigningCacheEntry createPlaceholder() {
+        return new OcspSigningCacheEntry(externalCaCertificate, CertificateStatus.OK, null, null, null, null, null,
+                OcspKeyBinding.ResponderIdType.KEYHASH);
+    }
+}
@@ -13,9 +13,12 @@
 
 package org.cesecore.certificates.ocsp.logging;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.lang.reflect.Method;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
@@ -43,6 +46,33 @@ public class PatternLoggerTest {
         log.trace("<testPatternLogger");
     }
 
+    /** Test values of different types, values with special characters and placeholders without values. */
+    @Test
+    public void testPatternLoggerValues() {
+        final PatternLogger patternLogger = new TestPatternLogger("\\$\\{(.+?)\\}", "${VAR1};${VAR2};${VAR3};${VAR1};${UNKNOWN};${" + PatternLogger.REPLY_TIME + "}",
+                "yyyy-MM-dd:HH:mm:ss:z", "GMT");
+        patternLogger.paramPut("VAR1", new byte[] { 0x01, (byte) 0xab, 0x7f });
+        patternLogger.paramPut("VAR2", Integer.valueOf(42));
+        patternLogger.paramPut("VAR3", "cost: $1 \\ more");
+        patternLogger.paramPut("NOT_IN_PATTERN", "ignored");
+        assertEquals("01ab7f;42;cost: $1 \\ more;01ab7f;${UNKNOWN};" + PatternLogger.REPLY_TIME, patternLogger.interpolate());
+        patternLogger.paramPut("VAR2", (Integer) null);
+        assertEquals("01ab7f;;cost: $1 \\ more;01ab7f;${UNKNOWN};" + PatternLogger.REPLY_TIME, patternLogger.interpolate());
+    }
+
+    /** An invalid pattern should not fail when values are added, but when the output is created, so that the configuration can be validated. */
+    @Test
+    public void testPatternLoggerInvalidPattern() {
+        final PatternLogger patternLogger = new TestPatternLogger("\\$\\{(.+?\\}", "${VAR1}", "yyyy-MM-dd:HH:mm:ss:z", "GMT");
+        patternLogger.paramPut("VAR1", "content1");
+        try {
+            patternLogger.interpolate();
+            fail("Invalid pattern should have been reported.");
+        } catch (PatternSyntaxException e) {
+            // Expected
+        }
+    }
+
     /** Helper method that replaces all ${VARx} where x={0..10} with "contentx" and asserts that the result is the expected using regexp. */
     private void testPatternLoggerInternal(String pattern, String dateFormat, String timeZone, String expected) throws Exception {
         log.trace(">testPatternLoggerInternal");
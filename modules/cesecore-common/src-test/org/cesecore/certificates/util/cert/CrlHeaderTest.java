@@ -0,0 +1,133 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.util.cert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CRLException;
+import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.keyfactor.util.CertTools;
+import com.keyfactor.util.CryptoProviderTools;
+
+/**
+ * Test of reading the header of CRLs without decoding the CRL entries.
+ */
+public class CrlHeaderTest {
+
+    private static final String FRESHEST_CDP = "http://crl.example.com/delta.crl";
+
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA", BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(1024);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    @Test
+    public void testFullCrlWithEntries() throws Exception {
+        final Date thisUpdate = new Date(1700000000000L);
+        final X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CrlHeaderTest"), thisUpdate);
+        crlBuilder.setNextUpdate(new Date(thisUpdate.getTime() + 86400000L));
+        for (int i = 1; i <= 2000; i++) {
+            crlBuilder.addCRLEntry(BigInteger.valueOf(i * 4711L), new Date(thisUpdate.getTime() - i * 1000L), CRLReason.keyCompromise);
+        }
+        crlBuilder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(17)));
+        final DistributionPoint distributionPoint = new DistributionPoint(
+                new DistributionPointName(new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, FRESHEST_CDP))), null, null);
+        crlBuilder.addExtension(Extension.freshestCRL, false, new CRLDistPoint(new DistributionPoint[] { distributionPoint }));
+        final byte[] encodedCrl = sign(crlBuilder);
+        final X509CRL x509crl = CertTools.getCRLfromByteArray(encodedCrl);
+        final CrlHeader crlHeader = CrlHeader.parse(encodedCrl);
+        assertEquals(x509crl.getThisUpdate(), crlHeader.getThisUpdate());
+        assertEquals(x509crl.getNextUpdate(), crlHeader.getNextUpdate());
+        assertEquals(CrlExtensions.getCrlNumber(x509crl), crlHeader.getCrlNumber());
+        assertEquals(BigInteger.valueOf(17), crlHeader.getCrlNumber());
+        assertFalse(crlHeader.isDeltaCrl());
+        assertEquals(Collections.singletonList(FRESHEST_CDP), CrlExtensions.extractFreshestCrlDistributionPoints(crlHeader.getExtensions()));
+        assertEquals(CrlExtensions.extractFreshestCrlDistributionPoints(x509crl),
+                CrlExtensions.extractFreshestCrlDistributionPoints(crlHeader.getExtensions()));
+    }
+
+    @Test
+    public void testEmptyDeltaCrlWithoutNextUpdate() throws Exception {
+        final Date thisUpdate = new Date(1700000000000L);
+        final X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CrlHeaderTest"), thisUpdate);
+        crlBuilder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(18)));
+        crlBuilder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.valueOf(17)));
+        final CrlHeader crlHeader = CrlHeader.parse(sign(crlBuilder));
+        assertEquals(thisUpdate, crlHeader.getThisUpdate());
+        assertNull(crlHeader.getNextUpdate());
+        assertEquals(BigInteger.valueOf(18), crlHeader.getCrlNumber());
+        assertTrue(crlHeader.isDeltaCrl());
+        assertTrue(CrlExtensions.extractFreshestCrlDistributionPoints(crlHeader.getExtensions()).isEmpty());
+    }
+
+    @Test
+    public void testCrlWithoutExtensions() throws Exception {
+        final X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CrlHeaderTest"), new Date(1700000000000L));
+        crlBuilder.addCRLEntry(BigInteger.TEN, new Date(1600000000000L), CRLReason.superseded);
+        final CrlHeader crlHeader = CrlHeader.parse(sign(crlBuilder));
+        assertNull(crlHeader.getExtensions());
+        assertEquals(BigInteger.ZERO, crlHeader.getCrlNumber());
+        assertFalse(crlHeader.isDeltaCrl());
+    }
+
+    @Test
+    public void testMalformedCrl() throws Exception {
+        final X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CrlHeaderTest"), new Date(1700000000000L));
+        crlBuilder.addCRLEntry(BigInteger.TEN, new Date(1600000000000L), CRLReason.superseded);
+        final byte[] encodedCrl = sign(crlBuilder);
+        for (final byte[] malformed : new byte[][] { new byte[0], Arrays.copyOf(encodedCrl, 40), "Not a CRL".getBytes(), null }) {
+            try {
+                CrlHeader.parse(malformed);
+                fail("Malformed CRL should not be accepted.");
+            } catch (CRLException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static byte[] sign(final X509v2CRLBuilder crlBuilder) throws Exception {
+        return crlBuilder.build(new JcaContentSignerBuilder("SHA256WithRSA").setProvider(BouncyCastleProvider.PROVIDER_NAME).build(keyPair.getPrivate()))
+                .getEncoded();
+    }
+}
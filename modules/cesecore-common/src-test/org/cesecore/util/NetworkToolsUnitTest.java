@@ -0,0 +1,131 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA: The OpenSource Certificate Authority                          *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.cesecore.util.NetworkTools.ConditionalDownload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test of {@link NetworkTools} downloads, against a local HTTP server.
+ */
+public class NetworkToolsUnitTest {
+
+    private static final byte[] DATA = "CRL data that is served by the test server".getBytes(StandardCharsets.US_ASCII);
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 05 Oct 2026 10:00:00 GMT";
+
+    private HttpServer server;
+    private final AtomicReference<String> lastIfNoneMatch = new AtomicReference<>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // Answers with the data and validators, or 304 if the If-None-Match header matches
+        server.createContext("/data", exchange -> {
+            final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            lastIfNoneMatch.set(ifNoneMatch);
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                sendData(exchange, DATA.length);
+            }
+        });
+        // Sends the data without a Content-Length header, so the size is only known while reading
+        server.createContext("/chunked", exchange -> sendData(exchange, 0));
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static void sendData(final HttpExchange exchange, final long contentLength) throws IOException {
+        exchange.sendResponseHeaders(200, contentLength);
+        try (final OutputStream os = exchange.getResponseBody()) {
+            os.write(DATA);
+        }
+    }
+
+    private URL getUrl(final String path) throws IOException {
+        return new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+    }
+
+    @Test
+    public void testDownload() throws IOException {
+        final ConditionalDownload download = NetworkTools.downloadDataFromUrlIfModified(getUrl("/data"), DATA.length, null, null);
+        assertNotNull("Data should have been downloaded.", download);
+        assertFalse(download.isNotModified());
+        assertArrayEquals(DATA, download.getData());
+        assertEquals(ETAG, download.getEntityTag());
+        assertEquals(LAST_MODIFIED, download.getLastModified());
+        assertNull("No validator should have been sent.", lastIfNoneMatch.get());
+        assertArrayEquals(DATA, NetworkTools.downloadDataFromUrl(getUrl("/data"), DATA.length));
+    }
+
+    @Test
+    public void testNotModified() throws IOException {
+        final ConditionalDownload download = NetworkTools.downloadDataFromUrlIfModified(getUrl("/data"), DATA.length, ETAG, LAST_MODIFIED);
+        assertNotNull("A 304 response is not a failure.", download);
+        assertEquals("The validator should have been sent.", ETAG, lastIfNoneMatch.get());
+        assertTrue(download.isNotModified());
+        assertNull(download.getData());
+        // A different version is downloaded
+        final ConditionalDownload modified = NetworkTools.downloadDataFromUrlIfModified(getUrl("/data"), DATA.length, "\"v0\"", null);
+        assertNotNull(modified);
+        assertArrayEquals(DATA, modified.getData());
+    }
+
+    @Test
+    public void testOversize() throws IOException {
+        assertNull("Too large data with Content-Length should not be downloaded.",
+                NetworkTools.downloadDataFromUrlIfModified(getUrl("/data"), DATA.length - 1, null, null));
+        assertNull("Too large data without Content-Length should not be downloaded.",
+                NetworkTools.downloadDataFromUrlIfModified(getUrl("/chunked"), DATA.length - 1, null, null));
+        assertNull("Too large data should not be downloaded.", NetworkTools.downloadDataFromUrl(getUrl("/chunked"), DATA.length - 1));
+        assertArrayEquals(DATA, NetworkTools.downloadDataFromUrlIfModified(getUrl("/chunked"), DATA.length, null, null).getData());
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        assertNull(NetworkTools.downloadDataFromUrlIfModified(getUrl("/missing"), DATA.length, null, null));
+        assertNull(NetworkTools.downloadDataFromUrl(getUrl("/missing"), DATA.length));
+    }
+}
@@ -49,6 +49,11 @@ public class AuthorityInformationAccess extends StandardCertificateExtension {
 		super.setOID(Extension.authorityInfoAccess.getId());
 		super.setCriticalFlag(false);
 	}
+
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
@@ -55,6 +55,12 @@ public class AuthorityKeyIdentifier extends StandardCertificateExtension impleme
         super.setCriticalFlag(certProf.getAuthorityKeyIdentifierCritical());
     }
 
+    /** The value only depends on the CA certificate and the CA public key that signs the certificate */
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
+
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile, final PublicKey userPublicKey,
             final PublicKey caPublicKey, CertificateValidity val) throws CertificateExtensionException {
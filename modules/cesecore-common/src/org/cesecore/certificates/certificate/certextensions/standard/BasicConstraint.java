@@ -15,11 +15,9 @@ package org.cesecore.certificates.certificate.certextensions.standard;
 import java.security.PublicKey;
 
 import org.bouncycastle.asn1.ASN1Encodable;
-import org.bouncycastle.asn1.x509.BasicConstraints;
 import org.bouncycastle.asn1.x509.Extension;
 import org.cesecore.certificates.ca.CA;
 import org.cesecore.certificates.ca.internal.CertificateValidity;
-import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.certificates.certificate.certextensions.CertificateExtensionException;
 import org.cesecore.certificates.certificateprofile.CertificateProfile;
 import org.cesecore.certificates.endentity.EndEntityInformation;
@@ -39,21 +37,17 @@ public class BasicConstraint extends StandardCertificateExtension {
 		super.setOID(Extension.basicConstraints.getId());
 		super.setCriticalFlag(certProf.getBasicConstraintsCritical());
 	}
+
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
             final PublicKey userPublicKey, final PublicKey caPublicKey, CertificateValidity val) throws
             CertificateExtensionException {
-	// Default value, end entity 
-		BasicConstraints bc = new BasicConstraints(false);
-        if ((certProfile.getType() == CertificateConstants.CERTTYPE_SUBCA)
-            || (certProfile.getType() == CertificateConstants.CERTTYPE_ROOTCA)){            	
-        	if(certProfile.getUsePathLengthConstraint()){
-        		bc = new BasicConstraints(certProfile.getPathLengthConstraint());
-        	}else{
-        		bc =  new BasicConstraints(true);
-        	}            	
-        }
-		return bc;
+        // CA or end entity, depending on the type of the profile
+        return certProfile.getCompiledProfile().getBasicConstraints();
 	}	
 }
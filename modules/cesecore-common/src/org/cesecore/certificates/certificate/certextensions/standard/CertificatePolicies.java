@@ -53,6 +53,11 @@ public class CertificatePolicies extends StandardCertificateExtension {
 		super.setOID(Extension.certificatePolicies.getId());
 		super.setCriticalFlag(certProf.getCertificatePoliciesCritical());
 	}
+
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
@@ -57,6 +57,12 @@ public class CrlDistributionPoints extends StandardCertificateExtension {
 		super.setOID(Extension.cRLDistributionPoints.getId());
 		super.setCriticalFlag(certProf.getCRLDistributionPointCritical());
 	}
+
+    /** With partitioned CRLs, every certificate is assigned to a random CRL partition */
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return ca.getCAInfo() instanceof X509CAInfo && !((X509CAInfo) ca.getCAInfo()).getUsePartitionedCrl();
+    }
     
     @Deprecated // Should not be called directly, see the interface javadoc.
     @Override
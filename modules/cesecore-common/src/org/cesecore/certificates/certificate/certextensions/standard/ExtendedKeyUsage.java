@@ -13,13 +13,9 @@
 package org.cesecore.certificates.certificate.certextensions.standard;
 
 import java.security.PublicKey;
-import java.util.Collection;
 
 import org.apache.log4j.Logger;
 import org.bouncycastle.asn1.ASN1Encodable;
-import org.bouncycastle.asn1.ASN1ObjectIdentifier;
-import org.bouncycastle.asn1.ASN1Sequence;
-import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.x509.Extension;
 import org.cesecore.certificates.ca.CA;
 import org.cesecore.certificates.ca.internal.CertificateValidity;
@@ -43,26 +39,17 @@ public class ExtendedKeyUsage extends StandardCertificateExtension {
         // Extended Key Usage may be either critical or non-critical
 		super.setCriticalFlag(certProf.getExtendedKeyUsageCritical());
 	}
+
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
             final PublicKey userPublicKey, final PublicKey caPublicKey, CertificateValidity val) throws CertificateExtensionException {
-		org.bouncycastle.asn1.x509.ExtendedKeyUsage ret = null;
-		// Get extended key usage from certificate profile
-		final Collection<String> oids = certProfile.getExtendedKeyUsageOids();
-		
-		// Don't add empty key usage extension
-		if (!oids.isEmpty()) {
-			final ASN1Encodable[] usage = new ASN1Encodable[oids.size()];
-			int i = 0;
-			for (String oid : oids) {
-				usage[i] = org.bouncycastle.asn1.x509.KeyPurposeId.getInstance(new ASN1ObjectIdentifier(oid));
-				i++;
-			}
-			
-			ASN1Sequence seq = ASN1Sequence.getInstance(new DERSequence(usage));
-			ret = org.bouncycastle.asn1.x509.ExtendedKeyUsage.getInstance(seq);
-		}
+		// Get extended key usage from certificate profile, it is null if there are no OIDs since we don't add empty key usage extension
+		final org.bouncycastle.asn1.x509.ExtendedKeyUsage ret = certProfile.getCompiledProfile().getExtendedKeyUsage();
 		if (ret == null) {
 			log.error("ExtendedKeyUsage missconfigured, ExtendedKeyUsage is configured to be used but no OIDs are defined in certificate profile");
 		}
@@ -50,6 +50,11 @@ public class FreshestCrl extends StandardCertificateExtension {
 		super.setOID(Extension.freshestCRL.getId());
 		super.setCriticalFlag(false);
 	}
+
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
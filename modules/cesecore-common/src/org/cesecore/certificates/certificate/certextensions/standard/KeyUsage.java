@@ -24,8 +24,6 @@ import org.cesecore.certificates.certificate.certextensions.CertificateExtension
 import org.cesecore.certificates.certificateprofile.CertificateProfile;
 import org.cesecore.certificates.endentity.EndEntityInformation;
 
-import com.keyfactor.util.CertTools;
-
 /**
  * Class for standard X509 certificate extension. 
  * See rfc3280 or later for spec of this extension.
@@ -48,7 +46,9 @@ public class KeyUsage extends StandardCertificateExtension {
             CertificateExtensionException {
 		// Key usage
 		X509KeyUsage ret = null;
-		final int keyUsage = CertTools.sunKeyUsageToBC(certProfile.getKeyUsage());
+		// Encryption usages are removed for ECC keys if the profile forbids them (ECA-11391), so that the same profile can be used
+		// for example for both RSA and ECDSA keys.
+		final int keyUsage = certProfile.getCompiledProfile().getKeyUsage(userPublicKey);
 		if (log.isDebugEnabled()) {
 			log.debug("Using KeyUsage from profile: "+keyUsage);
 		}
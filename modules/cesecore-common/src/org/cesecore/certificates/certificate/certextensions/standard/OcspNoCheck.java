@@ -38,6 +38,11 @@ public class OcspNoCheck extends StandardCertificateExtension {
 		super.setOID(OCSPObjectIdentifiers.id_pkix_ocsp_nocheck.getId());
 		super.setCriticalFlag(false);
 	}
+
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return true;
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
@@ -134,6 +134,12 @@ public class QcStatement extends StandardCertificateExtension {
 		super.setOID(Extension.qCStatements.getId());
 		super.setCriticalFlag(certProf.getQCStatementCritical());
 	}
+
+    /** Only the PSD2 QC statement depends on the subject */
+    @Override
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return !certProf.getUseQCPSD2();
+    }
     
     @Override
     public ASN1Encodable getValue(final EndEntityInformation subject, final CA ca, final CertificateProfile certProfile,
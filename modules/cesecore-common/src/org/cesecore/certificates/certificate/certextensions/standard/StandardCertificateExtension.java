@@ -12,6 +12,7 @@
  *************************************************************************/ 
 package org.cesecore.certificates.certificate.certextensions.standard;
 
+import org.cesecore.certificates.ca.CA;
 import org.cesecore.certificates.certificate.certextensions.CertificateExtension;
 import org.cesecore.certificates.certificateprofile.CertificateProfile;
 
@@ -35,5 +36,18 @@ public abstract class StandardCertificateExtension extends CertificateExtension
 	 * @param certProf certificateprofile that defines if this extension is used and critical
 	 */
 	public abstract void init(CertificateProfile certProf);
+
+    /**
+     * Tells if the value of the extension only depends on the CA and the certificate profile, and not on the subject, its public key
+     * or the validity of the certificate. The value of such an extension is encoded once per CA and certificate profile, and reused for
+     * all certificates, see {@link org.cesecore.certificates.certificateprofile.CompiledCertificateProfile}.
+     *
+     * @param ca the issuing CA
+     * @param certProf the certificate profile
+     * @return true if the value of the extension is the same for all certificates issued by the CA with the certificate profile
+     */
+    public boolean isStaticValue(final CA ca, final CertificateProfile certProf) {
+        return false;
+    }
 	
 }
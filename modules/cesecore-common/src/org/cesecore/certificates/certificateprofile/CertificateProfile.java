@@ -99,6 +99,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     private static final long serialVersionUID = -8069608639716545206L;
 
+    /** Snapshot of the profile used when issuing certificates, created on demand and dropped when the profile is modified */
+    private transient volatile CompiledCertificateProfile compiledProfile;
+
 
     /** Microsoft Template Constants */
     public static final String MSTEMPL_DOMAINCONTROLLER = "DomainController";
@@ -736,7 +739,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * Returns the version of the certificate, should be one of the VERSION_ constants defined in CertificateProfile class.
      */
     public void setCertificateVersion(String version) {
-        data.put(CERTVERSION, version);
+        putData(CERTVERSION, version);
     }
 
     /**
@@ -772,7 +775,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @see {@link org.cesecore.util.SimpleTime SimpleTime}
      */
     public void setEncodedValidity(String encodedValidity) {
-        data.put(ENCODED_VALIDITY, encodedValidity);
+        putData(ENCODED_VALIDITY, encodedValidity);
     }
 
     /**
@@ -794,7 +797,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param enabled enabled
      */
     public void setUseCertificateValidityOffset(boolean enabled) {
-        data.put(USE_CERTIFICATE_VALIDITY_OFFSET, enabled);
+        putData(USE_CERTIFICATE_VALIDITY_OFFSET, enabled);
     }
 
     /**
@@ -812,7 +815,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @see org.cesecore.util.SimpleTime
      */
     public void setCertificateValidityOffset(String simpleTime) {
-        data.put(CERTIFICATE_VALIDITY_OFFSET, simpleTime);
+        putData(CERTIFICATE_VALIDITY_OFFSET, simpleTime);
     }
 
     /**
@@ -828,7 +831,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param enabled enabled
      */
     public void setUseExpirationRestrictionForWeekdays(boolean enabled) {
-        data.put(USE_EXPIRATION_RESTRICTION_FOR_WEEKDAYS, enabled);
+        putData(USE_EXPIRATION_RESTRICTION_FOR_WEEKDAYS, enabled);
     }
 
     /**
@@ -846,7 +849,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param enabled true, otherwise false.
      */
     public void setExpirationRestrictionForWeekdaysExpireBefore(boolean enabled) {
-        data.put(EXPIRATION_RESTRICTION_FOR_WEEKDAYS_BEFORE, enabled);
+        putData(EXPIRATION_RESTRICTION_FOR_WEEKDAYS_BEFORE, enabled);
     }
 
     /**
@@ -865,6 +868,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     @SuppressWarnings("unchecked")
     public void setExpirationRestrictionWeekday(int weekday, boolean enabled) {
+        compiledProfile = null;
         ((ArrayList<Boolean>) data.get(EXPIRATION_RESTRICTION_WEEKDAYS)).set(weekday-1, enabled);
     }
 
@@ -888,7 +892,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
         for (boolean weekday : weekdays) {
             list.add(weekday);
         }
-        data.put(EXPIRATION_RESTRICTION_WEEKDAYS, list);
+        putData(EXPIRATION_RESTRICTION_WEEKDAYS, list);
     }
 
     private void setDefaultExpirationRestrictionWeekdays() {
@@ -904,7 +908,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseValidityAssuredShortTerm(boolean enabled) {
-        data.put(USE_VALIDITY_ASSURED_SHORT_TERM, enabled);
+        putData(USE_VALIDITY_ASSURED_SHORT_TERM, enabled);
     }
 
     public boolean getValidityAssuredShortTermCritical() {
@@ -912,7 +916,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setValidityAssuredShortTermCritical(boolean critical) {
-        data.put(VALIDITY_ASSURED_SHORT_TERM_CRITICAL, critical);
+        putData(VALIDITY_ASSURED_SHORT_TERM_CRITICAL, critical);
     }
 
     /**
@@ -930,7 +934,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * A certificate created with validity override can hava a starting point in the future.
      */
     public void setAllowValidityOverride(boolean allowvalidityoverride) {
-        data.put(ALLOWVALIDITYOVERRIDE, allowvalidityoverride);
+        putData(ALLOWVALIDITYOVERRIDE, allowvalidityoverride);
     }
 
     /**
@@ -946,7 +950,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param   allowExpiredValidityEndDate
      */
     public void setAllowExpiredValidityEndDate(boolean allowExpiredValidityEndDate) {
-        data.put(ALLOWEXPIREDVALIDITYENDDATE, allowExpiredValidityEndDate);
+        putData(ALLOWEXPIREDVALIDITYENDDATE, allowExpiredValidityEndDate);
     }
 
     /**
@@ -961,7 +965,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     /** @see #getAllowExtensionOverride() */
     public void setAllowExtensionOverride(boolean allowextensionoverride) {
-        data.put(ALLOWEXTENSIONOVERRIDE, allowextensionoverride);
+        putData(ALLOWEXTENSIONOVERRIDE, allowextensionoverride);
     }
 
     /**
@@ -976,7 +980,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     /** @see #getAllowDNOverride() */
     public void setAllowDNOverride(boolean allowdnoverride) {
-        data.put(ALLOWDNOVERRIDE, allowdnoverride);
+        putData(ALLOWDNOVERRIDE, allowdnoverride);
     }
 
     /**
@@ -991,7 +995,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     /** @see #getAllowDNOverrideByEndEntityInformation() */
     public void setAllowDNOverrideByEndEntityInformation(final boolean value) {
-        data.put(ALLOWDNOVERRIDEBYEEI, value);
+        putData(ALLOWDNOVERRIDEBYEEI, value);
     }
 
     /**
@@ -1010,7 +1014,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      *            new value
      */
     public void setAllowCertSerialNumberOverride(boolean allowdnoverride) {
-        data.put(ALLOWCERTSNOVERIDE, allowdnoverride);
+        putData(ALLOWCERTSNOVERIDE, allowdnoverride);
     }
 
     public boolean getUseBasicConstraints() {
@@ -1018,7 +1022,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseBasicConstraints(boolean usebasicconstraints) {
-        data.put(USEBASICCONSTRAINTS, usebasicconstraints);
+        putData(USEBASICCONSTRAINTS, usebasicconstraints);
     }
 
     public boolean getBasicConstraintsCritical() {
@@ -1026,7 +1030,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setBasicConstraintsCritical(boolean basicconstraintscritical) {
-        data.put(BASICCONSTRAINTSCRITICAL, basicconstraintscritical);
+        putData(BASICCONSTRAINTSCRITICAL, basicconstraintscritical);
     }
 
     public boolean getUseKeyUsage() {
@@ -1034,7 +1038,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseKeyUsage(boolean usekeyusage) {
-        data.put(USEKEYUSAGE, usekeyusage);
+        putData(USEKEYUSAGE, usekeyusage);
     }
 
     public boolean getKeyUsageCritical() {
@@ -1042,7 +1046,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setKeyUsageCritical(boolean keyusagecritical) {
-        data.put(KEYUSAGECRITICAL, keyusagecritical);
+        putData(KEYUSAGECRITICAL, keyusagecritical);
     }
 
     public boolean getKeyUsageForbidEncryptionUsageForECC() {
@@ -1050,7 +1054,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setKeyUsageForbidEncryptionUsageForECC(boolean keyUsageForbidEncryptionUsageForECC) {
-        data.put(KEYUSAGE_FORBIDENCRYPTIONUSAGEFORECC, keyUsageForbidEncryptionUsageForECC);
+        putData(KEYUSAGE_FORBIDENCRYPTIONUSAGEFORECC, keyUsageForbidEncryptionUsageForECC);
     }
 
     public boolean getUseSubjectKeyIdentifier() {
@@ -1058,7 +1062,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseSubjectKeyIdentifier(boolean usesubjectkeyidentifier) {
-        data.put(USESUBJECTKEYIDENTIFIER, usesubjectkeyidentifier);
+        putData(USESUBJECTKEYIDENTIFIER, usesubjectkeyidentifier);
     }
 
     /**
@@ -1072,7 +1076,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseTruncatedSubjectKeyIdentifier(boolean usetruncatedsubjectkeyidentifier) {
-        data.put(USETRUNCATEDSUBJECTKEYIDENTIFIER, usetruncatedsubjectkeyidentifier);
+        putData(USETRUNCATEDSUBJECTKEYIDENTIFIER, usetruncatedsubjectkeyidentifier);
     }
 
     public boolean getSubjectKeyIdentifierCritical() {
@@ -1080,7 +1084,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setSubjectKeyIdentifierCritical(boolean subjectkeyidentifiercritical) {
-        data.put(SUBJECTKEYIDENTIFIERCRITICAL, subjectkeyidentifiercritical);
+        putData(SUBJECTKEYIDENTIFIERCRITICAL, subjectkeyidentifiercritical);
     }
 
     public boolean getUseAuthorityKeyIdentifier() {
@@ -1088,7 +1092,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseAuthorityKeyIdentifier(boolean useauthoritykeyidentifier) {
-        data.put(USEAUTHORITYKEYIDENTIFIER, useauthoritykeyidentifier);
+        putData(USEAUTHORITYKEYIDENTIFIER, useauthoritykeyidentifier);
     }
 
     public boolean getAuthorityKeyIdentifierCritical() {
@@ -1096,7 +1100,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setAuthorityKeyIdentifierCritical(boolean authoritykeyidentifiercritical) {
-        data.put(AUTHORITYKEYIDENTIFIERCRITICAL, authoritykeyidentifiercritical);
+        putData(AUTHORITYKEYIDENTIFIERCRITICAL, authoritykeyidentifiercritical);
     }
 
     public boolean getUseSubjectAlternativeName() {
@@ -1104,7 +1108,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseSubjectAlternativeName(boolean usesubjectalternativename) {
-        data.put(USESUBJECTALTERNATIVENAME, usesubjectalternativename);
+        putData(USESUBJECTALTERNATIVENAME, usesubjectalternativename);
     }
 
     public boolean getStoreCertificateData() {
@@ -1120,7 +1124,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setStoreCertificateData(boolean storeCertificateData) {
-        data.put(STORECERTIFICATEDATA, storeCertificateData);
+        putData(STORECERTIFICATEDATA, storeCertificateData);
     }
 
     /** @return true if the CertificateData.subjectAltName column should be populated. */
@@ -1137,7 +1141,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setStoreSubjectAlternativeName(final boolean storeSubjectAlternativeName) {
-        data.put(STORESUBJECTALTNAME, storeSubjectAlternativeName);
+        putData(STORESUBJECTALTNAME, storeSubjectAlternativeName);
     }
 
     public boolean getSubjectAlternativeNameCritical() {
@@ -1145,7 +1149,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setSubjectAlternativeNameCritical(boolean subjectalternativenamecritical) {
-        data.put(SUBJECTALTERNATIVENAMECRITICAL, subjectalternativenamecritical);
+        putData(SUBJECTALTERNATIVENAMECRITICAL, subjectalternativenamecritical);
     }
 
     public boolean getUseIssuerAlternativeName() {
@@ -1153,7 +1157,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseIssuerAlternativeName(boolean useissueralternativename) {
-        data.put(USEISSUERALTERNATIVENAME, useissueralternativename);
+        putData(USEISSUERALTERNATIVENAME, useissueralternativename);
     }
 
     public boolean getIssuerAlternativeNameCritical() {
@@ -1161,7 +1165,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setIssuerAlternativeNameCritical(boolean issueralternativenamecritical) {
-        data.put(ISSUERALTERNATIVENAMECRITICAL, issueralternativenamecritical);
+        putData(ISSUERALTERNATIVENAMECRITICAL, issueralternativenamecritical);
     }
 
     public boolean getUseCRLDistributionPoint() {
@@ -1169,7 +1173,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCRLDistributionPoint(boolean usecrldistributionpoint) {
-        data.put(USECRLDISTRIBUTIONPOINT, usecrldistributionpoint);
+        putData(USECRLDISTRIBUTIONPOINT, usecrldistributionpoint);
     }
 
     public boolean getUseDefaultCRLDistributionPoint() {
@@ -1177,7 +1181,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseDefaultCRLDistributionPoint(boolean usedefaultcrldistributionpoint) {
-        data.put(USEDEFAULTCRLDISTRIBUTIONPOINT, usedefaultcrldistributionpoint);
+        putData(USEDEFAULTCRLDISTRIBUTIONPOINT, usedefaultcrldistributionpoint);
     }
 
     public boolean getCRLDistributionPointCritical() {
@@ -1185,7 +1189,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCRLDistributionPointCritical(boolean crldistributionpointcritical) {
-        data.put(CRLDISTRIBUTIONPOINTCRITICAL, crldistributionpointcritical);
+        putData(CRLDISTRIBUTIONPOINTCRITICAL, crldistributionpointcritical);
     }
 
     public String getCRLDistributionPointURI() {
@@ -1194,9 +1198,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setCRLDistributionPointURI(String crldistributionpointuri) {
         if (crldistributionpointuri == null) {
-            data.put(CRLDISTRIBUTIONPOINTURI, "");
+            putData(CRLDISTRIBUTIONPOINTURI, "");
         } else {
-            data.put(CRLDISTRIBUTIONPOINTURI, crldistributionpointuri);
+            putData(CRLDISTRIBUTIONPOINTURI, crldistributionpointuri);
         }
     }
 
@@ -1206,9 +1210,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setCRLIssuer(String crlissuer) {
         if (crlissuer == null) {
-            data.put(CRLISSUER, "");
+            putData(CRLISSUER, "");
         } else {
-            data.put(CRLISSUER, crlissuer);
+            putData(CRLISSUER, crlissuer);
         }
     }
 
@@ -1218,7 +1222,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseFreshestCRL(boolean usefreshestcrl) {
-        data.put(USEFRESHESTCRL, usefreshestcrl);
+        putData(USEFRESHESTCRL, usefreshestcrl);
     }
 
     public boolean getUseCADefinedFreshestCRL() {
@@ -1227,7 +1231,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCADefinedFreshestCRL(boolean usecadefinedfreshestcrl) {
-        data.put(USECADEFINEDFRESHESTCRL, usecadefinedfreshestcrl);
+        putData(USECADEFINEDFRESHESTCRL, usecadefinedfreshestcrl);
     }
 
     public String getFreshestCRLURI() {
@@ -1236,9 +1240,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setFreshestCRLURI(String freshestcrluri) {
         if (freshestcrluri == null) {
-            data.put(FRESHESTCRLURI, "");
+            putData(FRESHESTCRLURI, "");
         } else {
-            data.put(FRESHESTCRLURI, freshestcrluri);
+            putData(FRESHESTCRLURI, freshestcrluri);
         }
     }
 
@@ -1247,7 +1251,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCertificatePolicies(boolean usecertificatepolicies) {
-        data.put(USECERTIFICATEPOLICIES, usecertificatepolicies);
+        putData(USECERTIFICATEPOLICIES, usecertificatepolicies);
     }
 
     public boolean getUseCertificateStorage() {
@@ -1263,7 +1267,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCertificateStorage(boolean useCertificateStorage) {
-        data.put(USECERTIFICATESTORAGE, useCertificateStorage);
+        putData(USECERTIFICATESTORAGE, useCertificateStorage);
     }
 
     public boolean getCertificatePoliciesCritical() {
@@ -1271,7 +1275,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCertificatePoliciesCritical(boolean certificatepoliciescritical) {
-        data.put(CERTIFICATEPOLICIESCRITICAL, certificatepoliciescritical);
+        putData(CERTIFICATEPOLICIESCRITICAL, certificatepoliciescritical);
     }
 
     public List<CertificatePolicy> getCertificatePolicies() {
@@ -1320,20 +1324,22 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
         if (data.get(CERTIFICATE_POLICIES) == null) {
             setCertificatePolicies(new ArrayList<>());
         }
+        compiledProfile = null;
         ((List<CertificatePolicy>) data.get(CERTIFICATE_POLICIES)).add(policy);
     }
 
     public void setCertificatePolicies(List<CertificatePolicy> policies) {
         if (policies == null) {
-            data.put(CERTIFICATE_POLICIES, new ArrayList<>(0));
+            putData(CERTIFICATE_POLICIES, new ArrayList<>(0));
         } else {
-            data.put(CERTIFICATE_POLICIES, policies);
+            putData(CERTIFICATE_POLICIES, policies);
         }
     }
 
     @SuppressWarnings("unchecked")
     public void removeCertificatePolicy(CertificatePolicy policy) {
         if (data.get(CERTIFICATE_POLICIES) != null) {
+            compiledProfile = null;
             ((List<CertificatePolicy>) data.get(CERTIFICATE_POLICIES)).remove(policy);
         }
     }
@@ -1349,7 +1355,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @see {@link CertificateConstants#CERTTYPE_ROOTCA}, etc
      */
     public void setType(int type) {
-        data.put(TYPE, type);
+        putData(TYPE, type);
     }
 
     public boolean isTypeSubCA() {
@@ -1399,7 +1405,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setAvailableKeyAlgorithmsAsList(final List<String> availableKeyAlgorithms) {
-        data.put(AVAILABLEKEYALGORITHMS, new ArrayList<>(availableKeyAlgorithms));
+        putData(AVAILABLEKEYALGORITHMS, new ArrayList<>(availableKeyAlgorithms));
     }
 
     public String[] getAlternativeAvailableKeyAlgorithms() {
@@ -1420,7 +1426,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setAlternativeAvailableKeyAlgorithmsAsList(final List<String> alternativeAvailableKeyAlgorithms) {
-        data.put(ALTERNATIVE_AVAILABLEKEYALGORITHMS, new ArrayList<>(alternativeAvailableKeyAlgorithms));
+        putData(ALTERNATIVE_AVAILABLEKEYALGORITHMS, new ArrayList<>(alternativeAvailableKeyAlgorithms));
     }
 
     public String[] getAvailableEcCurves() {
@@ -1438,7 +1444,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setAvailableEcCurvesAsList(final List<String> availableEcCurves) {
-        data.put(AVAILABLEECCURVES, new ArrayList<>(availableEcCurves));
+        putData(AVAILABLEECCURVES, new ArrayList<>(availableEcCurves));
     }
 
     public int[] getAvailableBitLengths() {
@@ -1471,9 +1477,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
                 minimumavailablebitlength = availablebitlength;
             }
         }
-        data.put(AVAILABLEBITLENGTHS, availableBitLengths);
-        data.put(MINIMUMAVAILABLEBITLENGTH, minimumavailablebitlength);
-        data.put(MAXIMUMAVAILABLEBITLENGTH, maximumavailablebitlength);
+        putData(AVAILABLEBITLENGTHS, availableBitLengths);
+        putData(MINIMUMAVAILABLEBITLENGTH, minimumavailablebitlength);
+        putData(MAXIMUMAVAILABLEBITLENGTH, maximumavailablebitlength);
     }
 
     public void setAvailableBitLengths(int[] availablebitlengths) {
@@ -1555,7 +1561,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @see com.keyfactor.util.crypto.algorithm.core.model.AlgorithmConstants.AVAILABLE_SIGALGS
      */
     public void setSignatureAlgorithm(String signAlg) {
-        data.put(SIGNATUREALGORITHM, signAlg);
+        putData(SIGNATUREALGORITHM, signAlg);
     }
 
     /**
@@ -1569,7 +1575,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @see com.keyfactor.util.crypto.algorithm.core.model.AlgorithmConstants.AVAILABLE_SIGALGS
      */
     public void setAlternativeSignatureAlgorithm(String alternativeSignatureAlgorithm) {
-        data.put(ALTERNATIVE_SIGNATUREALGORITHM, alternativeSignatureAlgorithm);
+        putData(ALTERNATIVE_SIGNATUREALGORITHM, alternativeSignatureAlgorithm);
     }
 
     public boolean getUseAlternativeSignature() {
@@ -1577,7 +1583,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseAlternativeSignature(boolean enabled) {
-        data.put(USE_ALTERNATIVE_SIGNATURE, enabled);
+        putData(USE_ALTERNATIVE_SIGNATURE, enabled);
     }
 
     public boolean[] getKeyUsage() {
@@ -1605,7 +1611,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
         for (boolean aKeyusage : keyusage) {
             keyuse.add(aKeyusage);
         }
-        data.put(KEYUSAGE, keyuse);
+        putData(KEYUSAGE, keyuse);
     }
 
     /**
@@ -1616,11 +1622,12 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     @SuppressWarnings("unchecked")
     public void setKeyUsage(int keyusageconstant, boolean value) {
+        compiledProfile = null;
         ((ArrayList<Boolean>) data.get(KEYUSAGE)).set(keyusageconstant, value);
     }
 
     public void setAllowKeyUsageOverride(boolean override) {
-        data.put(ALLOWKEYUSAGEOVERRIDE, override);
+        putData(ALLOWKEYUSAGEOVERRIDE, override);
     }
 
     public boolean getAllowKeyUsageOverride() {
@@ -1628,7 +1635,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setAllowBackdatedRevocation(boolean override) {
-        this.data.put(ALLOWBACKDATEDREVOCATION, override);
+        putData(ALLOWBACKDATEDREVOCATION, override);
     }
 
     public boolean getAllowBackdatedRevocation() {
@@ -1637,7 +1644,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseDocumentTypeList(boolean use) {
-        data.put(USEDOCUMENTTYPELIST, use);
+        putData(USEDOCUMENTTYPELIST, use);
     }
 
     public boolean getUseDocumentTypeList() {
@@ -1645,7 +1652,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setDocumentTypeListCritical(boolean critical) {
-        data.put(DOCUMENTTYPELISTCRITICAL, critical);
+        putData(DOCUMENTTYPELISTCRITICAL, critical);
     }
 
     public boolean getDocumentTypeListCritical() {
@@ -1653,7 +1660,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setDocumentTypeList(ArrayList<String> docTypes) {
-        data.put(DOCUMENTTYPELIST, docTypes);
+        putData(DOCUMENTTYPELIST, docTypes);
     }
 
     @SuppressWarnings("unchecked")
@@ -1662,7 +1669,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseExtendedKeyUsage(boolean use) {
-        data.put(USEEXTENDEDKEYUSAGE, use);
+        putData(USEEXTENDEDKEYUSAGE, use);
     }
 
     public boolean getUseExtendedKeyUsage() {
@@ -1670,7 +1677,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setExtendedKeyUsageCritical(boolean critical) {
-        data.put(EXTENDEDKEYUSAGECRITICAL, critical);
+        putData(EXTENDEDKEYUSAGECRITICAL, critical);
     }
 
     public boolean getExtendedKeyUsageCritical() {
@@ -1681,22 +1688,24 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * Extended Key Usage is an arraylist of oid Strings. Usually oids comes from KeyPurposeId in BC.
      */
     public void setExtendedKeyUsage(ArrayList<String> extendedkeyusage) {
-        data.put(EXTENDEDKEYUSAGE, extendedkeyusage);
+        putData(EXTENDEDKEYUSAGE, extendedkeyusage == null ? null : new ArrayList<>(extendedkeyusage));
     }
 
     /**
      * Extended Key Usage is an arraylist of Strings with eku oids.
+     * @return a copy of the eku oids, or null if not set. Use {@link #setExtendedKeyUsageOids(ArrayList)} to change them.
      */
     @SuppressWarnings("unchecked")
     public ArrayList<String> getExtendedKeyUsageOids() {
-        return (ArrayList<String>) data.get(EXTENDEDKEYUSAGE);
+        final ArrayList<String> extendedKeyUsageOids = (ArrayList<String>) data.get(EXTENDEDKEYUSAGE);
+        return extendedKeyUsageOids == null ? null : new ArrayList<>(extendedKeyUsageOids);
     }
     public void setExtendedKeyUsageOids(final ArrayList<String> extendedKeyUsageOids) {
         setExtendedKeyUsage(extendedKeyUsageOids);
     }
 
     public void setUseCustomDnOrder(boolean use) {
-        data.put(USECUSTOMDNORDER, use);
+        putData(USECUSTOMDNORDER, use);
     }
 
     public boolean getUseCustomDnOrder() {
@@ -1713,7 +1722,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param useldap true or false
      */
     public void setUseCustomDnOrderWithLdap(boolean useldap) {
-        data.put(USECUSTOMDNORDERLDAP, useldap);
+        putData(USECUSTOMDNORDERLDAP, useldap);
     }
 
     /**
@@ -1736,18 +1745,18 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     /** Custom DN order is an ArrayList of DN strings
      * @see DnComponents
-     * @return ArrayList of Strings or an empty ArrayList
+     * @return a copy of the ArrayList of Strings or an empty ArrayList. Use {@link #setCustomDnOrder(ArrayList)} to change it.
      */
     @SuppressWarnings("unchecked")
     public ArrayList<String> getCustomDnOrder() {
         if (data.get(CUSTOMDNORDER) == null) {
             return new ArrayList<>();
         }
-        return (ArrayList<String>) data.get(CUSTOMDNORDER);
+        return new ArrayList<>((ArrayList<String>) data.get(CUSTOMDNORDER));
     }
 
     public void setCustomDnOrder(final ArrayList<String> dnOrder) {
-        data.put(CUSTOMDNORDER, dnOrder);
+        putData(CUSTOMDNORDER, dnOrder == null ? null : new ArrayList<>(dnOrder));
     }
 
     public boolean getUseLdapDnOrder() {
@@ -1760,7 +1769,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseLdapDnOrder(boolean use) {
-        data.put(USELDAPDNORDER, use);
+        putData(USELDAPDNORDER, use);
     }
 
     public boolean getUseMicrosoftTemplate() {
@@ -1768,7 +1777,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseMicrosoftTemplate(boolean use) {
-        data.put(USEMICROSOFTTEMPLATE, use);
+        putData(USEMICROSOFTTEMPLATE, use);
     }
 
     public boolean getUseMsObjectSidSecurityExtension() {
@@ -1776,7 +1785,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseMsObjectSidSecurityExtension(boolean use) {
-        data.put(USE_MS_OBJECTSID_SECURITY_EXTENSION, use);
+        putData(USE_MS_OBJECTSID_SECURITY_EXTENSION, use);
     }
 
     public String getMicrosoftTemplate() {
@@ -1784,7 +1793,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setMicrosoftTemplate(String mstemplate) {
-        data.put(MICROSOFTTEMPLATE, mstemplate);
+        putData(MICROSOFTTEMPLATE, mstemplate);
     }
 
     public boolean getUseCardNumber() {
@@ -1792,7 +1801,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCardNumber(boolean use) {
-        data.put(USECARDNUMBER, use);
+        putData(USECARDNUMBER, use);
     }
 
     public boolean getUseCNPostfix() {
@@ -1800,7 +1809,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCNPostfix(boolean use) {
-        data.put(USECNPOSTFIX, use);
+        putData(USECNPOSTFIX, use);
     }
 
     public String getCNPostfix() {
@@ -1808,7 +1817,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCNPostfix(String cnpostfix) {
-        data.put(CNPOSTFIX, cnpostfix);
+        putData(CNPOSTFIX, cnpostfix);
 
     }
 
@@ -1817,7 +1826,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseSubjectDNSubSet(boolean use) {
-        data.put(USESUBJECTDNSUBSET, use);
+        putData(USESUBJECTDNSUBSET, use);
     }
 
     /**
@@ -1835,7 +1844,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param subjectDNSubset a list of {@link DNFieldExtractor} constants.
      */
     public void setSubjectDNSubSet(final List<Integer> subjectDNSubset) {
-        data.put(SUBJECTDNSUBSET, subjectDNSubset);
+        putData(SUBJECTDNSUBSET, subjectDNSubset);
     }
 
     // Method name alias for Configdump
@@ -1847,7 +1856,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     // Method name alias for Configdump
     public void setSubjectDNSubSets(final List<Integer> subjectDns) {
         final List<Integer> subjectDnIds = (subjectDns == null || subjectDns.isEmpty() ? new ArrayList<>() : subjectDns);
-        data.put(SUBJECTDNSUBSET, subjectDnIds);
+        putData(SUBJECTDNSUBSET, subjectDnIds);
     }
 
     /**
@@ -1856,20 +1865,20 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param overridableextensionoids Set of oids (strings), or an empty set, should not be null
      */
     public void setOverridableExtensionOIDs(Set<String> overridableextensionoids) {
-        data.put(OVERRIDABLEEXTENSIONOIDS, new LinkedHashSet<>(overridableextensionoids));
+        putData(OVERRIDABLEEXTENSIONOIDS, new LinkedHashSet<>(overridableextensionoids));
     }
 
     /**
      * Overridable Extension OIDs is an Set of oid Strings.
      * It is used to list what are the extensions that can be overridden when allow extension override is enabled in the Certificate Profile.
-     * @return Set of strings containing oids, or an empty set, never null
+     * @return a copy of the Set of strings containing oids, or an empty set, never null. Use {@link #setOverridableExtensionOIDs(Set)} to change it.
      */
     @SuppressWarnings("unchecked")
     public Set<String> getOverridableExtensionOIDs() {
         if (data.get(OVERRIDABLEEXTENSIONOIDS) == null) {
             return new LinkedHashSet<>();
         }
-        return (Set<String>) data.get(OVERRIDABLEEXTENSIONOIDS);
+        return new LinkedHashSet<>((Set<String>) data.get(OVERRIDABLEEXTENSIONOIDS));
     }
 
     /**
@@ -1878,20 +1887,20 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param nonoverridableextensionoids Set of oids (strings) that are not allowed to be overridden, or empty set to not disallow anything, not null
      */
     public void setNonOverridableExtensionOIDs(Set<String> nonoverridableextensionoids) {
-        data.put(NONOVERRIDABLEEXTENSIONOIDS, new LinkedHashSet<>(nonoverridableextensionoids));
+        putData(NONOVERRIDABLEEXTENSIONOIDS, new LinkedHashSet<>(nonoverridableextensionoids));
     }
 
     /**
      * Non Overridable Extension OIDs is a Set of oid Strings.
      * It is used to list what are the extensions that can not be overridde when allow extension override is enabled in the Certificate Profile..
-     * @return Set of strings containing oids, or an empty set, never null
+     * @return a copy of the Set of strings containing oids, or an empty set, never null. Use {@link #setNonOverridableExtensionOIDs(Set)} to change it.
      */
     @SuppressWarnings("unchecked")
     public Set<String> getNonOverridableExtensionOIDs() {
         if (data.get(NONOVERRIDABLEEXTENSIONOIDS) == null) {
             return new LinkedHashSet<>();
         }
-        return (Set<String>) data.get(NONOVERRIDABLEEXTENSIONOIDS);
+        return new LinkedHashSet<>((Set<String>) data.get(NONOVERRIDABLEEXTENSIONOIDS));
     }
 
     /**
@@ -1911,7 +1920,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseSubjectAltNameSubSet(boolean use) {
-        data.put(USESUBJECTALTNAMESUBSET, use);
+        putData(USESUBJECTALTNAMESUBSET, use);
     }
 
     /**
@@ -1928,7 +1937,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      *
      */
     public void setSubjectAltNameSubSet(List<Integer> subjectaltnames) {
-        data.put(SUBJECTALTNAMESUBSET, subjectaltnames);
+        putData(SUBJECTALTNAMESUBSET, subjectaltnames);
 
     }
 
@@ -1995,7 +2004,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
 
     public void setAvailableCAs(List<Integer> availablecas) {
-        data.put(AVAILABLECAS, availablecas);
+        putData(AVAILABLECAS, availablecas);
     }
 
     @SuppressWarnings("unchecked")
@@ -2023,7 +2032,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
 
     public void setPublisherList(List<Integer> publishers) {
-        data.put(USEDPUBLISHERS, publishers);
+        putData(USEDPUBLISHERS, publishers);
     }
 
     /**
@@ -2037,7 +2046,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * Method indicating that Path Length Constraint should be used in the BasicConstraint
      */
     public void setUsePathLengthConstraint(boolean use) {
-        data.put(USEPATHLENGTHCONSTRAINT, use);
+        putData(USEPATHLENGTHCONSTRAINT, use);
     }
 
     public int getPathLengthConstraint() {
@@ -2045,11 +2054,11 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setPathLengthConstraint(int pathlength) {
-        data.put(PATHLENGTHCONSTRAINT, pathlength);
+        putData(PATHLENGTHCONSTRAINT, pathlength);
     }
 
     public void setCaIssuers(List<String> caIssuers) {
-        data.put(CAISSUERS, caIssuers);
+        putData(CAISSUERS, caIssuers);
     }
 
     @SuppressWarnings("unchecked")
@@ -2063,6 +2072,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
             caIssuers.add(caIssuer);
             this.setCaIssuers(caIssuers);
         } else {
+            compiledProfile = null;
             ((List<String>) data.get(CAISSUERS)).add(caIssuer);
         }
     }
@@ -2078,6 +2088,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void removeCaIssuer(String caIssuer) {
         if (data.get(CAISSUERS) != null) {
+            compiledProfile = null;
             ((List<?>) data.get(CAISSUERS)).remove(caIssuer);
         }
     }
@@ -2087,7 +2098,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseOcspNoCheck(boolean useocspnocheck) {
-        data.put(USEOCSPNOCHECK, useocspnocheck);
+        putData(USEOCSPNOCHECK, useocspnocheck);
     }
 
     public boolean getUseAuthorityInformationAccess() {
@@ -2095,7 +2106,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseAuthorityInformationAccess(boolean useauthorityinformationaccess) {
-        data.put(USEAUTHORITYINFORMATIONACCESS, useauthorityinformationaccess);
+        putData(USEAUTHORITYINFORMATIONACCESS, useauthorityinformationaccess);
     }
 
     public boolean getUseDefaultCAIssuer() {
@@ -2105,7 +2116,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseDefaultCAIssuer(boolean usedefaultcaissuer) {
-        data.put(USEDEFAULTCAISSUER, usedefaultcaissuer);
+        putData(USEDEFAULTCAISSUER, usedefaultcaissuer);
     }
 
     public boolean getUseDefaultOCSPServiceLocator() {
@@ -2113,7 +2124,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseDefaultOCSPServiceLocator(boolean usedefaultocspservicelocator) {
-        data.put(USEDEFAULTOCSPSERVICELOCATOR, usedefaultocspservicelocator);
+        putData(USEDEFAULTOCSPSERVICELOCATOR, usedefaultocspservicelocator);
     }
 
     public String getOCSPServiceLocatorURI() {
@@ -2122,9 +2133,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setOCSPServiceLocatorURI(String ocspservicelocatoruri) {
         if (ocspservicelocatoruri == null) {
-            data.put(OCSPSERVICELOCATORURI, "");
+            putData(OCSPSERVICELOCATORURI, "");
         } else {
-            data.put(OCSPSERVICELOCATORURI, ocspservicelocatoruri);
+            putData(OCSPSERVICELOCATORURI, ocspservicelocatoruri);
         }
     }
 
@@ -2134,9 +2145,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setDescription(String description) {
         if (description == null) {
-            data.put(DESCRIPTION, "");
+            putData(DESCRIPTION, "");
         } else {
-            data.put(DESCRIPTION, description);
+            putData(DESCRIPTION, description);
         }
     }
 
@@ -2150,9 +2161,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setEabNamespaces(Set<String> eabNamespaces) {
         if (eabNamespaces == null) {
-            data.put(EABNAMESPACES, new LinkedHashSet<>());
+            putData(EABNAMESPACES, new LinkedHashSet<>());
         } else {
-            data.put(EABNAMESPACES, new LinkedHashSet<>(eabNamespaces));
+            putData(EABNAMESPACES, new LinkedHashSet<>(eabNamespaces));
         }
     }
 
@@ -2161,7 +2172,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCStatement(boolean useqcstatement) {
-        data.put(USEQCSTATEMENT, useqcstatement);
+        putData(USEQCSTATEMENT, useqcstatement);
     }
 
     public boolean getUsePkixQCSyntaxV2() {
@@ -2169,7 +2180,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUsePkixQCSyntaxV2(boolean pkixqcsyntaxv2) {
-        data.put(USEPKIXQCSYNTAXV2, pkixqcsyntaxv2);
+        putData(USEPKIXQCSYNTAXV2, pkixqcsyntaxv2);
     }
 
     public boolean getQCStatementCritical() {
@@ -2177,7 +2188,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setQCStatementCritical(boolean qcstatementcritical) {
-        data.put(QCSTATEMENTCRITICAL, qcstatementcritical);
+        putData(QCSTATEMENTCRITICAL, qcstatementcritical);
     }
 
     /** @return String with RAName or empty string */
@@ -2187,9 +2198,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setQCStatementRAName(String qcstatementraname) {
         if (qcstatementraname == null) {
-            data.put(QCSTATEMENTRANAME, "");
+            putData(QCSTATEMENTRANAME, "");
         } else {
-            data.put(QCSTATEMENTRANAME, qcstatementraname);
+            putData(QCSTATEMENTRANAME, qcstatementraname);
         }
     }
 
@@ -2200,9 +2211,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setQCSemanticsIds(String qcsemanticsid) {
         if (qcsemanticsid == null) {
-            data.put(QCSSEMANTICSID, "");
+            putData(QCSSEMANTICSID, "");
         } else {
-            data.put(QCSSEMANTICSID, qcsemanticsid);
+            putData(QCSSEMANTICSID, qcsemanticsid);
         }
     }
 
@@ -2211,7 +2222,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCEtsiQCCompliance(boolean useqcetsiqccompliance) {
-        data.put(USEQCETSIQCCOMPLIANCE, useqcetsiqccompliance);
+        putData(USEQCETSIQCCOMPLIANCE, useqcetsiqccompliance);
     }
 
     public boolean getUseQCEtsiValueLimit() {
@@ -2219,7 +2230,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCEtsiValueLimit(boolean useqcetsivaluelimit) {
-        data.put(USEQCETSIVALUELIMIT, useqcetsivaluelimit);
+        putData(USEQCETSIVALUELIMIT, useqcetsivaluelimit);
     }
 
     public int getQCEtsiValueLimit() {
@@ -2227,7 +2238,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setQCEtsiValueLimit(int qcetsivaluelimit) {
-        data.put(QCETSIVALUELIMIT, qcetsivaluelimit);
+        putData(QCETSIVALUELIMIT, qcetsivaluelimit);
     }
 
     public int getQCEtsiValueLimitExp() {
@@ -2235,7 +2246,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setQCEtsiValueLimitExp(int qcetsivaluelimitexp) {
-        data.put(QCETSIVALUELIMITEXP, qcetsivaluelimitexp);
+        putData(QCETSIVALUELIMITEXP, qcetsivaluelimitexp);
     }
 
     /** @return String with Currency or empty string */
@@ -2245,9 +2256,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setQCEtsiValueLimitCurrency(String qcetsivaluelimitcurrency) {
         if (qcetsivaluelimitcurrency == null) {
-            data.put(QCETSIVALUELIMITCURRENCY, "");
+            putData(QCETSIVALUELIMITCURRENCY, "");
         } else {
-            data.put(QCETSIVALUELIMITCURRENCY, qcetsivaluelimitcurrency);
+            putData(QCETSIVALUELIMITCURRENCY, qcetsivaluelimitcurrency);
         }
     }
 
@@ -2256,7 +2267,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCEtsiRetentionPeriod(boolean useqcetsiretentionperiod) {
-        data.put(USEQCETSIRETENTIONPERIOD, useqcetsiretentionperiod);
+        putData(USEQCETSIRETENTIONPERIOD, useqcetsiretentionperiod);
     }
 
     public int getQCEtsiRetentionPeriod() {
@@ -2264,7 +2275,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setQCEtsiRetentionPeriod(int qcetsiretentionperiod) {
-        data.put(QCETSIRETENTIONPERIOD, qcetsiretentionperiod);
+        putData(QCETSIRETENTIONPERIOD, qcetsiretentionperiod);
     }
 
     public boolean getUseQCEtsiSignatureDevice() {
@@ -2272,7 +2283,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCEtsiSignatureDevice(boolean useqcetsisignaturedevice) {
-        data.put(USEQCETSISIGNATUREDEVICE, useqcetsisignaturedevice);
+        putData(USEQCETSISIGNATUREDEVICE, useqcetsisignaturedevice);
     }
 
     /** @return String with Type OID or null (or empty string) if it's not to be used (EN 319 412-05)
@@ -2284,7 +2295,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
         return (String) data.get(QCETSITYPE);
     }
     public void setQCEtsiType(String qcetsitype) {
-        data.put(QCETSITYPE, qcetsitype);
+        putData(QCETSITYPE, qcetsitype);
     }
 
     /**
@@ -2313,13 +2324,13 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     public void setQCEtsiPds(final List<PKIDisclosureStatement> pds) {
         if (pds == null || pds.isEmpty()) { // never store an empty list
-            data.put(QCETSIPDS, null);
+            putData(QCETSIPDS, null);
         } else {
-            data.put(QCETSIPDS, new ArrayList<>(pds));
+            putData(QCETSIPDS, new ArrayList<>(pds));
         }
         // Remove old data from EJBCA < 6.6.1
-        data.remove(QCETSIPDSURL);
-        data.remove(QCETSIPDSLANG);
+        removeData(QCETSIPDSURL);
+        removeData(QCETSIPDSLANG);
     }
 
     /**
@@ -2332,7 +2343,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCPSD2(boolean useqcpsd2) {
-        data.put(USEQCPSD2, useqcpsd2);
+        putData(USEQCPSD2, useqcpsd2);
     }
 
     public boolean getUseQCCountries() {
@@ -2340,7 +2351,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCCountries(boolean useqccountriesstring) {
-        data.put(USEQCCOUNTRIES, useqccountriesstring);
+        putData(USEQCCOUNTRIES, useqccountriesstring);
     }
 
     public String getQCCountriesString() {
@@ -2349,9 +2360,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setQCCountriesString(String iso3166_2_list) {
         if (iso3166_2_list == null) {
-            data.put(QCCOUNTRIESSTRING, "");
+            putData(QCCOUNTRIESSTRING, "");
         } else {
-            data.put(QCCOUNTRIESSTRING, iso3166_2_list);
+            putData(QCCOUNTRIESSTRING, iso3166_2_list);
         }
     }
 
@@ -2360,7 +2371,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseQCCustomString(boolean useqccustomstring) {
-        data.put(USEQCCUSTOMSTRING, useqccustomstring);
+        putData(USEQCCUSTOMSTRING, useqccustomstring);
     }
 
     /** @return String with oid or empty string */
@@ -2370,9 +2381,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setQCCustomStringOid(String qccustomstringoid) {
         if (qccustomstringoid == null) {
-            data.put(QCCUSTOMSTRINGOID, "");
+            putData(QCCUSTOMSTRINGOID, "");
         } else {
-            data.put(QCCUSTOMSTRINGOID, qccustomstringoid);
+            putData(QCCUSTOMSTRINGOID, qccustomstringoid);
         }
     }
 
@@ -2383,9 +2394,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setQCCustomStringText(String qccustomstringtext) {
         if (qccustomstringtext == null) {
-            data.put(QCCUSTOMSTRINGTEXT, "");
+            putData(QCCUSTOMSTRINGTEXT, "");
         } else {
-            data.put(QCCUSTOMSTRINGTEXT, qccustomstringtext);
+            putData(QCCUSTOMSTRINGTEXT, qccustomstringtext);
         }
     }
 
@@ -2401,7 +2412,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCabfOrganizationIdentifier(boolean use) {
-        data.put(USECABFORGANIZATIONIDENTIFIER, use);
+        putData(USECABFORGANIZATIONIDENTIFIER, use);
     }
 
     public boolean getUseNameConstraints() {
@@ -2410,7 +2421,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseNameConstraints(boolean use) {
-        data.put(USENAMECONSTRAINTS, use);
+        putData(USENAMECONSTRAINTS, use);
     }
 
     public boolean getNameConstraintsCritical() {
@@ -2419,7 +2430,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setNameConstraintsCritical(boolean use) {
-        data.put(NAMECONSTRAINTSCRITICAL, use);
+        putData(NAMECONSTRAINTSCRITICAL, use);
     }
 
     public boolean getUseSubjectDirAttributes() {
@@ -2427,11 +2438,11 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseSubjectDirAttributes(boolean use) {
-        data.put(USESUBJECTDIRATTRIBUTES, use);
+        putData(USESUBJECTDIRATTRIBUTES, use);
     }
 
     public void setSingleActiveCertificateConstraint(final boolean enabled) {
-        data.put(USERSINGLEACTIVECERTIFICATECONSTRAINT, enabled);
+        putData(USERSINGLEACTIVECERTIFICATECONSTRAINT, enabled);
     }
 
     public boolean isSingleActiveCertificateConstraint() {
@@ -2457,7 +2468,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCVCTerminalType(int termtype) {
-        data.put(CVCTERMINALTYPE, termtype);
+        putData(CVCTERMINALTYPE, termtype);
     }
 
     public boolean isCvcTerminalTypeIs() { return getCVCTerminalType() == CertificateProfile.CVC_TERMTYPE_IS; }
@@ -2472,7 +2483,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCVCAccessRights(int access) {
-        data.put(CVCACCESSRIGHTS, access);
+        putData(CVCACCESSRIGHTS, access);
     }
 
     // Method name alias for Configdump
@@ -2510,10 +2521,10 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
 
     public void setCVCLongAccessRights(byte[] access) {
         if (access == null) {
-            data.put(CVCLONGACCESSRIGHTS, null);
+            putData(CVCLONGACCESSRIGHTS, null);
         } else {
             // Convert to List<Byte> since byte[] doesn't work with database protection
-            data.put(CVCLONGACCESSRIGHTS, new ArrayList<>(Arrays.asList(ArrayUtils.toObject(access))));
+            putData(CVCLONGACCESSRIGHTS, new ArrayList<>(Arrays.asList(ArrayUtils.toObject(access))));
         }
     }
 
@@ -2525,12 +2536,12 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCVCSignTermDVType(int type) {
-        data.put(CVCSIGNTERMDVTYPE, type);
+        putData(CVCSIGNTERMDVTYPE, type);
     }
 
     /**
      * Method returning a list of (Integers) of ids of used CUSTOM certificate extensions. I.e. those custom certificate extensions selected for this
-     * profile. Never null.
+     * profile. Never null. The list is a copy, use {@link #setUsedCertificateExtensions(List)} to change it.
      *
      * Autoupgradable method
      */
@@ -2539,7 +2550,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
         if (data.get(USEDCERTIFICATEEXTENSIONS) == null) {
             return new ArrayList<>();
         }
-        return (List<Integer>) data.get(USEDCERTIFICATEEXTENSIONS);
+        return new ArrayList<>((List<Integer>) data.get(USEDCERTIFICATEEXTENSIONS));
     }
 
     /**
@@ -2549,9 +2560,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     public void setUsedCertificateExtensions(List<Integer> usedCertificateExtensions) {
         if (usedCertificateExtensions == null) {
-            data.put(USEDCERTIFICATEEXTENSIONS, new ArrayList<>());
+            putData(USEDCERTIFICATEEXTENSIONS, new ArrayList<>());
         } else {
-            data.put(USEDCERTIFICATEEXTENSIONS, usedCertificateExtensions);
+            putData(USEDCERTIFICATEEXTENSIONS, new ArrayList<>(usedCertificateExtensions));
         }
     }
 
@@ -2623,7 +2634,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     @Deprecated
     public void setApprovalSettings(List<Integer> approvalSettings) {
-        data.put(APPROVALSETTINGS, approvalSettings);
+        putData(APPROVALSETTINGS, approvalSettings);
     }
 
     /**
@@ -2650,7 +2661,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     @Deprecated
     public void setNumOfReqApprovals(int numOfReqApprovals) {
-        data.put(NUMOFREQAPPROVALS, numOfReqApprovals);
+        putData(NUMOFREQAPPROVALS, numOfReqApprovals);
     }
 
     /**
@@ -2674,7 +2685,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
     @Deprecated
     public void setApprovalProfileID(int approvalProfileID) {
-        data.put(APPROVALPROFILE, approvalProfileID);
+        putData(APPROVALPROFILE, approvalProfileID);
     }
 
     public void setApprovals(Map<ApprovalRequestType, Integer> approvals) {
@@ -2682,7 +2693,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
             approvals = new LinkedHashMap<>();
         }
         // We must store this as a predictable order map in the database, in order for databaseprotection to work
-        data.put(APPROVALS, new LinkedHashMap<>(approvals));
+        putData(APPROVALS, new LinkedHashMap<>(approvals));
     }
 
     /**
@@ -2722,8 +2733,8 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param use True if the notBefore component should be used.
      */
     public void setUsePrivateKeyUsagePeriodNotBefore(final boolean use) {
-            data.put(USEPRIVKEYUSAGEPERIODNOTBEFORE, use);
-            data.put(USEPRIVKEYUSAGEPERIOD, use || isUsePrivateKeyUsagePeriodNotAfter());
+            putData(USEPRIVKEYUSAGEPERIODNOTBEFORE, use);
+            putData(USEPRIVKEYUSAGEPERIOD, use || isUsePrivateKeyUsagePeriodNotAfter());
     }
 
     /**
@@ -2745,8 +2756,8 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param use True if the notAfter component should be used.
      */
     public void setUsePrivateKeyUsagePeriodNotAfter(final boolean use) {
-        data.put(USEPRIVKEYUSAGEPERIODNOTAFTER, use);
-        data.put(USEPRIVKEYUSAGEPERIOD, use || isUsePrivateKeyUsagePeriodNotBefore());
+        putData(USEPRIVKEYUSAGEPERIODNOTAFTER, use);
+        putData(USEPRIVKEYUSAGEPERIOD, use || isUsePrivateKeyUsagePeriodNotBefore());
     }
 
     /**
@@ -2763,7 +2774,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param start Offset from certificate issuance.
      */
     public void setPrivateKeyUsagePeriodStartOffset(final long start) {
-        data.put(PRIVKEYUSAGEPERIODSTARTOFFSET, start);
+        putData(PRIVKEYUSAGEPERIODSTARTOFFSET, start);
     }
 
     /**
@@ -2779,7 +2790,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * @param validity The length.
      */
     public void setPrivateKeyUsagePeriodLength(final long validity) {
-        data.put(PRIVKEYUSAGEPERIODLENGTH, validity);
+        putData(PRIVKEYUSAGEPERIODLENGTH, validity);
     }
 
     /**
@@ -2790,7 +2801,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCertificateTransparencyInCerts(boolean use) {
-        data.put(USECERTIFICATETRANSPARENCYINCERTS, use);
+        putData(USECERTIFICATETRANSPARENCYINCERTS, use);
     }
 
     /**
@@ -2801,7 +2812,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCertificateTransparencyInOCSP(boolean use) {
-        data.put(USECERTIFICATETRANSPARENCYINOCSP, use);
+        putData(USECERTIFICATETRANSPARENCYINOCSP, use);
     }
 
     /**
@@ -2817,7 +2828,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCertificateTransparencyInPublishers(boolean use) {
-        data.put(USECERTIFICATETRANSPARENCYINPUBLISHERS, use);
+        putData(USECERTIFICATETRANSPARENCYINPUBLISHERS, use);
     }
 
     public boolean isCtEnabled() {
@@ -2835,7 +2846,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setNumberOfSctByValidity(boolean use) {
-        data.put(CT_NUMBER_OF_SCTS_BY_VALIDITY, use);
+        putData(CT_NUMBER_OF_SCTS_BY_VALIDITY, use);
     }
 
     public boolean isNumberOfSctByCustom() {
@@ -2847,7 +2858,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setNumberOfSctByCustom(boolean use) {
-        data.put(CT_NUMBER_OF_SCTS_BY_CUSTOM, use);
+        putData(CT_NUMBER_OF_SCTS_BY_CUSTOM, use);
     }
 
     public String getNumberOfSctBy() {
@@ -2893,7 +2904,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setMaxNumberOfSctByValidity(boolean use) {
-        data.put(CT_MAX_NUMBER_OF_SCTS_BY_VALIDITY, use);
+        putData(CT_MAX_NUMBER_OF_SCTS_BY_VALIDITY, use);
     }
 
     public boolean isMaxNumberOfSctByCustom() {
@@ -2905,7 +2916,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setMaxNumberOfSctByCustom(boolean use) {
-        data.put(CT_MAX_NUMBER_OF_SCTS_BY_CUSTOM, use);
+        putData(CT_MAX_NUMBER_OF_SCTS_BY_CUSTOM, use);
     }
 
     /**
@@ -2916,7 +2927,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setUseCTSubmitExisting(boolean use) {
-        data.put(CTSUBMITEXISTING, use);
+        putData(CTSUBMITEXISTING, use);
     }
 
     /**
@@ -2935,7 +2946,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** Sets the enabled CT logs. NOTE: The argument must be a LinkedHashSet, since order is important */
     @Deprecated
     public void setEnabledCTLogs(LinkedHashSet<Integer> logIds) {
-        data.put(CTLOGS, new LinkedHashSet<>(logIds));
+        putData(CTLOGS, new LinkedHashSet<>(logIds));
     }
 
     @SuppressWarnings("unchecked")
@@ -2947,7 +2958,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setEnabledCtLabels(final Set<String> ctLabels) {
-        data.put(CTLABELS, new LinkedHashSet<>(ctLabels));
+        putData(CTLABELS, new LinkedHashSet<>(ctLabels));
     }
 
     /**
@@ -2968,7 +2979,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** @param value minimum number of SCTs required in total */
     @Deprecated
     public void setCtMinTotalScts(int value) {
-        data.put(CT_MIN_TOTAL_SCTS, value);
+        putData(CT_MIN_TOTAL_SCTS, value);
     }
 
     /** @see CertificateProfile#getCtMinTotalScts */
@@ -2983,7 +2994,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** @param value minimum number of SCTs for OCSP responses required in total */
     @Deprecated
     public void setCtMinTotalSctsOcsp(int value) {
-        data.put(CT_MIN_TOTAL_SCTS_OCSP, value);
+        putData(CT_MIN_TOTAL_SCTS_OCSP, value);
     }
 
     /**
@@ -3006,7 +3017,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** @param value the maximum number of non-mandatory SCTs */
     @Deprecated
     public void setCtMaxNonMandatoryScts(int value) {
-        data.put(CT_MAX_NONMANDATORY_SCTS, value);
+        putData(CT_MAX_NONMANDATORY_SCTS, value);
     }
 
     /** @see CertificateProfile#getCtMaxNonMandatoryScts */
@@ -3026,7 +3037,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** @param value maximum value number of non-mandatory SCTs for OCSP responses */
     @Deprecated
     public void setCtMaxNonMandatorySctsOcsp(int value) {
-        data.put(CT_MAX_NONMANDATORY_SCTS_OCSP, value);
+        putData(CT_MAX_NONMANDATORY_SCTS_OCSP, value);
     }
 
     /**
@@ -3044,7 +3055,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** @param value minimum number of non-mandatory SCTs */
     @Deprecated
     public void setCtMinNonMandatoryScts(int value) {
-        data.put(CT_MIN_NONMANDATORY_SCTS, value);
+        putData(CT_MIN_NONMANDATORY_SCTS, value);
     }
 
     /** @see CertificateProfile#getCtMinNonMandatoryScts */
@@ -3059,7 +3070,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     /** @param value minimum number of non-mandatory SCTs */
     @Deprecated
     public void setCtMinNonMandatorySctsOcsp(int value) {
-        data.put(CT_MIN_NONMANDATORY_SCTS_OCSP, value);
+        putData(CT_MIN_NONMANDATORY_SCTS_OCSP, value);
     }
 
     public int getCtMinScts() {
@@ -3070,7 +3081,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCtMinScts(int value) {
-        data.put(CT_SCTS_MIN, value);
+        putData(CT_SCTS_MIN, value);
     }
 
     public int getCtMaxScts() {
@@ -3081,7 +3092,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCtMaxScts(int value) {
-        data.put(CT_SCTS_MAX, value);
+        putData(CT_SCTS_MAX, value);
     }
 
     public int getCtMinSctsOcsp() {
@@ -3092,7 +3103,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCtMinSctsOcsp(int value) {
-        data.put(CT_SCTS_MIN_OCSP, value);
+        putData(CT_SCTS_MIN_OCSP, value);
     }
 
     public int getCtMaxSctsOcsp() {
@@ -3103,7 +3114,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCtMaxSctsOcsp(int value) {
-        data.put(CT_SCTS_MAX_OCSP, value);
+        putData(CT_SCTS_MAX_OCSP, value);
     }
 
 
@@ -3116,7 +3127,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setCTMaxRetries(int numRetries) {
-        data.put(CTMAXRETRIES, numRetries);
+        putData(CTMAXRETRIES, numRetries);
     }
 
     /** SSH Getters & Setters */
@@ -3126,7 +3137,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setSshCertificateType(final SshCertificateType certificateType) {
-        data.put(SSH_CERTIFICATE_TYPE, certificateType);
+        putData(SSH_CERTIFICATE_TYPE, certificateType);
     }
 
     public Map<String, String> getSshExtensionsMap() {
@@ -3161,7 +3172,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setSshExtensionsMap(Map<String, String> extensions) {
-        data.put(SSH_EXTENSIONS, extensions);
+        putData(SSH_EXTENSIONS, extensions);
     }
 
     public void setSshExtensions(List<String> extensionsList) {
@@ -3169,29 +3180,29 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
         for(String extension : extensionsList) {
             extensions.put(extension, "");
         }
-        data.put(SSH_EXTENSIONS, extensions);
+        putData(SSH_EXTENSIONS, extensions);
     }
 
     public boolean getAllowExternalSshExtensions() {
         if(!data.containsKey(SSH_ALLOW_EXTERNAL_EXTENSIONS)) {
-            data.put(SSH_ALLOW_EXTERNAL_EXTENSIONS, false);
+            putData(SSH_ALLOW_EXTERNAL_EXTENSIONS, false);
         }
         return (boolean) data.get(SSH_ALLOW_EXTERNAL_EXTENSIONS);
     }
 
     public void setAllowExternalSshExtensions(boolean allow) {
-        data.put(SSH_ALLOW_EXTERNAL_EXTENSIONS, allow);
+        putData(SSH_ALLOW_EXTERNAL_EXTENSIONS, allow);
     }
 
     public boolean getRequireExternalSshExtensionsDefined() {
         if(!data.containsKey(SSH_REQUIRE_EXTERNAL_EXTENSIONS_DEFINED)) {
-            data.put(SSH_REQUIRE_EXTERNAL_EXTENSIONS_DEFINED, false);
+            putData(SSH_REQUIRE_EXTERNAL_EXTENSIONS_DEFINED, false);
         }
         return (boolean) data.get(SSH_REQUIRE_EXTERNAL_EXTENSIONS_DEFINED);
     }
 
     public void setRequireExternalSshExtensionsDefined(boolean allow) {
-        data.put(SSH_REQUIRE_EXTERNAL_EXTENSIONS_DEFINED, allow);
+        putData(SSH_REQUIRE_EXTERNAL_EXTENSIONS_DEFINED, allow);
     }
 
     /** ITS Getters & Setters */
@@ -3201,7 +3212,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
     }
 
     public void setItsCertificateType(final ITSCertificateType certificateType) {
-        data.put(ITS_CERTIFICATE_TYPE, certificateType);
+        putData(ITS_CERTIFICATE_TYPE, certificateType);
     }
 
     /**
@@ -3224,7 +3235,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
 
     public void setItsApplicationPermissions(List<Integer> applicationPermissions) {
-        data.put(ITS_APP_PERMISSIONS, applicationPermissions);
+        putData(ITS_APP_PERMISSIONS, applicationPermissions);
     }
 
     /**
@@ -3247,7 +3258,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      */
 
     public void setItsCertIssuingPermissions(List<Integer> certIssuingPermissions) {
-        data.put(ITS_CERT_ISSUNG_PERMISSIONS, certIssuingPermissions);
+        putData(ITS_CERT_ISSUNG_PERMISSIONS, certIssuingPermissions);
     }
 
     /**
@@ -3256,34 +3267,34 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * */
     public void removeLegacyCtData() {
         if (data.get(CT_MAX_SCTS) != null) {
-            data.remove(CT_MAX_SCTS);
+            removeData(CT_MAX_SCTS);
         }
         if (data.get(CT_MAX_SCTS_OCSP) != null) {
-            data.remove(CT_MAX_SCTS_OCSP);
+            removeData(CT_MAX_SCTS_OCSP);
         }
         if (data.get(CT_MIN_MANDATORY_SCTS) != null) {
-            data.remove(CT_MIN_MANDATORY_SCTS);
+            removeData(CT_MIN_MANDATORY_SCTS);
         }
         if (data.get(CT_MAX_MANDATORY_SCTS) != null) {
-            data.remove(CT_MAX_MANDATORY_SCTS);
+            removeData(CT_MAX_MANDATORY_SCTS);
         }
         if (data.get(CT_MIN_MANDATORY_SCTS_OCSP) != null) {
-            data.remove(CT_MIN_MANDATORY_SCTS_OCSP);
+            removeData(CT_MIN_MANDATORY_SCTS_OCSP);
         }
         if (data.get(CT_MAX_MANDATORY_SCTS_OCSP) != null) {
-            data.remove(CT_MAX_MANDATORY_SCTS_OCSP);
+            removeData(CT_MAX_MANDATORY_SCTS_OCSP);
         }
         if (data.get(CT_MIN_NONMANDATORY_SCTS) != null) {
-            data.remove(CT_MIN_NONMANDATORY_SCTS);
+            removeData(CT_MIN_NONMANDATORY_SCTS);
         }
         if (data.get(CT_MAX_NONMANDATORY_SCTS) != null) {
-            data.remove(CT_MAX_NONMANDATORY_SCTS);
+            removeData(CT_MAX_NONMANDATORY_SCTS);
         }
         if (data.get(CT_MIN_NONMANDATORY_SCTS_OCSP) != null) {
-            data.remove(CT_MIN_NONMANDATORY_SCTS_OCSP);
+            removeData(CT_MIN_NONMANDATORY_SCTS_OCSP);
         }
         if (data.get(CT_MAX_NONMANDATORY_SCTS_OCSP) != null) {
-            data.remove(CT_MAX_NONMANDATORY_SCTS_OCSP);
+            removeData(CT_MAX_NONMANDATORY_SCTS_OCSP);
         }
     }
 
@@ -3368,9 +3379,48 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
                 }
                 clone.data.put(entry.getKey(), value);
         }
+        // The clone has the same values, so it can use the same snapshot until it is modified
+        clone.compiledProfile = compiledProfile;
         return clone;
     }
 
+    /**
+     * Returns an immutable snapshot of the values of this profile that are used when issuing certificates. The snapshot is created
+     * once and shared with clones of this profile, until the profile is modified.
+     * <p>
+     * The collections returned by the getters of this class are copies, so the profile, and thereby the snapshot, can only be
+     * changed with the setters.
+     *
+     * @return the snapshot of this profile, never null
+     * @throws IllegalArgumentException if the profile contains an invalid extended key usage OID
+     */
+    public CompiledCertificateProfile getCompiledProfile() {
+        CompiledCertificateProfile ret = compiledProfile;
+        if (ret == null) {
+            ret = new CompiledCertificateProfile(this);
+            compiledProfile = ret;
+        }
+        return ret;
+    }
+
+    @Override
+    public void loadData(final Object savedData) {
+        compiledProfile = null;
+        super.loadData(savedData);
+    }
+
+    /** Stores a value of this profile, and drops the snapshot of the profile, see {@link #getCompiledProfile()} */
+    private void putData(final Object key, final Object value) {
+        compiledProfile = null;
+        data.put(key, value);
+    }
+
+    /** Removes a value of this profile, and drops the snapshot of the profile, see {@link #getCompiledProfile()} */
+    private void removeData(final Object key) {
+        compiledProfile = null;
+        data.remove(key);
+    }
+
     /** Implementation of UpgradableDataHashMap function getLatestVersion */
     @Override
     public float getLatestVersion() {
@@ -3381,7 +3431,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
      * Function setting the current version of the class data. Used for JUnit testing
      */
     protected void setVersion(float version) {
-        data.put(VERSION, version);
+        putData(VERSION, version);
     }
 
     /**
@@ -3407,7 +3457,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
             if ( (data.get(USEOCSPSERVICELOCATOR) == null) && (data.get(USEAUTHORITYINFORMATIONACCESS) == null) ) {
                 // Only set this flag if we have not already set the new flag USEAUTHORITYINFORMATIONACCESS
                 // setUseOCSPServiceLocator(false);
-                data.put(USEOCSPSERVICELOCATOR, Boolean.FALSE);
+                putData(USEOCSPSERVICELOCATOR, Boolean.FALSE);
                 setOCSPServiceLocatorURI("");
             }
 
@@ -3528,7 +3578,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
             if ( (data.get(USECAISSUERS) == null) && (data.get(USEAUTHORITYINFORMATIONACCESS) == null) ) {
                 // Only set this flag if we have not already set the new flag USEAUTHORITYINFORMATIONACCESS
                 // setUseCaIssuers(false); // v24
-                data.put(USECAISSUERS, Boolean.FALSE); // v24
+                putData(USECAISSUERS, Boolean.FALSE); // v24
                 setCaIssuers(new ArrayList<>());
             }
             if ( ((data.get(USEOCSPSERVICELOCATOR) != null) || (data.get(USECAISSUERS) != null)) && (data.get(USEAUTHORITYINFORMATIONACCESS) == null) ) {
@@ -3675,9 +3725,9 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
                 if (StringUtils.isNotEmpty(url)) {
                     final List<PKIDisclosureStatement> pdsList = new ArrayList<>();
                     pdsList.add(new PKIDisclosureStatement(url, lang));
-                    data.put(QCETSIPDS, pdsList);
+                    putData(QCETSIPDS, pdsList);
                 } else {
-                    data.put(QCETSIPDS, null);
+                    putData(QCETSIPDS, null);
                 }
             }
             // v46: approvals changed type to LinkedHashMap
@@ -3700,7 +3750,7 @@ public class CertificateProfile extends UpgradeableDataHashMap implements Serial
                 setValidityAssuredShortTermCritical(false);
             }
 
-            data.put(VERSION, LATEST_VERSION);
+            putData(VERSION, LATEST_VERSION);
         }
         log.trace("<upgrade");
     }
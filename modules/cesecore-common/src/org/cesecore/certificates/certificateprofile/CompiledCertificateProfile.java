@@ -0,0 +1,330 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificateprofile;
+
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.cesecore.certificates.ca.CA;
+import org.cesecore.certificates.ca.internal.CertificateValidity;
+import org.cesecore.certificates.certificate.CertificateConstants;
+import org.cesecore.certificates.certificate.certextensions.CertificateExtension;
+import org.cesecore.certificates.certificate.certextensions.CertificateExtensionException;
+import org.cesecore.certificates.certificate.certextensions.CertificateExtensionFactory;
+import org.cesecore.certificates.certificate.certextensions.standard.StandardCertificateExtension;
+import org.cesecore.certificates.endentity.EndEntityInformation;
+
+import com.keyfactor.util.CertTools;
+import com.keyfactor.util.crypto.algorithm.AlgorithmConstants;
+
+/**
+ * Immutable, typed snapshot of the parts of a {@link CertificateProfile} that are read when issuing a certificate.
+ * <p>
+ * Reading a value from a certificate profile means a lookup in its data map, unboxing and sometimes copying of a collection. The
+ * snapshot does this once, when the profile is loaded into the {@link CertificateProfileCache}, and keeps the values in plain fields,
+ * with OIDs and extension values already parsed and the standard certificate extensions already initialized.
+ * <p>
+ * The snapshot also keeps the encoded values of the standard certificate extensions that are the same for all certificates issued by a
+ * CA with the profile. They are kept per CA and CA public key, and encoded again when the CA is updated. Since a new snapshot is created
+ * when the profile is modified, they are also encoded again when the profile is updated.
+ *
+ * @see CertificateProfile#getCompiledProfile()
+ */
+public final class CompiledCertificateProfile {
+
+    private final int type;
+    private final String signatureAlgorithm;
+    private final String alternativeSignatureAlgorithm;
+    private final boolean allowCertSerialNumberOverride;
+    private final boolean singleActiveCertificateConstraint;
+    private final boolean useCertificateStorage;
+    private final boolean storeSubjectAlternativeName;
+    private final boolean useSubjectDNSubSet;
+    private final boolean useCNPostfix;
+    private final String cnPostfix;
+    private final boolean useLdapDnOrder;
+    private final String[] customDnOrder;
+    private final boolean useCustomDnOrderWithLdap;
+    private final boolean allowDNOverride;
+    private final boolean allowDNOverrideByEndEntityInformation;
+    private final boolean useSubjectAltNameSubSet;
+    private final boolean useNameConstraints;
+    private final boolean useCertificateTransparencyInCerts;
+    private final boolean allowExtensionOverride;
+    private final Set<String> overridableExtensionOIDs;
+    private final Set<String> nonOverridableExtensionOIDs;
+    private final boolean allowKeyUsageOverride;
+    private final boolean useKeyUsage;
+    private final boolean keyUsageCritical;
+    private final boolean keyUsageForbidEncryptionUsageForECC;
+    private final int keyUsage;
+    private final int keyUsageForEcc;
+    private final List<String> extendedKeyUsageOids;
+    private final ExtendedKeyUsage extendedKeyUsage;
+    private final BasicConstraints basicConstraints;
+    private final List<CertificateExtension> standardCertificateExtensions;
+    private final int[] usedCertificateExtensions;
+    /** Encoded values of the static standard certificate extensions, see {@link StandardCertificateExtension#isStaticValue} */
+    private final Map<StaticExtensionKey, StaticExtensionValues> staticExtensionValues = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a snapshot of the current values of a certificate profile.
+     *
+     * @param certProfile the certificate profile
+     * @throws IllegalArgumentException if the profile contains an invalid extended key usage OID
+     */
+    public CompiledCertificateProfile(final CertificateProfile certProfile) {
+        type = certProfile.getType();
+        signatureAlgorithm = certProfile.getSignatureAlgorithm();
+        alternativeSignatureAlgorithm = certProfile.getAlternativeSignatureAlgorithm();
+        allowCertSerialNumberOverride = certProfile.getAllowCertSerialNumberOverride();
+        singleActiveCertificateConstraint = certProfile.isSingleActiveCertificateConstraint();
+        useCertificateStorage = certProfile.getUseCertificateStorage();
+        storeSubjectAlternativeName = certProfile.getStoreSubjectAlternativeName();
+        useSubjectDNSubSet = certProfile.getUseSubjectDNSubSet();
+        useCNPostfix = certProfile.getUseCNPostfix();
+        cnPostfix = certProfile.getCNPostfix();
+        useLdapDnOrder = certProfile.getUseLdapDnOrder();
+        final List<String> dnOrder = certProfile.getCustomDnOrder();
+        customDnOrder = certProfile.getUseCustomDnOrder() && dnOrder != null && !dnOrder.isEmpty() ? dnOrder.toArray(new String[0]) : null;
+        useCustomDnOrderWithLdap = certProfile.getUseCustomDnOrderWithLdap();
+        allowDNOverride = certProfile.getAllowDNOverride();
+        allowDNOverrideByEndEntityInformation = certProfile.getAllowDNOverrideByEndEntityInformation();
+        useSubjectAltNameSubSet = certProfile.getUseSubjectAltNameSubSet();
+        useNameConstraints = certProfile.getUseNameConstraints();
+        useCertificateTransparencyInCerts = certProfile.isUseCertificateTransparencyInCerts();
+        allowExtensionOverride = certProfile.getAllowExtensionOverride();
+        overridableExtensionOIDs = Collections.unmodifiableSet(new LinkedHashSet<>(certProfile.getOverridableExtensionOIDs()));
+        nonOverridableExtensionOIDs = Collections.unmodifiableSet(new LinkedHashSet<>(certProfile.getNonOverridableExtensionOIDs()));
+        allowKeyUsageOverride = certProfile.getAllowKeyUsageOverride();
+        useKeyUsage = certProfile.getUseKeyUsage();
+        keyUsageCritical = certProfile.getKeyUsageCritical();
+        keyUsageForbidEncryptionUsageForECC = certProfile.getKeyUsageForbidEncryptionUsageForECC();
+        final boolean[] keyUsages = certProfile.getKeyUsage();
+        keyUsage = CertTools.sunKeyUsageToBC(keyUsages);
+        keyUsages[CertificateConstants.KEYENCIPHERMENT] = false;
+        keyUsages[CertificateConstants.DATAENCIPHERMENT] = false;
+        keyUsageForEcc = CertTools.sunKeyUsageToBC(keyUsages);
+        final List<String> ekuOids = certProfile.getExtendedKeyUsageOids();
+        extendedKeyUsageOids = ekuOids == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(ekuOids));
+        if (certProfile.getUseExtendedKeyUsage() && !extendedKeyUsageOids.isEmpty()) {
+            final KeyPurposeId[] usages = new KeyPurposeId[extendedKeyUsageOids.size()];
+            for (int i = 0; i < usages.length; i++) {
+                usages[i] = KeyPurposeId.getInstance(new ASN1ObjectIdentifier(extendedKeyUsageOids.get(i)));
+            }
+            extendedKeyUsage = new ExtendedKeyUsage(usages);
+        } else {
+            extendedKeyUsage = null;
+        }
+        if (type == CertificateConstants.CERTTYPE_SUBCA || type == CertificateConstants.CERTTYPE_ROOTCA) {
+            basicConstraints = certProfile.getUsePathLengthConstraint() ? new BasicConstraints(certProfile.getPathLengthConstraint())
+                    : new BasicConstraints(true);
+        } else {
+            basicConstraints = new BasicConstraints(false);
+        }
+        final CertificateExtensionFactory factory = CertificateExtensionFactory.getInstance();
+        final List<CertificateExtension> extensions = new ArrayList<>();
+        for (final String oid : certProfile.getUsedStandardCertificateExtensions()) {
+            final CertificateExtension extension = factory.getStandardCertificateExtension(oid, certProfile);
+            if (extension != null) {
+                extensions.add(extension);
+            }
+        }
+        standardCertificateExtensions = Collections.unmodifiableList(extensions);
+        final List<Integer> usedIds = certProfile.getUsedCertificateExtensions();
+        usedCertificateExtensions = new int[usedIds.size()];
+        for (int i = 0; i < usedCertificateExtensions.length; i++) {
+            usedCertificateExtensions[i] = usedIds.get(i);
+        }
+    }
+
+    /** @see CertificateProfile#getType() */
+    public int getType() { return type; }
+    /** @see CertificateProfile#getSignatureAlgorithm() */
+    public String getSignatureAlgorithm() { return signatureAlgorithm; }
+    /** @see CertificateProfile#getAlternativeSignatureAlgorithm() */
+    public String getAlternativeSignatureAlgorithm() { return alternativeSignatureAlgorithm; }
+    /** @see CertificateProfile#getAllowCertSerialNumberOverride() */
+    public boolean getAllowCertSerialNumberOverride() { return allowCertSerialNumberOverride; }
+    /** @see CertificateProfile#isSingleActiveCertificateConstraint() */
+    public boolean isSingleActiveCertificateConstraint() { return singleActiveCertificateConstraint; }
+    /** @see CertificateProfile#getUseCertificateStorage() */
+    public boolean getUseCertificateStorage() { return useCertificateStorage; }
+    /** @see CertificateProfile#getStoreSubjectAlternativeName() */
+    public boolean getStoreSubjectAlternativeName() { return storeSubjectAlternativeName; }
+    /** @see CertificateProfile#getUseSubjectDNSubSet() */
+    public boolean getUseSubjectDNSubSet() { return useSubjectDNSubSet; }
+    /** @see CertificateProfile#getUseCNPostfix() */
+    public boolean getUseCNPostfix() { return useCNPostfix; }
+    /** @see CertificateProfile#getCNPostfix() */
+    public String getCNPostfix() { return cnPostfix; }
+    /** @see CertificateProfile#getUseLdapDnOrder() */
+    public boolean getUseLdapDnOrder() { return useLdapDnOrder; }
+    /** @see CertificateProfile#getUseCustomDnOrderWithLdap() */
+    public boolean getUseCustomDnOrderWithLdap() { return useCustomDnOrderWithLdap; }
+    /** @see CertificateProfile#getAllowDNOverride() */
+    public boolean getAllowDNOverride() { return allowDNOverride; }
+    /** @see CertificateProfile#getAllowDNOverrideByEndEntityInformation() */
+    public boolean getAllowDNOverrideByEndEntityInformation() { return allowDNOverrideByEndEntityInformation; }
+    /** @see CertificateProfile#getUseSubjectAltNameSubSet() */
+    public boolean getUseSubjectAltNameSubSet() { return useSubjectAltNameSubSet; }
+    /** @see CertificateProfile#getUseNameConstraints() */
+    public boolean getUseNameConstraints() { return useNameConstraints; }
+    /** @see CertificateProfile#isUseCertificateTransparencyInCerts() */
+    public boolean isUseCertificateTransparencyInCerts() { return useCertificateTransparencyInCerts; }
+    /** @see CertificateProfile#getAllowExtensionOverride() */
+    public boolean getAllowExtensionOverride() { return allowExtensionOverride; }
+    /** @return unmodifiable set of the overridable extension OIDs, never null */
+    public Set<String> getOverridableExtensionOIDs() { return overridableExtensionOIDs; }
+    /** @return unmodifiable set of the non-overridable extension OIDs, never null */
+    public Set<String> getNonOverridableExtensionOIDs() { return nonOverridableExtensionOIDs; }
+    /** @see CertificateProfile#getAllowKeyUsageOverride() */
+    public boolean getAllowKeyUsageOverride() { return allowKeyUsageOverride; }
+    /** @see CertificateProfile#getUseKeyUsage() */
+    public boolean getUseKeyUsage() { return useKeyUsage; }
+    /** @see CertificateProfile#getKeyUsageCritical() */
+    public boolean getKeyUsageCritical() { return keyUsageCritical; }
+    /** @return unmodifiable list of the extended key usage OIDs, never null */
+    public List<String> getExtendedKeyUsageOids() { return extendedKeyUsageOids; }
+    /** @return the extended key usage extension value, or null if extended key usage is not used or no OIDs are defined */
+    public ExtendedKeyUsage getExtendedKeyUsage() { return extendedKeyUsage; }
+    /** @return the basic constraints extension value for the certificate type of the profile */
+    public BasicConstraints getBasicConstraints() { return basicConstraints; }
+    /** @return unmodifiable list of the initialized standard certificate extensions that are used by the profile */
+    public List<CertificateExtension> getStandardCertificateExtensions() { return standardCertificateExtensions; }
+
+    /** @return the custom DN order, or null if no custom DN order is used */
+    public String[] getCustomDnOrder() {
+        return customDnOrder == null ? null : customDnOrder.clone();
+    }
+
+    /** @return the ids of the used custom certificate extensions */
+    public int[] getUsedCertificateExtensions() {
+        return usedCertificateExtensions.clone();
+    }
+
+    /**
+     * Returns the key usage bits of the profile for a public key. Encryption usages are removed for ECC keys, if configured in the profile.
+     *
+     * @param publicKey the public key the certificate is issued for, or null
+     * @return the key usage bits in BouncyCastle format, see {@link CertTools#sunKeyUsageToBC(boolean[])}
+     */
+    public int getKeyUsage(final PublicKey publicKey) {
+        if (keyUsageForbidEncryptionUsageForECC && publicKey != null && AlgorithmConstants.KEYALGORITHM_ECDSA.equals(publicKey.getAlgorithm())) {
+            return keyUsageForEcc;
+        }
+        return keyUsage;
+    }
+
+    /**
+     * Returns the encoded value of a standard certificate extension. The value of an extension that is the same for all certificates
+     * issued by the CA with this profile is only encoded for the first certificate, and then reused until the CA is updated.
+     *
+     * @param certExt the certificate extension, from {@link #getStandardCertificateExtensions()}
+     * @param subject the end entity the certificate is issued for
+     * @param ca the issuing CA
+     * @param certProfile the certificate profile this snapshot was created from
+     * @param userPublicKey public key of the user, or null if not available
+     * @param caPublicKey public key of the CA, or null if not available
+     * @param val validity of the certificate
+     * @return the encoded value of the extension, or null if the extension should not be added
+     * @throws CertificateExtensionException if there was an error constructing the certificate extension
+     */
+    public byte[] getStandardCertificateExtensionValueEncoded(final CertificateExtension certExt, final EndEntityInformation subject, final CA ca,
+            final CertificateProfile certProfile, final PublicKey userPublicKey, final PublicKey caPublicKey, final CertificateValidity val)
+            throws CertificateExtensionException {
+        if (caPublicKey == null || ca.getCAInfo() == null || ca.getCAInfo().getUpdateTime() == null
+                || !(certExt instanceof StandardCertificateExtension) || !((StandardCertificateExtension) certExt).isStaticValue(ca, certProfile)) {
+            return certExt.getValueEncoded(subject, ca, certProfile, userPublicKey, caPublicKey, val);
+        }
+        final StaticExtensionKey key = new StaticExtensionKey(ca.getCAId(), caPublicKey);
+        StaticExtensionValues values = staticExtensionValues.get(key);
+        if (values == null || !values.isCurrent(ca)) {
+            values = new StaticExtensionValues(ca);
+            staticExtensionValues.put(key, values);
+        }
+        return values.getValueEncoded(certExt, subject, ca, certProfile, userPublicKey, caPublicKey, val);
+    }
+
+    /** A CA signs with the public key of its current or its next (rollover) CA certificate */
+    private static final class StaticExtensionKey {
+        private final int caId;
+        private final PublicKey caPublicKey;
+
+        private StaticExtensionKey(final int caId, final PublicKey caPublicKey) {
+            this.caId = caId;
+            this.caPublicKey = caPublicKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * caId + caPublicKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof StaticExtensionKey)) {
+                return false;
+            }
+            final StaticExtensionKey other = (StaticExtensionKey) obj;
+            return caId == other.caId && caPublicKey.equals(other.caPublicKey);
+        }
+    }
+
+    /** Encoded extension values, by OID, for a version of a CA */
+    private static final class StaticExtensionValues {
+        /** Marks an extension that has no value */
+        private static final byte[] NO_VALUE = new byte[0];
+
+        private final Date caUpdateTime;
+        private final Certificate caCertificate;
+        private final Map<String, byte[]> valuesByOid = new ConcurrentHashMap<>();
+
+        private StaticExtensionValues(final CA ca) {
+            caUpdateTime = ca.getCAInfo().getUpdateTime();
+            caCertificate = ca.getCACertificate();
+        }
+
+        /** @return true if the CA has not been updated since the values were encoded */
+        private boolean isCurrent(final CA ca) {
+            return caUpdateTime.equals(ca.getCAInfo().getUpdateTime()) && Objects.equals(caCertificate, ca.getCACertificate());
+        }
+
+        private byte[] getValueEncoded(final CertificateExtension certExt, final EndEntityInformation subject, final CA ca,
+                final CertificateProfile certProfile, final PublicKey userPublicKey, final PublicKey caPublicKey, final CertificateValidity val)
+                throws CertificateExtensionException {
+            byte[] value = valuesByOid.get(certExt.getOID());
+            if (value == null) {
+                value = certExt.getValueEncoded(subject, ca, certProfile, userPublicKey, caPublicKey, val);
+                if (value == null) {
+                    value = NO_VALUE;
+                }
+                valuesByOid.put(certExt.getOID(), value);
+            }
+            return value == NO_VALUE ? null : value;
+        }
+    }
+}
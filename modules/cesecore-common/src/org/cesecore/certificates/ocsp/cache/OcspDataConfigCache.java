@@ -18,7 +18,9 @@ import org.apache.log4j.Logger;
 import org.bouncycastle.cert.ocsp.CertificateID;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +47,12 @@ public enum OcspDataConfigCache {
         return cache.get(getCacheIdFromCertificateID(certID));
     }
     
+    /** @return all cache entries, once per CA */
+    public Collection<OcspDataConfigCacheEntry> getEntries() {
+        // The same entry is registered for each hash algorithm
+        return new HashSet<>(cache.values());
+    }
+
     /**
      * Adds a cache entry to the cache. Invocation may add multiple entries since we support more than 
      * one AlgorithmIdentifier for OCSP.
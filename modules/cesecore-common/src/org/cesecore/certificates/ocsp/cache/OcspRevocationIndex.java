@@ -0,0 +1,240 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.cache;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Node local, in-memory index of the certificate status of the CAs the OCSP responder answers for, so that the status of certificates
+ * that are issued and not revoked can be answered without reading the database.
+ * <p>
+ * The index of each CA holds a sorted array of the serial numbers of certificates that are not active (revoked, on hold, archived etc.)
+ * when the index was built, a set of serial numbers whose status changed after that, and a Bloom filter of the serial numbers of issued
+ * certificates. A certificate is known to be not revoked if its serial number is in the Bloom filter, but neither in the array nor in the
+ * set. For all other certificates the status has to be read from the database, which is also needed to get the revocation reason and
+ * time of revoked certificates.
+ * <p>
+ * Serial numbers are only ever added to the set of changed certificates, so an index never answers "good" for a certificate that was
+ * reported as changed. Changes reported while a new index of a CA is built are recorded, and applied to the new index when it is added.
+ * The Bloom filter has a false positive probability of {@value #ISSUED_FALSE_POSITIVE_PROBABILITY}, which is the
+ * probability that a serial number that was never issued is regarded as issued.
+ */
+public enum OcspRevocationIndex {
+    INSTANCE;
+
+    private static final Logger log = Logger.getLogger(OcspRevocationIndex.class);
+
+    /** Probability that a serial number that was never issued is found in the Bloom filter of issued serial numbers */
+    public static final double ISSUED_FALSE_POSITIVE_PROBABILITY = 0.000001;
+    /** The index is rebuilt when so many certificates have been added that the false positive probability has grown by this factor */
+    private static final double MAX_FALSE_POSITIVE_PROBABILITY_GROWTH = 10;
+    private static final int MIN_EXPECTED_CERTIFICATES = 1000;
+
+    /** Map from issuer DN (in the format used in CertificateData) to the index of the CA */
+    private final Map<String, IssuerIndex> indexes = new ConcurrentHashMap<>();
+    /** Map from issuer DN to the serial numbers of certificates that changed while a new index of the CA is built */
+    private final ConcurrentHashMap<String, Set<String>> pendingChanges = new ConcurrentHashMap<>();
+    /** Marks an index that is being built as outdated, because the index of the CA was removed in the meantime */
+    private static final Set<String> DISCARDED = Collections.emptySet();
+
+    /**
+     * @param issuerDn the DN of the issuer, as stored in CertificateData
+     * @param serialNumber the serial number of the certificate
+     * @return true if the certificate is known to be issued by the CA and not revoked, false if the status has to be read from the database.
+     */
+    public boolean isNotRevoked(final String issuerDn, final BigInteger serialNumber) {
+        final IssuerIndex index = indexes.get(issuerDn);
+        return index != null && index.isNotRevoked(serialNumber);
+    }
+
+    /** @return the index of the CA with the given issuer DN, or null if there is no index for the CA. */
+    public IssuerIndex getIndex(final String issuerDn) {
+        return indexes.get(issuerDn);
+    }
+
+    /** @return the issuer DNs of all CAs that have an index */
+    public Set<String> getIssuerDns() {
+        return new HashSet<>(indexes.keySet());
+    }
+
+    /**
+     * Starts recording the certificates of a CA whose status changes, until a new index is added with {@link #putIndex(String, IssuerIndex)}.
+     * Must be called before the database is read to build a new index, so that no change made while the index is built is lost.
+     *
+     * @param issuerDn the DN of the issuer, as stored in CertificateData
+     */
+    public void startBuildingIndex(final String issuerDn) {
+        pendingChanges.compute(issuerDn, (key, pending) -> pending == null || pending == DISCARDED ? ConcurrentHashMap.newKeySet() : pending);
+    }
+
+    /** Adds or replaces the index of a CA, after applying the changes recorded since {@link #startBuildingIndex(String)} to it. */
+    public void putIndex(final String issuerDn, final IssuerIndex index) {
+        // Changes are recorded and drained under the lock of the same map entry, so a change is either drained or marked in the new index
+        pendingChanges.compute(issuerDn, (key, pending) -> {
+            if (pending == DISCARDED) {
+                log.info("The OCSP revocation index of issuer '" + issuerDn + "' was removed while it was built. It will be built again.");
+                return null;
+            }
+            if (pending != null) {
+                for (final String serialNumber : pending) {
+                    index.markChanged(serialNumber);
+                }
+            }
+            indexes.put(issuerDn, index);
+            return null;
+        });
+    }
+
+    /**
+     * Removes the index of a CA, the status of its certificates is then read from the database again. An index of the CA that is being built
+     * is discarded when it is added.
+     */
+    public void removeIndex(final String issuerDn) {
+        pendingChanges.replace(issuerDn, DISCARDED);
+        indexes.remove(issuerDn);
+    }
+
+    /**
+     * Records that the status of a certificate has changed (or is about to change). The status of the certificate is read from the
+     * database from now on, regardless of whether the change is committed or not.
+     *
+     * @param issuerDn the DN of the issuer, as stored in CertificateData
+     * @param serialNumber the serial number of the certificate as stored in CertificateData (decimal). Other serial numbers are ignored.
+     */
+    public void markChanged(final String issuerDn, final String serialNumber) {
+        pendingChanges.computeIfPresent(issuerDn, (key, pending) -> {
+            if (pending != DISCARDED) {
+                pending.add(serialNumber);
+            }
+            return pending;
+        });
+        final IssuerIndex index = indexes.get(issuerDn);
+        if (index != null) {
+            index.markChanged(serialNumber);
+        }
+    }
+
+    /** Removes the index of all CAs. */
+    public void flush() {
+        pendingChanges.replaceAll((issuerDn, pending) -> DISCARDED);
+        indexes.clear();
+    }
+
+    /**
+     * Creates an empty index for a CA, to be filled with the serial numbers of issued certificates using {@link IssuerIndex#addIssued(String)}.
+     *
+     * @param notActiveSerialNumbers serial numbers (decimal, as stored in CertificateData) of certificates that are not active
+     * @param expectedCertificates the number of issued certificates that will be added
+     * @param updateTime the time up to which the status of certificates in the database is reflected by the index
+     */
+    public static IssuerIndex createIndex(final Collection<String> notActiveSerialNumbers, final long expectedCertificates, final long updateTime) {
+        final List<BigInteger> serialNumbers = new ArrayList<>(notActiveSerialNumbers.size());
+        for (final String serialNumber : notActiveSerialNumbers) {
+            final BigInteger parsed = parseSerialNumber(serialNumber);
+            if (parsed != null) {
+                serialNumbers.add(parsed);
+            }
+        }
+        return new IssuerIndex(serialNumbers, expectedCertificates, updateTime);
+    }
+
+    /** @return the serial number, or null if it is not a decimal serial number (as used for X.509 certificates) */
+    private static BigInteger parseSerialNumber(final String serialNumber) {
+        try {
+            return new BigInteger(serialNumber);
+        } catch (NumberFormatException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring certificate with non decimal serial number '" + serialNumber + "'.");
+            }
+            return null;
+        }
+    }
+
+    /** The index of a single CA. */
+    public static final class IssuerIndex {
+        private final BigInteger[] notActiveSerialNumbers;
+        private final Set<BigInteger> changedSerialNumbers = ConcurrentHashMap.newKeySet();
+        private final BloomFilter<byte[]> issuedSerialNumbers;
+        private volatile long updateTime;
+
+        private IssuerIndex(final List<BigInteger> notActiveSerialNumbers, final long expectedCertificates, final long updateTime) {
+            this.notActiveSerialNumbers = notActiveSerialNumbers.toArray(new BigInteger[0]);
+            Arrays.sort(this.notActiveSerialNumbers);
+            this.issuedSerialNumbers = BloomFilter.create(Funnels.byteArrayFunnel(), Math.max(MIN_EXPECTED_CERTIFICATES, expectedCertificates),
+                    ISSUED_FALSE_POSITIVE_PROBABILITY);
+            this.updateTime = updateTime;
+        }
+
+        private boolean isNotRevoked(final BigInteger serialNumber) {
+            return issuedSerialNumbers.mightContain(serialNumber.toByteArray()) && !changedSerialNumbers.contains(serialNumber)
+                    && Arrays.binarySearch(notActiveSerialNumbers, serialNumber) < 0;
+        }
+
+        /**
+         * Adds the serial number of an issued certificate. Unless it is not active, it will be answered as not revoked.
+         * 
+         * @param serialNumber decimal serial number, as stored in CertificateData. Other serial numbers are ignored.
+         */
+        public void addIssued(final String serialNumber) {
+            final BigInteger parsed = parseSerialNumber(serialNumber);
+            if (parsed != null) {
+                issuedSerialNumbers.put(parsed.toByteArray());
+            }
+        }
+
+        /**
+         * Adds the serial number of a certificate whose status has changed. Its status will be read from the database from now on.
+         * 
+         * @param serialNumber decimal serial number, as stored in CertificateData. Other serial numbers are ignored.
+         */
+        public void markChanged(final String serialNumber) {
+            final BigInteger parsed = parseSerialNumber(serialNumber);
+            if (parsed != null) {
+                changedSerialNumbers.add(parsed);
+            }
+        }
+
+        /** @return the time up to which changes in the database have been applied to the index */
+        public long getUpdateTime() {
+            return updateTime;
+        }
+
+        public void setUpdateTime(final long updateTime) {
+            this.updateTime = updateTime;
+        }
+
+        /** @return true if so many certificates have been added that the index should be rebuilt to keep the false positive probability low */
+        public boolean isRebuildNeeded() {
+            return issuedSerialNumbers.expectedFpp() > ISSUED_FALSE_POSITIVE_PROBABILITY * MAX_FALSE_POSITIVE_PROBABILITY_GROWTH;
+        }
+
+        /** @return the number of certificates that are not active or have changed status (for monitoring and tests) */
+        public int getNotActiveCount() {
+            return notActiveSerialNumbers.length + changedSerialNumbers.size();
+        }
+    }
+}
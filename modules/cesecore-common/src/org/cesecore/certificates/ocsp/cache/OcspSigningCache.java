@@ -12,11 +12,12 @@
  *************************************************************************/
 package org.cesecore.certificates.ocsp.cache;
 
-import java.math.BigInteger;
 import java.security.cert.X509Certificate;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
@@ -25,26 +26,37 @@ import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.util.encoders.Hex;
 import org.cesecore.util.LogRedactionUtils;
 
 import com.keyfactor.util.CertTools;
 
 /**
  * Hold information needed to create OCSP responses without database lookups.
+ * <p>
+ * The live content of the cache is an immutable, versioned {@link Snapshot} published through a single volatile reference.
+ * Lookups on the OCSP hot path only dereference the current snapshot and never take a lock. Writers (the timer driven
+ * cache reload and {@link #addSingleEntry(OcspSigningCacheEntry)}) are serialized by a lock and publish a new snapshot
+ * (copy-on-write), so a reload never blocks responders.
+ * <p>
+ * Entries are keyed directly by the issuer name hash and issuer key hash bytes of the CertID. Since the hashes for the
+ * different hash algorithms (SHA-1, SHA-256, SHA-384 and SHA-512) have different lengths, each entry is registered once
+ * for each of them.
  */
 public enum OcspSigningCache {
     INSTANCE;
     
-    private Map<Integer, OcspSigningCacheEntry> cache = new HashMap<>();
-    private Map<Integer, OcspSigningCacheEntry> staging = new HashMap<>();
-    private OcspSigningCacheEntry defaultResponderCacheEntry = null;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    /** Only accessed by the thread holding {@link #lock} */
+    private Map<IssuerHashKey, OcspSigningCacheEntry> staging = new HashMap<>();
+    /** Serializes writers. Readers never take this lock. */
     private final ReentrantLock lock = new ReentrantLock(false);
     private final static Logger log = Logger.getLogger(OcspSigningCache.class);
     /** Flag to detect and log non-existence of a default responder once. */
     private boolean logDefaultHasRunOnce = false;
  
     public OcspSigningCacheEntry getEntry(final CertificateID certID) {
-        return cache.get(getCacheIdFromCertificateID(certID));
+        return snapshot.entries.get(new IssuerHashKey(certID));
     }
 
     /**
@@ -52,12 +64,17 @@ public enum OcspSigningCache {
      * @return the entry corresponding to the default responder, or null if it wasn't found.
      */
     public OcspSigningCacheEntry getDefaultEntry() {
-        return defaultResponderCacheEntry;
+        return snapshot.defaultEntry;
     }
 
     /** WARNING: This method potentially exports references to CAs private keys! */
     public Collection<OcspSigningCacheEntry> getEntries() {
-        return cache.values();
+        return snapshot.entries.values();
+    }
+
+    /** @return the version of the currently published cache content. Incremented every time the cache content is replaced. */
+    public long getVersion() {
+        return snapshot.version;
     }
 
     public void stagingStart() {
@@ -67,15 +84,20 @@ public enum OcspSigningCache {
 
     public void stagingAdd(OcspSigningCacheEntry ocspSigningCacheEntry) {
         for (CertificateID certID : ocspSigningCacheEntry.getCertificateID()) {
-            staging.put(getCacheIdFromCertificateID(certID), ocspSigningCacheEntry);            
+            staging.put(new IssuerHashKey(certID), ocspSigningCacheEntry);
         }
+        putSignedBehalfOfEntries(staging, ocspSigningCacheEntry);
+    }
+
+    /** Adds the entry for all CAs it signs on behalf of, unless there is already a "real" entry for the CA that takes precedence. */
+    private static void putSignedBehalfOfEntries(final Map<IssuerHashKey, OcspSigningCacheEntry> target, final OcspSigningCacheEntry ocspSigningCacheEntry) {
         for (CertificateID certID : ocspSigningCacheEntry.getSignedBehalfOfCaIds()) {
             // override cache only if no OCSP key binding present or the entry is a placeholder
-            int cacheId = getCacheIdFromCertificateID(certID);
-            if(!staging.containsKey(cacheId) || staging.get(cacheId).isPlaceholder() 
-                            || staging.get(cacheId).getOcspKeyBinding()==null ) {
-                staging.put(cacheId, ocspSigningCacheEntry);
-            }      
+            final IssuerHashKey cacheId = new IssuerHashKey(certID);
+            final OcspSigningCacheEntry existing = target.get(cacheId);
+            if (existing == null || existing.isPlaceholder() || existing.getOcspKeyBinding() == null) {
+                target.put(cacheId, ocspSigningCacheEntry);
+            }
         }
     }
 
@@ -97,37 +119,38 @@ public enum OcspSigningCache {
             }
         }
         //Lastly, walk through the list of entries and replace all placeholders with the default responder
-        Map<Integer, OcspSigningCacheEntry> modifiedEntries = new HashMap<>();
-        List<Integer> removedEntries = new ArrayList<>();
-        for (Integer key : staging.keySet()) {
-            OcspSigningCacheEntry entry = staging.get(key);
+        // The same placeholder is registered once per CertID hash algorithm, so make sure to only replace it once
+        final Map<OcspSigningCacheEntry, OcspSigningCacheEntry> replacedPlaceholders = new HashMap<>();
+        for (final Iterator<Map.Entry<IssuerHashKey, OcspSigningCacheEntry>> iterator = staging.entrySet().iterator(); iterator.hasNext();) {
+            final Map.Entry<IssuerHashKey, OcspSigningCacheEntry> stagedEntry = iterator.next();
+            final OcspSigningCacheEntry entry = stagedEntry.getValue();
             //If entry has been created without a private key, replace it with the default responder.
             if (entry.isPlaceholder()) {
                 if (stagedDefaultResponder != null) {
-                    entry = new OcspSigningCacheEntry(entry.getIssuerCaCertificate(), entry.getIssuerCaCertificateStatus(),
-                            stagedDefaultResponder.getCaCertificateChain(), stagedDefaultResponder.getOcspSigningCertificate(),
-                            stagedDefaultResponder.getPrivateKey(), stagedDefaultResponder.getSignatureProviderName(),
-                            stagedDefaultResponder.getOcspKeyBinding(), stagedDefaultResponder.getResponderIdType());
-                    entry.setCrlSigningAlgorithm(stagedDefaultResponder.getCrlSigningAlgorithm());
-                    modifiedEntries.put(key, entry);
+                    OcspSigningCacheEntry replacement = replacedPlaceholders.get(entry);
+                    if (replacement == null) {
+                        replacement = new OcspSigningCacheEntry(entry.getIssuerCaCertificate(), entry.getIssuerCaCertificateStatus(),
+                                stagedDefaultResponder.getCaCertificateChain(), stagedDefaultResponder.getOcspSigningCertificate(),
+                                stagedDefaultResponder.getPrivateKey(), stagedDefaultResponder.getSignatureProviderName(),
+                                stagedDefaultResponder.getOcspKeyBinding(), stagedDefaultResponder.getResponderIdType());
+                        replacement.setCrlSigningAlgorithm(stagedDefaultResponder.getCrlSigningAlgorithm());
+                        replacedPlaceholders.put(entry, replacement);
+                    }
+                    stagedEntry.setValue(replacement);
                 } else {
                     //If no default responder is defined, remove placeholder. 
-                    removedEntries.add(key);
+                    iterator.remove();
                 }
             }
         }
-        staging.putAll(modifiedEntries);
-        for (Integer removedKey : removedEntries) {
-            staging.remove(removedKey);
-        }
-        logDefaultResponderChanges(defaultResponderCacheEntry, stagedDefaultResponder, defaultResponderSubjectDn);
-        cache = staging;
-        defaultResponderCacheEntry = stagedDefaultResponder;
+        final Snapshot current = snapshot;
+        logDefaultResponderChanges(current.defaultEntry, stagedDefaultResponder, defaultResponderSubjectDn);
+        snapshot = new Snapshot(staging, stagedDefaultResponder, current.version + 1);
         if (log.isDebugEnabled()) {
-            log.debug("Committing the following to OCSP cache:");
-            for (final Integer key : staging.keySet()) {
-                final OcspSigningCacheEntry entry = staging.get(key);
-                log.debug(" KeyBindingId: " + key + ", SubjectDN '" + LogRedactionUtils.getSubjectDnLogSafe(entry.getFullCertificateChain().get(0))
+            log.debug("Committing the following to OCSP cache (version " + (current.version + 1) + "):");
+            for (final Map.Entry<IssuerHashKey, OcspSigningCacheEntry> stagedEntry : staging.entrySet()) {
+                final OcspSigningCacheEntry entry = stagedEntry.getValue();
+                log.debug(" KeyBindingId: " + stagedEntry.getKey() + ", SubjectDN '" + LogRedactionUtils.getSubjectDnLogSafe(entry.getFullCertificateChain().get(0))
                         + "', IssuerDN '" + CertTools.getIssuerDN(entry.getFullCertificateChain().get(0)) + "', SerialNumber "
                         + entry.getFullCertificateChain().get(0).getSerialNumber().toString() + "/"
                         + entry.getFullCertificateChain().get(0).getSerialNumber().toString(16));
@@ -139,6 +162,8 @@ public enum OcspSigningCache {
     }
 
     public void stagingRelease() {
+        // Drop the reference, the committed map is now owned by the published snapshot
+        staging = new HashMap<>();
         lock.unlock();
     }
 
@@ -196,47 +221,73 @@ public enum OcspSigningCache {
      * @param ocspSigningCacheEntry the entry to add
      */
     public void addSingleEntry(OcspSigningCacheEntry ocspSigningCacheEntry) {
-        List<CertificateID> certIDs = ocspSigningCacheEntry.getCertificateID();
-        for (CertificateID certID : certIDs) {
-            int cacheId = getCacheIdFromCertificateID(certID);
-            lock.lock();
-            try {
+        final List<CertificateID> certIDs = ocspSigningCacheEntry.getCertificateID();
+        lock.lock();
+        try {
+            final Snapshot current = snapshot;
+            final Map<IssuerHashKey, OcspSigningCacheEntry> updated = new HashMap<>(current.entries);
+            for (CertificateID certID : certIDs) {
                 //Make sure that another thread didn't add the same entry while this one was waiting.
-                if (!cache.containsKey(cacheId)) {
-                    cache.put(cacheId, ocspSigningCacheEntry);
-                }
-                for (CertificateID certIDOnBehalf : ocspSigningCacheEntry.getSignedBehalfOfCaIds()) {
-                    // override cache only if no OCSP key binding present or the entry is a placeholder
-                    int cacheIdOnBehalf = getCacheIdFromCertificateID(certIDOnBehalf);
-                    if(!cache.containsKey(cacheIdOnBehalf) || cache.get(cacheIdOnBehalf).isPlaceholder() 
-                                    || cache.get(cacheIdOnBehalf).getOcspKeyBinding()==null ) {
-                        cache.put(cacheIdOnBehalf, ocspSigningCacheEntry);
-                    }      
-                }
-            } finally {
-                lock.unlock();
+                updated.putIfAbsent(new IssuerHashKey(certID), ocspSigningCacheEntry);
             }
+            putSignedBehalfOfEntries(updated, ocspSigningCacheEntry);
+            snapshot = new Snapshot(updated, current.defaultEntry, current.version + 1);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private static BigInteger bigIntFromBytes(final byte[] bytes) {
-        if (ArrayUtils.isEmpty(bytes)) {
-            return BigInteger.valueOf(0);
+    /** Immutable content of the cache. A new instance is published every time the cache content changes. */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), null, 0L);
+
+        private final Map<IssuerHashKey, OcspSigningCacheEntry> entries;
+        private final OcspSigningCacheEntry defaultEntry;
+        private final long version;
+
+        private Snapshot(final Map<IssuerHashKey, OcspSigningCacheEntry> entries, final OcspSigningCacheEntry defaultEntry, final long version) {
+            this.entries = Collections.unmodifiableMap(entries);
+            this.defaultEntry = defaultEntry;
+            this.version = version;
         }
-        return new BigInteger(bytes);
     }
 
-    /** @return a cache identifier based on the provided CertificateID. */
-    public static int getCacheIdFromCertificateID(final CertificateID certID) {
-        // Use bitwise XOR of the hashcodes for IssuerNameHash and IssuerKeyHash to produce the integer.
-        final BigInteger issuerNameHash = bigIntFromBytes(certID.getIssuerNameHash());
-        final BigInteger issuerKeyHash = bigIntFromBytes(certID.getIssuerKeyHash());
-        int result = issuerNameHash.hashCode() ^ issuerKeyHash.hashCode();
-        if (log.isDebugEnabled()) {
-            log.debug("Using getIssuerNameHash " + issuerNameHash.toString(16) + " and getIssuerKeyHash "
-                    + issuerKeyHash.toString(16) + " to produce id " + result);
+    /** Cache key made up of the issuer name hash and issuer key hash of a CertID. */
+    private static final class IssuerHashKey {
+        private final byte[] issuerNameHash;
+        private final byte[] issuerKeyHash;
+        private final int hashCode;
+
+        private IssuerHashKey(final CertificateID certID) {
+            this.issuerNameHash = nullToEmpty(certID.getIssuerNameHash());
+            this.issuerKeyHash = nullToEmpty(certID.getIssuerKeyHash());
+            this.hashCode = 31 * Arrays.hashCode(issuerNameHash) + Arrays.hashCode(issuerKeyHash);
+        }
+
+        private static byte[] nullToEmpty(final byte[] bytes) {
+            return bytes == null ? ArrayUtils.EMPTY_BYTE_ARRAY : bytes;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
-        return result;
-    }
 
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IssuerHashKey)) {
+                return false;
+            }
+            final IssuerHashKey other = (IssuerHashKey) obj;
+            return hashCode == other.hashCode && Arrays.equals(issuerNameHash, other.issuerNameHash) && Arrays.equals(issuerKeyHash, other.issuerKeyHash);
+        }
+
+        @Override
+        public String toString() {
+            return Hex.toHexString(issuerNameHash) + "/" + Hex.toHexString(issuerKeyHash);
+        }
+    }
 }
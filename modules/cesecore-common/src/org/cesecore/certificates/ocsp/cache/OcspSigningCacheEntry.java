@@ -15,6 +15,7 @@ package org.cesecore.certificates.ocsp.cache;
 import com.keyfactor.util.CertTools;
 import com.keyfactor.util.SHA1DigestCalculator;
 import org.apache.log4j.Logger;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.ocsp.CertificateID;
 import org.bouncycastle.cert.ocsp.OCSPException;
 import org.bouncycastle.cert.ocsp.RespID;
@@ -25,6 +26,7 @@ import org.cesecore.config.OcspConfiguration;
 import org.cesecore.keybind.impl.OcspKeyBinding;
 
 import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -59,6 +61,7 @@ public class OcspSigningCacheEntry {
     private final OcspKeyBinding.ResponderIdType responderIdType;
     private RespID respId;
     private final X509Certificate[] responseCertChain;
+    private final X509CertificateHolder[] responseCertChainHolders;
     private final boolean signingCertificateForOcspSigning;
     
     // only relevant if CA itself signs the OCSP response
@@ -134,8 +137,10 @@ public class OcspSigningCacheEntry {
         }
         if (fullCertificateChain==null) {
             responseCertChain = null;
+            responseCertChainHolders = null;
         } else {
             responseCertChain = getResponseCertChain(fullCertificateChain.toArray(new X509Certificate[0]));
+            responseCertChainHolders = getResponseCertChainHolders(responseCertChain);
         }
         
         // on behalf of CA entries
@@ -190,6 +195,13 @@ public class OcspSigningCacheEntry {
 
     /** @return the part of the full certificate chain that has been configured to be included in the response. */
     public X509Certificate[] getResponseCertChain() { return responseCertChain; }
+
+    /**
+     * @return the certificates of {@link #getResponseCertChain()} as ASN.1 structures, which are decoded once for the cache entry instead of once for
+     * each response, or null if they could not be decoded.
+     */
+    public X509CertificateHolder[] getResponseCertChainHolders() { return responseCertChainHolders; }
+
     /**
      * Checks if the entry has a OCSP signing certificate separate from the certificate chain.
      * Only entries with a keybinding can have a separate certificate.
@@ -213,6 +225,15 @@ public class OcspSigningCacheEntry {
         return false;
     }
 
+    private X509CertificateHolder[] getResponseCertChainHolders(final X509Certificate[] certChain) {
+        try {
+            return CertTools.convertToX509CertificateHolder(certChain);
+        } catch (CertificateEncodingException e) {
+            log.warn("Unable to decode the certificate chain of the OCSP response, it will be decoded for each response instead.", e);
+            return null;
+        }
+    }
+
     /**
      * This method construct the certificate chain that will be included in the OCSP response according to the following rules:
      * - If includeSignCert && includeChain --> include entire chain except for the root CA certificate
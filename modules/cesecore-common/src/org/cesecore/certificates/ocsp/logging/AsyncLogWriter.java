@@ -0,0 +1,174 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.cesecore.config.OcspConfiguration;
+
+/**
+ * Writes the rows of the OCSP transaction and audit logs to their Log4j loggers.
+ * <p>
+ * When a buffer size is configured (see {@link OcspConfiguration#getLogBufferSize()}), rows are put in a bounded buffer and written
+ * in batches by a background thread, so that the threads answering OCSP requests don't have to wait for the log appenders. When the
+ * buffer is full, rows are written by the calling thread instead, so no rows are ever dropped. Rows are always written by the calling
+ * thread when ocsp.log-safer is enabled, since the response must then only be sent if the log row could be written.
+ * <p>
+ * The background thread is created by the thread factory given to {@link #start(ThreadFactory)}, which is the managed thread factory
+ * of the application server, and is stopped by {@link #shutdown()} when the application is undeployed. Until then, and after that,
+ * rows are written by the calling thread.
+ */
+public enum AsyncLogWriter {
+    INSTANCE;
+
+    private static final Logger log = Logger.getLogger(AsyncLogWriter.class);
+
+    /** Maximum number of rows written in a batch */
+    private static final int MAX_BATCH_SIZE = 512;
+
+    /** The buffer of rows to be written, or null if rows are written by the calling thread */
+    private volatile BlockingQueue<LogRow> buffer = null;
+    private ThreadFactory threadFactory = null;
+    private Thread writerThread = null;
+    private volatile boolean initialized = false;
+
+    /**
+     * Allows rows to be written in the background. The background thread is created when the first row is written.
+     *
+     * @param threadFactory creates the background thread, or null to write rows by the calling thread
+     */
+    public synchronized void start(final ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        if (writerThread == null) {
+            initialized = false;
+        }
+    }
+
+    /**
+     * Writes a log row at debug level.
+     *
+     * @param logger the logger to write the row to
+     * @param row the row (or rows) to write
+     * @param allowAsync false if the row must be written before returning
+     */
+    public void write(final Logger logger, final String row, final boolean allowAsync) {
+        final BlockingQueue<LogRow> current = allowAsync ? getBuffer() : null;
+        if (current == null || !current.offer(new LogRow(logger, row))) {
+            logger.debug(row);
+        }
+    }
+
+    /** Writes all buffered rows and stops the background thread. Rows written after this are written by the calling thread. */
+    public void shutdown() {
+        final Thread thread;
+        final BlockingQueue<LogRow> current;
+        synchronized (this) {
+            thread = writerThread;
+            current = buffer;
+            threadFactory = null;
+            initialized = true;
+            writerThread = null;
+            buffer = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (current != null) {
+            // Anything written after the thread stopped
+            writeBuffered(current);
+        }
+    }
+
+    /** @return the number of rows waiting to be written (for monitoring and tests) */
+    public int getBufferedCount() {
+        final BlockingQueue<LogRow> current = buffer;
+        return current == null ? 0 : current.size();
+    }
+
+    private BlockingQueue<LogRow> getBuffer() {
+        if (initialized) {
+            return buffer;
+        }
+        synchronized (this) {
+            if (initialized) {
+                return buffer;
+            }
+            final int bufferSize = OcspConfiguration.getLogBufferSize();
+            if (bufferSize > 0 && threadFactory == null) {
+                log.warn("OCSP transaction and audit log rows are written by the thread answering the request, since no managed thread factory is available.");
+            } else if (bufferSize > 0) {
+                final BlockingQueue<LogRow> created = new ArrayBlockingQueue<>(bufferSize);
+                final Thread thread = threadFactory.newThread(() -> run(created));
+                thread.start();
+                buffer = created;
+                writerThread = thread;
+                log.info("OCSP transaction and audit log rows are written in the background, with a buffer of " + bufferSize + " rows.");
+            }
+            initialized = true;
+            return buffer;
+        }
+    }
+
+    private static void run(final BlockingQueue<LogRow> rows) {
+        final List<LogRow> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(rows.take());
+                rows.drainTo(batch, MAX_BATCH_SIZE - 1);
+                writeBatch(batch);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down, write what is left below
+        }
+        writeBatch(batch);
+        writeBuffered(rows);
+    }
+
+    private static void writeBuffered(final BlockingQueue<LogRow> rows) {
+        final List<LogRow> batch = new ArrayList<>();
+        rows.drainTo(batch);
+        writeBatch(batch);
+    }
+
+    private static void writeBatch(final List<LogRow> batch) {
+        for (final LogRow row : batch) {
+            try {
+                row.logger.debug(row.row);
+            } catch (RuntimeException e) {
+                log.error("Failed to write OCSP log row.", e);
+            }
+        }
+        batch.clear();
+    }
+
+    private static final class LogRow {
+        private final Logger logger;
+        private final String row;
+
+        private LogRow(final Logger logger, final String row) {
+            this.logger = logger;
+            this.row = row;
+        }
+    }
+}
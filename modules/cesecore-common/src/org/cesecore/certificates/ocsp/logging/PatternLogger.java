@@ -13,27 +13,29 @@
 
 package org.cesecore.certificates.ocsp.logging;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.FastDateFormat;
 import org.apache.log4j.Logger;
-import org.bouncycastle.util.encoders.Hex;
+import org.cesecore.config.OcspConfiguration;
 
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * This class can be extended to create highly configurable log classes. Values that are to be logged are stored in a Hashmap and the output is
- * configured using a Java.util.regex.Matcher and a sortString. The extending classes also need to supply a Logger and a String specifying how to log
- * Dates.
+ * This class can be extended to create highly configurable log classes. Values that are to be logged are stored in the slots of a template,
+ * which is created once for each configuration using a Java.util.regex.Matcher and a sortString. The extending classes also need to supply
+ * a Logger and a String specifying how to log Dates.
  * 
  * Use paramPut(String key, String value) to add values, Use writeln() to log all the stored values and then use flush() to store them to file.
+ * Values that are not used by the template are not stored, and byte arrays are not hex encoded until the log row is written. The log rows are
+ * written to the Logger by {@link AsyncLogWriter}, which does so in the background if configured to.
  * 
  * Roughly based on PatternLogger.java 8663 2010-02-17 10:42:41Z anatom from EJBCA
  * 
@@ -82,23 +84,29 @@ public abstract class PatternLogger implements Serializable {
      */
     public static final String PROCESS_TIME = "PROCESS_TIME";
 
-    private final Map<String, String> valuepairs = new HashMap<>();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /** Thread local buffers are replaced instead of being reused when they have grown larger than this (e.g. for large audit log rows) */
+    private static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+    /** Templates compiled from the configured pattern and order string, there are normally just one for each logger class */
+    private static final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private static final int MAX_TEMPLATES = 100;
+
     private final String matchString;
     private final String matchPattern;
-    // Matcher is not Serializable
-    private transient Matcher m;
-    private final String orderString;
-    private final Date startTime;
-    private Date startProcessTime = null;
+    // Template is not Serializable, and is the same for all loggers with the same configuration
+    private transient Template template;
+    /** Values of the fields of the template, Strings, Integers or byte arrays (which are hex encoded when written) */
+    private Object[] values;
+    /** Values of all rows created by writeln() */
+    private final List<Object[]> rows = new ArrayList<>(1);
+    private final long startTime;
+    private long startProcessTime = -1;
     private boolean doLogging;
     final private Class<?> loggerClass;
     // Logger is not Serializable
     private transient Logger logger;
 
-    // for writing the output
-    private transient StringWriter sw;
-    private transient PrintWriter pw;
-
     /**
      * @param doLogging
      *            True if you want this pattern logger to do anything upon flush.
@@ -116,27 +124,40 @@ public abstract class PatternLogger implements Serializable {
         this.doLogging = doLogging;
         this.matchString = matchString;
         this.matchPattern = matchPattern;
-        this.orderString = matchString;
         this.loggerClass = loggerClass;
-        this.startTime = new Date();
-        final FastDateFormat dateformat;
-        if (timeZone == null) {
-                dateformat = FastDateFormat.getInstance(logDateFormat);
-        } else {
-                dateformat = FastDateFormat.getInstance(logDateFormat, TimeZone.getTimeZone(timeZone));
+        this.startTime = System.currentTimeMillis();
+        if (getTemplate().getSlot(LOG_TIME) >= 0) {
+            final FastDateFormat dateformat;
+            if (timeZone == null) {
+                    dateformat = FastDateFormat.getInstance(logDateFormat);
+            } else {
+                    dateformat = FastDateFormat.getInstance(logDateFormat, TimeZone.getTimeZone(timeZone));
+            }
+            paramPut(LOG_TIME, dateformat.format(new Date(startTime)));
         }
-        paramPut(LOG_TIME, dateformat.format(new Date()));
         this.paramPut(REPLY_TIME, REPLY_TIME);
         this.paramPut(LOG_ID, "0");
     }
-    
-    private Matcher getMatcher() {
-        if (this.m == null) {
-            // We have to instantiate the Matcher in the class and can not have it as an instance variable.
+
+    private Template getTemplate() {
+        if (this.template == null) {
+            // We have to look up the template in the class and can not have it as a serialized instance variable.
             // This is because we are sending this object to a remote EJB (at least in system tests)
-            this.m = Pattern.compile(matchPattern).matcher(matchString);
+            final String key = matchPattern + '\u0000' + matchString;
+            Template cached = templates.get(key);
+            if (cached == null) {
+                if (templates.size() >= MAX_TEMPLATES) {
+                    templates.clear();
+                }
+                cached = Template.compile(matchPattern, matchString);
+                templates.put(key, cached);
+            }
+            this.template = cached;
+            if (this.values == null) {
+                this.values = new Object[cached.getSlotCount()];
+            }
         }
-        return this.m;
+        return this.template;
     }
 
     private Logger getLogger() {
@@ -148,51 +169,25 @@ public abstract class PatternLogger implements Serializable {
         return this.logger;
     }
 
-    private PrintWriter getPrintWriter() {
-        if (this.pw == null) {
-            this.sw = new StringWriter();
-            this.pw = new PrintWriter(this.sw);
-        }
-        return pw;
-    }
-    
     /**
      * 
      * @return output to be logged
      */
     public String interpolate() {
-        final StringBuffer sb = new StringBuffer(this.orderString.length());
-        final Matcher matcher = getMatcher();
-        matcher.reset();
-        while (matcher.find()) {
-            // when the pattern is ${identifier}, group 0 is 'identifier'
-            final String key = matcher.group(1);
-            final String value = this.valuepairs.get(key);
-
-            // if the pattern does exists, replace it by its value
-            // otherwise keep the pattern ( it is group(0) )
-            if (value != null) {
-                matcher.appendReplacement(sb, value);
-            } else {
-                // I'm doing this to avoid the backreference problem as there will be a $
-                // if I replace directly with the group 0 (which is also a pattern)
-                matcher.appendReplacement(sb, "");
-                final String unknown = matcher.group(0);
-                sb.append(unknown);
-            }
-        }
-        matcher.appendTail(sb);
+        final Template current = getTemplate();
+        final StringBuilder sb = new StringBuilder(matchString == null ? 16 : matchString.length());
+        render(current, sb, values, -1);
         return sb.toString();
     }
 
     /**
-     * Hex-encodes the bytes.
+     * Stores the bytes, which are hex-encoded when the log row is written.
      * method that makes sure that a "" is inserted instead of null
      * @param key
      * @param value
      */
     public void paramPut(String key, byte[] value) {
-        paramPut(key, new String(Hex.encode(value)));
+        putValue(key, value == null ? "" : value);
     }
 
     /**
@@ -201,14 +196,9 @@ public abstract class PatternLogger implements Serializable {
      * @param value
      */
     public void paramPut(String key, String value) {
-        // logger.debug("paramput: "+ key+ ";" +value +";" +valuepairs.toString());
-        if (value == null) {
-            this.valuepairs.put(key, "");
-        } else {
-            this.valuepairs.put(key, value);
-        }
-        if (StringUtils.equals(key, PROCESS_TIME)) {
-            startProcessTime = new Date();
+        putValue(key, value == null ? "" : value);
+        if (PROCESS_TIME.equals(key)) {
+            startProcessTime = System.currentTimeMillis();
         }
     }
 
@@ -218,10 +208,14 @@ public abstract class PatternLogger implements Serializable {
      * @param value
      */
     public void paramPut(String key, Integer value) {
-        if (value == null) {
-            this.valuepairs.put(key, "");
-        } else {
-            this.valuepairs.put(key, value.toString());
+        putValue(key, value == null ? "" : value);
+    }
+
+    private void putValue(final String key, final Object value) {
+        final int slot = getTemplate().getSlot(key);
+        // Values that are not part of the output are not needed
+        if (slot >= 0) {
+            values[slot] = value;
         }
     }
 
@@ -230,7 +224,8 @@ public abstract class PatternLogger implements Serializable {
      */
     public void writeln() {
         if (doLogging) {
-            getPrintWriter().println(interpolate());
+            getTemplate();
+            rows.add(values.clone());
         }
     }
 
@@ -239,17 +234,22 @@ public abstract class PatternLogger implements Serializable {
      */
     public void flush() {
         if (doLogging) {
-            getPrintWriter().flush();
-            String output = this.sw.toString();
-            output = output.replaceAll(REPLY_TIME, String.valueOf(new Date().getTime() - this.startTime.getTime()));
-            if (startProcessTime != null) {
-                output = output.replaceAll(PROCESS_TIME, String.valueOf(new Date().getTime() - this.startProcessTime.getTime()));
+            final Template current = getTemplate();
+            final long now = System.currentTimeMillis();
+            StringBuilder sb = buffers.get();
+            sb.setLength(0);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    sb.append(System.lineSeparator());
+                }
+                render(current, sb, rows.get(i), now);
             }
-            //Remove an extra linebreak between flushes.
-            if(output.endsWith(System.getProperty("line.separator"))) {
-                output = output.substring(0, output.length()-1);
+            final String output = sb.toString();
+            if (sb.capacity() > MAX_REUSED_BUFFER_SIZE) {
+                buffers.remove();
             }
-            getLogger().debug(output); // Finally output the log row to the logging device
+            // Finally output the log row to the logging device
+            AsyncLogWriter.INSTANCE.write(getLogger(), output, !OcspConfiguration.getLogSafer());
         }
     }
 
@@ -257,4 +257,101 @@ public abstract class PatternLogger implements Serializable {
     public boolean isEnabled() {
         return doLogging && getLogger().isDebugEnabled();
     }
+
+    /**
+     * Appends a log row to the buffer.
+     *
+     * @param now the time the row is written, or -1 to leave the REPLY_TIME and PROCESS_TIME markers as they are.
+     */
+    private void render(final Template template, final StringBuilder sb, final Object[] rowValues, final long now) {
+        if (template.error != null) {
+            throw template.error;
+        }
+        for (int i = 0; i < template.placeholders.length; i++) {
+            sb.append(template.literals[i]);
+            final Object value = rowValues[template.placeholderSlots[i]];
+            // if the key has a value, replace the placeholder by its value, otherwise keep the placeholder
+            if (value != null) {
+                appendValue(sb, value, now);
+            } else {
+                sb.append(template.placeholders[i]);
+            }
+        }
+        sb.append(template.literals[template.literals.length - 1]);
+    }
+
+    /**
+     * Appends the value of a field. The REPLY_TIME and PROCESS_TIME markers are replaced with the elapsed time when the row is written.
+     *
+     * @param now the time the row is written, or -1 to leave the markers as they are.
+     */
+    private void appendValue(final StringBuilder sb, final Object value, final long now) {
+        if (value instanceof byte[]) {
+            for (final byte b : (byte[]) value) {
+                sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+        } else if (now >= 0 && REPLY_TIME.equals(value)) {
+            sb.append(now - startTime);
+        } else if (now >= 0 && startProcessTime >= 0 && PROCESS_TIME.equals(value)) {
+            sb.append(now - startProcessTime);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * The log row format, compiled from the configured pattern and order string. Consists of literal text and placeholders, where each
+     * distinct placeholder key is given a slot in the array of values of the logger.
+     */
+    private static final class Template {
+        private final String[] literals;
+        private final String[] placeholders;
+        private final int[] placeholderSlots;
+        private final Map<String, Integer> slots;
+        private final RuntimeException error;
+
+        private Template(final String[] literals, final String[] placeholders, final int[] placeholderSlots, final Map<String, Integer> slots,
+                final RuntimeException error) {
+            this.literals = literals;
+            this.placeholders = placeholders;
+            this.placeholderSlots = placeholderSlots;
+            this.slots = slots;
+            this.error = error;
+        }
+
+        private static Template compile(final String matchPattern, final String matchString) {
+            try {
+                final List<String> literals = new ArrayList<>();
+                final List<String> placeholders = new ArrayList<>();
+                final List<Integer> placeholderSlots = new ArrayList<>();
+                final Map<String, Integer> slots = new HashMap<>();
+                final Matcher matcher = Pattern.compile(matchPattern).matcher(matchString);
+                int position = 0;
+                while (matcher.find()) {
+                    // when the pattern is ${identifier}, group 1 is 'identifier'
+                    final String key = matcher.group(1);
+                    literals.add(matchString.substring(position, matcher.start()));
+                    placeholders.add(matcher.group(0));
+                    placeholderSlots.add(slots.computeIfAbsent(key, k -> slots.size()));
+                    position = matcher.end();
+                }
+                literals.add(matchString.substring(position));
+                return new Template(literals.toArray(new String[0]), placeholders.toArray(new String[0]),
+                        placeholderSlots.stream().mapToInt(Integer::intValue).toArray(), slots, null);
+            } catch (RuntimeException e) {
+                // Thrown when the log row is created, as before, so that the configuration can be validated with interpolate()
+                return new Template(new String[0], new String[0], new int[0], new HashMap<>(), e);
+            }
+        }
+
+        private int getSlotCount() {
+            return slots.size();
+        }
+
+        /** @return the slot of the field with the given key, or -1 if the field is not part of the output */
+        private int getSlot(final String key) {
+            final Integer slot = slots.get(key);
+            return slot == null ? -1 : slot;
+        }
+    }
 }
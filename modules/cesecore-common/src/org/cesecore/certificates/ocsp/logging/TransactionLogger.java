@@ -85,9 +85,15 @@ public class TransactionLogger extends PatternLogger {
      */
     public static final String REV_REASON = "REV_REASON";
 
-    /** The id of the certificate profile that was used to issue the requested certificate. */
+    /**
+     * The id of the certificate profile that was used to issue the requested certificate. 0 if the certificate was not found, or
+     * {@link #CERT_PROFILE_ID_UNKNOWN} if its status was answered by the in-memory revocation index without reading the certificate.
+     */
     public static final String CERT_PROFILE_ID = "CERT_PROFILE_ID";
 
+    /** Value of {@link #CERT_PROFILE_ID} when the certificate is known to be issued, but its certificate profile has not been read. */
+    public static final String CERT_PROFILE_ID_UNKNOWN = "unknown";
+
     /** The HTTP X-Forwarded-For header value. */
     public static final String FORWARDED_FOR = "FORWARDED_FOR";
 
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1Enumerated;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ASN1InputStream;
@@ -32,6 +33,7 @@ import org.bouncycastle.asn1.x509.CRLDistPoint;
 import org.bouncycastle.asn1.x509.CRLNumber;
 import org.bouncycastle.asn1.x509.DistributionPoint;
 import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.cesecore.certificates.crl.RevokedCertInfo;
@@ -130,15 +132,31 @@ public class CrlExtensions {
             if (asn1OctetString!=null) {
                 final ASN1Sequence asn1Sequence = getAsn1ObjectFromBytes(asn1OctetString.getOctets(), ASN1Sequence.class);
                 if (asn1Sequence!=null) {
-                    final CRLDistPoint cdp = CRLDistPoint.getInstance(asn1Sequence);
-                    for (final DistributionPoint distributionPoint : cdp.getDistributionPoints()) {
-                        freshestCdpUrls.add(((DERIA5String) ((GeneralNames) distributionPoint.getDistributionPoint().getName()).getNames()[0].getName()).getString());
-                    }
+                    addFreshestCrlDistributionPoints(freshestCdpUrls, asn1Sequence);
                 }
             }
         }
         return freshestCdpUrls;
     }
+
+    /** @return a list of URLs in String format present in the Freshest CRL extension of the CRL extensions, which may be null */
+    public static List<String> extractFreshestCrlDistributionPoints(final Extensions extensions) {
+        final List<String> freshestCdpUrls = new ArrayList<>();
+        if (extensions != null) {
+            final ASN1Encodable asn1Encodable = extensions.getExtensionParsedValue(Extension.freshestCRL);
+            if (asn1Encodable instanceof ASN1Sequence) {
+                addFreshestCrlDistributionPoints(freshestCdpUrls, (ASN1Sequence) asn1Encodable);
+            }
+        }
+        return freshestCdpUrls;
+    }
+
+    private static void addFreshestCrlDistributionPoints(final List<String> freshestCdpUrls, final ASN1Sequence asn1Sequence) {
+        final CRLDistPoint cdp = CRLDistPoint.getInstance(asn1Sequence);
+        for (final DistributionPoint distributionPoint : cdp.getDistributionPoints()) {
+            freshestCdpUrls.add(((DERIA5String) ((GeneralNames) distributionPoint.getDistributionPoint().getName()).getNames()[0].getName()).getString());
+        }
+    }
     
     /** @return the first object found when treating the provided byte array as an ASN1InputStream */
     private static <T> T getAsn1ObjectFromBytes(final byte[] bytes, final Class<T> clazz) {
@@ -0,0 +1,173 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.util.cert;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.cert.CRLException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+
+/**
+ * The fields of an encoded X.509 CRL that are not CRL entries: thisUpdate, nextUpdate and the CRL extensions.
+ * <p>
+ * The CRL entries are skipped without being decoded, so reading the header of a CRL with many entries is fast and uses little memory. The
+ * signature is not verified, so the header can only be used to decide whether a CRL needs to be processed, not to trust its contents.
+ */
+public final class CrlHeader {
+
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_UTC_TIME = 0x17;
+    private static final int TAG_GENERALIZED_TIME = 0x18;
+    private static final int TAG_EXTENSIONS = 0xa0;
+
+    private final Date thisUpdate;
+    private final Date nextUpdate;
+    private final Extensions extensions;
+
+    private CrlHeader(final Date thisUpdate, final Date nextUpdate, final Extensions extensions) {
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.extensions = extensions;
+    }
+
+    /** @return the thisUpdate field of the CRL */
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /** @return the nextUpdate field of the CRL, or null if it is not present */
+    public Date getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /** @return the CRL extensions, or null if there are none */
+    public Extensions getExtensions() {
+        return extensions;
+    }
+
+    /** @return the CRL number, or 0 if the CRL number extension is not present, as {@link CrlExtensions#getCrlNumber} */
+    public BigInteger getCrlNumber() {
+        final CRLNumber crlNumber = extensions == null ? null : CRLNumber.getInstance(extensions.getExtensionParsedValue(Extension.cRLNumber));
+        return crlNumber == null ? BigInteger.ZERO : crlNumber.getCRLNumber();
+    }
+
+    /** @return true if the CRL is a delta CRL */
+    public boolean isDeltaCrl() {
+        return extensions != null && extensions.getExtension(Extension.deltaCRLIndicator) != null;
+    }
+
+    /**
+     * Reads the header of an encoded CRL.
+     *
+     * @param encodedCrl a DER encoded X.509 CRL
+     * @return the header of the CRL
+     * @throws CRLException if the CRL is not a well formed DER encoded X.509 CRL
+     */
+    public static CrlHeader parse(final byte[] encodedCrl) throws CRLException {
+        if (encodedCrl == null) {
+            throw new CRLException("No CRL data.");
+        }
+        try {
+            // CertificateList ::= SEQUENCE { tbsCertList TBSCertList, signatureAlgorithm, signatureValue }
+            final Tlv certificateList = Tlv.read(encodedCrl, 0, encodedCrl.length, TAG_SEQUENCE);
+            final Tlv tbsCertList = Tlv.read(encodedCrl, certificateList.contentOffset, certificateList.end, TAG_SEQUENCE);
+            int offset = tbsCertList.contentOffset;
+            final int end = tbsCertList.end;
+            Tlv field = Tlv.read(encodedCrl, offset, end, -1);
+            if (field.tag == TAG_INTEGER) {
+                // Optional version
+                field = Tlv.read(encodedCrl, field.end, end, -1);
+            }
+            // Signature algorithm and issuer
+            field = Tlv.read(encodedCrl, Tlv.read(encodedCrl, field.end, end, TAG_SEQUENCE).end, end, -1);
+            final Date thisUpdate = readTime(encodedCrl, field);
+            Date nextUpdate = null;
+            Extensions extensions = null;
+            offset = field.end;
+            while (offset < end) {
+                field = Tlv.read(encodedCrl, offset, end, -1);
+                if (field.tag == TAG_UTC_TIME || field.tag == TAG_GENERALIZED_TIME) {
+                    nextUpdate = readTime(encodedCrl, field);
+                } else if (field.tag == TAG_EXTENSIONS) {
+                    extensions = Extensions.getInstance(ASN1Primitive.fromByteArray(Arrays.copyOfRange(encodedCrl, field.contentOffset, field.end)));
+                } else if (field.tag != TAG_SEQUENCE) {
+                    throw new CRLException("Unexpected tag " + field.tag + " in CRL.");
+                }
+                // The revoked certificates are skipped
+                offset = field.end;
+            }
+            return new CrlHeader(thisUpdate, nextUpdate, extensions);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new CRLException("Failed to read the header of the CRL: " + e.getMessage(), e);
+        }
+    }
+
+    private static Date readTime(final byte[] encoded, final Tlv field) throws IOException, CRLException {
+        if (field.tag != TAG_UTC_TIME && field.tag != TAG_GENERALIZED_TIME) {
+            throw new CRLException("Expected a time in CRL, but found tag " + field.tag + ".");
+        }
+        return Time.getInstance(ASN1Primitive.fromByteArray(Arrays.copyOfRange(encoded, field.offset, field.end))).getDate();
+    }
+
+    /** Position of a DER encoded tag, length and value */
+    private static final class Tlv {
+        private final int tag;
+        private final int offset;
+        private final int contentOffset;
+        private final int end;
+
+        private Tlv(final int tag, final int offset, final int contentOffset, final int end) {
+            this.tag = tag;
+            this.offset = offset;
+            this.contentOffset = contentOffset;
+            this.end = end;
+        }
+
+        /**
+         * @param expectedTag the tag that must be found, or -1 for any tag
+         */
+        private static Tlv read(final byte[] encoded, final int offset, final int limit, final int expectedTag) throws CRLException {
+            if (offset + 2 > limit) {
+                throw new CRLException("Truncated CRL.");
+            }
+            final int tag = encoded[offset] & 0xff;
+            if (expectedTag != -1 && tag != expectedTag) {
+                throw new CRLException("Expected tag " + expectedTag + " in CRL, but found " + tag + ".");
+            }
+            int position = offset + 1;
+            int length = encoded[position++] & 0xff;
+            if (length > 0x7f) {
+                final int lengthBytes = length & 0x7f;
+                if (lengthBytes == 0 || lengthBytes > 4 || position + lengthBytes > limit) {
+                    throw new CRLException("Invalid length encoding in CRL.");
+                }
+                length = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (encoded[position++] & 0xff);
+                }
+            }
+            if (length < 0 || length > limit - position) {
+                throw new CRLException("Truncated CRL.");
+            }
+            return new Tlv(tag, offset, position, position + length);
+        }
+    }
+}
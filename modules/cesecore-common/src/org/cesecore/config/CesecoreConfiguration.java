@@ -173,6 +173,20 @@ public final class CesecoreConfiguration {
         return getLongValue("globalconfiguration.cachetime", 30000L, "milliseconds to cache authorization");
     }
 
+    /**
+     * Parameter to specify for how long the latest CRLs served by the CRL store are used before checking the database for newer CRLs.
+     */
+    public static long getCacheCrlStoreTime() {
+        return getLongValue("crlstore.cachetime", 1000L, "milliseconds to cache CRLs in the CRL store");
+    }
+
+    /**
+     * Parameter to specify for how long information about the latest CRLs (but not the CRLs themselves) is cached.
+     */
+    public static long getCacheCrlInfoTime() {
+        return getLongValue("crlinfo.cachetime", 1000L, "milliseconds to cache information about the latest CRLs");
+    }
+
     private static long getLongValue(final String propertyName, final long defaultValue, final String unit) {
         final String value = ConfigurationHolder.getString(propertyName);
         long time = defaultValue;
@@ -320,6 +334,13 @@ public final class CesecoreConfiguration {
         return Boolean.TRUE.toString().equalsIgnoreCase(ConfigurationHolder.getString("database.crlgenfetchordered"));
     }
 
+    /**
+     * Whether new CRLs should be stored compressed in the database. Compressed CRLs can only be read by versions that support it.
+     */
+    public static boolean isDatabaseCrlCompressed() {
+        return Boolean.TRUE.toString().equalsIgnoreCase(ConfigurationHolder.getString("database.crlcompress"));
+    }
+
     /** @return a list of enabled TLS protocol versions and cipher suites */
     /*
      * Java 6: http://docs.oracle.com/javase/6/docs/technotes/guides/security/SunProviders.html#SunJSSEProvider
@@ -16,8 +16,10 @@ package org.cesecore.config;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.ex.ConversionException;
@@ -48,6 +50,24 @@ public class OcspConfiguration {
     public static final String NON_EXISTING_IS_REVOKED = "ocsp.nonexistingisrevoked";
     public static final String NON_EXISTING_IS_REVOKED_URI = NON_EXISTING_IS_REVOKED+".uri.";
     public static final String NON_EXISTING_IS_UNAUTHORIZED = "ocsp.nonexistingisunauthorized";
+    public static final String RESPONSE_DATA_CACHE_MAX_BYTES = "ocsp.responsedatacache.maxbytes";
+    public static final String RESPONSE_DATA_CACHE_MAX_TIME = "ocsp.responsedatacache.maxtime";
+    public static final String PRESIGNING_THREADS = "ocsp.presigning.threads";
+    public static final String PRESIGNING_BATCH_SIZE = "ocsp.presigning.batchsize";
+    public static final String RESPONSE_REFRESH_INTERVAL = "ocsp.responserefresh.interval";
+    public static final String RESPONSE_REFRESH_AHEAD_TIME = "ocsp.responserefresh.aheadtime";
+    public static final String RESPONSE_REFRESH_MAX_RESPONSES = "ocsp.responserefresh.maxresponses";
+    public static final String REVOCATION_INDEX_REFRESH_INTERVAL = "ocsp.revocationindex.refreshinterval";
+    public static final String COALESCE_SIGNING = "ocsp.coalescesigning";
+    public static final String ASYNC_THREADS = "ocsp.async.threads";
+    public static final String ASYNC_QUEUE_SIZE = "ocsp.async.queuesize";
+    public static final String ASYNC_TIMEOUT = "ocsp.async.timeout";
+    public static final String GET_RESPONSE_CACHE_MAX_BYTES = "ocsp.getresponsecache.maxbytes";
+    public static final String GET_RESPONSE_CACHE_MAX_TIME = "ocsp.getresponsecache.maxtime";
+    public static final String LOG_BUFFER_SIZE = "ocsp.log-buffersize";
+
+    /** Matches the keys of untilNextUpdate and maxAge configured for a specific certificate profile, e.g. ocsp.1234.untilNextUpdate */
+    private static final Pattern CERTIFICATE_PROFILE_VALIDITY_KEY = Pattern.compile("ocsp\\.[0-9]+\\.(untilNextUpdate|maxAge)");
 
     @Deprecated //Only used for upgrades to 8.3.0 and beyond
     private static final String UNTIL_NEXT_UPDATE = "ocsp.untilNextUpdate";
@@ -643,4 +663,142 @@ public class OcspConfiguration {
         return 1000 * (long) timeInSeconds;
     }
 
+    /**
+     * @return the maximum total size in bytes of pre-produced OCSP responses kept in memory, or 0 if responses should always be read from the database.
+     */
+    public static long getResponseDataCacheMaxBytes() {
+        return getLongValue(RESPONSE_DATA_CACHE_MAX_BYTES, 0L, "bytes");
+    }
+
+    /**
+     * @return the maximum time in milliseconds a pre-produced OCSP response is kept in memory, or 0 to keep it until its nextUpdate.
+     * Default 60000.
+     */
+    public static long getResponseDataCacheMaxTime() {
+        return getLongValue(RESPONSE_DATA_CACHE_MAX_TIME, 60000L, "ms");
+    }
+
+    /**
+     * @return the number of threads used to sign responses when pre-producing OCSP responses for all certificates of a CA, at least 1.
+     */
+    public static int getPreSigningThreads() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, getLongValue(PRESIGNING_THREADS, 4L, "threads")));
+    }
+
+    /**
+     * @return the number of certificates read, signed and stored together when pre-producing OCSP responses for all certificates of a CA, at least 1.
+     */
+    public static int getPreSigningBatchSize() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, getLongValue(PRESIGNING_BATCH_SIZE, 1000L, "certificates")));
+    }
+
+    /**
+     * @return the interval in milliseconds between refreshes of stored OCSP responses that are about to expire, or 0 if disabled.
+     */
+    public static long getResponseRefreshInterval() {
+        return getLongValue(RESPONSE_REFRESH_INTERVAL, 0L, "ms");
+    }
+
+    /**
+     * @return how long in milliseconds before nextUpdate a stored OCSP response should be refreshed.
+     */
+    public static long getResponseRefreshAheadTime() {
+        return getLongValue(RESPONSE_REFRESH_AHEAD_TIME, 3600000L, "ms");
+    }
+
+    /**
+     * @return the maximum number of stored OCSP responses refreshed in each interval, at least 1.
+     */
+    public static int getResponseRefreshMaxResponses() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, getLongValue(RESPONSE_REFRESH_MAX_RESPONSES, 10000L, "responses")));
+    }
+
+    /**
+     * @return the interval in milliseconds between updates of the in-memory index of revoked certificates from the database, or 0 if
+     * the index is disabled and the status of every certificate is read from the database.
+     */
+    public static long getRevocationIndexRefreshInterval() {
+        return getLongValue(REVOCATION_INDEX_REFRESH_INTERVAL, 0L, "ms");
+    }
+
+    /**
+     * @return true if untilNextUpdate or maxAge of responses for certificates that are not revoked is configured for a specific
+     * certificate profile, i.e. if the certificate profile is needed to produce a "good" response.
+     */
+    public static boolean isCertificateProfileSpecificValidityConfigured() {
+        final Iterator<String> keys = ConfigurationHolder.instance().getKeys("ocsp");
+        while (keys.hasNext()) {
+            if (CERTIFICATE_PROFILE_VALIDITY_KEY.matcher(keys.next()).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if concurrent requests that result in the same OCSP response should share a single signing operation, false by default.
+     */
+    public static boolean isCoalesceSigning() {
+        final String value = ConfigurationHolder.getString(COALESCE_SIGNING);
+        return "true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value);
+    }
+
+    /**
+     * @return the number of OCSP requests received in async mode that are processed at the same time by the managed executor service,
+     * or 0 if requests are processed synchronously on the threads of the servlet container.
+     */
+    public static int getAsyncThreads() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, getLongValue(ASYNC_THREADS, 0L, "threads")));
+    }
+
+    /**
+     * @return the maximum number of OCSP requests received in async mode that wait to be processed, at least 1.
+     */
+    public static int getAsyncQueueSize() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, getLongValue(ASYNC_QUEUE_SIZE, 1000L, "requests")));
+    }
+
+    /**
+     * @return the time in milliseconds after which an OCSP request received in async mode is answered with "tryLater", at least 1.
+     */
+    public static long getAsyncTimeout() {
+        return Math.max(1L, getLongValue(ASYNC_TIMEOUT, 30000L, "ms"));
+    }
+
+    /**
+     * @return the maximum total size in bytes of responses to OCSP GET requests kept in memory by the OCSP servlet, or 0 if disabled.
+     */
+    public static long getGetResponseCacheMaxBytes() {
+        return getLongValue(GET_RESPONSE_CACHE_MAX_BYTES, 0L, "bytes");
+    }
+
+    /**
+     * @return the maximum time in milliseconds a response to an OCSP GET request is kept in memory by the OCSP servlet, or 0 to keep it
+     * until max-age or nextUpdate. Default 60000.
+     */
+    public static long getGetResponseCacheMaxTime() {
+        return getLongValue(GET_RESPONSE_CACHE_MAX_TIME, 60000L, "ms");
+    }
+
+    /**
+     * @return the maximum number of transaction and audit log rows waiting to be written by a background thread, or 0 if rows are
+     * written by the thread creating them.
+     */
+    public static int getLogBufferSize() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, getLongValue(LOG_BUFFER_SIZE, 0L, "rows")));
+    }
+
+    private static long getLongValue(final String key, final long defaultValue, final String unit) {
+        final String value = ConfigurationHolder.getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(key + " is not a decimal long. Using default " + defaultValue + " " + unit + ".");
+            return defaultValue;
+        }
+    }
+
 }
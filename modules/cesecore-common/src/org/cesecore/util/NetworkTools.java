@@ -15,8 +15,10 @@ package org.cesecore.util;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 
 import org.apache.log4j.Logger;
 
@@ -28,6 +30,11 @@ import org.apache.log4j.Logger;
 public abstract class NetworkTools {
     private static final Logger log = Logger.getLogger(NetworkTools.class);
 
+    /** Timeout in milliseconds for connecting to the server when downloading data */
+    private static final int CONNECT_TIMEOUT = 10000;
+    /** Timeout in milliseconds for waiting for data from the server when downloading data */
+    private static final int READ_TIMEOUT = 30000;
+
     /** @return the URL object of the provided CDP if it is well formed and uses the HTTP protocol. null otherwise */
     public static URL getValidHttpUrl(final String cdp) {
         if (cdp==null) {
@@ -47,27 +54,122 @@ public abstract class NetworkTools {
 
     /** @return the data found at the provided URL if available and the size is less the maxSize */
     public static byte[] downloadDataFromUrl(final URL url, final int maxSize) {
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        final byte data[] = new byte[32768];    // 32KiB at the time
-        int downloadedBytes = 0;
-        try (final InputStream is = url.openStream()) {
-            int count;
-            while ((count = is.read(data)) != -1) {
-                baos.write(data, 0, count);
+        URLConnection connection = null;
+        try {
+            connection = openConnection(url);
+            return readData(url, connection, maxSize);
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to download data from " + url.toString(), e);
+            }
+            return null;
+        } finally {
+            disconnect(connection);
+        }
+    }
+
+    /** The result of {@link NetworkTools#downloadDataFromUrlIfModified(URL, int, String, String)} */
+    public static final class ConditionalDownload {
+        private final byte[] data;
+        private final String entityTag;
+        private final String lastModified;
+
+        private ConditionalDownload(final byte[] data, final String entityTag, final String lastModified) {
+            this.data = data;
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+        }
+
+        /** @return true if the server answered that the data has not been modified */
+        public boolean isNotModified() { return data == null; }
+        /** @return the downloaded data, or null if it has not been modified */
+        public byte[] getData() { return data; }
+        /** @return the ETag header of the response, or null */
+        public String getEntityTag() { return entityTag; }
+        /** @return the Last-Modified header of the response, or null */
+        public String getLastModified() { return lastModified; }
+    }
+
+    /**
+     * Downloads the data found at the provided HTTP URL, unless the server answers that it has not been modified since it was last downloaded.
+     *
+     * @param url the URL to download from
+     * @param maxSize the maximum number of bytes to download
+     * @param entityTag the ETag header of the last download, sent in an If-None-Match header, or null
+     * @param lastModified the Last-Modified header of the last download, sent in an If-Modified-Since header, or null
+     * @return the result, or null if the data was not available or larger than maxSize
+     */
+    public static ConditionalDownload downloadDataFromUrlIfModified(final URL url, final int maxSize, final String entityTag, final String lastModified) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) openConnection(url);
+            if (entityTag != null) {
+                connection.setRequestProperty("If-None-Match", entityTag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new ConditionalDownload(null, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
             }
-            downloadedBytes += count;
-            if (downloadedBytes>maxSize) {
+            if (responseCode != HttpURLConnection.HTTP_OK) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Failed to download data from " + url.toString() + ". Size exceedes " + maxSize + " bytes.");
+                    log.debug("Failed to download data from " + url.toString() + ". HTTP response code " + responseCode + ".");
                 }
                 return null;
             }
-        } catch (IOException e) {
+            final byte[] data = readData(url, connection, maxSize);
+            if (data == null) {
+                return null;
+            }
+            return new ConditionalDownload(data, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        } catch (IOException | ClassCastException e) {
             if (log.isDebugEnabled()) {
                 log.debug("Failed to download data from " + url.toString(), e);
             }
             return null;
+        } finally {
+            disconnect(connection);
+        }
+    }
+
+    private static URLConnection openConnection(final URL url) throws IOException {
+        final URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        return connection;
+    }
+
+    /** @return the data read from the connection, or null if it is larger than maxSize */
+    private static byte[] readData(final URL url, final URLConnection connection, final int maxSize) throws IOException {
+        if (connection.getContentLengthLong() > maxSize) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to download data from " + url.toString() + ". Size exceedes " + maxSize + " bytes.");
+            }
+            return null;
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte data[] = new byte[32768];    // 32KiB at the time
+        try (final InputStream is = connection.getInputStream()) {
+            int count;
+            while ((count = is.read(data)) != -1) {
+                baos.write(data, 0, count);
+                if (baos.size() > maxSize) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Failed to download data from " + url.toString() + ". Size exceedes " + maxSize + " bytes.");
+                    }
+                    return null;
+                }
+            }
         }
         return baos.toByteArray();
     }
+
+    /** Closes the connection to the server, since the connection is not read again */
+    private static void disconnect(final URLConnection connection) {
+        if (connection instanceof HttpURLConnection) {
+            ((HttpURLConnection) connection).disconnect();
+        }
+    }
 }
@@ -38,6 +38,9 @@ public interface CertificateDataSessionLocal extends CertificateDataSession {
     /** @return return the query results as a List. */
     List<CertificateData> findBySubjectDN(String subjectDN);
 
+    /** @return the same certificates as {@link #findBySubjectDN(String)}, without reading the encoded certificates from the database */
+    List<CertificateInfo> findCertificateInfosBySubjectDN(String subjectDN);
+
     /** @return return the query results as a List. */
     List<Certificate> findActiveBySubjectDnAndType(final String subjectDN, final Collection<Integer> certificateTypes);
 
@@ -47,6 +50,23 @@ public interface CertificateDataSessionLocal extends CertificateDataSession {
     /** @return return the query results as a List. */
     List<CertificateData> findByIssuerDNSerialNumber(String issuerDN, String serialNumber);
 
+    /**
+     * Finds several certificates of the same issuer with a single query.
+     * 
+     * @param issuerDN of the issuing CA
+     * @param serialNumbers decimal serial numbers of the certificates, should not be more than a few hundred
+     * @return return the query results as a List, in no particular order.
+     */
+    List<CertificateData> findByIssuerDNSerialNumbers(String issuerDN, Collection<String> serialNumbers);
+
+    /**
+     * Finds several certificates with a single query.
+     *
+     * @param fingerprints fingerprints of the certificates, should not be more than a few hundred
+     * @return return the query results as a List, in no particular order.
+     */
+    List<CertificateData> findByFingerprints(Collection<String> fingerprints);
+
     /** @return the quantity of all the certificates saved within the CA lifecycle. */
     Long findQuantityOfAllCertificates();
 
@@ -61,6 +81,9 @@ public interface CertificateDataSessionLocal extends CertificateDataSession {
 
     /** @return return the query results as a List. */
     List<CertificateData> findByUsernameOrdered(String username);
+
+    /** @return the same certificates as {@link #findByUsernameOrdered(String)}, in the same order, without reading the encoded certificates from the database */
+    List<CertificateInfo> findCertificateInfosByUsernameOrdered(String username);
     
     /** @return return the query results as a List. */
     List<CertificateData> findByUsernameAndStatus(String username, int status);
@@ -99,13 +122,64 @@ public interface CertificateDataSessionLocal extends CertificateDataSession {
     List<String> findSerialNrByIssuerAndExpireDateWithLimitAndOffset(String issuerDN, 
                                                         long expireDate, int limit, int offset);
 
+    /**
+     * Keyset paginated variant of {@link #findSerialNrByIssuerAndExpireDateWithLimitAndOffset(String, long, int, int)}, which does not
+     * get slower the further into the result set we get. The serial numbers are ordered, and the last serial number of one page is
+     * used to fetch the next page.
+     * 
+     * @param issuerDN of the issuing CA to find entries for
+     * @param expireDate earliest expireDate of the certificate, can be past or future 
+     * @param lastSerialNumber the last serial number of the previous page, or null to start from the beginning
+     * @param limit maximum number of results
+     * @return the query results as a List<String>, ordered by serial number
+     */
+    List<String> findSerialNrByIssuerAndExpireDateAfterSerialNr(String issuerDN, long expireDate, String lastSerialNumber, int limit);
+
+    /**
+     * @param issuerDN of the issuing CA to count entries for
+     * @param expireDate earliest expireDate of the certificate, can be past or future
+     * @return the number of certificates of the CA that expire after the given time, regardless of status
+     */
+    long countByIssuerAndExpireDateAfter(String issuerDN, long expireDate);
+
+    /**
+     * @param issuerDN of the issuing CA to find entries for
+     * @param expireDate earliest expireDate of the certificate, can be past or future
+     * @return the serial numbers of certificates of the CA that expire after the given time and are not active (i.e. that are revoked,
+     * archived, on hold etc.)
+     */
+    List<String> findNotActiveSerialNrByIssuerAndExpireDateAfter(String issuerDN, long expireDate);
+
+    /**
+     * @param issuerDN of the issuing CA to find entries for
+     * @param updateTime earliest updateTime of the certificate
+     * @param active true to find certificates that are active, false to find certificates that are not active
+     * @return the serial numbers of certificates of the CA that were stored or changed status after the given time
+     */
+    List<String> findSerialNrByIssuerAndUpdateTimeAfter(String issuerDN, long updateTime, boolean active);
+
     
     /** @return return the query results as a Collection<RevokedCertInfo>. */
     Collection<RevokedCertInfo> getRevokedCertInfos(String issuerDN, boolean deltaCrl, int crlPartitionIndex, long lastBaseCrlDate, boolean allowInvalidityDate);
+
+    /**
+     * Finds the certificates whose revocation information changed after a given time, i.e. certificates that were revoked, had their
+     * revocation reason or invalidity date changed, or were reactivated after being on hold. Reactivated certificates have the
+     * revocation reason {@link RevokedCertInfo#REVOCATION_REASON_REMOVEFROMCRL}.
+     *
+     * @return return the query results as a Collection<RevokedCertInfo>.
+     */
+    Collection<RevokedCertInfo> getRevokedCertInfosUpdatedAfter(String issuerDN, int crlPartitionIndex, long updatedAfter, boolean allowInvalidityDate);
+
+    /** @return the revoked (and not yet archived) certificates that expired before the given time, as a Collection<RevokedCertInfo>. */
+    Collection<RevokedCertInfo> getRevokedCertInfosExpiredBefore(String issuerDN, int crlPartitionIndex, long expiredBefore, boolean allowInvalidityDate);
     
     /** @return return the query results as a List. */
     List<CertificateData> findByExpireDateWithLimit(long expireDate, int maxNumberOfResults);
 
+    /** @return the same certificates as {@link #findByExpireDateWithLimit(long, int)}, without reading the encoded certificates from the database */
+    List<CertificateInfo> findCertificateInfosByExpireDateWithLimit(long expireDate, int maxNumberOfResults);
+
     /** @return return the query results as a List. */
     List<CertificateData> findByExpireDateWithLimitAndOffset(long expireDate, int maxNumberOfResults, int offset);
 
@@ -118,6 +118,15 @@ public interface CertificateStoreSession {
      * @return Collection of maximum 500 certificates, never null
      */
     Collection<CertificateWrapper> findCertificatesByExpireTimeWithLimit(Date expireTime);
+
+    /**
+     * Finds the same certificates as {@link #findCertificatesByExpireTimeWithLimit(Date)}, but only returns information about them,
+     * without reading the encoded certificates from the database.
+     *
+     * @param expireTime The time by which the certificates will expire
+     * @return List of maximum 500 CertificateInfo, never null
+     */
+    List<CertificateInfo> findCertificateInfosByExpireTimeWithLimit(Date expireTime);
     
     /**
      * Finds certificates expiring within a specified time, but that have expireTime>=now, and that have
@@ -266,6 +275,15 @@ public interface CertificateStoreSession {
      */
     Collection<CertificateWrapper> findCertificatesByUsername(String username);
 
+    /**
+     * Finds information about the certificate(s) for a given username, without reading the encoded certificates from the database.
+     * The certificates can be fetched with {@link #findCertificateByFingerprint(String)} when needed.
+     *
+     * @param username the username of the certificate(s)
+     * @return List of CertificateInfo ordered by expire date, with last expire date first, or an empty List if none found.
+     */
+    List<CertificateInfo> findCertificateInfosByUsername(String username);
+
     /**
      * Finds certificate(s) with meta data for a given username.
      * 
@@ -16,6 +16,7 @@ import org.cesecore.authentication.tokens.AuthenticationToken;
 import org.cesecore.authorization.AuthorizationDeniedException;
 import org.cesecore.certificates.certificate.request.RequestMessage;
 import org.cesecore.certificates.crl.RevocationReasons;
+import org.cesecore.certificates.crl.RevokedCertInfo;
 
 import javax.ejb.Local;
 import java.math.BigInteger;
@@ -23,6 +24,7 @@ import java.security.cert.Certificate;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -128,6 +130,15 @@ public interface CertificateStoreSessionLocal extends CertificateStoreSession {
      */
     CertificateDataWrapper getCertificateData(final String fingerprint);
 
+    /**
+     * Retrieve the full wrapped CertificateData and Base64CertData objects of several certificates, with a few queries instead of one
+     * per certificate.
+     *
+     * @param fingerprints fingerprints of the certificates
+     * @return the found certificates, in the same order as the fingerprints. Fingerprints without data are skipped.
+     */
+    List<CertificateDataWrapper> getCertificateDatas(List<String> fingerprints);
+
     /**
      * Update the base64cert column if the database row exists, but the column is empty.
      * @return true if the column was empty and is now populated.
@@ -235,7 +246,27 @@ public interface CertificateStoreSessionLocal extends CertificateStoreSession {
      */
     void updateLimitedCertificateDataStatus(final AuthenticationToken admin, final int caId, final String issuerDn, final String subjectDn, final String username, final BigInteger serialNumber,
             final int status, final Date revocationDate, final int reasonCode, final String caFingerprint, Date invalidityDate) throws AuthorizationDeniedException;
-    
+
+    /**
+     * Updates the status of several certificates of the same issuer from entries of a CRL issued by the CA, in a new transaction.
+     *
+     * The current statuses are read with a few set queries instead of one query per entry, and entries that already match the database are
+     * left unchanged. Certificates that are not in the database are handled as by
+     * {@link #updateLimitedCertificateDataStatus(AuthenticationToken, int, String, BigInteger, Date, int, String, Date)}, and other
+     * certificates as by {@link #setRevokeStatus(AuthenticationToken, CertificateDataWrapper, Date, Date, int)}, except that no
+     * audit log event is written for each certificate. The caller should log one event for all changes.
+     *
+     * @param admin an admin that is authorized to the CA that issued the CRL
+     * @param caId the CA identifier
+     * @param issuerDn the BC normalized version of the issuer DN
+     * @param caFingerprint the SHA-1 of the CA Certificate that issued the CRL, used for limited entries
+     * @param crlEntries the CRL entries, with serial number, revocation date, reason and invalidity date. Should not be more than a few thousand.
+     * @return the certificates whose status was changed, including limited entries that were added or updated
+     * @throws AuthorizationDeniedException if the admin is not authorized to the CA
+     */
+    List<CertificateData> updateStatusesFromCrlInNewTransaction(AuthenticationToken admin, int caId, String issuerDn, String caFingerprint,
+            List<RevokedCertInfo> crlEntries) throws AuthorizationDeniedException;
+
     /** Reloads the cache containing CA certificates */
     void reloadCaCertificateCache();
     
@@ -338,6 +369,59 @@ public interface CertificateStoreSessionLocal extends CertificateStoreSession {
      */
     List<String> findSerialNrByIssuerAndExpireDateWithLimitAndOffset(String issuerDN, long expireDate, int limit, int offset);
 
+    /**
+     * Lists serial numbers of certificates issued by the given issuer and earliest expire time of certificates, ordered by serial number
+     * and starting after the given serial number. Unlike {@link #findSerialNrByIssuerAndExpireDateWithLimitAndOffset(String, long, int, int)}
+     * this is suitable for walking through all certificates of large CAs.
+     * 
+     * @param issuerDN of the issuing CA.
+     * @param expireDate earliest expireTime(in UTC milliseconds) of the certificates.
+     * @param lastSerialNumber the last serial number returned by the previous call, or null to start from the beginning
+     * @param limit Maximum number of results
+     * @return List of all found entries.
+     */
+    List<String> findSerialNrByIssuerAndExpireDateAfterSerialNr(String issuerDN, long expireDate, String lastSerialNumber, int limit);
+
+    /**
+     * Counts the certificates issued by the given issuer that expire after the given time, regardless of status.
+     * 
+     * @param issuerDN of the issuing CA.
+     * @param expireDate earliest expireTime(in UTC milliseconds) of the certificates.
+     * @return the number of certificates
+     */
+    long countByIssuerAndExpireDateAfter(String issuerDN, long expireDate);
+
+    /**
+     * Lists serial numbers of certificates issued by the given issuer that expire after the given time and are not active, i.e. that
+     * are revoked, on hold, archived etc.
+     * 
+     * @param issuerDN of the issuing CA.
+     * @param expireDate earliest expireTime(in UTC milliseconds) of the certificates.
+     * @return List of all found entries.
+     */
+    List<String> findNotActiveSerialNrByIssuerAndExpireDateAfter(String issuerDN, long expireDate);
+
+    /**
+     * Lists serial numbers of certificates issued by the given issuer that were stored or had their status changed after the given time.
+     * 
+     * @param issuerDN of the issuing CA.
+     * @param updateTime earliest updateTime(in UTC milliseconds) of the certificates.
+     * @param active true to list certificates that are active, false to list certificates that are not active
+     * @return List of all found entries.
+     */
+    List<String> findSerialNrByIssuerAndUpdateTimeAfter(String issuerDN, long updateTime, boolean active);
+
+    /**
+     * Performs the same operation as {@link #getStatus(String, BigInteger)} for several certificates of the same issuer, 
+     * using a single database query for every few hundred certificates instead of one query per certificate.
+     * 
+     * @param issuerDN the DN of the issuer.
+     * @param sernos the serial numbers of the certificates to check
+     * @return map from serial number to the status of the certificate, never null. Contains all the given serial numbers,
+     *      with CertificateStatus.NOT_AVAILABLE for certificates that are not found.
+     */
+    Map<BigInteger, CertificateStatus> getStatuses(String issuerDN, Collection<BigInteger> sernos);
+
     /**
      * Finds certificates expiring before the given date.
      *
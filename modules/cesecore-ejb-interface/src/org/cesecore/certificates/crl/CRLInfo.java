@@ -29,6 +29,7 @@ public final class CRLInfo implements Serializable {
     private final int crlNumber;
     private final Date thisUpdate;
     private final Date nextUpdate;
+    private final String fingerprint;
     private final CRLData crlData;
 
     /**
@@ -44,6 +45,7 @@ public final class CRLInfo implements Serializable {
         this.crlNumber = crlData.getCrlNumber();
         this.thisUpdate = new Date(crlData.getThisUpdate());
         this.nextUpdate = new Date(crlData.getNextUpdate());
+        this.fingerprint = crlData.getFingerprint();
         this.crlData = crlData;
     }
 
@@ -57,11 +59,21 @@ public final class CRLInfo implements Serializable {
      * @param nextUpdate
      */
     public CRLInfo(final String subjectDN, final int crlPartitionIndex, final int crlNumber, final long thisUpdate, final long nextUpdate) {
+        this(subjectDN, crlPartitionIndex, crlNumber, thisUpdate, nextUpdate, null);
+    }
+
+    /**
+     * Creates information about a CRL without the CRL itself, see {@link #CRLInfo(String, int, int, long, long)}.
+     *
+     * @param fingerprint the fingerprint of the CRL, or null if not known
+     */
+    public CRLInfo(final String subjectDN, final int crlPartitionIndex, final int crlNumber, final long thisUpdate, final long nextUpdate, final String fingerprint) {
         this.subjectDn = subjectDN;
         this.crlPartitionIndex = crlPartitionIndex == -1 ? CertificateConstants.NO_CRL_PARTITION : crlPartitionIndex;
         this.crlNumber = crlNumber;
         this.thisUpdate = new Date(thisUpdate);
         this.nextUpdate = new Date(nextUpdate);
+        this.fingerprint = fingerprint;
         this.crlData = null;
     }
 
@@ -110,12 +122,21 @@ public final class CRLInfo implements Serializable {
         return nextUpdate;
     }
 
+    /**
+     * Get the fingerprint of the CRL.
+     *
+     * @return the fingerprint of the CRL, or null if not known.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
     /**
      * Get the actual CRL as a {@link X509CRL} object.
      * 
-     * @return the CRL itself.
+     * @return the CRL itself, or null if this object was created without the CRL.
      */
     public X509CRL getCrl() {
-        return crlData.getCRL();
+        return crlData == null ? null : crlData.getCRL();
     }
 }
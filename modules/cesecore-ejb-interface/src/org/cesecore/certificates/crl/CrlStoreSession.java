@@ -101,6 +101,7 @@ public interface CrlStoreSession {
 	
 	/**
 	 * Same as the above function {@link #getLastCRLInfo} except that it ignores the crl, making it a lightweight version suitable for GUI use.
+	 * The returned information is cached per node for a short time, see {@link org.cesecore.config.CesecoreConfiguration#getCacheCrlInfoTime()}.
 	 * 
 	 * @param issuerdn
 	 * @param crlPartitionIndex
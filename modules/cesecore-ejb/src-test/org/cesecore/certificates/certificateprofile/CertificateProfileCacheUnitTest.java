@@ -0,0 +1,41 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificateprofile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.cesecore.certificates.certificate.CertificateConstants;
+import org.junit.Test;
+
+/**
+ * Unit tests of the cache of fixed certificate profiles.
+ */
+public class CertificateProfileCacheUnitTest {
+
+    @Test
+    public void testFixedProfilesShareSnapshot() throws Exception {
+        final CertificateProfile first = CertificateProfileCache.INSTANCE.getFixedProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER).clone();
+        final CertificateProfile second = CertificateProfileCache.INSTANCE.getFixedProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER).clone();
+        assertTrue("Every issuance with a fixed profile should use the same snapshot", first.getCompiledProfile() == second.getCompiledProfile());
+        assertEquals(CertificateConstants.CERTTYPE_ENDENTITY, first.getCompiledProfile().getType());
+        final CertificateProfile subCa = CertificateProfileCache.INSTANCE.getFixedProfile(CertificateProfileConstants.CERTPROFILE_FIXED_SUBCA).clone();
+        assertEquals(CertificateConstants.CERTTYPE_SUBCA, subCa.getCompiledProfile().getType());
+        // A modified clone gets its own snapshot, without changing the cached profile
+        first.setType(CertificateConstants.CERTTYPE_SUBCA);
+        assertFalse(first.getCompiledProfile() == second.getCompiledProfile());
+        assertEquals(CertificateConstants.CERTTYPE_ENDENTITY, CertificateProfileCache.INSTANCE.getFixedProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER)
+                .getCompiledProfile().getType());
+    }
+}
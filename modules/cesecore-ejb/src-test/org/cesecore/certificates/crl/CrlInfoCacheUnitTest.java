@@ -0,0 +1,75 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.crl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cesecore.config.ConfigurationHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests caching of CRL information by {@link CrlInfoCache}.
+ */
+public class CrlInfoCacheUnitTest {
+
+    private static final String ISSUER_DN = "CN=CrlInfoCacheUnitTest";
+
+    private String defaultCacheTime;
+
+    @Before
+    public void before() {
+        defaultCacheTime = ConfigurationHolder.getString("crlinfo.cachetime");
+        CrlInfoCache.INSTANCE.flush();
+    }
+
+    @After
+    public void after() {
+        ConfigurationHolder.updateConfiguration("crlinfo.cachetime", defaultCacheTime);
+        CrlInfoCache.INSTANCE.flush();
+    }
+
+    @Test
+    public void testCachedUntilFlushed() {
+        ConfigurationHolder.updateConfiguration("crlinfo.cachetime", "60000");
+        final AtomicInteger loads = new AtomicInteger();
+        final CRLInfo crlInfo = new CRLInfo(ISSUER_DN, 0, 17, 1000L, 2000L, "fingerprint");
+        assertSame(crlInfo, CrlInfoCache.INSTANCE.get(ISSUER_DN, 0, false, () -> { loads.incrementAndGet(); return crlInfo; }));
+        assertSame(crlInfo, CrlInfoCache.INSTANCE.get(ISSUER_DN, 0, false, () -> { loads.incrementAndGet(); return null; }));
+        assertEquals("Information should only be read once.", 1, loads.get());
+        // Other partitions and delta CRLs are cached separately
+        assertNull(CrlInfoCache.INSTANCE.get(ISSUER_DN, 1, false, () -> { loads.incrementAndGet(); return null; }));
+        assertNull(CrlInfoCache.INSTANCE.get(ISSUER_DN, 0, true, () -> { loads.incrementAndGet(); return null; }));
+        assertEquals(3, loads.get());
+        // That no CRL exists is also cached
+        assertNull(CrlInfoCache.INSTANCE.get(ISSUER_DN, 1, false, () -> { loads.incrementAndGet(); return crlInfo; }));
+        assertEquals(3, loads.get());
+        CrlInfoCache.INSTANCE.flush();
+        assertSame(crlInfo, CrlInfoCache.INSTANCE.get(ISSUER_DN, 1, false, () -> { loads.incrementAndGet(); return crlInfo; }));
+        assertEquals("Information should be read again after a CRL has been stored.", 4, loads.get());
+    }
+
+    @Test
+    public void testCachingDisabled() {
+        ConfigurationHolder.updateConfiguration("crlinfo.cachetime", "-1");
+        final AtomicInteger loads = new AtomicInteger();
+        CrlInfoCache.INSTANCE.get(ISSUER_DN, 0, false, () -> { loads.incrementAndGet(); return null; });
+        CrlInfoCache.INSTANCE.get(ISSUER_DN, 0, false, () -> { loads.incrementAndGet(); return null; });
+        assertEquals(2, loads.get());
+    }
+}
@@ -91,6 +91,7 @@ import org.cesecore.certificates.certificate.request.ResponseMessage;
 import org.cesecore.certificates.certificate.request.ResponseMessageUtils;
 import org.cesecore.certificates.certificate.request.ResponseStatus;
 import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CompiledCertificateProfile;
 import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLocal;
 import org.cesecore.certificates.certificatetransparency.CTAuditLogCallback;
 import org.cesecore.certificates.certificatetransparency.CTLogException;
@@ -447,6 +448,7 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
         // Retrieve the certificate profile this user should have, checking for authorization to the profile
         final int certProfileId = endEntityInformation.getCertificateProfileId();
         final CertificateProfile certProfile = getCertificateProfile(certProfileId, ca.getCAId());
+        final CompiledCertificateProfile compiledProfile = certProfile.getCompiledProfile();
         
         final ExtendedInformation ei = endEntityInformation.getExtendedInformation();
         
@@ -524,7 +526,7 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                     log.error(msg);
                     throw new CustomCertificateSerialNumberException(msg);
                 }
-                if (!certProfile.getAllowCertSerialNumberOverride()) {
+                if (!compiledProfile.getAllowCertSerialNumberOverride()) {
                     final String msg = intres.getLocalizedMessage("createcert.certprof_not_allowing_cert_sn_override", certProfileId);
                     log.info(msg);
                     throw new CustomCertificateSerialNumberException(msg);
@@ -535,7 +537,7 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
             }
             
             // Before storing the new certificate, check if single active certificate constraint is active, and if so let's revoke all active and unexpired certificates
-            if (certProfile.isSingleActiveCertificateConstraint()) {
+            if (compiledProfile.isSingleActiveCertificateConstraint()) {
                 // Only get not yet expired certificates with status CERT_ACTIVE, CERT_NOTIFIEDABOUTEXPIRATION, CERT_REVOKED
                 final List<CertificateDataWrapper> cdws = certificateStoreSession.getCertificateDataByUsername(endEntityInformation.getUsername(),
                         true, Arrays.asList(CertificateConstants.CERT_ARCHIVED, CertificateConstants.CERT_INACTIVE,
@@ -642,15 +644,15 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                 }
                 
                 // Store certificate in the database, if this CA is configured to do so.
-                if (!ca.isUseCertificateStorage() || !certProfile.getUseCertificateStorage()) {
+                if (!ca.isUseCertificateStorage() || !compiledProfile.getUseCertificateStorage()) {
                     // We still need to return a CertificateData object for publishers
                     final CertificateData throwAwayCertData = new CertificateData(cert, cert.getPublicKey(), endEntityInformation.getUsername(), 
-                            cafingerprint, null, CertificateConstants.CERT_ACTIVE, certProfile.getType(), certProfileId,
+                            cafingerprint, null, CertificateConstants.CERT_ACTIVE, compiledProfile.getType(), certProfileId,
                             endEntityInformation.getEndEntityProfileId(), crlPartitionIndex,
-                            null, updateTime, false, certProfile.getStoreSubjectAlternativeName(), accountBindingId);
+                            null, updateTime, false, compiledProfile.getStoreSubjectAlternativeName(), accountBindingId);
                     result = new CertificateDataWrapper(cert, throwAwayCertData, null);
                     // Always Store full certificate for OCSP signing certificates.
-                    boolean isOcspSigner = certProfile.getExtendedKeyUsageOids().contains("1.3.6.1.5.5.7.3.9");
+                    boolean isOcspSigner = compiledProfile.getExtendedKeyUsageOids().contains("1.3.6.1.5.5.7.3.9");
                     if (!isOcspSigner) {
                         break; // We have our cert and we don't need to store it.. Move on..
                     }
@@ -666,13 +668,13 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                     // not be possible to get without authorization
                     if (ctLogException == null) {
                         result = certificateStoreSession.storeCertificateNoAuth(admin, cert, endEntityInformation.getUsername(), cafingerprint, certificateRequest, 
-                                CertificateConstants.CERT_ACTIVE, certProfile.getType(), certProfileId, endEntityInformation.getEndEntityProfileId(),
+                                CertificateConstants.CERT_ACTIVE, compiledProfile.getType(), certProfileId, endEntityInformation.getEndEntityProfileId(),
                                 crlPartitionIndex, tag, updateTime, accountBindingId);
                     } else {
                         tag = CertificateConstants.CERT_TAG_PRECERT;
                         // Store pre-certificate using a new transaction. We don't want CertificateData rolled back even though issuance failed.
                         result = certificateStoreSession.storeCertificateNoAuthNewTransaction(admin, cert, endEntityInformation.getUsername(), cafingerprint, certificateRequest, 
-                                CertificateConstants.CERT_ACTIVE, certProfile.getType(), certProfileId, endEntityInformation.getEndEntityProfileId(),
+                                CertificateConstants.CERT_ACTIVE, compiledProfile.getType(), certProfileId, endEntityInformation.getEndEntityProfileId(),
                                 crlPartitionIndex, tag, updateTime, accountBindingId);
                     }
                     storeEx = null;
@@ -723,7 +725,7 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                 if (revreason != RevokedCertInfo.NOT_REVOKED) {
                     // If we don't store the certificate in the database, we wont support revocation/reactivation so issuing revoked certificates would be
                     // really strange.
-                    if (ca.isUseCertificateStorage() && certProfile.getUseCertificateStorage()) {
+                    if (ca.isUseCertificateStorage() && compiledProfile.getUseCertificateStorage()) {
                         certificateStoreSession.setRevokeStatus(admin, result, new Date(), /*invalidityDate*/null, revreason);
                     } else {
                         log.warn("CA configured to revoke issued certificates directly, but not to store issued the certificates. Revocation will be ignored. Please verify your configuration.");
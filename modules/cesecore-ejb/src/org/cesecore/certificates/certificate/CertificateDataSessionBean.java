@@ -37,6 +37,7 @@ import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.math.BigInteger;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -61,6 +62,9 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
             + "a.username as username, a.tag as tag, a.certificateProfileId as certificateProfileId, a.endEntityProfileId as endEntityProfileId, a.updateTime as updateTime, "
             + "a.subjectKeyId as subjectKeyId, a.subjectAltName as subjectAltName, a.accountBindingId as accountBindingId FROM CertificateData a ";
 
+    /** Statuses of certificates that are neither revoked nor otherwise out of use */
+    private static final List<Integer> ACTIVE_STATUSES = Arrays.asList(CertificateConstants.CERT_ACTIVE, CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+
     @PersistenceContext(unitName = CesecoreConfiguration.PERSISTENCE_UNIT)
     private EntityManager entityManager;
     
@@ -99,6 +103,14 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateInfo> findCertificateInfosBySubjectDN(final String subjectDN) {
+        final Query query = entityManager.createNativeQuery(SELECT_QUERY_FOR_CERTIFICATEINFO_SUBSET + "WHERE a.subjectDN=:subjectDN",
+                "CertificateInfoSubset");
+        query.setParameter("subjectDN", subjectDN);
+        return resultsToCertificateInfos(query.getResultList());
+    }
+
     /**
      * @return active certificates that match the specified types and subjectDN
      */
@@ -130,6 +142,27 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateData> findByIssuerDNSerialNumbers(final String issuerDN, final Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final TypedQuery<CertificateData> query = entityManager.createQuery("SELECT a FROM CertificateData a WHERE a.issuerDN=:issuerDN AND a.serialNumber IN (:serialNumbers)", CertificateData.class);
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("serialNumbers", serialNumbers);
+        return query.getResultList();
+    }
+
+    @Override
+    public List<CertificateData> findByFingerprints(final Collection<String> fingerprints) {
+        if (fingerprints.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final TypedQuery<CertificateData> query = entityManager.createQuery("SELECT a FROM CertificateData a WHERE a.fingerprint IN (:fingerprints)", CertificateData.class);
+        query.setParameter("fingerprints", fingerprints);
+        return query.getResultList();
+    }
+
     @Override
     public Long findQuantityOfAllCertificates() {
         Query query = entityManager.createQuery("SELECT count(cd) FROM CertificateData cd");
@@ -218,6 +251,14 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateInfo> findCertificateInfosByUsernameOrdered(final String username) {
+        final Query query = entityManager.createNativeQuery(SELECT_QUERY_FOR_CERTIFICATEINFO_SUBSET
+                + "WHERE a.username=:username ORDER BY a.expireDate DESC, a.serialNumber DESC", "CertificateInfoSubset");
+        query.setParameter("username", username);
+        return resultsToCertificateInfos(query.getResultList());
+    }
+
     /** @return return the query results as a List. */
     @Override
     public List<CertificateData> findByUsernameAndStatus(final String username, final int status) {
@@ -283,19 +324,9 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
                     ", Last Base CRL Date: " + FastDateFormat.getInstance(ValidityDate.ISO8601_DATE_FORMAT, TimeZone.getTimeZone("GMT")).format(lastBaseCrlDate) +
                     ", Allow Invalidity Date: " + allowInvalidityDate);
         }
-        final String crlPartitionExpression;
-        final String ordering;
+        final String crlPartitionExpression = getCrlPartitionExpression(crlPartitionIndex);
+        final String ordering = getRevokedCertInfoOrdering();
         final Query query;
-        if (crlPartitionIndex != 0) {
-            crlPartitionExpression = " AND crlPartitionIndex = :crlPartitionIndex";
-        } else {
-            crlPartitionExpression = " AND (crlPartitionIndex = :crlPartitionIndex OR crlPartitionIndex IS NULL)";
-        }
-        if (CesecoreConfiguration.getDatabaseRevokedCertInfoFetchOrdered()) {
-            ordering = " ORDER BY revocationDate, fingerprint ASC";
-        } else {
-            ordering = "";
-        }
         if (allowInvalidityDate && deltaCrl) {
             // For delta CRL generation with invalidityDate. Results will be filtered later. This is needed since we will need to compare the results with the revoked cert entries
             // in the last base CRL in order to figure out which certificates had their invalidity date changed since the last base CRL. We can't determine that in the query here.
@@ -335,6 +366,60 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return getRevokedCertInfosInternal(query, allowInvalidityDate);
     }
 
+    @Override
+    public Collection<RevokedCertInfo> getRevokedCertInfosUpdatedAfter(final String issuerDN, final int crlPartitionIndex, final long updatedAfter,
+            final boolean allowInvalidityDate) {
+        if (log.isDebugEnabled()) {
+            log.debug("Querying for certificates with revocation information updated after " +
+                    FastDateFormat.getInstance(ValidityDate.ISO8601_DATE_FORMAT, TimeZone.getTimeZone("GMT")).format(updatedAfter) + ". IssuerDN: '" + issuerDN + "'");
+        }
+        // Same as for delta CRLs with invalidity date, since updateTime is also changed when the revocation reason or invalidity date changes
+        final Query query = getEntityManager().createNativeQuery(
+                "SELECT a.fingerprint as fingerprint, a.serialNumber as serialNumber, a.expireDate as expireDate, a.revocationDate as revocationDate, a.revocationReason as revocationReason, a.invalidityDate as invalidityDate  FROM CertificateData a WHERE "
+                        + "a.issuerDN=:issuerDN AND a.revocationDate>:revocationDate AND a.updateTime>:updateTime AND (a.status=:status1 OR a.status=:status2 OR a.status=:status3)"
+                        + getCrlPartitionExpression(crlPartitionIndex) + getRevokedCertInfoOrdering(),
+                "RevokedCertInfoSubset");
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("crlPartitionIndex", crlPartitionIndex);
+        query.setParameter("updateTime", updatedAfter);
+        query.setParameter("revocationDate", -1L);
+        query.setParameter("status1", CertificateConstants.CERT_REVOKED);
+        query.setParameter("status2", CertificateConstants.CERT_ACTIVE); // reactivated after being on hold, returned as "removeFromCRL"
+        query.setParameter("status3", CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+        return getRevokedCertInfosInternal(query, allowInvalidityDate);
+    }
+
+    @Override
+    public Collection<RevokedCertInfo> getRevokedCertInfosExpiredBefore(final String issuerDN, final int crlPartitionIndex, final long expiredBefore,
+            final boolean allowInvalidityDate) {
+        final Query query = getEntityManager().createNativeQuery(
+                "SELECT a.fingerprint as fingerprint, a.serialNumber as serialNumber, a.expireDate as expireDate, a.revocationDate as revocationDate, a.revocationReason as revocationReason, a.invalidityDate as invalidityDate FROM CertificateData a WHERE "
+                        + "a.issuerDN=:issuerDN AND a.status=:status AND a.expireDate<:expireDate"
+                        + getCrlPartitionExpression(crlPartitionIndex) + getRevokedCertInfoOrdering(),
+                "RevokedCertInfoSubset");
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("crlPartitionIndex", crlPartitionIndex);
+        query.setParameter("status", CertificateConstants.CERT_REVOKED);
+        query.setParameter("expireDate", expiredBefore);
+        return getRevokedCertInfosInternal(query, allowInvalidityDate);
+    }
+
+    private String getCrlPartitionExpression(final int crlPartitionIndex) {
+        if (crlPartitionIndex != 0) {
+            return " AND crlPartitionIndex = :crlPartitionIndex";
+        } else {
+            return " AND (crlPartitionIndex = :crlPartitionIndex OR crlPartitionIndex IS NULL)";
+        }
+    }
+
+    private String getRevokedCertInfoOrdering() {
+        if (CesecoreConfiguration.getDatabaseRevokedCertInfoFetchOrdered()) {
+            return " ORDER BY revocationDate, fingerprint ASC";
+        } else {
+            return "";
+        }
+    }
+
     @Override
     public List<CertificateData> findByExpireDateWithLimit(final long expireDate, final int maxNumberOfResults) {
         final long now = System.currentTimeMillis();
@@ -348,6 +433,18 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateInfo> findCertificateInfosByExpireDateWithLimit(final long expireDate, final int maxNumberOfResults) {
+        final Query query = entityManager.createNativeQuery(SELECT_QUERY_FOR_CERTIFICATEINFO_SUBSET
+                + "WHERE a.expireDate<:expireDate AND a.expireDate>=:now AND (a.status=:status1 OR a.status=:status2)", "CertificateInfoSubset");
+        query.setParameter("expireDate", expireDate);
+        query.setParameter("now", System.currentTimeMillis());
+        query.setParameter("status1", CertificateConstants.CERT_ACTIVE);
+        query.setParameter("status2", CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+        query.setMaxResults(maxNumberOfResults);
+        return resultsToCertificateInfos(query.getResultList());
+    }
+
     @Override
     public List<String> findSerialNrByIssuerWithLimitAndOffset(String issuerDN, int limit, int offset) {
         final TypedQuery<String> query = entityManager
@@ -369,7 +466,50 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         query.setFirstResult(offset);
         return query.getResultList();
     }
+
+    @Override
+    public List<String> findSerialNrByIssuerAndExpireDateAfterSerialNr(String issuerDN, long expireDate, String lastSerialNumber, int limit) {
+        // we ignore the certificate status
+        final TypedQuery<String> query = entityManager.createQuery("SELECT a.serialNumber FROM CertificateData a WHERE a.issuerDN=:issuerDN and a.expireDate>:expireDate"
+                + (lastSerialNumber == null ? "" : " and a.serialNumber>:serialNumber") + " ORDER BY a.serialNumber", String.class);
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("expireDate", expireDate);
+        if (lastSerialNumber != null) {
+            query.setParameter("serialNumber", lastSerialNumber);
+        }
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
     
+    @Override
+    public long countByIssuerAndExpireDateAfter(final String issuerDN, final long expireDate) {
+        final TypedQuery<Long> query = entityManager.createQuery("SELECT COUNT(a) FROM CertificateData a WHERE a.issuerDN=:issuerDN AND a.expireDate>:expireDate",
+                Long.class);
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("expireDate", expireDate);
+        return query.getSingleResult();
+    }
+
+    @Override
+    public List<String> findNotActiveSerialNrByIssuerAndExpireDateAfter(final String issuerDN, final long expireDate) {
+        final TypedQuery<String> query = entityManager.createQuery("SELECT a.serialNumber FROM CertificateData a WHERE a.issuerDN=:issuerDN "
+                + "AND a.status NOT IN (:activeStatuses) AND a.expireDate>:expireDate", String.class);
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("activeStatuses", ACTIVE_STATUSES);
+        query.setParameter("expireDate", expireDate);
+        return query.getResultList();
+    }
+
+    @Override
+    public List<String> findSerialNrByIssuerAndUpdateTimeAfter(final String issuerDN, final long updateTime, final boolean active) {
+        final TypedQuery<String> query = entityManager.createQuery("SELECT a.serialNumber FROM CertificateData a WHERE a.issuerDN=:issuerDN "
+                + "AND a.updateTime>=:updateTime AND a.status " + (active ? "IN" : "NOT IN") + " (:activeStatuses)", String.class);
+        query.setParameter("issuerDN", issuerDN);
+        query.setParameter("updateTime", updateTime);
+        query.setParameter("activeStatuses", ACTIVE_STATUSES);
+        return query.getResultList();
+    }
+
     @Override
     public List<CertificateData> findByExpireDateWithLimitAndOffset(long expireDate, int maxNumberOfResults, int offset) {
         final long now = System.currentTimeMillis();
@@ -632,7 +772,11 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
             query.setParameter("issuerDns", issuerDns);
         }
         query.setMaxResults(maxNumberOfResults);
-        final List<?> dbResults = query.getResultList();
+        return resultsToCertificateInfos(query.getResultList());
+    }
+
+    /** Converts the results of a query using the CertificateInfoSubset mapping */
+    private List<CertificateInfo> resultsToCertificateInfos(final List<?> dbResults) {
         return dbResults.stream()
                 .map(dbResult -> resultToCertificateData((Object[]) dbResult))
                 .collect(toList());
@@ -24,7 +24,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -75,6 +77,7 @@ import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLoc
 import org.cesecore.certificates.crl.RevocationReasons;
 import org.cesecore.certificates.crl.RevokedCertInfo;
 import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.certificates.ocsp.cache.OcspRevocationIndex;
 import org.cesecore.config.CesecoreConfiguration;
 import org.cesecore.config.GlobalCesecoreConfiguration;
 import org.cesecore.config.OcspConfiguration;
@@ -102,6 +105,9 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
     /** Internal localization of logs and errors */
     private static final InternalResources INTRES = InternalResources.getInstance();
     private static final int TIMERID_CACERTIFICATECACHE = 1;
+    /** Maximum number of serial numbers in the IN clause of a single query. Oracle allows at most 1000. */
+    private static final int MAX_SERIAL_NUMBERS_PER_QUERY = 500;
+    private static final int MAX_FINGERPRINTS_PER_QUERY = 500;
 
     @PersistenceContext(unitName = CesecoreConfiguration.PERSISTENCE_UNIT)
     private EntityManager entityManager;
@@ -297,6 +303,31 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return new CertificateDataWrapper(certificateData, base64CertData);
     }
 
+    @Override
+    public List<CertificateDataWrapper> getCertificateDatas(final List<String> fingerprints) {
+        final Map<String, CertificateData> certificateDatas = new HashMap<>();
+        final Map<String, Base64CertData> base64CertDatas = new HashMap<>();
+        for (int i = 0; i < fingerprints.size(); i += MAX_FINGERPRINTS_PER_QUERY) {
+            final List<String> chunk = fingerprints.subList(i, Math.min(i + MAX_FINGERPRINTS_PER_QUERY, fingerprints.size()));
+            for (final CertificateData certificateData : certificateDataSession.findByFingerprints(chunk)) {
+                certificateDatas.put(certificateData.getFingerprint(), certificateData);
+            }
+            if (CesecoreConfiguration.useBase64CertTable()) {
+                for (final Base64CertData base64CertData : Base64CertData.findByFingerprints(entityManager, chunk)) {
+                    base64CertDatas.put(base64CertData.getFingerprint(), base64CertData);
+                }
+            }
+        }
+        final List<CertificateDataWrapper> ret = new ArrayList<>(certificateDatas.size());
+        for (final String fingerprint : fingerprints) {
+            final CertificateData certificateData = certificateDatas.get(fingerprint);
+            if (certificateData != null) {
+                ret.add(new CertificateDataWrapper(certificateData, base64CertDatas.get(fingerprint)));
+            }
+        }
+        return ret;
+    }
+
     /**
      * We need special handling here of CVC certificate with EC keys, because they lack EC parameters in all certs
      * except the Root certificate (CVCA)
@@ -605,6 +636,15 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
 
     @Override
     public X509Certificate findLatestX509CertificateBySubject(String subjectDN, X509Certificate rolloverCA, boolean findRollover) {
+        if (rolloverCA == null) {
+            // Only the newest certificate has to be read from the database
+            final List<CertificateInfo> certificateInfos = certificateDataSession
+                    .findCertificateInfosBySubjectDN(DnComponents.stringToBCDNString(StringTools.strip(subjectDN)));
+            if (certificateInfos.stream().allMatch(certificateInfo -> certificateInfo.getNotBefore() != null)) {
+                return findLatestX509Certificate(certificateInfos, findRollover);
+            }
+            // notBefore is not set in CertificateData rows from old installations, so the certificates have to be read
+        }
         final Collection<CertificateDataWrapper> certificateDatas = getCertificateDatasBySubject(subjectDN);
         X509Certificate result = null;
         Collection<X509Certificate> trustedChain = null;
@@ -654,6 +694,22 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return result;
     }
 
+    /**
+     * @return the X.509 certificate with the latest notBefore date, reading only that certificate from the database, or null if there is none
+     */
+    private X509Certificate findLatestX509Certificate(final List<CertificateInfo> certificateInfos, final boolean findRollover) {
+        final List<CertificateInfo> candidates = new ArrayList<>(certificateInfos);
+        candidates.removeIf(certificateInfo -> certificateInfo.getStatus() == CertificateConstants.CERT_ROLLOVERPENDING && !findRollover);
+        candidates.sort(Comparator.comparing(CertificateInfo::getNotBefore).reversed());
+        for (final CertificateInfo certificateInfo : candidates) {
+            final Certificate certificate = findCertificateByFingerprint(certificateInfo.getFingerprint());
+            if (certificate instanceof X509Certificate) {
+                return (X509Certificate) certificate;
+            }
+        }
+        return null;
+    }
+
     @Override
     public Collection<CertificateWrapper> findCertificatesByExpireTimeWithLimit(Date expireTime) {
         if (log.isTraceEnabled()) {
@@ -685,6 +741,16 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return EJBTools.wrapCertCollection(ret);
     }
 
+    @Override
+    public List<CertificateInfo> findCertificateInfosByExpireTimeWithLimit(final Date expireTime) {
+        final List<CertificateInfo> ret = certificateDataSession.findCertificateInfosByExpireDateWithLimit(expireTime.getTime(),
+                getGlobalCesecoreConfiguration().getMaximumQueryCount());
+        if (log.isDebugEnabled()) {
+            log.debug("Found " + ret.size() + " certificates that expire before " + expireTime);
+        }
+        return ret;
+    }
+
     @Override
     public List<Certificate> findCertificatesByExpireTimeWithLimit(Date expireTime, int maxNumberOfResults) {
         if (log.isTraceEnabled()) {
@@ -807,6 +873,7 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         final Query deleteQuery = entityManager.createQuery("DELETE FROM CertificateData a WHERE a.fingerprint = :fingerprint");
         deleteQuery.setParameter("fingerprint", certInfo.getFingerprint());
         deleteQuery.executeUpdate();
+        OcspRevocationIndex.INSTANCE.markChanged(certInfo.getIssuerDN(), certInfo.getSerialNumber().toString());
 
         final String caIdString = (certInfo.getIssuerDN() != null ? String.valueOf(certInfo.getIssuerDN().hashCode()) : null);
         final String detailsMsg = InternalResources.getInstance().getLocalizedMessage("store.deletedexpiredcert",
@@ -966,7 +1033,34 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         }
         return ret;
     }
+
+    @Override
+    public List<String> findSerialNrByIssuerAndExpireDateAfterSerialNr(String issuerDN, long expireDate, String lastSerialNumber, int limit) {
+        if (log.isTraceEnabled()) {
+            log.trace(">findSerialNrByIssuerAndExpireDateAfterSerialNr()");
+        }
+        final List<String> ret = certificateDataSession.findSerialNrByIssuerAndExpireDateAfterSerialNr(issuerDN, expireDate, lastSerialNumber, limit);
+        if (log.isTraceEnabled()) {
+            log.trace("<findSerialNrByIssuerAndExpireDateAfterSerialNr()");
+        }
+        return ret;
+    }
     
+    @Override
+    public long countByIssuerAndExpireDateAfter(final String issuerDN, final long expireDate) {
+        return certificateDataSession.countByIssuerAndExpireDateAfter(issuerDN, expireDate);
+    }
+
+    @Override
+    public List<String> findNotActiveSerialNrByIssuerAndExpireDateAfter(final String issuerDN, final long expireDate) {
+        return certificateDataSession.findNotActiveSerialNrByIssuerAndExpireDateAfter(issuerDN, expireDate);
+    }
+
+    @Override
+    public List<String> findSerialNrByIssuerAndUpdateTimeAfter(final String issuerDN, final long updateTime, final boolean active) {
+        return certificateDataSession.findSerialNrByIssuerAndUpdateTimeAfter(issuerDN, updateTime, active);
+    }
+
     @Override
     public Collection<Certificate> findCertificatesByIssuerAndSernos(String issuerDN, Collection<BigInteger> sernos) {
         if (log.isTraceEnabled()) {
@@ -1071,6 +1165,11 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return EJBTools.wrapCertCollection(ret);
     }
 
+    @Override
+    public List<CertificateInfo> findCertificateInfosByUsername(final String username) {
+        return certificateDataSession.findCertificateInfosByUsernameOrdered(username);
+    }
+
     @Override
     public Collection<Certificate> findCertificatesByUsernameAndStatus(final String username, final int status) {
         if (log.isTraceEnabled()) {
@@ -1325,6 +1424,8 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
             returnVal = false; // we did _not_ change status in the database
         }
         if (returnVal) {
+            // Make the OCSP responder on this node read the new status from the database
+            OcspRevocationIndex.INSTANCE.markChanged(issuerDn, certificateData.getSerialNumber());
             // Persist changes
             if (certificateData instanceof NoConflictCertificateData) {
                 entityManager.persist(certificateData); // Ensure append-only operation
@@ -1347,6 +1448,7 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         String bcdn = DnComponents.stringToBCDNString(issuerdn);
     	int caid = bcdn.hashCode();
         authorizedToCA(admin, caid);
+        OcspRevocationIndex.INSTANCE.removeIndex(bcdn);
         try {
             final int maxRows = 10000;
             int firstResult = 0;
@@ -1359,6 +1461,7 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
                 	d.setStatus(CertificateConstants.CERT_REVOKED);
                 	d.setRevocationDate(System.currentTimeMillis());
                 	d.setRevocationReason(reason);
+                	d.setUpdateTime(System.currentTimeMillis());
                 	revoked++;
             	}
             	firstResult += maxRows;
@@ -1468,6 +1571,44 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return CertificateStatus.NOT_AVAILABLE;
     }
 
+    @Override
+    public Map<BigInteger, CertificateStatus> getStatuses(final String issuerDN, final Collection<BigInteger> sernos) {
+        if (log.isTraceEnabled()) {
+            log.trace(">getStatuses(), dn:" + issuerDN + ", " + sernos.size() + " serial numbers");
+        }
+        // First make a DN in our well-known format
+        final String dn = DnComponents.stringToBCDNString(issuerDN);
+        final Map<BigInteger, CertificateStatus> ret = new HashMap<>();
+        final List<String> serialNumbers = new ArrayList<>(sernos.size());
+        for (final BigInteger serno : sernos) {
+            serialNumbers.add(serno.toString());
+        }
+        try {
+            for (int i = 0; i < serialNumbers.size(); i += MAX_SERIAL_NUMBERS_PER_QUERY) {
+                final List<String> chunk = serialNumbers.subList(i, Math.min(i + MAX_SERIAL_NUMBERS_PER_QUERY, serialNumbers.size()));
+                for (final CertificateData data : certificateDataSession.findByIssuerDNSerialNumbers(dn, chunk)) {
+                    final BigInteger serno = new BigInteger(data.getSerialNumber());
+                    if (ret.containsKey(serno)) {
+                        log.error(INTRES.getLocalizedMessage("store.errorseveralissuerserno", issuerDN, serno.toString(16)));
+                        continue;
+                    }
+                    final CertificateStatus result = CertificateStatusHelper.getCertificateStatus(data);
+                    result.setExpirationDate(data.getExpireDate());
+                    ret.put(serno, result);
+                }
+            }
+        } catch (Exception e) {
+            throw new EJBException(e);
+        }
+        for (final BigInteger serno : sernos) {
+            ret.putIfAbsent(serno, CertificateStatus.NOT_AVAILABLE);
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("<getStatuses()");
+        }
+        return ret;
+    }
+
     @Override
     public CertificateStatusHolder getCertificateAndStatus(String issuerDN, BigInteger serno) {
         if (log.isTraceEnabled()) {
@@ -1512,6 +1653,9 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         authorizedToCA(admin, caid);
 
         certificateData.setStatus(status);
+        // Lets the OCSP revocation index of other nodes find the change
+        certificateData.setUpdateTime(System.currentTimeMillis());
+        OcspRevocationIndex.INSTANCE.markChanged(certificateData.getIssuerDN(), certificateData.getSerialNumber());
         final Certificate certificate = certificateData.getCertificate(this.entityManager);
         String serialNo;
         if (certificate==null) {
@@ -1766,7 +1910,8 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
             final String msg = INTRES.getLocalizedMessage("caadmin.notauthorizedtoca", admin.toString(), caId);
             throw new AuthorizationDeniedException(msg);
         }
-        final String limitedFingerprint = getLimitedCertificateDataFingerprint(issuerDn, serialNumber);
+        final String limitedFingerprint = CertificateData.getLimitedCertificateDataFingerprint(issuerDn, serialNumber);
+        OcspRevocationIndex.INSTANCE.markChanged(issuerDn, serialNumber.toString());
         final CertificateDataWrapper cdw = getCertificateDataByIssuerAndSerno(issuerDn, serialNumber);
         if (cdw==null) {
             if (reasonCode==RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL) {
@@ -1816,6 +1961,139 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         }
     }
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<CertificateData> updateStatusesFromCrlInNewTransaction(final AuthenticationToken admin, final int caId, final String issuerDn,
+            final String caFingerprint, final List<RevokedCertInfo> crlEntries) throws AuthorizationDeniedException {
+        authorizedToCA(admin, caId);
+        boolean allowedOnCa = true;
+        boolean allowInvalidityDate = true;
+        final CAData caData = caSession.findById(caId);
+        if (caData != null) {
+            final CAInfo caInfo = caData.getCA().getCAInfo();
+            allowedOnCa = caInfo.isAllowChangingRevocationReason() || caInfo.getStatus() == CAConstants.CA_EXTERNAL;
+            allowInvalidityDate = caInfo.isAllowInvalidityDate();
+        }
+        // Read the current status of all certificates with a few queries. To be backwards compatible, the first entry found is used.
+        final List<String> serialNumbers = new ArrayList<>(crlEntries.size());
+        for (final RevokedCertInfo crlEntry : crlEntries) {
+            serialNumbers.add(crlEntry.getUserCertificate().toString());
+        }
+        final Map<String, CertificateData> certificateDatas = new HashMap<>();
+        for (int i = 0; i < serialNumbers.size(); i += MAX_SERIAL_NUMBERS_PER_QUERY) {
+            final List<String> chunk = serialNumbers.subList(i, Math.min(i + MAX_SERIAL_NUMBERS_PER_QUERY, serialNumbers.size()));
+            for (final CertificateData certificateData : certificateDataSession.findByIssuerDNSerialNumbers(issuerDn, chunk)) {
+                certificateDatas.putIfAbsent(certificateData.getSerialNumber(), certificateData);
+            }
+        }
+        final long now = System.currentTimeMillis();
+        final List<CertificateData> changed = new ArrayList<>();
+        for (final RevokedCertInfo crlEntry : crlEntries) {
+            final BigInteger serialNumber = crlEntry.getUserCertificate();
+            final String limitedFingerprint = CertificateData.getLimitedCertificateDataFingerprint(issuerDn, serialNumber);
+            final Date invalidityDate = allowInvalidityDate ? crlEntry.getInvalidityDate() : null;
+            CertificateData certificateData = certificateDatas.get(serialNumber.toString());
+            final boolean wasChanged;
+            if (certificateData == null && crlEntry.getReason() == RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL) {
+                wasChanged = false;
+            } else if (certificateData == null) {
+                // Create a limited entry, see updateLimitedCertificateDataStatus
+                certificateData = new CertificateData();
+                certificateData.setFingerprint(limitedFingerprint);
+                certificateData.setSerialNumber(serialNumber.toString());
+                certificateData.setIssuer(issuerDn);
+                certificateData.setSubjectDN("CN=limited");
+                certificateData.setCertificateProfileId(CertificateProfileConstants.CERTPROFILE_NO_PROFILE);
+                certificateData.setStatus(CertificateConstants.CERT_REVOKED);
+                certificateData.setRevocationReason(crlEntry.getReason());
+                certificateData.setRevocationDate(crlEntry.getRevocationDate());
+                certificateData.setInvalidityDate(invalidityDate);
+                certificateData.setUpdateTime(now);
+                certificateData.setCaFingerprint(caFingerprint);
+                entityManager.persist(certificateData);
+                wasChanged = true;
+            } else if (limitedFingerprint.equals(certificateData.getFingerprint())) {
+                if (crlEntry.getReason() == RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL) {
+                    deleteLimitedCertificateData(limitedFingerprint);
+                    OcspRevocationIndex.INSTANCE.markChanged(issuerDn, serialNumber.toString());
+                    wasChanged = false;
+                } else if (certificateData.getRevocationDate() != crlEntry.getRevocationDate().getTime()
+                        || certificateData.getRevocationReason() != crlEntry.getReason()
+                        || (invalidityDate != null && certificateData.getInvalidityDateNeverNull() != invalidityDate.getTime())) {
+                    certificateData.setStatus(CertificateConstants.CERT_REVOKED);
+                    certificateData.setRevocationReason(crlEntry.getReason());
+                    certificateData.setRevocationDate(crlEntry.getRevocationDate());
+                    certificateData.setInvalidityDate(invalidityDate);
+                    certificateData.setUpdateTime(now);
+                    wasChanged = true;
+                } else {
+                    wasChanged = false;
+                }
+            } else {
+                wasChanged = updateStatusFromCrlEntry(certificateData, crlEntry, invalidityDate, allowedOnCa, now);
+            }
+            if (wasChanged) {
+                // Make the OCSP responder on this node read the new status from the database
+                OcspRevocationIndex.INSTANCE.markChanged(issuerDn, serialNumber.toString());
+                changed.add(certificateData);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Changed the status of " + changed.size() + " of " + crlEntries.size() + " certificates issued by '" + issuerDn + "' from CRL entries.");
+        }
+        return changed;
+    }
+
+    /**
+     * Sets the status of a certificate from a CRL entry, with the same rules as setRevokeStatusNoAuth. The changes are written to the database
+     * when the transaction is committed, in JDBC batches if the persistence provider is configured so.
+     *
+     * @return true if the status was changed
+     */
+    private boolean updateStatusFromCrlEntry(final CertificateData certificateData, final RevokedCertInfo crlEntry, final Date invalidityDate,
+            final boolean allowedOnCa, final long now) {
+        final int reason = crlEntry.getReason();
+        final Date revocationDate = crlEntry.getRevocationDate();
+        final boolean isRevoked = certificateData.getStatus() == CertificateConstants.CERT_REVOKED;
+        if (isRevoked && certificateData.getRevocationReason() == reason && certificateData.getRevocationDate() == revocationDate.getTime()
+                && (invalidityDate == null || certificateData.getInvalidityDateNeverNull() == invalidityDate.getTime())) {
+            // Already up to date
+            return false;
+        }
+        if (!RevokedCertInfo.isRevoked(reason)) {
+            if (!isRevoked || certificateData.getRevocationReason() != RevokedCertInfo.REVOCATION_REASON_CERTIFICATEHOLD) {
+                return false;
+            }
+            // Unrevoke a certificate on hold that was removed from the CRL
+            certificateData.setStatus(CertificateConstants.CERT_ACTIVE);
+            certificateData.setRevocationDate(now);
+            certificateData.setRevocationReason(RevokedCertInfo.NOT_REVOKED);
+        } else if (!isRevoked || certificateData.getRevocationReason() == RevokedCertInfo.REVOCATION_REASON_CERTIFICATEHOLD) {
+            if (!isRevoked) {
+                certificateData.setStatus(CertificateConstants.CERT_REVOKED);
+                certificateData.setRevocationDate(revocationDate); // keep date if certificate on hold.
+            }
+            certificateData.setRevocationReason(reason);
+            certificateData.setInvalidityDate(invalidityDate);
+        } else if (RevokedCertInfo.canRevocationReasonBeChanged(reason, revocationDate, certificateData.getRevocationReason(),
+                certificateData.getRevocationDate(), allowedOnCa, true)) {
+            certificateData.setRevocationReason(reason);
+            certificateData.setRevocationDate(revocationDate);
+            if (invalidityDate != null) {
+                certificateData.setInvalidityDate(invalidityDate);
+            }
+        } else if (invalidityDate != null && certificateData.getRevocationReason() == reason) {
+            certificateData.setInvalidityDate(invalidityDate);
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug(INTRES.getLocalizedMessage("store.ignorerevoke", certificateData.getSerialNumberHex(), certificateData.getStatus(), reason));
+            }
+            return false;
+        }
+        certificateData.setUpdateTime(now);
+        return true;
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public void reloadCaCertificateCache() {
@@ -1911,11 +2189,6 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return count;
     }
 
-    /** @return something that looks like a normal certificate fingerprint and is unique for each certificate entry */
-    private String getLimitedCertificateDataFingerprint(final String issuerDn, final BigInteger serialNumber) {
-        return CertTools.getFingerprintAsString((issuerDn+";"+serialNumber).getBytes());
-    }
-
     /** Remove limited CertificateData by fingerprint (and ensures that this is not a full entry by making sure that subjectKeyId is NULL */
     private boolean deleteLimitedCertificateData(final String fingerprint) {
         log.info("Removing CertificateData entry with fingerprint=" + fingerprint + " and no subjectKeyId is defined.");
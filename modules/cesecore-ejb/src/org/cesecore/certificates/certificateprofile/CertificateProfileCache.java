@@ -15,6 +15,7 @@ package org.cesecore.certificates.certificateprofile;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.persistence.EntityManager;
@@ -56,6 +57,8 @@ public enum CertificateProfileCache {
     private volatile Map<String, Integer> nameIdMapCache = null;
     /** Cache of certificate profiles, with Id as keys */
     private volatile Map<Integer, CertificateProfile> profileCache = null;
+    /** Cache of fixed certificate profiles, which never change, with Id as keys. Their snapshot for issuance is then only created once. */
+    private final Map<Integer, CertificateProfile> fixedProfileCache = new ConcurrentHashMap<>();
 
     private volatile long lastUpdate = 0;
 
@@ -113,7 +116,9 @@ public enum CertificateProfileCache {
                 final String certificateProfileName = current.getCertificateProfileName();
                 idNameCache.put(id, certificateProfileName);
                 nameIdCache.put(certificateProfileName, id);
-                profCache.put(id, current.getCertificateProfile());
+                final CertificateProfile certificateProfile = current.getCertificateProfile();
+                compileProfile(certificateProfileName, certificateProfile);
+                profCache.put(id, certificateProfile);
             }
         } catch (Exception e) {
             LOG.error("Error reading certificate profiles: ", e);
@@ -126,6 +131,33 @@ public enum CertificateProfileCache {
         }
     }
 
+    /**
+     * Creates the snapshot used when issuing certificates, so that it is shared by all clones of the cached profile. A profile that
+     * can not be compiled is still cached, the error will then be reported when a certificate is issued with it.
+     */
+    private void compileProfile(final String certificateProfileName, final CertificateProfile certificateProfile) {
+        try {
+            certificateProfile.getCompiledProfile();
+        } catch (RuntimeException e) {
+            LOG.warn("Certificate profile '" + certificateProfileName + "' could not be prepared for certificate issuance: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param certificateProfileId an id below {@link CertificateProfileConstants#FIXED_CERTIFICATEPROFILE_BOUNDRY}
+     * @return the shared instance of the fixed profile, which must be cloned before it is handed out, since it must not be modified.
+     */
+    public CertificateProfile getFixedProfile(final int certificateProfileId) {
+        if (certificateProfileId <= 0 || certificateProfileId >= CertificateProfileConstants.FIXED_CERTIFICATEPROFILE_BOUNDRY) {
+            return new CertificateProfile(certificateProfileId);
+        }
+        return fixedProfileCache.computeIfAbsent(certificateProfileId, id -> {
+            final CertificateProfile certificateProfile = new CertificateProfile(id);
+            compileProfile(idNameMapCacheTemplate.getOrDefault(id, String.valueOf(id)), certificateProfile);
+            return certificateProfile;
+        });
+    }
+
     /** @return the latest object from the cache or a current database representation if no caching is used. */
     public Map<Integer, CertificateProfile> getProfileCache(final EntityManager entityManager) {
         updateProfileCache(entityManager, false);
@@ -296,19 +296,21 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
             LOG.trace(">getCertificateProfile(" + certificateProfileId + ")");
         }
         CertificateProfile returnValue = null;
+        // We need to clone the profile, otherwise the cache contents will be modifyable from the outside
+        final CertificateProfile cprofile;
         if (certificateProfileId < CertificateProfileConstants.FIXED_CERTIFICATEPROFILE_BOUNDRY) {
-            returnValue = new CertificateProfile(certificateProfileId);
+            // Cached, so that the snapshot used when issuing certificates is shared by the clones
+            cprofile = CertificateProfileCache.INSTANCE.getFixedProfile(certificateProfileId);
         } else {
-            // We need to clone the profile, otherwise the cache contents will be modifyable from the outside
-            final CertificateProfile cprofile = CertificateProfileCache.INSTANCE.getProfileCache(entityManager).get(certificateProfileId);
-            try {
-                if (cprofile != null) {
-                    returnValue = cprofile.clone();
-                }
-            } catch (CloneNotSupportedException e) {
-                LOG.error("Should never happen: ", e);
-                throw new IllegalStateException(e);
+            cprofile = CertificateProfileCache.INSTANCE.getProfileCache(entityManager).get(certificateProfileId);
+        }
+        try {
+            if (cprofile != null) {
+                returnValue = cprofile.clone();
             }
+        } catch (CloneNotSupportedException e) {
+            LOG.error("Should never happen: ", e);
+            throw new IllegalStateException(e);
         }
         if (LOG.isTraceEnabled()) {
             LOG.trace("<getCertificateProfile(" + certificateProfileId + "): " + (returnValue == null ? "null" : "not null"));
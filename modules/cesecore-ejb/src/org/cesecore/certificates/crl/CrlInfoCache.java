@@ -0,0 +1,97 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.crl;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.cesecore.config.CesecoreConfiguration;
+
+/**
+ * Per node cache of information about the latest CRLs (number, thisUpdate, nextUpdate and fingerprint), without the CRLs themselves.
+ * <p>
+ * Entries are read from the database again when they are older than {@link CesecoreConfiguration#getCacheCrlInfoTime()}. All entries
+ * are removed when a CRL is stored or removed on this node, which is rare compared to how often the information is read. That no CRL
+ * exists is also cached.
+ */
+public enum CrlInfoCache {
+    INSTANCE;
+
+    private final Map<CrlKey, CachedCrlInfo> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param issuerDn the issuer of the CRL
+     * @param crlPartitionIndex the CRL partition
+     * @param deltaCrl true for the latest delta CRL, false for the latest base CRL
+     * @param loader reads the information from the database if it is not cached, and returns null if no CRL exists
+     * @return information about the latest CRL, or null if no CRL exists
+     */
+    public CRLInfo get(final String issuerDn, final int crlPartitionIndex, final boolean deltaCrl, final Supplier<CRLInfo> loader) {
+        final long cacheTime = CesecoreConfiguration.getCacheCrlInfoTime();
+        if (cacheTime < 0) {
+            return loader.get();
+        }
+        final CrlKey key = new CrlKey(issuerDn, crlPartitionIndex, deltaCrl);
+        final long now = System.currentTimeMillis();
+        final CachedCrlInfo cached = cache.get(key);
+        if (cached != null && cached.lastUpdate + cacheTime >= now) {
+            return cached.crlInfo;
+        }
+        final CRLInfo crlInfo = loader.get();
+        cache.put(key, new CachedCrlInfo(crlInfo, now));
+        return crlInfo;
+    }
+
+    /** Removes all cached information, when a CRL has been stored or removed */
+    public void flush() {
+        cache.clear();
+    }
+
+    private static final class CrlKey {
+        private final String issuerDn;
+        private final int crlPartitionIndex;
+        private final boolean deltaCrl;
+
+        private CrlKey(final String issuerDn, final int crlPartitionIndex, final boolean deltaCrl) {
+            this.issuerDn = issuerDn;
+            this.crlPartitionIndex = crlPartitionIndex;
+            this.deltaCrl = deltaCrl;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof CrlKey)) {
+                return false;
+            }
+            final CrlKey key = (CrlKey) other;
+            return crlPartitionIndex == key.crlPartitionIndex && deltaCrl == key.deltaCrl && issuerDn.equals(key.issuerDn);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(issuerDn, crlPartitionIndex, deltaCrl);
+        }
+    }
+
+    private static final class CachedCrlInfo {
+        private final CRLInfo crlInfo;
+        private final long lastUpdate;
+
+        private CachedCrlInfo(final CRLInfo crlInfo, final long lastUpdate) {
+            this.crlInfo = crlInfo;
+            this.lastUpdate = lastUpdate;
+        }
+    }
+}
@@ -96,8 +96,10 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
                 final String msg = intres.getLocalizedMessage("store.errorstorecrlwrongnumber", Integer.valueOf(number), Integer.valueOf(lastNo), issuerDN);
                 throw new CrlStoreException(msg);
             }
-            CRLData data = new CRLData(incrl, number, crlPartitionIndex, issuerDN, thisUpdate, nextUpdate, cafp, deltaCRLIndicator);
+            CRLData data = new CRLData(incrl, number, crlPartitionIndex, issuerDN, thisUpdate, nextUpdate, cafp, deltaCRLIndicator,
+                    CesecoreConfiguration.isDatabaseCrlCompressed());
             this.entityManager.persist(data);
+            CrlInfoCache.INSTANCE.flush();
             String msg = intres.getLocalizedMessage("store.storecrl", Integer.valueOf(number), data.getFingerprint(), data.getIssuerDN());
             Map<String, Object> details = new LinkedHashMap<>();
             details.put("msg", msg);
@@ -192,23 +194,7 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
             if (log.isTraceEnabled()) {
                 log.trace(">getLastCRLInfoLightWeight(" + issuerDn + ", " + deltaCRL + ")");
             }
-            final int crlNumber = getLastCRLNumber(issuerDn, crlPartitionIndex, deltaCRL);
-            if(crlNumber==0) {
-                return null;
-            }
-
-            final List<Object[]> thisNextUpdateList = findThisUpdateNextUpdateByIssuerDNAndCRLNumber(issuerDn, crlPartitionIndex, crlNumber);
-
-            if (thisNextUpdateList.isEmpty()) {
-                return null;
-            }
-            
-            // Check SQL result set mapping in CRLData class for explanation.
-            final Object[] fields = thisNextUpdateList.get(0);
-            final long thisUpdate = ValueExtractor.extractLongValue(fields[0]);
-            final long nextUpdate = ValueExtractor.extractLongValue(fields[1]);
-
-            return new CRLInfo(issuerDn, crlPartitionIndex, crlNumber, thisUpdate, nextUpdate);
+            return CrlInfoCache.INSTANCE.get(issuerDn, crlPartitionIndex, deltaCRL, () -> findLastCrlMetadata(issuerDn, crlPartitionIndex, deltaCRL));
         } catch (final Exception e) {
             log.info(intres.getLocalizedMessage("store.errorgetcrlinfo", issuerDn));
             throw new EJBException(e);
@@ -219,6 +205,28 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
         }
     }
     
+    /** @return information about the latest CRL, read without the CRL itself, or null if no CRL exists */
+    private CRLInfo findLastCrlMetadata(final String issuerDn, final int crlPartitionIndex, final boolean deltaCRL) {
+        final int crlNumber = getLastCRLNumber(issuerDn, crlPartitionIndex, deltaCRL);
+        if(crlNumber==0) {
+            return null;
+        }
+
+        final List<Object[]> metadataList = findMetadataByIssuerDNAndCRLNumber(issuerDn, crlPartitionIndex, crlNumber);
+
+        if (metadataList.isEmpty()) {
+            return null;
+        }
+
+        // Check SQL result set mapping in CRLData class for explanation.
+        final Object[] fields = metadataList.get(0);
+        final long thisUpdate = ValueExtractor.extractLongValue(fields[0]);
+        final long nextUpdate = ValueExtractor.extractLongValue(fields[1]);
+        final String fingerprint = (String) fields[2];
+
+        return new CRLInfo(issuerDn, crlPartitionIndex, crlNumber, thisUpdate, nextUpdate, fingerprint);
+    }
+
     /**
      * @return true if at least one CRL exists for the given CA.
      */
@@ -282,18 +290,16 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
             log.trace(">getCrlExpireDate(" + issuerDn + ", " + deltaCRL + ")");
         }
         
-        final int crlNumber = getLastCRLNumber(issuerDn, crlPartitionIndex, deltaCRL);
+        final CRLInfo crlInfo = getLastCRLInfoLightWeight(issuerDn, crlPartitionIndex, deltaCRL);
 
-        final Long nextUpdate = findNextUpdateByIssuerDNAndCRLNumber(issuerDn, crlPartitionIndex, crlNumber);
-
-        if (nextUpdate == null) {
+        if (crlInfo == null) {
             return null;
         }
         
         if (log.isTraceEnabled()) {
             log.trace("<getCrlExpireDate()");
         }
-        return new Date(nextUpdate.longValue());
+        return crlInfo.getExpireDate();
     }
     
     @Override
@@ -358,6 +364,7 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
         for(CRLData crlData : crls) {
             this.entityManager.remove(crlData);
         }
+        CrlInfoCache.INSTANCE.flush();
     }
 
     @Override
@@ -369,6 +376,7 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
         final Query query = entityManager.createQuery("DELETE FROM CRLData c WHERE c.fingerprint = :fingerprint");
         query.setParameter("fingerprint", fingerprint);
         query.executeUpdate();
+        CrlInfoCache.INSTANCE.flush();
 
         final String caIdString = (crlMetadata.getIssuerDN() != null ? String.valueOf(crlMetadata.getIssuerDN().hashCode()) : null);
         final String detailsMsg = InternalResources.getInstance().getLocalizedMessage("store.deleteexpiredcrl",
@@ -470,29 +478,7 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
     }
     
     /**
-     * Find a CRL's nextUpdate value by the given issuer, partition index and number.
-     * 
-     * @param issuerDN
-     * @param crlPartitionIndex
-     * @param crlNumber
-     * @return
-     */
-    private Long findNextUpdateByIssuerDNAndCRLNumber(final String issuerDN,
-            final int crlPartitionIndex, final int crlNumber) {
-        final Query query = entityManager
-                .createQuery("SELECT a.nextUpdate FROM CRLData a WHERE a.issuerDN=:issuerDN AND a.crlNumber=:crlNumber AND "
-                        + getCrlPartitionIndexCondition(crlPartitionIndex));
-        query.setParameter("issuerDN", issuerDN);
-        query.setParameter("crlNumber", crlNumber);
-        query.setMaxResults(1);
-        if (crlPartitionIndex > 0) {
-            query.setParameter("crlPartitionIndex", crlPartitionIndex);
-        }
-        return (Long) QueryResultWrapper.getSingleResult(query);
-    }
-    
-    /**
-     * Find a CRL's thisUpdate value by the given issuer, partition index and number.
+     * Find a CRL's thisUpdate, nextUpdate and fingerprint values by the given issuer, partition index and number, without reading the CRL.
      * 
      * @param issuerDN
      * @param crlPartitionIndex
@@ -500,11 +486,11 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
      * @return
      */
     @SuppressWarnings("unchecked")
-    private List<Object[]> findThisUpdateNextUpdateByIssuerDNAndCRLNumber(final String issuerDN,
+    private List<Object[]> findMetadataByIssuerDNAndCRLNumber(final String issuerDN,
             final int crlPartitionIndex, final int crlNumber) {
         final Query query = entityManager
-                .createNativeQuery("SELECT a.thisUpdate, a.nextUpdate FROM CRLData a WHERE a.issuerDN=:issuerDN AND a.crlNumber=:crlNumber AND "
-                        + getCrlPartitionIndexCondition(crlPartitionIndex), "ThisUpdateNextUpdateSelectQuery");
+                .createNativeQuery("SELECT a.thisUpdate, a.nextUpdate, a.fingerprint FROM CRLData a WHERE a.issuerDN=:issuerDN AND a.crlNumber=:crlNumber AND "
+                        + getCrlPartitionIndexCondition(crlPartitionIndex), "CrlMetadataSelectQuery");
         query.setParameter("issuerDN", issuerDN);
         query.setParameter("crlNumber", crlNumber);
         query.setMaxResults(1);
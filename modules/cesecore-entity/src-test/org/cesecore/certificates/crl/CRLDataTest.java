@@ -0,0 +1,94 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.crl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Random;
+
+import org.cesecore.certificates.certificate.CertificateConstants;
+import org.junit.Test;
+
+import com.keyfactor.util.Base64;
+import com.keyfactor.util.CertTools;
+
+/**
+ * Tests of the storage formats of CRLs in CRLData.
+ */
+public class CRLDataTest {
+
+    @Test
+    public void testUncompressed() throws IOException {
+        final byte[] crl = createCrlLikeData();
+        final CRLData crlData = createCrlData(crl, false);
+        assertFalse(crlData.isCompressed());
+        assertEquals(new String(Base64.encode(crl)), crlData.getBase64Crl());
+        assertArrayEquals(crl, crlData.getCRLBytes());
+        assertArrayEquals(crl, readFully(crlData.getCRLInputStream()));
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        final byte[] crl = createCrlLikeData();
+        final CRLData crlData = createCrlData(crl, true);
+        assertTrue(crlData.isCompressed());
+        assertTrue(crlData.getBase64Crl().startsWith(CRLData.DEFLATE_PREFIX));
+        assertTrue("Compressed CRL should be smaller than the DER encoding.", crlData.getBase64Crl().length() < crl.length);
+        assertEquals("Fingerprint should be calculated on the DER encoding.", CertTools.getFingerprintAsString(crl), crlData.getFingerprint());
+        assertArrayEquals(crl, crlData.getCRLBytes());
+        assertArrayEquals(crl, readFully(crlData.getCRLInputStream()));
+    }
+
+    @Test
+    public void testEmptyCrl() {
+        assertArrayEquals(new byte[0], createCrlData(new byte[0], true).getCRLBytes());
+        assertArrayEquals(new byte[0], createCrlData(new byte[0], false).getCRLBytes());
+    }
+
+    private static CRLData createCrlData(final byte[] crl, final boolean compress) {
+        return new CRLData(crl, 1, CertificateConstants.NO_CRL_PARTITION, "CN=CRLDataTest", new Date(), new Date(), "cafp", -1, compress);
+    }
+
+    /** Data resembling CRL entries, with random serial numbers and repeated revocation dates and reasons */
+    private static byte[] createCrlLikeData() {
+        final Random random = new Random(4711);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 10000; i++) {
+            final byte[] serialNumber = new byte[20];
+            random.nextBytes(serialNumber);
+            out.write(0x30);
+            out.write(serialNumber, 0, serialNumber.length);
+            final byte[] dateAndReason = ("2311141322" + (i % 60) + "Z0c0603551d1504030a0101").getBytes();
+            out.write(dateAndReason, 0, dateAndReason.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
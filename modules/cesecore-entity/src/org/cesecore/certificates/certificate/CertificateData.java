@@ -13,6 +13,7 @@
 package org.cesecore.certificates.certificate;
 
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
@@ -753,6 +754,14 @@ public class CertificateData extends BaseCertificateData implements Serializable
         return fingerprint.hashCode() * 11;
     }
 
+    /**
+     * @return something that looks like a normal certificate fingerprint and is unique for each certificate entry, used as fingerprint of
+     * limited entries, i.e. entries for certificates that are only known from a CRL
+     */
+    public static String getLimitedCertificateDataFingerprint(final String issuerDn, final BigInteger serialNumber) {
+        return CertTools.getFingerprintAsString((issuerDn+";"+serialNumber).getBytes());
+    }
+
     //
     // Search functions (deprecated, use methods in CertificateDataSession instead)
     //
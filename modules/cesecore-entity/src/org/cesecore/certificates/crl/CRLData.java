@@ -12,10 +12,16 @@
  *************************************************************************/
 package org.cesecore.certificates.crl;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
 import java.util.Date;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.persistence.ColumnResult;
 import javax.persistence.Entity;
@@ -39,13 +45,18 @@ import com.keyfactor.util.certificate.DnComponents;
 
 /**
  * Representation of a CRL.
+ * <p>
+ * The CRL is stored base64 encoded in the base64Crl column. It can optionally be compressed with deflate before it is base64 encoded,
+ * in which case the column value starts with {@value #DEFLATE_PREFIX}. Both formats are always readable, and the CRL can be read as a
+ * stream with {@link #getCRLInputStream()}.
  */
 @Entity
 @Table(name = "CRLData")
 @SqlResultSetMappings(value = {
-        @SqlResultSetMapping(name = "ThisUpdateNextUpdateSelectQuery", columns = {
+        @SqlResultSetMapping(name = "CrlMetadataSelectQuery", columns = {
                 @ColumnResult(name = "thisUpdate"),
-                @ColumnResult(name = "nextUpdate")}),})
+                @ColumnResult(name = "nextUpdate"),
+                @ColumnResult(name = "fingerprint")}),})
 public class CRLData extends ProtectedData implements Serializable {
 
     private static final long serialVersionUID = 5542295476157001912L;
@@ -54,6 +65,9 @@ public class CRLData extends ProtectedData implements Serializable {
 
     private static final int LATEST_PROTECT_VERSION = 2;
 
+    /** Prefix of the base64Crl column when the CRL is compressed. Never part of a base64 encoding. */
+    public static final String DEFLATE_PREFIX = "deflate:";
+
     private int cRLNumber;
     private int deltaCRLIndicator;
     private Integer crlPartitionIndex; // Since EJBCA 7.1.0
@@ -79,8 +93,17 @@ public class CRLData extends ProtectedData implements Serializable {
      *            -1 for a normal CRL and 1 for a deltaCRL
      */
     public CRLData(byte[] incrl, int number, int crlPartitionIndex, String issuerDN, Date thisUpdate, Date nextUpdate, String cafingerprint, int deltaCRLIndicator) {
-        String b64Crl = new String(Base64.encode(incrl));
-        setBase64Crl(b64Crl);
+        this(incrl, number, crlPartitionIndex, issuerDN, thisUpdate, nextUpdate, cafingerprint, deltaCRLIndicator, false);
+    }
+
+    /**
+     * Entity holding info about a CRL, see {@link #CRLData(byte[], int, int, String, Date, Date, String, int)}.
+     *
+     * @param compress true if the CRL should be stored compressed. Compressed CRLs can not be read by versions without support for it.
+     */
+    public CRLData(byte[] incrl, int number, int crlPartitionIndex, String issuerDN, Date thisUpdate, Date nextUpdate, String cafingerprint,
+            int deltaCRLIndicator, boolean compress) {
+        setCRLBytes(incrl, compress);
         String fp = CertTools.getFingerprintAsString(incrl);
         setFingerprint(fp);
         // Make sure names are always looking the same
@@ -238,8 +261,8 @@ public class CRLData extends ProtectedData implements Serializable {
     @Transient
     public X509CRL getCRL() {
         try {
-            return CertTools.getCRLfromByteArray(Base64.decode(this.base64Crl.getBytes()));
-        } catch (CRLException ce) {
+            return CertTools.getCRLfromByteArray(getCRLBytes());
+        } catch (CRLException | UncheckedIOException ce) {
             log.error("Can't decode CRL.", ce);
         }
         return null;
@@ -247,16 +270,97 @@ public class CRLData extends ProtectedData implements Serializable {
 
     public void setCRL(X509CRL incrl) {
         try {
-            String b64Crl = new String(Base64.encode((incrl).getEncoded()));
-            setBase64Crl(b64Crl);
+            setCRLBytes(incrl.getEncoded(), isCompressed());
         } catch (CRLException ce) {
             log.error("Can't extract DER encoded CRL.", ce);
         }
     }
 
+    /**
+     * @return the DER encoded CRL
+     * @throws UncheckedIOException if a compressed CRL can not be decompressed
+     */
     @Transient
     public byte[] getCRLBytes() {
-        return Base64.decode(this.base64Crl.getBytes());
+        final boolean compressed = isCompressed();
+        // Base64 encodes 3 bytes in 4 characters, and CRLs typically compress to less than half of their size
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(compressed ? base64Crl.length() * 3 / 2 : base64Crl.length() * 3 / 4);
+        final byte[] buffer = new byte[8192];
+        try (final InputStream in = getCRLInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't decompress CRL with fingerprint " + getFingerprint(), e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the DER encoded CRL as a stream, which is decoded (and decompressed) as it is read, without creating intermediate copies of
+     * the whole CRL.
+     *
+     * @return stream with the DER encoded CRL
+     */
+    @Transient
+    public InputStream getCRLInputStream() {
+        final boolean compressed = isCompressed();
+        // The MIME decoder ignores the line breaks inserted by Base64.encode
+        final InputStream decoded = java.util.Base64.getMimeDecoder().wrap(new StringInputStream(base64Crl, compressed ? DEFLATE_PREFIX.length() : 0));
+        return compressed ? new InflaterInputStream(decoded) : decoded;
+    }
+
+    /** @return true if the CRL is stored compressed */
+    @Transient
+    public boolean isCompressed() {
+        return base64Crl != null && base64Crl.startsWith(DEFLATE_PREFIX);
+    }
+
+    private void setCRLBytes(final byte[] incrl, final boolean compress) {
+        if (!compress) {
+            setBase64Crl(new String(Base64.encode(incrl)));
+            return;
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(incrl.length / 2);
+        try (final DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(incrl);
+        } catch (IOException e) {
+            // Not thrown when writing to a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+        setBase64Crl(DEFLATE_PREFIX + new String(Base64.encode(compressed.toByteArray(), false)));
+    }
+
+    /** Reads the characters of a string with only ASCII characters as bytes, starting at an offset */
+    private static final class StringInputStream extends InputStream {
+        private final String string;
+        private int position;
+
+        private StringInputStream(final String string, final int offset) {
+            this.string = string;
+            this.position = offset;
+        }
+
+        @Override
+        public int read() {
+            return position < string.length() ? string.charAt(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= string.length()) {
+                return -1;
+            }
+            final int count = Math.min(len, string.length() - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) string.charAt(position++);
+            }
+            return count;
+        }
     }
 
     public void setIssuer(String dn) {
@@ -43,12 +43,17 @@ import org.cesecore.dbprotection.ProtectionStringBuilder;
 @Table(name = "OcspResponseData", indexes = { 
         @Index(columnList = "caId", name = "ocspresponsedata_idx1"),
         @Index(columnList = "serialNumber", name = "ocspresponsedata_idx2"),
-        @Index(columnList = "producedAt", name = "ocspresponsedata_idx3")})
+        @Index(columnList = "producedAt", name = "ocspresponsedata_idx3"),
+        @Index(columnList = "nextUpdate", name = "ocspresponsedata_idx4")})
 @NamedQueries({ 
         @NamedQuery(name = "findOcspDataByCaId", query = "SELECT a FROM OcspResponseData a WHERE a.caId = :caId"),
         @NamedQuery(name = "findOcspDataById", query = "SELECT a FROM OcspResponseData a WHERE a.id = :id"),
         @NamedQuery(name = "findOcspDataBySerialNumber", query = "SELECT a FROM OcspResponseData a WHERE a.serialNumber = :serialNumber"),
         @NamedQuery(name = "findOcspDataByCaIdSerialNumber", query = "SELECT a FROM OcspResponseData a WHERE a.caId = :caId AND a.serialNumber = :serialNumber ORDER BY a.producedAt DESC"),
+        // Responses of a CA expiring in the given time window, unless a response has already been stored that expires later
+        @NamedQuery(name = OcspResponseData.FIND_OCSP_DATA_TO_REFRESH_BY_CAID, query = "SELECT a FROM OcspResponseData a WHERE a.caId = :caId "
+                + "AND a.nextUpdate > :now AND a.nextUpdate <= :refreshTime AND NOT EXISTS (SELECT b.id FROM OcspResponseData b "
+                + "WHERE b.caId = a.caId AND b.serialNumber = a.serialNumber AND b.nextUpdate > :refreshTime) ORDER BY a.nextUpdate"),
         @NamedQuery(name = "deleteOcspDataByCaId", query = "DELETE FROM OcspResponseData a WHERE a.caId = :caId"),
         @NamedQuery(name = "deleteOcspDataBySerialNumber", query = "DELETE FROM OcspResponseData a WHERE a.serialNumber = :serialNumber"),
         @NamedQuery(name = "deleteOcspDataByCaIdSerialNumber", query = "DELETE FROM OcspResponseData a WHERE a.caId = :caId AND a.serialNumber = :serialNumber"), })
@@ -114,6 +119,7 @@ import org.cesecore.dbprotection.ProtectionStringBuilder;
 public class OcspResponseData extends ProtectedData implements Serializable {
 
     public static final String FIND_EXPIRING_OCPS_DATA_BY_CAID = "OcspResponseData.findExpiringOcpsDataByCaId";
+    public static final String FIND_OCSP_DATA_TO_REFRESH_BY_CAID = "OcspResponseData.findOcspDataToRefreshByCaId";
     public static final String DELETE_OLD_OCSP_DATA_BY_CAID = "OcspResponseData.deleteOldOcspDataByCaId";
     public static final String DELETE_OLD_OCSP_DATA = "OcspResponseData.deleteOldOcspData";
 
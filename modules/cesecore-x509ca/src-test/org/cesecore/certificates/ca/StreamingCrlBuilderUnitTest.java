@@ -0,0 +1,121 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRL;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.ContentVerifierProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.keyfactor.util.CertTools;
+import com.keyfactor.util.CryptoProviderTools;
+
+/**
+ * Tests that StreamingCrlBuilder produces the same CRLs as the BouncyCastle CRL builder.
+ */
+public class StreamingCrlBuilderUnitTest {
+
+    private static final X500Name ISSUER = new X500Name("CN=StreamingCrlBuilderUnitTest,O=Test");
+
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA", BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(1024);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    @Test
+    public void testSameEncodingAsBouncyCastle() throws Exception {
+        final Date thisUpdate = new Date(1700000000000L);
+        final Date nextUpdate = new Date(thisUpdate.getTime() + 86400000L);
+        final X509v2CRLBuilder expectedBuilder = new X509v2CRLBuilder(ISSUER, thisUpdate);
+        expectedBuilder.setNextUpdate(nextUpdate);
+        final StreamingCrlBuilder streamingBuilder = new StreamingCrlBuilder(ISSUER, thisUpdate);
+        streamingBuilder.setNextUpdate(nextUpdate);
+        for (int i = 0; i < 5000; i++) {
+            final BigInteger serialNumber = BigInteger.valueOf(1000000007L * i);
+            // A year beyond 2049 is encoded as GeneralizedTime
+            final Date revocationDate = new Date(i % 100 == 0 ? 2600000000000L + i : thisUpdate.getTime() - i * 1000L);
+            final int reason = i % 11 == 7 ? CRLReason.unspecified : i % 11;
+            final Date invalidityDate = i % 3 == 0 ? new Date(revocationDate.getTime() - 3600000L) : null;
+            if (invalidityDate != null) {
+                expectedBuilder.addCRLEntry(serialNumber, revocationDate, reason, invalidityDate);
+            } else {
+                expectedBuilder.addCRLEntry(serialNumber, revocationDate, reason);
+            }
+            streamingBuilder.addCRLEntry(serialNumber, revocationDate, reason, invalidityDate);
+        }
+        expectedBuilder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(4711)));
+        streamingBuilder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(4711)));
+        assertEquals(5000, streamingBuilder.getNumberOfEntries());
+        // RSA PKCS#1 v1.5 signatures are deterministic, so the whole CRLs can be compared
+        final X509CRLHolder expected = expectedBuilder.build(createSigner());
+        final X509CRLHolder crl = streamingBuilder.build(createSigner());
+        assertArrayEquals("The CRL should be encoded exactly as by X509v2CRLBuilder.", expected.getEncoded(), crl.getEncoded());
+        assertTrue(streamingBuilder.isSignatureValid(crl, createVerifier(keyPair)));
+        final X509CRL x509crl = CertTools.getCRLfromByteArray(crl.getEncoded());
+        assertEquals(5000, x509crl.getRevokedCertificates().size());
+    }
+
+    @Test
+    public void testEmptyCrl() throws Exception {
+        final Date thisUpdate = new Date(1700000000000L);
+        final X509v2CRLBuilder expectedBuilder = new X509v2CRLBuilder(ISSUER, thisUpdate);
+        final StreamingCrlBuilder streamingBuilder = new StreamingCrlBuilder(ISSUER, thisUpdate);
+        final X509CRLHolder expected = expectedBuilder.build(createSigner());
+        final X509CRLHolder crl = streamingBuilder.build(createSigner());
+        assertArrayEquals(expected.getEncoded(), crl.getEncoded());
+        assertTrue(streamingBuilder.isSignatureValid(crl, createVerifier(keyPair)));
+    }
+
+    @Test
+    public void testSignatureWithOtherKeyIsInvalid() throws Exception {
+        final StreamingCrlBuilder streamingBuilder = new StreamingCrlBuilder(ISSUER, new Date());
+        streamingBuilder.addCRLEntry(BigInteger.TEN, new Date(), CRLReason.keyCompromise, null);
+        final X509CRLHolder crl = streamingBuilder.build(createSigner());
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA", BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(1024);
+        assertFalse(streamingBuilder.isSignatureValid(crl, createVerifier(keyPairGenerator.generateKeyPair())));
+    }
+
+    private static ContentSigner createSigner() throws Exception {
+        return new JcaContentSignerBuilder("SHA256WithRSA").setProvider(BouncyCastleProvider.PROVIDER_NAME).build(keyPair.getPrivate());
+    }
+
+    private static ContentVerifierProvider createVerifier(final KeyPair verifyKeyPair) throws Exception {
+        return new JcaContentVerifierProviderBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME).build(verifyKeyPair.getPublic());
+    }
+}
@@ -125,12 +125,14 @@ import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.certificates.certificate.CertificateCreateException;
 import org.cesecore.certificates.certificate.IllegalKeyException;
 import org.cesecore.certificates.certificate.certextensions.AvailableCustomCertificateExtensionsConfiguration;
+import org.cesecore.certificates.certificate.certextensions.CertificateExtension;
 import org.cesecore.certificates.certificate.certextensions.CertificateExtensionException;
 import org.cesecore.certificates.certificate.request.PKCS10RequestMessage;
 import org.cesecore.certificates.certificate.request.RequestMessage;
 import org.cesecore.certificates.certificateprofile.CertificatePolicy;
 import org.cesecore.certificates.certificateprofile.CertificateProfile;
 import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.certificateprofile.CompiledCertificateProfile;
 import org.cesecore.certificates.certificatetransparency.CertificateTransparencyFactory;
 import org.cesecore.certificates.crl.RevokedCertInfo;
 import org.cesecore.certificates.endentity.EndEntityConstants;
@@ -502,6 +504,44 @@ public class X509CAUnitTest extends X509CAUnitTestBase {
         assertEquals(StringTools.KEY_SEQUENCE_FORMAT_NUMERIC, caToken2.getKeySequenceFormat());
     }
 
+    /**
+     * Fixed profiles are cached, and every certificate is issued with a clone of the cached profile (see CertificateProfileCache),
+     * so the encoded values of static extensions are created by the first issuance and reused by the following ones.
+     */
+    @Test
+    public void testStaticExtensionValuesReusedWithFixedProfile() throws Exception {
+        final CryptoToken cryptoToken = getNewCryptoToken();
+        final X509CA ca = createTestCA(cryptoToken, CADN);
+        final PublicKey caPublicKey = cryptoToken.getPublicKey(ca.getCAToken().getAliasFromPurpose(CATokenConstants.CAKEYPURPOSE_CERTSIGN));
+        final EndEntityInformation user = new EndEntityInformation("username", "CN=User", 666, null, null, new EndEntityType(EndEntityTypes.ENDUSER), 0, 0,
+                EndEntityConstants.TOKEN_USERGEN, null);
+        final KeyPair keyPair = genTestKeyPair(AlgorithmConstants.SIGALG_SHA256_WITH_RSA);
+        final CertificateProfile fixedProfile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        final CompiledCertificateProfile compiledProfile = fixedProfile.getCompiledProfile();
+        CertificateExtension authorityKeyIdentifier = null;
+        for (final CertificateExtension certExt : compiledProfile.getStandardCertificateExtensions()) {
+            if (Extension.authorityKeyIdentifier.getId().equals(certExt.getOID())) {
+                authorityKeyIdentifier = certExt;
+            }
+        }
+        assertNotNull("Authority key identifier should be used by the profile", authorityKeyIdentifier);
+        // First issuance
+        final CertificateProfile firstProfile = fixedProfile.clone();
+        final X509Certificate firstCert = (X509Certificate) ca.generateCertificate(cryptoToken, user, keyPair.getPublic(), 0, null, "10d", firstProfile,
+                "00000", cceConfig);
+        final byte[] value = firstProfile.getCompiledProfile().getStandardCertificateExtensionValueEncoded(authorityKeyIdentifier, user, ca, firstProfile,
+                keyPair.getPublic(), caPublicKey, null);
+        // Second issuance
+        final CertificateProfile secondProfile = fixedProfile.clone();
+        final X509Certificate secondCert = (X509Certificate) ca.generateCertificate(cryptoToken, user, keyPair.getPublic(), 0, null, "10d", secondProfile,
+                "00000", cceConfig);
+        assertTrue("Clones of the fixed profile should share its snapshot", compiledProfile == secondProfile.getCompiledProfile());
+        assertTrue("The encoded extension value should be reused", value == secondProfile.getCompiledProfile()
+                .getStandardCertificateExtensionValueEncoded(authorityKeyIdentifier, user, ca, secondProfile, keyPair.getPublic(), caPublicKey, null));
+        assertTrue(Arrays.equals(value, ASN1OctetString.getInstance(firstCert.getExtensionValue(Extension.authorityKeyIdentifier.getId())).getOctets()));
+        assertTrue(Arrays.equals(value, ASN1OctetString.getInstance(secondCert.getExtensionValue(Extension.authorityKeyIdentifier.getId())).getOctets()));
+    }
+
     @Test
     public void testExtendedCAServices() throws Exception {
         final CryptoToken cryptoToken = getNewCryptoToken();
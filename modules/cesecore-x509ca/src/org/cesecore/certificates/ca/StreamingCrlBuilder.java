@@ -0,0 +1,290 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ca;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.ContentVerifier;
+import org.bouncycastle.operator.ContentVerifierProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+
+/**
+ * Builds a version 2 CRL like {@link org.bouncycastle.cert.X509v2CRLBuilder}, and produces the same encoding, but with much less memory
+ * for large CRLs.
+ * <p>
+ * X509v2CRLBuilder keeps an ASN.1 object tree for every revoked certificate until the CRL is built, and then encodes it more than once.
+ * This builder DER encodes each revoked certificate as soon as it is added, into a list of fixed size chunks, and streams the
+ * TBSCertList from the chunks into the signer and into the encoded CRL, which is allocated once with its final size.
+ */
+public class StreamingCrlBuilder {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final X500Name issuer;
+    private final Date thisUpdate;
+    private Date nextUpdate = null;
+    private final ExtensionsGenerator extGenerator = new ExtensionsGenerator();
+    private final ChunkedBuffer entries = new ChunkedBuffer();
+    private long numberOfEntries = 0;
+    private byte[] tbsCertListHeader = null;
+    private byte[] tbsCertListTrailer = null;
+
+    /**
+     * @param issuer the issuer of the CRL
+     * @param thisUpdate the thisUpdate of the CRL
+     */
+    public StreamingCrlBuilder(final X500Name issuer, final Date thisUpdate) {
+        this.issuer = issuer;
+        this.thisUpdate = thisUpdate;
+    }
+
+    /** @see org.bouncycastle.cert.X509v2CRLBuilder#setNextUpdate(Date) */
+    public StreamingCrlBuilder setNextUpdate(final Date nextUpdate) {
+        this.nextUpdate = nextUpdate;
+        return this;
+    }
+
+    /** @see org.bouncycastle.cert.X509v2CRLBuilder#addExtension(ASN1ObjectIdentifier, boolean, ASN1Encodable) */
+    public StreamingCrlBuilder addExtension(final ASN1ObjectIdentifier oid, final boolean isCritical, final ASN1Encodable value) throws IOException {
+        extGenerator.addExtension(oid, isCritical, value);
+        return this;
+    }
+
+    /**
+     * Adds a revoked certificate, see {@link org.bouncycastle.cert.X509v2CRLBuilder#addCRLEntry(BigInteger, Date, int, Date)}.
+     *
+     * @param userCertificateSerial serial number of the revoked certificate
+     * @param revocationDate date of revocation
+     * @param reason the reason code, as indicated in CRLReason, i.e CRLReason.keyCompromise, or 0 if not to be used.
+     * @param invalidityDate the invalidity date, or null if not to be used.
+     */
+    public StreamingCrlBuilder addCRLEntry(final BigInteger userCertificateSerial, final Date revocationDate, final int reason, final Date invalidityDate)
+            throws IOException {
+        final ASN1EncodableVector entry = new ASN1EncodableVector(3);
+        entry.add(new ASN1Integer(userCertificateSerial));
+        entry.add(new Time(revocationDate));
+        if (reason != 0 || invalidityDate != null) {
+            final ASN1EncodableVector entryExtensions = new ASN1EncodableVector(2);
+            if (reason != 0) {
+                entryExtensions.add(new DERSequence(new ASN1Encodable[] { Extension.reasonCode,
+                        new DEROctetString(CRLReason.lookup(reason).getEncoded()) }));
+            }
+            if (invalidityDate != null) {
+                entryExtensions.add(new DERSequence(new ASN1Encodable[] { Extension.invalidityDate,
+                        new DEROctetString(new ASN1GeneralizedTime(invalidityDate).getEncoded()) }));
+            }
+            entry.add(new DERSequence(entryExtensions));
+        }
+        new DERSequence(entry).encodeTo(entries, ASN1Encoding.DER);
+        numberOfEntries++;
+        return this;
+    }
+
+    /** @return the number of revoked certificates added so far */
+    public long getNumberOfEntries() {
+        return numberOfEntries;
+    }
+
+    /**
+     * Signs the CRL. The builder should not be modified after this.
+     *
+     * @param signer the signer of the CRL
+     * @return the CRL, which is parsed lazily by BouncyCastle, so the revoked certificates are not decoded unless they are accessed.
+     */
+    public X509CRLHolder build(final ContentSigner signer) throws IOException {
+        final byte[] algorithmIdentifier = signer.getAlgorithmIdentifier().getEncoded(ASN1Encoding.DER);
+        prepareTbsCertList(algorithmIdentifier);
+        try (final OutputStream signerOut = signer.getOutputStream()) {
+            writeTbsCertList(signerOut);
+        }
+        final byte[] signature = new DERBitString(signer.getSignature()).getEncoded(ASN1Encoding.DER);
+        final long tbsLength = getTbsCertListLength();
+        final long contentLength = tbsLength + algorithmIdentifier.length + signature.length;
+        final byte[] header = encodeHeader(0x30, contentLength);
+        if (header.length + contentLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("CRL is too large to be encoded, " + (header.length + contentLength) + " bytes.");
+        }
+        final byte[] encoded = new byte[(int) (header.length + contentLength)];
+        final ArrayOutputStream out = new ArrayOutputStream(encoded);
+        out.write(header);
+        writeTbsCertList(out);
+        out.write(algorithmIdentifier);
+        out.write(signature);
+        return new X509CRLHolder(encoded);
+    }
+
+    /**
+     * Verifies the signature of the CRL built by {@link #build(ContentSigner)}, by streaming the TBSCertList into the verifier again,
+     * instead of encoding the parsed CRL as {@link X509CRLHolder#isSignatureValid(ContentVerifierProvider)} does.
+     *
+     * @param crl the CRL returned by build
+     * @param verifierProvider the provider of the verifier of the CRL signature
+     * @return true if the signature is valid
+     */
+    public boolean isSignatureValid(final X509CRLHolder crl, final ContentVerifierProvider verifierProvider) throws OperatorCreationException, IOException {
+        if (tbsCertListHeader == null) {
+            throw new IllegalStateException("The CRL has not been built yet.");
+        }
+        final ContentVerifier verifier = verifierProvider.get(crl.toASN1Structure().getSignatureAlgorithm());
+        try (final OutputStream verifierOut = verifier.getOutputStream()) {
+            writeTbsCertList(verifierOut);
+        }
+        return verifier.verify(crl.toASN1Structure().getSignature().getOctets());
+    }
+
+    /** Encodes everything in the TBSCertList before and after the revoked certificates, which are not encoded again */
+    private void prepareTbsCertList(final byte[] algorithmIdentifier) throws IOException {
+        final ChunkedBuffer before = new ChunkedBuffer();
+        new ASN1Integer(1).encodeTo(before, ASN1Encoding.DER);
+        before.write(algorithmIdentifier);
+        issuer.encodeTo(before, ASN1Encoding.DER);
+        new Time(thisUpdate).encodeTo(before, ASN1Encoding.DER);
+        if (nextUpdate != null) {
+            new Time(nextUpdate).encodeTo(before, ASN1Encoding.DER);
+        }
+        if (numberOfEntries > 0) {
+            before.write(encodeHeader(0x30, entries.size()));
+        }
+        tbsCertListTrailer = extGenerator.isEmpty() ? new byte[0]
+                : new DERTaggedObject(true, 0, extGenerator.generate()).getEncoded(ASN1Encoding.DER);
+        final long contentLength = before.size() + entries.size() + tbsCertListTrailer.length;
+        final byte[] sequenceHeader = encodeHeader(0x30, contentLength);
+        tbsCertListHeader = new byte[(int) (sequenceHeader.length + before.size())];
+        System.arraycopy(sequenceHeader, 0, tbsCertListHeader, 0, sequenceHeader.length);
+        before.writeTo(new ArrayOutputStream(tbsCertListHeader, sequenceHeader.length));
+    }
+
+    private long getTbsCertListLength() {
+        return tbsCertListHeader.length + entries.size() + tbsCertListTrailer.length;
+    }
+
+    private void writeTbsCertList(final OutputStream out) throws IOException {
+        out.write(tbsCertListHeader);
+        entries.writeTo(out);
+        out.write(tbsCertListTrailer);
+    }
+
+    /** @return the DER identifier and length octets of a constructed value with the given tag and content length */
+    private static byte[] encodeHeader(final int tag, final long length) {
+        if (length < 128) {
+            return new byte[] { (byte) tag, (byte) length };
+        }
+        int size = 0;
+        for (long value = length; value != 0; value >>>= 8) {
+            size++;
+        }
+        final byte[] header = new byte[2 + size];
+        header[0] = (byte) tag;
+        header[1] = (byte) (0x80 | size);
+        for (int i = 0; i < size; i++) {
+            header[header.length - 1 - i] = (byte) (length >>> (8 * i));
+        }
+        return header;
+    }
+
+    /** Growable buffer that never copies what has already been written */
+    private static final class ChunkedBuffer extends OutputStream {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private byte[] current = null;
+        private int position = 0;
+        private long size = 0;
+
+        @Override
+        public void write(final int b) {
+            if (current == null || position == current.length) {
+                addChunk();
+            }
+            current[position++] = (byte) b;
+            size++;
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) {
+            while (len > 0) {
+                if (current == null || position == current.length) {
+                    addChunk();
+                }
+                final int count = Math.min(len, current.length - position);
+                System.arraycopy(b, off, current, position, count);
+                position += count;
+                off += count;
+                len -= count;
+                size += count;
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        void writeTo(final OutputStream out) throws IOException {
+            for (final byte[] chunk : chunks) {
+                out.write(chunk, 0, chunk == current ? position : chunk.length);
+            }
+        }
+
+        private void addChunk() {
+            current = new byte[CHUNK_SIZE];
+            chunks.add(current);
+            position = 0;
+        }
+    }
+
+    /** Writes into a pre-allocated array */
+    private static final class ArrayOutputStream extends OutputStream {
+        private final byte[] array;
+        private int position;
+
+        ArrayOutputStream(final byte[] array) {
+            this(array, 0);
+        }
+
+        ArrayOutputStream(final byte[] array, final int position) {
+            this.array = array;
+            this.position = position;
+        }
+
+        @Override
+        public void write(final int b) {
+            array[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            System.arraycopy(b, off, array, position, len);
+            position += len;
+        }
+    }
+}
@@ -86,11 +86,9 @@ import org.bouncycastle.asn1.x509.KeyUsage;
 import org.bouncycastle.asn1.x509.SubjectAltPublicKeyInfo;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
-import org.bouncycastle.cert.CertException;
 import org.bouncycastle.cert.CertIOException;
 import org.bouncycastle.cert.X509CRLHolder;
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.X509v2CRLBuilder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
@@ -127,11 +125,11 @@ import org.cesecore.certificates.certificate.IncompletelyIssuedCertificateInfo;
 import org.cesecore.certificates.certificate.certextensions.AvailableCustomCertificateExtensionsConfiguration;
 import org.cesecore.certificates.certificate.certextensions.CertificateExtension;
 import org.cesecore.certificates.certificate.certextensions.CertificateExtensionException;
-import org.cesecore.certificates.certificate.certextensions.CertificateExtensionFactory;
 import org.cesecore.certificates.certificate.certextensions.CustomCertificateExtension;
 import org.cesecore.certificates.certificate.request.RequestMessage;
 import org.cesecore.certificates.certificateprofile.CertificatePolicy;
 import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CompiledCertificateProfile;
 import org.cesecore.certificates.certificatetransparency.CTLogException;
 import org.cesecore.certificates.certificatetransparency.CTLogInfo;
 import org.cesecore.certificates.certificatetransparency.CertificateTransparency;
@@ -1267,20 +1265,17 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         final RequestMessage request = pkSelector.getRequestMessage();
         final PublicKey alternativePublicKey = pkSelector.getAlternativePublicKey();
 
-        // ECA-11391 and "Forbid encryption usage for ECC keys" flag in Certificate Profile allow creating certificates
-        // using the same Certificate Profile (relevant key usages) where for example both RSA and ECDSA key algorithms are selected in the profile.
-        if (publicKey.getAlgorithm().equals(AlgorithmConstants.KEYALGORITHM_ECDSA) && certProfile.getKeyUsageForbidEncryptionUsageForECC()) {
-            certProfile.setKeyUsage(CertificateConstants.KEYENCIPHERMENT, false);
-            certProfile.setKeyUsage(CertificateConstants.DATAENCIPHERMENT, false);
-        }
+        // Values of the certificate profile are read from its immutable snapshot, which is shared by all certificates issued with the
+        // cached profile. The KeyUsage extension takes care of the "Forbid encryption usage for ECC keys" flag (ECA-11391).
+        final CompiledCertificateProfile compiledProfile = certProfile.getCompiledProfile();
 
         certProfile.verifyKey(publicKey);
 
         final String sigAlg;
-        if (certProfile.getSignatureAlgorithm() == null) {
+        if (compiledProfile.getSignatureAlgorithm() == null) {
             sigAlg = getCAToken().getSignatureAlgorithm();
         } else {
-            sigAlg = certProfile.getSignatureAlgorithm();
+            sigAlg = compiledProfile.getSignatureAlgorithm();
         }
         // Check that the signature algorithm is one of the allowed ones
         if (!StringTools.containsCaseInsensitive(AlgorithmConstants.AVAILABLE_SIGALGS, sigAlg)) {
@@ -1288,7 +1283,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
             throw new InvalidAlgorithmException(msg);
         }
         // Check if this is a root CA we are creating
-        final boolean isRootCA = certProfile.getType() == CertificateConstants.CERTTYPE_ROOTCA;
+        final boolean isRootCA = compiledProfile.getType() == CertificateConstants.CERTTYPE_ROOTCA;
 
         final boolean useNextCACert = getUseNextCACert(request);
         final X509Certificate cacert = (X509Certificate) (useNextCACert ? getRolloverCertificateChain().get(0) : getCACertificate());
@@ -1304,7 +1299,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         final BigInteger serno;
         {
             
-            if (certProfile.getAllowCertSerialNumberOverride()) {
+            if (compiledProfile.getAllowCertSerialNumberOverride()) {
                 if (ei != null && ei.certificateSerialNumber()!=null) {
                     serno = ei.certificateSerialNumber();
                 } else {
@@ -1331,41 +1326,35 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
 
         // Make sure no forbidden characters exist in the DN, see ECA-9984 for more info.
         String dn = StringTools.strip(subject.getCertificateDN());
-        if (certProfile.getUseSubjectDNSubSet()) {
+        if (compiledProfile.getUseSubjectDNSubSet()) {
             dn = certProfile.createSubjectDNSubSet(dn);
         }
-        if (certProfile.getUseCNPostfix()) {
-            dn = CertTools.insertCNPostfix(dn, certProfile.getCNPostfix(), nameStyle);
+        if (compiledProfile.getUseCNPostfix()) {
+            dn = CertTools.insertCNPostfix(dn, compiledProfile.getCNPostfix(), nameStyle);
         }
 
         // Will we use LDAP DN order (CN first) or X500 DN order (CN last) for the subject DN
         final boolean ldapdnorder;
-        if ((!getUseLdapDNOrder()) || (!certProfile.getUseLdapDnOrder())) {
+        if ((!getUseLdapDNOrder()) || (!compiledProfile.getUseLdapDnOrder())) {
             ldapdnorder = false;
         } else {
             ldapdnorder = true;
         }
         // If we have a custom order defined in the certificate profile, take this. If this is null or empty it will be ignored
-        String[] customDNOrder = null;
-        if (certProfile.getUseCustomDnOrder()) {
-            final ArrayList<String> order = certProfile.getCustomDnOrder();
-            if (order != null && !order.isEmpty()) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Using Custom DN order: "+order);
-                }
-                customDNOrder = order.toArray(new String[0]);
-            }
+        final String[] customDNOrder = compiledProfile.getCustomDnOrder();
+        if (customDNOrder != null && log.isDebugEnabled()) {
+            log.debug("Using Custom DN order: " + Arrays.toString(customDNOrder));
         }
-        final boolean applyLdapToCustomOrder = certProfile.getUseCustomDnOrderWithLdap();
+        final boolean applyLdapToCustomOrder = compiledProfile.getUseCustomDnOrderWithLdap();
 
         final X500Name subjectDNName;
-        if (certProfile.getAllowDNOverride() && (request != null) && (request.getRequestX500Name() != null)) {
+        if (compiledProfile.getAllowDNOverride() && (request != null) && (request.getRequestX500Name() != null)) {
             subjectDNName = request.getRequestX500Name();
             if (log.isDebugEnabled()) {
                 log.debug("Using X509Name from request instead of user's registered.");
             }
         } else {
-            if (certProfile.getAllowDNOverrideByEndEntityInformation() && ei!=null && ei.getRawSubjectDn()!=null) {
+            if (compiledProfile.getAllowDNOverrideByEndEntityInformation() && ei!=null && ei.getRawSubjectDn()!=null) {
                 final String stripped = StringTools.strip(ei.getRawSubjectDn());
                 // Since support for multi-value RDNs in EJBCA 7.0.0, see ECA-3934, we don't automatically escape + signs anymore
                 final String emptiesRemoved = DNFieldsUtil.removeAllEmpties(stripped);
@@ -1427,7 +1416,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         final X509v3CertificateBuilder certbuilder = new X509v3CertificateBuilder(issuerDNName, serno, val.getNotBefore(), val.getNotAfter(), subjectDNName, pkinfo);
 
         // Only created and used if Certificate Transparency is enabled
-        final X509v3CertificateBuilder precertbuilder = certProfile.isUseCertificateTransparencyInCerts() ?
+        final X509v3CertificateBuilder precertbuilder = compiledProfile.isUseCertificateTransparencyInCerts() ?
             new X509v3CertificateBuilder(issuerDNName, serno, val.getNotBefore(), val.getNotAfter(), subjectDNName, pkinfo) : null;
 
 
@@ -1436,7 +1425,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         if (cacert != null) {
             GeneralNames altNameGNs = null;
             String altName = subject.getSubjectAltName();
-            if(certProfile.getUseSubjectAltNameSubSet()){
+            if(compiledProfile.getUseSubjectAltNameSubSet()){
                 altName = certProfile.createSubjectAltNameSubSet(altName);
             }
             if (altName != null && altName.length() > 0) {
@@ -1449,7 +1438,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         if (ei != null) {
             final List<String> permittedNC = ei.getNameConstraintsPermitted();
             final List<String> excludedNC = ei.getNameConstraintsExcluded();
-            if (!certProfile.getUseNameConstraints()
+            if (!compiledProfile.getUseNameConstraints()
                     && ((permittedNC != null && !permittedNC.isEmpty()) || (excludedNC != null && !excludedNC.isEmpty()))) {
                 throw new CertificateCreateException(
                         "Tried to issue a certificate with Name Constraints without having enabled NC in the certificate profile.");
@@ -1464,9 +1453,9 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         final ExtensionsGenerator extgen = new ExtensionsGenerator();
         // First we check if there is general extension override, and add all extensions from
         // the request in that case
-        if (certProfile.getAllowExtensionOverride() && extensions != null) {
-            Set<String> overridableExtensionOIDs = certProfile.getOverridableExtensionOIDs();
-            Set<String> nonOverridableExtensionOIDs = certProfile.getNonOverridableExtensionOIDs();
+        if (compiledProfile.getAllowExtensionOverride() && extensions != null) {
+            Set<String> overridableExtensionOIDs = compiledProfile.getOverridableExtensionOIDs();
+            Set<String> nonOverridableExtensionOIDs = compiledProfile.getNonOverridableExtensionOIDs();
             if (!overridableExtensionOIDs.isEmpty() && !nonOverridableExtensionOIDs.isEmpty()) {
                 // If user have set both of these lists, user may not know what he/she has done as it doesn't make sense
                 // hence the result may not be the desired. To get attention to this, log an error
@@ -1505,18 +1494,18 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
 
 
         // Second we see if there is Key usage override
-        if (certProfile.getAllowKeyUsageOverride() && (keyusage >= 0)) {
+        if (compiledProfile.getAllowKeyUsageOverride() && (keyusage >= 0)) {
             if (log.isDebugEnabled()) {
                 log.debug("AllowKeyUsageOverride=true. Using KeyUsage from parameter: " + keyusage);
             }
-            if (certProfile.getUseKeyUsage() && (keyusage >= 0)) {
+            if (compiledProfile.getUseKeyUsage() && (keyusage >= 0)) {
                 final KeyUsage ku = new KeyUsage(keyusage);
                 // We don't want to try to add custom extensions with the same oid if we have already added them
                 // from the request, if AllowExtensionOverride is enabled.
                 // Two extensions with the same oid is not allowed in the standard.
                 if (!extgen.hasExtension(Extension.keyUsage)) {
                     try {
-                        extgen.addExtension(Extension.keyUsage, certProfile.getKeyUsageCritical(), ku);
+                        extgen.addExtension(Extension.keyUsage, compiledProfile.getKeyUsageCritical(), ku);
                     } catch (IOException e) {
                         throw new IllegalStateException("Caught unexpected IOException.", e);
                     }
@@ -1527,18 +1516,17 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         // Third, check for standard Certificate Extensions that should be added.
         // Standard certificate extensions are defined in CertificateProfile and CertificateExtensionFactory
         // and implemented in package org.ejbca.core.model.certextensions.standard
-        final CertificateExtensionFactory fact = CertificateExtensionFactory.getInstance();
-        for (String oid : certProfile.getUsedStandardCertificateExtensions()) {
+        // The extensions are initialized once, in the snapshot of the certificate profile.
+        for (final CertificateExtension certExt : compiledProfile.getStandardCertificateExtensions()) {
             // We don't want to try to add standard extensions with the same oid if we have already added them
             // from the request, if AllowExtensionOverride is enabled.
             // Two extensions with the same oid is not allowed in the standard.
-            if (!extgen.hasExtension(new ASN1ObjectIdentifier(oid))) {
-                final CertificateExtension certExt = fact.getStandardCertificateExtension(oid, certProfile);
-                if (certExt != null) {
-                    final byte[] value = certExt.getValueEncoded(subject, this, certProfile, publicKey, caSigningPackage.getPrimaryPublicKey(), val);
-                    if (value != null) {
-                        extgen.addExtension(new ASN1ObjectIdentifier(certExt.getOID()), certExt.isCriticalFlag(), value);
-                    }
+            final ASN1ObjectIdentifier oid = new ASN1ObjectIdentifier(certExt.getOID());
+            if (!extgen.hasExtension(oid)) {
+                final byte[] value = compiledProfile.getStandardCertificateExtensionValueEncoded(certExt, subject, this, certProfile, publicKey,
+                        caSigningPackage.getPrimaryPublicKey(), val);
+                if (value != null) {
+                    extgen.addExtension(oid, certExt.isCriticalFlag(), value);
                 }
             }
         }
@@ -1559,7 +1547,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         if (subject.getExtendedInformation() != null) {
             requestOids = subject.getExtendedInformation().getExtensionDataOids();
         }
-        for (int id : certProfile.getUsedCertificateExtensions()) {
+        for (int id : compiledProfile.getUsedCertificateExtensions()) {
             final CustomCertificateExtension certExt = cceConfig.getCustomCertificateExtension(id);
             if (certExt != null) {
                 if (certExt.getOID().contains("*")) {
@@ -1715,7 +1703,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         try {
             // Add Certificate Transparency extension. It needs to access the certbuilder and
             // the CA key so it has to be processed here inside X509CA.
-             if (ct != null && certProfile.isUseCertificateTransparencyInCerts() && certGenParams != null) {
+             if (ct != null && compiledProfile.isUseCertificateTransparencyInCerts() && certGenParams != null) {
 
                 // Create CT pre-certificate
                 // A critical extension is added to prevent this cert from being used
@@ -1745,10 +1733,10 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
                 } else {
 
                     final String alternativeSigningAlgorithm;
-                    if (certProfile.getAlternativeSignatureAlgorithm() == null) {
+                    if (compiledProfile.getAlternativeSignatureAlgorithm() == null) {
                         alternativeSigningAlgorithm = getCAToken().getAlternativeSignatureAlgorithm();
                     } else {
-                        alternativeSigningAlgorithm = certProfile.getAlternativeSignatureAlgorithm();
+                        alternativeSigningAlgorithm = compiledProfile.getAlternativeSignatureAlgorithm();
                     }
 
                     final String altProv;
@@ -1811,7 +1799,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
                     if (ct == null) {
                         cause += "CT is not available in this version of EJBCA.";
                     } else {
-                        if (!certProfile.isUseCertificateTransparencyInCerts()) {
+                        if (!compiledProfile.isUseCertificateTransparencyInCerts()) {
                             cause += "CT is not enabled in the certificate profile. ";
                         }
                         if (certGenParams == null) {
@@ -1857,10 +1845,10 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
             certHolder = certbuilder.build(signer);
         } else {
             final String alternativeSigningAlgorithm; 
-            if (certProfile.getAlternativeSignatureAlgorithm() == null) {
+            if (compiledProfile.getAlternativeSignatureAlgorithm() == null) {
                 alternativeSigningAlgorithm = getCAToken().getAlternativeSignatureAlgorithm();
             } else {
-                alternativeSigningAlgorithm = certProfile.getAlternativeSignatureAlgorithm();
+                alternativeSigningAlgorithm = compiledProfile.getAlternativeSignatureAlgorithm();
             }
             
             final String altProv;
@@ -2215,18 +2203,15 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
             }
         }
 
-        final X509v2CRLBuilder crlgen = new X509v2CRLBuilder(issuer, thisUpdate);
+        // Revoked certificates are encoded as they are added, so that large CRLs don't need an ASN.1 object for each of them
+        final StreamingCrlBuilder crlgen = new StreamingCrlBuilder(issuer, thisUpdate);
         crlgen.setNextUpdate(nextUpdate);
         if (certs != null) {
             if (log.isDebugEnabled()) {
                 log.debug("Adding "+certs.size()+" revoked certificates to CRL. Free memory="+Runtime.getRuntime().freeMemory());
             }
             for (final RevokedCertInfo certinfo : certs) {
-                if (certinfo.getInvalidityDate() != null) {
-                    crlgen.addCRLEntry(certinfo.getUserCertificate(), certinfo.getRevocationDate(), certinfo.getReason(), certinfo.getInvalidityDate());
-                } else {
-                    crlgen.addCRLEntry(certinfo.getUserCertificate(), certinfo.getRevocationDate(), certinfo.getReason());
-                }
+                crlgen.addCRLEntry(certinfo.getUserCertificate(), certinfo.getRevocationDate(), certinfo.getReason(), certinfo.getInvalidityDate());
             }
             if (log.isDebugEnabled()) {
                 log.debug("Finished adding "+certs.size()+" revoked certificates to CRL. Free memory="+Runtime.getRuntime().freeMemory());
@@ -2383,7 +2368,7 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         }
         try {
             final ContentVerifierProvider verifier = CertTools.genContentVerifierProvider(verifyKey);
-            if (!crl.isSignatureValid(verifier)) {
+            if (!crlgen.isSignatureValid(crl, verifier)) {
                 if (log.isTraceEnabled()) {
                     log.trace("The public key used to verify the CRL:" + System.lineSeparator() + KeyTools.getAsPem(verifyKey));
                     log.trace("The CRL whose signature could not be verified:" + System.lineSeparator() + KeyTools.getAsPem(crl));
@@ -2396,8 +2381,6 @@ public class X509CAImpl extends CABase implements Serializable, X509CA {
         } catch (OperatorCreationException e) {
             // Very fatal error
             throw new RuntimeException("Can not create Jca content signer: ", e);
-        } catch (CertException e) {
-            throw new SignatureException(e.getMessage(), e);
         }
         if (log.isDebugEnabled()) {
             log.debug("Returning CRL. Free memory="+Runtime.getRuntime().freeMemory());
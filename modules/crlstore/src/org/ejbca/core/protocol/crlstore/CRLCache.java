@@ -13,10 +13,13 @@
 
 package org.ejbca.core.protocol.crlstore;
 
+import java.security.cert.CRLException;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Date;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -25,13 +28,22 @@ import org.cesecore.certificates.ca.internal.CaCertificateCache;
 import org.cesecore.certificates.certificate.HashID;
 import org.cesecore.certificates.crl.CRLInfo;
 import org.cesecore.certificates.crl.CrlStoreSessionLocal;
+import org.cesecore.certificates.util.cert.CrlHeader;
+import org.cesecore.config.CesecoreConfiguration;
 
 import com.keyfactor.util.CertTools;
 
 /**
  * An implementation of this is managing a cache of CRLs. The implementation should be optimized for quick lookups of CRLs that the 
  * VA responder needs to fetch.
- *
+ * <p>
+ * The latest CRL of each issuer, partition and kind (base or delta) is kept in an immutable entry in a concurrent map, so reading a
+ * cached CRL does not take any lock or query the database. When an entry is older than the cache time (crlstore.cachetime), the
+ * first request to see it checks the CRL number in the database, and fetches the CRL again only if a newer one has been stored.
+ * Other requests keep being served the cached CRL meanwhile.
+ * <p>
+ * thisUpdate and nextUpdate are read from the CRL when it is cached, so that they can be returned as HTTP headers without decoding
+ * the CRL on each request.
  */
 public class CRLCache {
 	private static final Logger log = Logger.getLogger(CRLCache.class);
@@ -41,44 +53,89 @@ public class CRLCache {
 	
 	private final CrlStoreSessionLocal crlStoreSession;
 	private final CaCertificateCache certCache;
-	private final Map<Integer, CRLEntity> crls = new HashMap<>();
-	private final Map<Integer, CRLEntity> deltaCrls = new HashMap<>();
-	private class CRLEntity {
-		final CRLInfo crlInfo;
-		final byte[] encoded;
-		/**
-		 * @param crlInfo
-		 * @param encoded
-		 */
-		CRLEntity(CRLInfo crlInfo, byte[] encoded) {
-			super();
-			this.crlInfo = crlInfo;
-			this.encoded = encoded;
+	private final ConcurrentMap<CRLKey, CRLEntity> crls = new ConcurrentHashMap<>();
+
+	/** Identifies the latest CRL of an issuer and partition, ignoring the CRL number. */
+	private static final class CRLKey {
+		final String issuerDN;
+		final int crlPartitionIndex;
+		final boolean isDelta;
+
+		CRLKey(final String issuerDN, final int crlPartitionIndex, final boolean isDelta) {
+			this.issuerDN = issuerDN;
+			this.crlPartitionIndex = crlPartitionIndex;
+			this.isDelta = isDelta;
 		}
 
 		@Override
 		public boolean equals(Object o) {
 			if (o == this)
 				return true;
-			if (!(o instanceof CRLEntity)) {
+			if (!(o instanceof CRLKey)) {
 				return false;
 			}
-			CRLEntity crlEntity = (CRLEntity) o;
-			return Objects.equals(crlInfo.getSubjectDN(), crlEntity.crlInfo.getSubjectDN()) && crlInfo.getCrlPartitionIndex() == crlEntity.crlInfo.getCrlPartitionIndex();
+			CRLKey crlKey = (CRLKey) o;
+			return isDelta == crlKey.isDelta && crlPartitionIndex == crlKey.crlPartitionIndex && Objects.equals(issuerDN, crlKey.issuerDN);
 		}
 
 		@Override
 		public int hashCode() {
-			// Ignore CRL number. Always overwrite cache with latest CRL for the partition.
-			return Objects.hash(crlInfo.getSubjectDN(), crlInfo.getCrlPartitionIndex());
+			return Objects.hash(issuerDN, crlPartitionIndex, isDelta);
+		}
+	}
+
+	/** A CRL returned by the cache, never modified. */
+	public static final class CachedCRL {
+		private static final CachedCRL NONE = new CachedCRL(0, new byte[0], null, null);
+
+		private final int crlNumber;
+		private final byte[] encoded;
+		private final Date thisUpdate;
+		private final Date nextUpdate;
+
+		private CachedCRL(final int crlNumber, final byte[] encoded, final Date thisUpdate, final Date nextUpdate) {
+			this.crlNumber = crlNumber;
+			this.encoded = encoded;
+			this.thisUpdate = thisUpdate;
+			this.nextUpdate = nextUpdate;
 		}
 
+		private static CachedCRL create(final int crlNumber, final byte[] encoded) {
+			if (encoded == null || encoded.length == 0) {
+				return NONE;
+			}
+			try {
+				final CrlHeader crlHeader = CrlHeader.parse(encoded);
+				return new CachedCRL(crlNumber, encoded, crlHeader.getThisUpdate(), crlHeader.getNextUpdate());
+			} catch (CRLException e) {
+				log.info("Could not read the header of CRL with CRL number " + crlNumber + ": " + e.getMessage());
+				return new CachedCRL(crlNumber, encoded, null, null);
+			}
+		}
+
+		/** @return CRL number of the CRL, or 0 if no CRL exists */
+		public int getCrlNumber() { return crlNumber; }
+		/** @return the encoded CRL, empty if no CRL exists. Must not be modified. */
+		public byte[] getEncoded() { return encoded; }
+		/** @return thisUpdate of the CRL, or null if no CRL exists or it could not be read */
+		public Date getThisUpdate() { return thisUpdate; }
+		/** @return nextUpdate of the CRL, or null if it has none, no CRL exists or it could not be read */
+		public Date getNextUpdate() { return nextUpdate; }
+	}
+
+	/** A cached CRL, never modified. The entry is replaced in the map when it has been checked against the database. */
+	private static final class CRLEntity {
+		final CachedCRL crl;
+		/** When the entry was last checked against the database */
+		final long checkedTime;
+		/** Set by the request that checks the entry against the database, so that only one request does it */
+		final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+		CRLEntity(final CachedCRL crl, final long checkedTime) {
+			this.crl = crl;
+			this.checkedTime = checkedTime;
+		}
 	}
-	/** We need an object to synchronize around when rebuilding and reading the cache. When rebuilding the cache no thread
-	 * can be allowed to read the cache, since the cache will be in an inconsistent state. In the normal case we want to use
-	 * as fast objects as possible (HashMap) for reading fast.
-	 */
-	private final Lock rebuildlock = new ReentrantLock();
 
 	 /**
      * @return  {@link CRLCache} for the CA.
@@ -112,9 +169,9 @@ public class CRLCache {
      * @param id The ID of the subject key identifier.
      * @param isDelta true if delta CRL
      * @param crlNumber specific crlNumber of the CRL to be retrieved, when not the latest, or -1 for the latest
-     * @return CRL or null if the CRL does not exist in the cache.
+     * @return the CRL, with an empty encoding if the CRL does not exist.
      */
-	public byte[] findBySubjectKeyIdentifier(HashID id, int crlPartitionIndex, boolean isDelta, int crlNumber) {
+	public CachedCRL findBySubjectKeyIdentifier(HashID id, int crlPartitionIndex, boolean isDelta, int crlNumber) {
 		return findCRL(certCache.findBySubjectKeyIdentifier(id), crlPartitionIndex, isDelta, crlNumber);
 	}
 
@@ -122,58 +179,77 @@ public class CRLCache {
      * @param id The ID of the issuer DN.
      * @param isDelta true if delta CRL
      * @param crlNumber specific crlNumber of the CRL to be retrieved, when not the latest, or -1 for the latest
-     * @return CRL or null if the CRL does not exist in the cache.
+     * @return the CRL, with an empty encoding if the CRL does not exist.
      */
-	public byte[] findByIssuerDN(HashID id, int crlPartitionIndex, boolean isDelta, int crlNumber) {
+	public CachedCRL findByIssuerDN(HashID id, int crlPartitionIndex, boolean isDelta, int crlNumber) {
 		return findCRL(certCache.findLatestBySubjectDN(id), crlPartitionIndex, isDelta, crlNumber);
 	}
 
-	private byte[] findCRL(final X509Certificate caCert, final int crlPartitionIndex, final boolean isDelta, final int crlNumber) {
+	private CachedCRL findCRL(final X509Certificate caCert, final int crlPartitionIndex, final boolean isDelta, final int crlNumber) {
 		if ( caCert==null ) {
 			if (log.isDebugEnabled()) {
 				log.debug("No CA certificate, returning null.");
 			}
-			return new byte[0];
+			return CachedCRL.NONE;
 		}
 		final String issuerDN = CertTools.getSubjectDN(caCert);
-		this.rebuildlock.lock();
-		try {
-			final CRLInfo crlInfo = this.crlStoreSession.getLastCRLInfo(issuerDN, crlPartitionIndex, isDelta);
-			if ( crlInfo==null ) {
+		if (crlNumber > -1) {
+			// Only cache latest CRLs, these should be the ones accessed regularly, and we don't want to fill the cache with old CRLs
+			if (log.isDebugEnabled()) {
+				log.debug("Getting CRL with CRL number "+crlNumber);
+			}
+			return CachedCRL.create(crlNumber, this.crlStoreSession.getCRL(issuerDN, crlPartitionIndex, crlNumber));
+		}
+		final long cacheTime = CesecoreConfiguration.getCacheCrlStoreTime();
+		final CRLKey cacheKey = new CRLKey(issuerDN, crlPartitionIndex, isDelta);
+		final CRLEntity cachedCRL = cacheTime < 0 ? null : this.crls.get(cacheKey);
+		if (cachedCRL != null) {
+			// Serve the cached CRL if it is recent enough, or if another request is already checking if there is a newer one
+			if (System.currentTimeMillis() - cachedCRL.checkedTime < cacheTime || !cachedCRL.refreshing.compareAndSet(false, true)) {
 				if (log.isDebugEnabled()) {
-					log.debug("No CRL found with issuerDN '"+issuerDN+"', returning null.");
+					log.debug("Retrieved CRL (from cache) with issuerDN '"+issuerDN+"', with CRL number "+cachedCRL.crl.getCrlNumber() + " and partition " + crlPartitionIndex);
 				}
-				return new byte[0];
+				return cachedCRL.crl;
 			}
-			final Integer cacheId = new CRLEntity(crlInfo, null).hashCode();
-            final Map<Integer, CRLEntity> usedCrls = isDelta ? this.deltaCrls : this.crls;
-			// If we have not specified a crlNumber we can try to find the latest CRL in the cache
-			if (crlNumber == -1) {
-			    final CRLEntity cachedCRL = usedCrls.get(cacheId);
-			    if ( cachedCRL!=null && !crlInfo.getCreateDate().after(cachedCRL.crlInfo.getCreateDate()) ) {
-			        if (log.isDebugEnabled()) {
-			            log.debug("Retrieved CRL (from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber() + " and partition " + crlInfo.getCrlPartitionIndex());
-			        }
-			        return cachedCRL.encoded;
-			    }
+		}
+		try {
+			final CRLEntity entry = loadCRL(issuerDN, crlPartitionIndex, isDelta, cachedCRL);
+			if (cacheTime >= 0) {
+				this.crls.put(cacheKey, entry);
 			}
-			final CRLEntity entry;
-			if (crlNumber > -1) {
-			    if (log.isDebugEnabled()) {
-			        log.debug("Getting CRL with CRL number "+crlNumber);
-			    }
-			    entry = new CRLEntity( crlInfo, this.crlStoreSession.getCRL(issuerDN, crlPartitionIndex, crlNumber) );
-			} else {
-			    entry = new CRLEntity( crlInfo, this.crlStoreSession.getLastCRL(issuerDN, crlPartitionIndex, isDelta) );
-			    // Only cache latest CRLs, these should be the ones accessed regularly, and we don't want to fill the cache with old CRLs
-	            usedCrls.put(cacheId, entry);
+			return entry.crl;
+		} finally {
+			if (cachedCRL != null) {
+				// Let another request try again if this one failed
+				cachedCRL.refreshing.set(false);
 			}
+		}
+	}
+
+	/**
+	 * Reads the latest CRL from the database, unless it is the one that is already cached.
+	 * @param cachedCRL the currently cached CRL or null
+	 */
+	private CRLEntity loadCRL(final String issuerDN, final int crlPartitionIndex, final boolean isDelta, final CRLEntity cachedCRL) {
+		final long now = System.currentTimeMillis();
+		final CRLInfo crlInfo = this.crlStoreSession.getLastCRLInfoLightWeight(issuerDN, crlPartitionIndex, isDelta);
+		if ( crlInfo==null ) {
 			if (log.isDebugEnabled()) {
-				log.debug("Retrieved CRL (not from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber() + " and partition " + crlInfo.getCrlPartitionIndex());
+				log.debug("No CRL found with issuerDN '"+issuerDN+"', returning null.");
 			}
-			return entry.encoded;
-		} finally {
-			this.rebuildlock.unlock();
+			return new CRLEntity(CachedCRL.NONE, now);
+		}
+		if (cachedCRL != null && cachedCRL.crl.getCrlNumber() == crlInfo.getLastCRLNumber()) {
+			if (log.isDebugEnabled()) {
+				log.debug("Retrieved CRL (from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber() + " and partition " + crlInfo.getCrlPartitionIndex());
+			}
+			return new CRLEntity(cachedCRL.crl, now);
+		}
+		// Fetch the CRL by number, so that the cached CRL and CRL number always match even if a new CRL is stored meanwhile
+		final byte[] encoded = this.crlStoreSession.getCRL(issuerDN, crlPartitionIndex, crlInfo.getLastCRLNumber());
+		if (log.isDebugEnabled()) {
+			log.debug("Retrieved CRL (not from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber() + " and partition " + crlInfo.getCrlPartitionIndex());
 		}
+		return new CRLEntity(CachedCRL.create(crlInfo.getLastCRLNumber(), encoded), now);
 	}
 }
@@ -14,6 +14,7 @@ dependencies {
     compileOnly(libs.bcprov)
     compileOnly(libs.bctls)
     compileOnly(libs.bcutil)
+    compileOnly(libs.caffeine)
     compileOnly(libs.cert.cvc)
     compileOnly(libs.log4j.v12.api)
     compileOnly(libs.commons.lang)
@@ -0,0 +1,203 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.web.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+/**
+ * Tests of conditional and range requests to the certificate and CRL stores.
+ */
+public class ConditionalResponseUnitTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+    private static final String ENTITY_TAG = ConditionalResponse.createEntityTag("4711");
+    private static final Date LAST_MODIFIED = new Date(1700000000000L);
+
+    @Test
+    public void testFullResponse() throws IOException {
+        final ResponseRecorder recorder = new ResponseRecorder();
+        ConditionalResponse.write(mockRequest(new HashMap<>()), recorder.response, CONTENT, ENTITY_TAG, LAST_MODIFIED, new Date(1700086400000L));
+        assertEquals(Integer.valueOf(HttpServletResponse.SC_OK), recorder.status);
+        assertArrayEquals(CONTENT, recorder.body.toByteArray());
+        assertEquals(ENTITY_TAG, recorder.headers.get("ETag"));
+        assertEquals(String.valueOf(LAST_MODIFIED.getTime()), recorder.headers.get("Last-Modified"));
+        assertEquals("1700086400000", recorder.headers.get("Expires"));
+        assertEquals(Integer.valueOf(CONTENT.length), recorder.contentLength);
+    }
+
+    @Test
+    public void testIfNoneMatch() throws IOException {
+        assertTrue(isNotModified("If-None-Match", ENTITY_TAG));
+        assertTrue(isNotModified("If-None-Match", "\"1\", W/" + ENTITY_TAG));
+        assertTrue(isNotModified("If-None-Match", "*"));
+        assertFalse(isNotModified("If-None-Match", "\"4712\""));
+        final ResponseRecorder recorder = new ResponseRecorder();
+        ConditionalResponse.write(mockRequest(headers("If-None-Match", ENTITY_TAG)), recorder.response, CONTENT, ENTITY_TAG, LAST_MODIFIED, null);
+        assertEquals(Integer.valueOf(HttpServletResponse.SC_NOT_MODIFIED), recorder.status);
+        assertEquals(0, recorder.body.size());
+        assertEquals(ENTITY_TAG, recorder.headers.get("ETag"));
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        assertTrue(isNotModified("If-Modified-Since", LAST_MODIFIED.getTime()));
+        assertTrue(isNotModified("If-Modified-Since", LAST_MODIFIED.getTime() + 999));
+        assertFalse(isNotModified("If-Modified-Since", LAST_MODIFIED.getTime() - 1000));
+        // If-None-Match takes precedence
+        final Map<String, Object> headers = headers("If-Modified-Since", LAST_MODIFIED.getTime());
+        headers.put("If-None-Match", "\"4712\"");
+        assertFalse(ConditionalResponse.isNotModified(mockRequest(headers), ENTITY_TAG, LAST_MODIFIED));
+    }
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[] { 2, 5 }, ConditionalResponse.parseRange("bytes=2-5", 10));
+        assertArrayEquals(new long[] { 2, 9 }, ConditionalResponse.parseRange("bytes=2-", 10));
+        assertArrayEquals(new long[] { 2, 9 }, ConditionalResponse.parseRange("bytes=2-100", 10));
+        assertArrayEquals(new long[] { 7, 9 }, ConditionalResponse.parseRange("bytes=-3", 10));
+        assertArrayEquals(new long[] { 0, 9 }, ConditionalResponse.parseRange("bytes=-30", 10));
+        assertNull(ConditionalResponse.parseRange("bytes=10-", 10));
+        assertNull(ConditionalResponse.parseRange("bytes=-0", 10));
+        // Ignored ranges
+        assertEquals(0, ConditionalResponse.parseRange("bytes=0-1,4-5", 10).length);
+        assertEquals(0, ConditionalResponse.parseRange("items=0-1", 10).length);
+        assertEquals(0, ConditionalResponse.parseRange("bytes=5-2", 10).length);
+        assertEquals(0, ConditionalResponse.parseRange("bytes=a-b", 10).length);
+        assertEquals(0, ConditionalResponse.parseRange("bytes=-", 10).length);
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        ResponseRecorder recorder = new ResponseRecorder();
+        ConditionalResponse.write(mockRequest(headers("Range", "bytes=3-5")), recorder.response, CONTENT, ENTITY_TAG, LAST_MODIFIED, null);
+        assertEquals(Integer.valueOf(HttpServletResponse.SC_PARTIAL_CONTENT), recorder.status);
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 3, 6), recorder.body.toByteArray());
+        assertEquals("bytes 3-5/10", recorder.headers.get("Content-Range"));
+        assertEquals(Integer.valueOf(3), recorder.contentLength);
+        // Unsatisfiable
+        recorder = new ResponseRecorder();
+        ConditionalResponse.write(mockRequest(headers("Range", "bytes=20-")), recorder.response, CONTENT, ENTITY_TAG, LAST_MODIFIED, null);
+        assertEquals(Integer.valueOf(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE), recorder.status);
+        assertEquals("bytes */10", recorder.headers.get("Content-Range"));
+        // The client has another version of the content, so the whole content is returned
+        final Map<String, Object> headers = headers("Range", "bytes=3-5");
+        headers.put("If-Range", "\"4710\"");
+        recorder = new ResponseRecorder();
+        ConditionalResponse.write(mockRequest(headers), recorder.response, CONTENT, ENTITY_TAG, LAST_MODIFIED, null);
+        assertEquals(Integer.valueOf(HttpServletResponse.SC_OK), recorder.status);
+        assertArrayEquals(CONTENT, recorder.body.toByteArray());
+        // The client has the current version of the content
+        headers.put("If-Range", ENTITY_TAG);
+        recorder = new ResponseRecorder();
+        ConditionalResponse.write(mockRequest(headers), recorder.response, CONTENT, ENTITY_TAG, LAST_MODIFIED, null);
+        assertEquals(Integer.valueOf(HttpServletResponse.SC_PARTIAL_CONTENT), recorder.status);
+    }
+
+    private static boolean isNotModified(final String name, final Object value) {
+        return ConditionalResponse.isNotModified(mockRequest(headers(name, value)), ENTITY_TAG, LAST_MODIFIED);
+    }
+
+    private static Map<String, Object> headers(final String name, final Object value) {
+        final Map<String, Object> headers = new HashMap<>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    /** Creates a request with the given headers. Date headers are given as Long values. */
+    private static HttpServletRequest mockRequest(final Map<String, Object> headers) {
+        final HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        for (final String name : new String[] { "If-None-Match", "If-Modified-Since", "If-Range", "Range" }) {
+            final Object value = headers.get(name);
+            EasyMock.expect(request.getHeader(name)).andStubReturn(value == null ? null : String.valueOf(value));
+            if (value instanceof Long) {
+                EasyMock.expect(request.getDateHeader(name)).andStubReturn((Long) value);
+            } else if (value != null) {
+                EasyMock.expect(request.getDateHeader(name)).andStubThrow(new IllegalArgumentException("Not a date"));
+            } else {
+                EasyMock.expect(request.getDateHeader(name)).andStubReturn(-1L);
+            }
+        }
+        EasyMock.replay(request);
+        return request;
+    }
+
+    /** Records what is written to a response */
+    private static final class ResponseRecorder {
+        private final Map<String, String> headers = new HashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private Integer status = HttpServletResponse.SC_OK;
+        private Integer contentLength;
+        private final HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+
+        private ResponseRecorder() throws IOException {
+            response.setHeader(EasyMock.anyString(), EasyMock.anyString());
+            EasyMock.expectLastCall().andStubAnswer(() -> {
+                headers.put((String) EasyMock.getCurrentArguments()[0], (String) EasyMock.getCurrentArguments()[1]);
+                return null;
+            });
+            response.setDateHeader(EasyMock.anyString(), EasyMock.anyLong());
+            EasyMock.expectLastCall().andStubAnswer(() -> {
+                headers.put((String) EasyMock.getCurrentArguments()[0], String.valueOf(EasyMock.getCurrentArguments()[1]));
+                return null;
+            });
+            response.setStatus(EasyMock.anyInt());
+            EasyMock.expectLastCall().andStubAnswer(() -> {
+                status = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            });
+            response.sendError(EasyMock.anyInt());
+            EasyMock.expectLastCall().andStubAnswer(() -> {
+                status = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            });
+            response.setContentLength(EasyMock.anyInt());
+            EasyMock.expectLastCall().andStubAnswer(() -> {
+                contentLength = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            });
+            EasyMock.expect(response.getOutputStream()).andStubReturn(new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            });
+            EasyMock.replay(response);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.web.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.cesecore.config.ConfigurationHolder;
+import org.cesecore.config.OcspConfiguration;
+import org.ejbca.core.ejb.ocsp.OcspResponseInformation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.keyfactor.util.CryptoProviderTools;
+
+/**
+ * Unit tests of the in-memory cache of responses to OCSP GET requests.
+ */
+public class OcspGetResponseCacheUnitTest {
+
+    private static KeyPair keyPair;
+
+    private String defaultMaxBytes;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProvider();
+        keyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+    }
+
+    @Before
+    public void before() {
+        defaultMaxBytes = ConfigurationHolder.getString(OcspConfiguration.GET_RESPONSE_CACHE_MAX_BYTES);
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.GET_RESPONSE_CACHE_MAX_BYTES, "1048576");
+        OcspGetResponseCache.INSTANCE.flush();
+    }
+
+    @After
+    public void after() {
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.GET_RESPONSE_CACHE_MAX_BYTES, defaultMaxBytes);
+        OcspGetResponseCache.INSTANCE.flush();
+    }
+
+    @Test
+    public void testOnlyCacheableResponsesAreCached() throws Exception {
+        OcspGetResponseCache.INSTANCE.put("/ocsp/1", createResponse(1, 60000));
+        assertNotNull(OcspGetResponseCache.INSTANCE.get("/ocsp/1"));
+        OcspGetResponseCache.INSTANCE.put("/ocsp/2", createResponse(2, 0));
+        assertNull("A response without max-age should not be cached.", OcspGetResponseCache.INSTANCE.get("/ocsp/2"));
+        OcspGetResponseCache.INSTANCE.put("/ocsp/3", new OcspResponseInformation(new OCSPRespBuilder().build(OCSPRespBuilder.TRY_LATER, null), 60000, null));
+        assertNull("An unsuccessful response should not be cached.", OcspGetResponseCache.INSTANCE.get("/ocsp/3"));
+        assertEquals(1, OcspGetResponseCache.INSTANCE.size());
+    }
+
+    @Test
+    public void testMaxAgeIsReducedByCacheTime() throws Exception {
+        OcspGetResponseCache.INSTANCE.put("/ocsp/1", createResponse(1, 60000));
+        Thread.sleep(50);
+        final long maxAge = OcspGetResponseCache.INSTANCE.get("/ocsp/1").getMaxAge();
+        assertTrue("max-age should be reduced by the time the response has been cached, but was " + maxAge, maxAge > 0 && maxAge <= 59950);
+    }
+
+    @Test
+    public void testInvalidateSerialNumbers() throws Exception {
+        OcspGetResponseCache.INSTANCE.put("/ocsp/1a", createResponse(1, 60000));
+        OcspGetResponseCache.INSTANCE.put("/ocsp/1b", createResponse(1, 60000));
+        OcspGetResponseCache.INSTANCE.put("/ocsp/2", createResponse(2, 60000));
+        OcspGetResponseCache.INSTANCE.put("/ocsp/3", createResponse(3, 60000));
+        OcspGetResponseCache.INSTANCE.invalidateSerialNumber("1");
+        OcspGetResponseCache.INSTANCE.invalidateSerialNumber("3");
+        assertNull("All requests for a revoked certificate should be removed.", OcspGetResponseCache.INSTANCE.get("/ocsp/1a"));
+        assertNull("All requests for a revoked certificate should be removed.", OcspGetResponseCache.INSTANCE.get("/ocsp/1b"));
+        assertNull(OcspGetResponseCache.INSTANCE.get("/ocsp/3"));
+        assertNotNull(OcspGetResponseCache.INSTANCE.get("/ocsp/2"));
+        // A replaced response is indexed by the serial number of the new response only
+        OcspGetResponseCache.INSTANCE.put("/ocsp/2", createResponse(4, 60000));
+        OcspGetResponseCache.INSTANCE.invalidateSerialNumber("2");
+        assertNotNull(OcspGetResponseCache.INSTANCE.get("/ocsp/2"));
+        OcspGetResponseCache.INSTANCE.invalidateSerialNumber("4");
+        assertNull(OcspGetResponseCache.INSTANCE.get("/ocsp/2"));
+        assertEquals(0, OcspGetResponseCache.INSTANCE.size());
+    }
+
+    private OcspResponseInformation createResponse(final long serialNumber, final long maxAge) throws Exception {
+        final CertificateID certificateId = new CertificateID(new CertID(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1),
+                new DEROctetString(new byte[20]), new DEROctetString(new byte[20]), new ASN1Integer(BigInteger.valueOf(serialNumber))));
+        final long now = System.currentTimeMillis();
+        final BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(new RespID(new X500Name("CN=OCSP Signer")));
+        builder.addResponse(certificateId, CertificateStatus.GOOD, new Date(now), new Date(now + 3600000));
+        return new OcspResponseInformation(new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL,
+                builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate()), null, new Date(now))), maxAge, null);
+    }
+}
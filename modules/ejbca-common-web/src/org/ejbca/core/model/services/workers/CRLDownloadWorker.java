@@ -14,13 +14,18 @@ package org.ejbca.core.model.services.workers;
 
 import java.net.URL;
 import java.security.cert.CRLException;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 import org.apache.commons.lang.math.IntRange;
 import org.apache.log4j.Logger;
@@ -30,11 +35,14 @@ import org.cesecore.certificates.ca.CAInfo;
 import org.cesecore.certificates.ca.CaSessionLocal;
 import org.cesecore.certificates.ca.X509CAInfo;
 import org.cesecore.certificates.certificate.CertificateConstants;
+import org.cesecore.certificates.crl.CRLInfo;
 import org.cesecore.certificates.crl.CrlImportException;
 import org.cesecore.certificates.crl.CrlStoreException;
 import org.cesecore.certificates.crl.CrlStoreSessionLocal;
 import org.cesecore.certificates.util.cert.CrlExtensions;
+import org.cesecore.certificates.util.cert.CrlHeader;
 import org.cesecore.util.NetworkTools;
+import org.cesecore.util.NetworkTools.ConditionalDownload;
 import org.cesecore.util.PropertyTools;
 import org.cesecore.util.ValidityDate;
 import org.ejbca.core.ejb.crl.ImportCrlSessionLocal;
@@ -52,6 +60,10 @@ import com.keyfactor.util.CertTools;
  * <p>
  * If the freshest CRL extension is present in a full CRL, the delta CRL will be downloaded and processed as well.
  * <p>
+ * CRLs are downloaded with conditional HTTP requests, so CRLs that have not been modified since they were last downloaded by this node are
+ * not transferred. A downloaded CRL that is not newer than the last known CRL is not decoded or imported. The CRLs of several CAs and CRL
+ * partitions can be downloaded in parallel.
+ * <p>
  * The worker can be configured to not respect the nextUpdate
  *
  * @version $Id$
@@ -62,6 +74,8 @@ public class CRLDownloadWorker extends BaseWorker {
     public static final String PROP_IGNORE_NEXT_UPDATE = "ignoreNextUpdate";
     public static final String PROP_MAX_DOWNLOAD_SIZE = "maxDownloadSize";
     public static final int DEFAULT_MAX_DOWNLOAD_SIZE = 1 * 1024 * 1024;
+    public static final String PROP_DOWNLOAD_THREADS = "downloadThreads";
+    public static final int DEFAULT_DOWNLOAD_THREADS = 1;
 
     @Override
     public void canWorkerRun(Map<Class<?>, Object> ejbs) throws ServiceExecutionFailedException {
@@ -87,9 +101,9 @@ public class CRLDownloadWorker extends BaseWorker {
         if(caIdsToCheck.isEmpty()) {
             return new ServiceExecutionResult(Result.NO_ACTION, "CRL Download Worker " + serviceName + " ran, but has no CAs configured.");
         }
-        // Process all the configured CAs
-        List<String> failedCas = new ArrayList<>();
-        List<String> checkedCas = new ArrayList<>();
+        // Find the CRLs of all the configured CAs
+        final Date now = new Date();
+        final List<CrlDownload> crlDownloads = new ArrayList<>();
         for (final int caId : caIdsToCheck) {
             if (log.isTraceEnabled()) {
                 log.trace("Processing CA with Id " + caId);
@@ -108,30 +122,35 @@ public class CRLDownloadWorker extends BaseWorker {
                     log.info("Invalid HTTP URL '" + cdp + "' in external CDP configured for CA '" + caInfo.getName() + "'. Ignoring CA.");
                     continue;
                 }
-                final Date now = new Date();
-                IntRange crlPartitionIndexes = caInfo.getAllCrlPartitionIndexes();
-                try {
-                    getCrlAndUpdateIfNeeded(caInfo, caCertificate, url, CertificateConstants.NO_CRL_PARTITION, now, crlStoreSession,
-                            importCrlSession);
-                    checkedCas.add(caInfo.getName());
-                } catch (ServiceExecutionFailedException e) {
-                    failedCas.add(caInfo.getName());
-                }
+                crlDownloads.add(new CrlDownload(caInfo, caCertificate, url, CertificateConstants.NO_CRL_PARTITION));
+                final IntRange crlPartitionIndexes = caInfo.getAllCrlPartitionIndexes();
                 if (crlPartitionIndexes != null) {
                     for (int i = crlPartitionIndexes.getMinimumInteger(); i <= crlPartitionIndexes.getMaximumInteger(); i++) {
                         final URL partitionUrl = NetworkTools.getValidHttpUrl(((X509CAInfo) caInfo).getCrlPartitionUrl(cdp, i));
-                        try {
-                            getCrlAndUpdateIfNeeded(caInfo, caCertificate, partitionUrl, i, now, crlStoreSession, importCrlSession);
-                        } catch (ServiceExecutionFailedException e) {
-                            failedCas.add(caInfo.getName());
+                        if (partitionUrl == null) {
+                            log.info("Invalid HTTP URL for CRL partition " + i + " of CA '" + caInfo.getName() + "'. Ignoring CRL partition.");
+                            continue;
                         }
+                        crlDownloads.add(new CrlDownload(caInfo, caCertificate, partitionUrl, i));
                     }
                 }
-               
             } else {
                 log.info("'" + (caInfo != null ? caInfo.getName() : caId) + "' is not an external X509 CA. Ignoring.");
             }
         }
+        // Download and process the CRLs
+        final List<Boolean> results = downloadCrls(crlDownloads, now, crlStoreSession, importCrlSession,
+                (ManagedExecutorService) ejbs.get(ManagedExecutorService.class));
+        List<String> failedCas = new ArrayList<>();
+        List<String> checkedCas = new ArrayList<>();
+        for (int i = 0; i < crlDownloads.size(); i++) {
+            final CrlDownload crlDownload = crlDownloads.get(i);
+            if (!results.get(i)) {
+                failedCas.add(crlDownload.caInfo.getName());
+            } else if (crlDownload.crlPartitionIndex == CertificateConstants.NO_CRL_PARTITION) {
+                checkedCas.add(crlDownload.caInfo.getName());
+            }
+        }
         if (checkedCas.isEmpty()) {
             return new ServiceExecutionResult(Result.NO_ACTION, "CRL Download Worker " + serviceName + " ran, but has no external CAs exist.");
         } else {
@@ -145,6 +164,83 @@ public class CRLDownloadWorker extends BaseWorker {
         }
     }
 
+    /** A CRL of an external CA to download */
+    private static final class CrlDownload {
+        private final CAInfo caInfo;
+        private final X509Certificate caCertificate;
+        private final URL url;
+        private final int crlPartitionIndex;
+
+        private CrlDownload(final CAInfo caInfo, final X509Certificate caCertificate, final URL url, final int crlPartitionIndex) {
+            this.caInfo = caInfo;
+            this.caCertificate = caCertificate;
+            this.url = url;
+            this.crlPartitionIndex = crlPartitionIndex;
+        }
+    }
+
+    /**
+     * Downloads and processes the CRLs, on up to {@link #PROP_DOWNLOAD_THREADS} threads of the managed executor service.
+     *
+     * @param executor the managed executor service of the application server, or null to download the CRLs one at a time
+     * @return for each CRL, in the same order, true if it was downloaded or did not need to be downloaded, and false if it failed
+     */
+    private List<Boolean> downloadCrls(final List<CrlDownload> crlDownloads, final Date now, final CrlStoreSessionLocal crlStoreSession,
+            final ImportCrlSessionLocal importCrlSession, final ExecutorService executor) {
+        final int threads = Math.min(PropertyTools.get(properties, PROP_DOWNLOAD_THREADS, DEFAULT_DOWNLOAD_THREADS), crlDownloads.size());
+        if (threads <= 1 || executor == null) {
+            final List<Boolean> results = new ArrayList<>(crlDownloads.size());
+            for (final CrlDownload crlDownload : crlDownloads) {
+                results.add(downloadCrl(crlDownload, now, crlStoreSession, importCrlSession));
+            }
+            return results;
+        }
+        // Each task downloads the next CRL that no other task has taken, so no more than the configured number of CRLs are downloaded at once
+        final boolean[] downloaded = new boolean[crlDownloads.size()];
+        final AtomicInteger next = new AtomicInteger();
+        final List<Future<?>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                for (int index = next.getAndIncrement(); index < crlDownloads.size(); index = next.getAndIncrement()) {
+                    downloaded[index] = downloadCrl(crlDownloads.get(index), now, crlStoreSession, importCrlSession);
+                }
+            }));
+        }
+        try {
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Failed to download or process CRL.", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            log.info("Interrupted while waiting for CRLs to be downloaded.");
+            Thread.currentThread().interrupt();
+            for (final Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        // A CRL that was not downloaded because its task failed or was interrupted counts as failed
+        final List<Boolean> results = new ArrayList<>(crlDownloads.size());
+        for (final boolean result : downloaded) {
+            results.add(result);
+        }
+        return results;
+    }
+
+    /** @return true if the CRL was downloaded or did not need to be downloaded, false if it failed */
+    private boolean downloadCrl(final CrlDownload crlDownload, final Date now, final CrlStoreSessionLocal crlStoreSession,
+            final ImportCrlSessionLocal importCrlSession) {
+        try {
+            getCrlAndUpdateIfNeeded(crlDownload.caInfo, crlDownload.caCertificate, crlDownload.url, crlDownload.crlPartitionIndex, now,
+                    crlStoreSession, importCrlSession);
+            return true;
+        } catch (ServiceExecutionFailedException e) {
+            return false;
+        }
+    }
+
     /**
      * @throws ServiceExecutionFailedException if the CRL failed to download
      */
@@ -153,31 +249,32 @@ public class CRLDownloadWorker extends BaseWorker {
         try {
             final String issuerDn = CertTools.getSubjectDN(caCertificate);
             final boolean ignoreNextUpdate = PropertyTools.get(properties, PROP_IGNORE_NEXT_UPDATE, false);
-            // Get last known CRL (if any) and check when the next update will be
-            final X509CRL lastFullCrl = getCRLFromBytes(crlStoreSession.getLastCRL(issuerDn, crlPartitionIndex, false));
-            final X509CRL newestFullCrl;
-            if (!ignoreNextUpdate && lastFullCrl != null && now.before(lastFullCrl.getNextUpdate())) {
-                log.info("Next full CRL update for CA '" + caInfo.getName() + "' will be " + ValidityDate.formatAsISO8601(lastFullCrl.getNextUpdate(), null) + ". Skipping download.");
-                newestFullCrl = lastFullCrl;
+            // Get information about the last known CRL (if any) and check when the next update will be
+            final CRLInfo lastFullCrlInfo = crlStoreSession.getLastCRLInfoLightWeight(issuerDn, crlPartitionIndex, false);
+            CrlHeader newestFullCrl = null;
+            if (!ignoreNextUpdate && lastFullCrlInfo != null && now.before(lastFullCrlInfo.getExpireDate())) {
+                log.info("Next full CRL update for CA '" + caInfo.getName() + "' will be " + ValidityDate.formatAsISO8601(lastFullCrlInfo.getExpireDate(), null) + ". Skipping download.");
             } else {
-                final X509CRL downloadedFullCrl = getAndProcessCrl(url, caCertificate, caInfo, importCrlSession, crlPartitionIndex);
-                if (downloadedFullCrl == null) {
-                    newestFullCrl = lastFullCrl;
-                } else {
-                    newestFullCrl = downloadedFullCrl;
+                newestFullCrl = getAndProcessCrl(url, caCertificate, caInfo, importCrlSession, crlPartitionIndex, false, lastFullCrlInfo);
+            }
+            if (newestFullCrl == null && lastFullCrlInfo != null) {
+                // Only the header of the last known CRL is needed. It is kept from the last download, unless the CRL was stored by someone else
+                newestFullCrl = CrlDownloadCache.INSTANCE.getCrlHeader(url.toString(), lastFullCrlInfo.getCreateDate());
+                if (newestFullCrl == null) {
+                    newestFullCrl = getCrlHeader(crlStoreSession.getLastCRL(issuerDn, crlPartitionIndex, false));
                 }
             }
             if (newestFullCrl != null) {
-                final List<String> freshestCdps = CrlExtensions.extractFreshestCrlDistributionPoints(newestFullCrl);
+                final List<String> freshestCdps = CrlExtensions.extractFreshestCrlDistributionPoints(newestFullCrl.getExtensions());
                 if (!freshestCdps.isEmpty()) {
                     // Delta CRLs are used and we might already have a valid one stored
-                    X509CRL lastDeltaCrl = getCRLFromBytes(crlStoreSession.getLastCRL(issuerDn, crlPartitionIndex, true));
-                    if (lastDeltaCrl != null && lastDeltaCrl.getThisUpdate().before(newestFullCrl.getThisUpdate())) {
+                    CRLInfo lastDeltaCrlInfo = crlStoreSession.getLastCRLInfoLightWeight(issuerDn, crlPartitionIndex, true);
+                    if (lastDeltaCrlInfo != null && lastDeltaCrlInfo.getCreateDate().before(newestFullCrl.getThisUpdate())) {
                         // The last known delta CRL info is already included in the latest full CRL, so treat the last delta as non-existent
-                        lastDeltaCrl = null;
+                        lastDeltaCrlInfo = null;
                     }
-                    if (!ignoreNextUpdate && lastDeltaCrl != null && now.before(lastDeltaCrl.getNextUpdate())) {
-                        log.info("Next delta CRL update for CA '" + caInfo.getName() + "' will be " + ValidityDate.formatAsISO8601(lastDeltaCrl.getNextUpdate(), null) + ". Skipping download.");
+                    if (!ignoreNextUpdate && lastDeltaCrlInfo != null && now.before(lastDeltaCrlInfo.getExpireDate())) {
+                        log.info("Next delta CRL update for CA '" + caInfo.getName() + "' will be " + ValidityDate.formatAsISO8601(lastDeltaCrlInfo.getExpireDate(), null) + ". Skipping download.");
                     } else {
                         // Check for and process first delta CRL that can be reached over HTTP (if any)
                         for (final String freshestCdp : freshestCdps) {
@@ -186,10 +283,8 @@ public class CRLDownloadWorker extends BaseWorker {
                                 log.info("Unusable Freshest CDP HTTP URL '" + freshestCdp + "' in CRL. Skipping download.");
                                 continue;
                             }
-                            final X509CRL newDeltaCrl = getAndProcessCrl(freshestCdpUrl, caCertificate, caInfo, importCrlSession, crlPartitionIndex);
-                            if (newDeltaCrl != null) {
-                                break;
-                            }
+                            getAndProcessCrl(freshestCdpUrl, caCertificate, caInfo, importCrlSession, crlPartitionIndex, true, lastDeltaCrlInfo);
+                            break;
                         }
                     }
                 }
@@ -203,37 +298,57 @@ public class CRLDownloadWorker extends BaseWorker {
         } 
     }
 
-    private X509CRL getCRLFromBytes(final byte[] crlBytes) throws CRLException {
+    private CrlHeader getCrlHeader(final byte[] crlBytes) throws CRLException {
         if (crlBytes != null) {
-            return CertTools.getCRLfromByteArray(crlBytes);
+            return CrlHeader.parse(crlBytes);
         }
         return null;
     }
 
-    private X509CRL getAndProcessCrl(final URL cdpUrl, final X509Certificate caCertificate, final CAInfo caInfo,
-                                     final ImportCrlSessionLocal importCrlSession, final int crlPartitionIndex) throws CrlStoreException, CrlImportException, ServiceExecutionFailedException {
+    /**
+     * Downloads a CRL, unless it has not been modified since it was last downloaded, and imports it if it is newer than the last known CRL.
+     *
+     * @param deltaCrl true if the CRL is expected to be a delta CRL
+     * @param lastCrlInfo information about the last known CRL of the same type, or null
+     * @return the header of the downloaded CRL, or null if it was not downloaded because it had not been modified or could not be imported
+     */
+    private CrlHeader getAndProcessCrl(final URL cdpUrl, final X509Certificate caCertificate, final CAInfo caInfo, final ImportCrlSessionLocal importCrlSession,
+            final int crlPartitionIndex, final boolean deltaCrl, final CRLInfo lastCrlInfo) throws CrlStoreException, CrlImportException, ServiceExecutionFailedException {
         final int maxSize = PropertyTools.get(properties, PROP_MAX_DOWNLOAD_SIZE, DEFAULT_MAX_DOWNLOAD_SIZE);
-        X509CRL newCrl = null;
-        final byte[] crlBytesNew = NetworkTools.downloadDataFromUrl(cdpUrl, maxSize);
-        if (crlBytesNew == null) {
+        final String url = cdpUrl.toString();
+        final CrlDownloadCache.Validators validators = lastCrlInfo == null ? null : CrlDownloadCache.INSTANCE.get(url, lastCrlInfo.getCreateDate());
+        final ConditionalDownload download = NetworkTools.downloadDataFromUrlIfModified(cdpUrl, maxSize,
+                validators == null ? null : validators.getEntityTag(), validators == null ? null : validators.getLastModified());
+        if (download == null) {
             String msg = "Unable to download CRL for " + CertTools.getSubjectDN(caCertificate) + "  with url: " + cdpUrl;
             log.warn(msg);
             throw new ServiceExecutionFailedException(msg);
-        } else {
-            try {
-                newCrl = CertTools.getCRLfromByteArray(crlBytesNew);
-                importCrlSession.importCrl(admin, caInfo, crlBytesNew, crlPartitionIndex);
-            } catch (CRLException e) {
-                String msg = "Unable to decode downloaded CRL for '" + caInfo.getSubjectDN() + "'.";
-                log.warn(msg, e);
-                throw new ServiceExecutionFailedException(msg, e);
-            } catch (AuthorizationDeniedException e) {
-                log.error("Internal authentication token was deneied access to importing CRLs or revoking certificates.", e);
-                return null;
+        }
+        if (download.isNotModified()) {
+            log.info("CRL for CA '" + caInfo.getName() + "' at " + cdpUrl + " has not been modified since it was last downloaded. Skipping download.");
+            return null;
+        }
+        final CrlHeader crlHeader;
+        try {
+            // Only read the header, an unchanged CRL does not need to be decoded
+            crlHeader = CrlHeader.parse(download.getData());
+            if (lastCrlInfo != null && crlHeader.isDeltaCrl() == deltaCrl
+                    && !crlHeader.getThisUpdate().after(lastCrlInfo.getCreateDate())) {
+                log.info((crlHeader.isDeltaCrl() ? "Delta" : "Full") + " CRL number " + crlHeader.getCrlNumber() + " for CA '" + caInfo.getName()
+                        + "' is not newer than last known " + (crlHeader.isDeltaCrl() ? "delta" : "full") + " CRL. Ignoring download.");
+            } else {
+                importCrlSession.importCrl(admin, caInfo, download.getData(), crlPartitionIndex);
             }
+        } catch (CRLException e) {
+            String msg = "Unable to decode downloaded CRL for '" + caInfo.getSubjectDN() + "'.";
+            log.warn(msg, e);
+            throw new ServiceExecutionFailedException(msg, e);
+        } catch (AuthorizationDeniedException e) {
+            log.error("Internal authentication token was deneied access to importing CRLs or revoking certificates.", e);
+            return null;
         }
-        return newCrl;
+        CrlDownloadCache.INSTANCE.put(url, download.getEntityTag(), download.getLastModified(), crlHeader);
+        return crlHeader;
     }
 
-
 }
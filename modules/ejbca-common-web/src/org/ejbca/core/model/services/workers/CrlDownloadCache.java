@@ -0,0 +1,95 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.services.workers;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cesecore.certificates.util.cert.CrlHeader;
+
+/**
+ * Per node cache of the HTTP validators (ETag and Last-Modified) and the headers of the CRLs last downloaded by the {@link CRLDownloadWorker},
+ * so that unchanged CRLs can be skipped with conditional requests, without reading the last CRL from the database.
+ * <p>
+ * The validators are only used while the database still holds the CRL they were received with, or a newer one, so a CRL that is removed
+ * from the database is downloaded again.
+ */
+public enum CrlDownloadCache {
+    INSTANCE;
+
+    private final Map<String, Validators> validatorsByUrl = new ConcurrentHashMap<>();
+
+    /**
+     * @param url the URL the CRL was downloaded from
+     * @param lastThisUpdate thisUpdate of the last CRL of the same type in the database
+     * @return the validators received with the last CRL downloaded from the URL, or null if there are none or the CRL is not in the database
+     */
+    public Validators get(final String url, final Date lastThisUpdate) {
+        final Validators validators = validatorsByUrl.get(url);
+        if (validators == null || lastThisUpdate == null || lastThisUpdate.before(validators.getThisUpdate())) {
+            return null;
+        }
+        return validators;
+    }
+
+    /**
+     * @param url the URL the CRL was downloaded from
+     * @param lastThisUpdate thisUpdate of the last CRL of the same type in the database
+     * @return the header of the last CRL downloaded from the URL, or null if there is none or it is not the last CRL in the database
+     */
+    public CrlHeader getCrlHeader(final String url, final Date lastThisUpdate) {
+        final Validators validators = validatorsByUrl.get(url);
+        if (validators == null || lastThisUpdate == null || !lastThisUpdate.equals(validators.getThisUpdate())) {
+            return null;
+        }
+        return validators.getCrlHeader();
+    }
+
+    /**
+     * @param url the URL the CRL was downloaded from
+     * @param entityTag the ETag header received with the CRL, or null
+     * @param lastModified the Last-Modified header received with the CRL, or null
+     * @param crlHeader the header of the downloaded CRL
+     */
+    public void put(final String url, final String entityTag, final String lastModified, final CrlHeader crlHeader) {
+        validatorsByUrl.put(url, new Validators(entityTag, lastModified, crlHeader));
+    }
+
+    /** Removes all validators, so that all CRLs are downloaded again */
+    public void flush() {
+        validatorsByUrl.clear();
+    }
+
+    /** HTTP validators and header of a downloaded CRL */
+    public static final class Validators {
+        private final String entityTag;
+        private final String lastModified;
+        private final CrlHeader crlHeader;
+
+        private Validators(final String entityTag, final String lastModified, final CrlHeader crlHeader) {
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+            this.crlHeader = crlHeader;
+        }
+
+        /** @return the ETag header received with the CRL, or null */
+        public String getEntityTag() { return entityTag; }
+        /** @return the Last-Modified header received with the CRL, or null */
+        public String getLastModified() { return lastModified; }
+        /** @return thisUpdate of the CRL */
+        public Date getThisUpdate() { return crlHeader.getThisUpdate(); }
+        /** @return the header of the CRL */
+        public CrlHeader getCrlHeader() { return crlHeader; }
+    }
+}
@@ -0,0 +1,209 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.web.protocol;
+
+import java.io.IOException;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes certificates and CRLs of the certificate and CRL stores, with support for conditional requests (RFC 7232) and single byte
+ * ranges (RFC 7233), so that clients and caches can revalidate a CRL or certificate, or resume a download, without fetching the whole
+ * object again.
+ */
+public final class ConditionalResponse {
+
+    private static final Logger log = Logger.getLogger(ConditionalResponse.class);
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private ConditionalResponse() {}
+
+    /**
+     * Creates a strong entity tag from a value that identifies the content, such as a CRL number or a certificate fingerprint.
+     *
+     * @param value identifier of the content, must not contain double quotes
+     * @return the quoted entity tag
+     */
+    public static String createEntityTag(final String value) {
+        return '"' + value + '"';
+    }
+
+    /**
+     * Writes the content, a 304 (Not Modified) response if the client already has it, or the requested range of it. The content type
+     * and other headers must be set by the caller before.
+     *
+     * @param req the request
+     * @param resp the response
+     * @param encoded the content
+     * @param entityTag entity tag of the content, see {@link #createEntityTag(String)}, or null
+     * @param lastModified when the content was created, or null
+     * @param expires when the content should no longer be used, or null
+     * @throws IOException if the response could not be written
+     */
+    public static void write(final HttpServletRequest req, final HttpServletResponse resp, final byte[] encoded, final String entityTag,
+            final Date lastModified, final Date expires) throws IOException {
+        if (entityTag != null) {
+            resp.setHeader("ETag", entityTag);
+        }
+        if (lastModified != null) {
+            resp.setDateHeader("Last-Modified", lastModified.getTime());
+        }
+        if (expires != null) {
+            resp.setDateHeader("Expires", expires.getTime());
+        }
+        resp.setHeader("Accept-Ranges", "bytes");
+        if (isNotModified(req, entityTag, lastModified)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Content with entity tag " + entityTag + " was not modified.");
+            }
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        final String range = req.getHeader("Range");
+        if (range != null && isRangeApplicable(req, entityTag, lastModified)) {
+            final long[] byteRange = parseRange(range, encoded.length);
+            if (byteRange == null) {
+                resp.setHeader("Content-Range", "bytes */" + encoded.length);
+                resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (byteRange.length == 2) {
+                final int start = (int) byteRange[0];
+                final int length = (int) (byteRange[1] - byteRange[0] + 1);
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + encoded.length);
+                resp.setContentLength(length);
+                resp.getOutputStream().write(encoded, start, length);
+                return;
+            }
+        }
+        resp.setContentLength(encoded.length);
+        resp.getOutputStream().write(encoded);
+    }
+
+    /**
+     * Checks if the client already has the content. If-None-Match takes precedence over If-Modified-Since, as required by RFC 7232
+     * section 6.
+     *
+     * @param req the request
+     * @param entityTag entity tag of the content, or null
+     * @param lastModified when the content was created, or null
+     * @return true if a 304 (Not Modified) response should be sent
+     */
+    public static boolean isNotModified(final HttpServletRequest req, final String entityTag, final Date lastModified) {
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return entityTag != null && matchesAny(ifNoneMatch, entityTag);
+        }
+        if (lastModified != null) {
+            final long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+            // HTTP dates have a precision of seconds
+            return ifModifiedSince != -1 && lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * A range is only served if the client does not have a different version of the content than the current one (If-Range).
+     */
+    private static boolean isRangeApplicable(final HttpServletRequest req, final String entityTag, final Date lastModified) {
+        final String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            // Strong comparison, weak entity tags never match
+            return entityTag != null && ifRange.trim().equals(entityTag);
+        }
+        final long ifRangeDate = getDateHeader(req, "If-Range");
+        return lastModified != null && ifRangeDate != -1 && lastModified.getTime() / 1000 == ifRangeDate / 1000;
+    }
+
+    /**
+     * Weak comparison of the entity tags in an If-None-Match header, as required by RFC 7232 section 3.2.
+     */
+    private static boolean matchesAny(final String ifNoneMatch, final String entityTag) {
+        final String opaqueTag = StringUtils.removeStart(entityTag, "W/");
+        for (final String tag : StringUtils.split(ifNoneMatch, ',')) {
+            final String trimmedTag = tag.trim();
+            if ("*".equals(trimmedTag) || opaqueTag.equals(StringUtils.removeStart(trimmedTag, "W/"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getDateHeader(final HttpServletRequest req, final String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            // Invalid dates are ignored, as required by RFC 7232
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring invalid " + name + " header: " + req.getHeader(name));
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a Range header. Only single byte ranges are supported, other ranges are ignored and the whole content is served.
+     *
+     * @param range the Range header
+     * @param contentLength length of the content
+     * @return the first and last byte position of the range, an empty array if the range is ignored, or null if it is not satisfiable
+     */
+    static long[] parseRange(final String range, final long contentLength) {
+        final String trimmedRange = range.trim();
+        if (!trimmedRange.startsWith(BYTES_UNIT) || trimmedRange.indexOf(',') != -1) {
+            return new long[0];
+        }
+        final String byteRange = trimmedRange.substring(BYTES_UNIT.length()).trim();
+        final int dash = byteRange.indexOf('-');
+        if (dash == -1) {
+            return new long[0];
+        }
+        final String first = byteRange.substring(0, dash).trim();
+        final String last = byteRange.substring(dash + 1).trim();
+        if (!StringUtils.isNumeric(first) || !StringUtils.isNumeric(last) || (first.isEmpty() && last.isEmpty())) {
+            return new long[0];
+        }
+        try {
+            if (first.isEmpty()) {
+                // Suffix range with the last bytes
+                final long suffixLength = Long.parseLong(last);
+                if (suffixLength == 0 || contentLength == 0) {
+                    return null;
+                }
+                return new long[] { Math.max(0, contentLength - suffixLength), contentLength - 1 };
+            }
+            final long start = Long.parseLong(first);
+            final long end = last.isEmpty() ? contentLength - 1 : Math.min(Long.parseLong(last), contentLength - 1);
+            if (!last.isEmpty() && Long.parseLong(last) < start) {
+                return new long[0];
+            }
+            if (start >= contentLength) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            // Too large to be a position in the content
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.web.protocol;
+
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.cesecore.config.OcspConfiguration;
+import org.ejbca.core.ejb.ocsp.OcspResponseInformation;
+import org.ejbca.util.ExpiringWeightedCache;
+
+/**
+ * Node local, in-memory cache of the encoded responses to OCSP requests sent with HTTP GET (RFC 5019), keyed by the request URI.
+ * <p>
+ * A cached response is served, and conditional requests for it are answered with 304 Not Modified, without parsing the request or
+ * running the response generator. Only responses that HTTP caches are allowed to cache are cached here (a single response with a
+ * nextUpdate and without nonce), and for no longer than HTTP caches are allowed to, i.e. until max-age has passed or nextUpdate,
+ * whichever comes first. A cached response is served with its max-age reduced by the time it has been cached.
+ * <p>
+ * The cache is bounded by the total size of the cached responses in bytes (see {@link OcspConfiguration#getGetResponseCacheMaxBytes()})
+ * and is disabled when the size is 0. Entries are also removed after the maximum cache time (see
+ * {@link OcspConfiguration#getGetResponseCacheMaxTime()}), and when the certificate is revoked on this node. Other nodes in a cluster
+ * are not notified, so the maximum cache time bounds how long they serve a response produced before the revocation.
+ */
+public enum OcspGetResponseCache {
+    INSTANCE;
+
+    private final ExpiringWeightedCache<String, CachedResponse> cache = new ExpiringWeightedCache<>("responses to OCSP GET requests",
+            OcspConfiguration::getGetResponseCacheMaxBytes, OcspConfiguration::getGetResponseCacheMaxTime,
+            (key, value) -> 2 * key.length() + value.responseInformation.getOcspResponse().length, value -> value.expireTime,
+            (key, value) -> value.responseInformation.getSerialNumber());
+
+    /**
+     * @param requestUri the URI of the GET request, which includes the encoded OCSP request
+     * @return the cached response information, with maxAge reduced by the time the response has been cached, or null if there is no
+     * cached response that may still be served.
+     */
+    public OcspResponseInformation get(final String requestUri) {
+        final CachedResponse cachedResponse = cache.get(requestUri);
+        if (cachedResponse == null) {
+            return null;
+        }
+        final OcspResponseInformation responseInformation = cachedResponse.responseInformation;
+        final long age = System.currentTimeMillis() - cachedResponse.cachedTime;
+        return new OcspResponseInformation(responseInformation, Math.max(0, responseInformation.getMaxAge() - age), responseInformation.getSignerCert());
+    }
+
+    /**
+     * Caches the response to a GET request, if HTTP caches are allowed to cache it.
+     *
+     * @param requestUri the URI of the GET request, which includes the encoded OCSP request
+     * @param responseInformation the response to the request
+     */
+    public void put(final String requestUri, final OcspResponseInformation responseInformation) {
+        if (!cache.isEnabled() || responseInformation.getStatus() != OCSPResp.SUCCESSFUL || !responseInformation.shouldAddCacheHeaders()
+                || responseInformation.isExplicitNoCache() || responseInformation.getMaxAge() <= 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        long expireTime = Math.min(responseInformation.getNextUpdate(), now + responseInformation.getMaxAge());
+        final X509Certificate signerCert = responseInformation.getSignerCert();
+        if (signerCert != null) {
+            expireTime = Math.min(expireTime, signerCert.getNotAfter().getTime());
+        }
+        cache.put(requestUri, new CachedResponse(responseInformation, now, expireTime));
+    }
+
+    /**
+     * Removes the cached responses for the certificate with the given serial number, regardless of issuer. Only the responses for that
+     * serial number are visited, not the whole cache.
+     *
+     * @param serialNumber decimal serial number of the certificate
+     */
+    public void invalidateSerialNumber(final String serialNumber) {
+        cache.invalidateSecondaryKey(serialNumber);
+    }
+
+    /** Empties the cache. The configuration is read again the next time the cache is used. */
+    public void flush() {
+        cache.flush();
+    }
+
+    /** @return the number of cached responses (for monitoring and tests) */
+    public long size() {
+        return cache.size();
+    }
+
+    private static final class CachedResponse {
+        private final OcspResponseInformation responseInformation;
+        private final long cachedTime;
+        private final long expireTime;
+
+        private CachedResponse(final OcspResponseInformation responseInformation, final long cachedTime, final long expireTime) {
+            this.responseInformation = responseInformation;
+            this.cachedTime = cachedTime;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToLongFunction;
+
+import org.apache.log4j.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * Node local, in-memory cache that is bounded by the approximate total size of its entries in bytes, and where each entry expires at
+ * a time given by the entry itself, or after a maximum cache time if that is earlier.
+ * <p>
+ * The maximum size and cache time are read from the configuration when the cache is first used, and again after {@link #flush()}.
+ * The cache is disabled when the maximum size is 0.
+ * <p>
+ * Entries can optionally be indexed by a secondary key, such as a certificate serial number, so all entries with that secondary key can be
+ * removed without scanning the cache, see {@link #invalidateSecondaryKey(String)}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class ExpiringWeightedCache<K, V> {
+
+    private static final Logger log = Logger.getLogger(ExpiringWeightedCache.class);
+
+    /** Approximate memory used by each entry in addition to the size given by the weigher (key and value objects, cache node and index) */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final String description;
+    private final LongSupplier maxBytes;
+    private final LongSupplier maxCacheTime;
+    private final ToIntBiFunction<K, V> weigher;
+    private final ToLongFunction<V> expireTime;
+    private final BiFunction<K, V, String> secondaryKey;
+
+    /** The current cache, or null if it has not been created with the current configuration yet */
+    private volatile Store<K, V> store = null;
+    private volatile boolean enabled = true;
+
+    /**
+     * @param description what is cached, used in log messages
+     * @param maxBytes supplies the configured maximum size in bytes, where 0 disables the cache
+     * @param maxCacheTime supplies the configured maximum time in milliseconds to cache an entry, where 0 means no maximum
+     * @param weigher the size in bytes of the data referenced by an entry
+     * @param expireTime the time (as Date.getTime()) when an entry must no longer be served
+     */
+    public ExpiringWeightedCache(final String description, final LongSupplier maxBytes, final LongSupplier maxCacheTime,
+            final ToIntBiFunction<K, V> weigher, final ToLongFunction<V> expireTime) {
+        this(description, maxBytes, maxCacheTime, weigher, expireTime, null);
+    }
+
+    /**
+     * @param description what is cached, used in log messages
+     * @param maxBytes supplies the configured maximum size in bytes, where 0 disables the cache
+     * @param maxCacheTime supplies the configured maximum time in milliseconds to cache an entry, where 0 means no maximum
+     * @param weigher the size in bytes of the data referenced by an entry
+     * @param expireTime the time (as Date.getTime()) when an entry must no longer be served
+     * @param secondaryKey the secondary key of an entry, never null, or null to not index the entries
+     */
+    public ExpiringWeightedCache(final String description, final LongSupplier maxBytes, final LongSupplier maxCacheTime,
+            final ToIntBiFunction<K, V> weigher, final ToLongFunction<V> expireTime, final BiFunction<K, V, String> secondaryKey) {
+        this.description = description;
+        this.maxBytes = maxBytes;
+        this.maxCacheTime = maxCacheTime;
+        this.weigher = weigher;
+        this.expireTime = expireTime;
+        this.secondaryKey = secondaryKey;
+    }
+
+    /** @return true if the cache is enabled by configuration */
+    public boolean isEnabled() {
+        return getStore() != null;
+    }
+
+    /** @return the cached value, or null if there is no cached value that has not expired */
+    public V get(final K key) {
+        final Store<K, V> current = getStore();
+        if (current == null) {
+            return null;
+        }
+        final V value = current.cache.getIfPresent(key);
+        if (value == null || expireTime.applyAsLong(value) <= System.currentTimeMillis()) {
+            return null;
+        }
+        return value;
+    }
+
+    /** Adds or replaces the cached value. A value that has already expired removes the cached value instead. */
+    public void put(final K key, final V value) {
+        final Store<K, V> current = getStore();
+        if (current == null) {
+            return;
+        }
+        if (expireTime.applyAsLong(value) <= System.currentTimeMillis()) {
+            current.cache.invalidate(key);
+            return;
+        }
+        current.cache.put(key, value);
+        if (current.index != null) {
+            // Indexed after the entry is stored, so the removal of a previous entry with the same key can't drop it from the index
+            current.index.compute(secondaryKey.apply(key, value), (indexKey, keys) -> {
+                final Set<K> ret = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                ret.add(key);
+                return ret;
+            });
+        }
+    }
+
+    /** Removes the cached value for a key. */
+    public void invalidate(final K key) {
+        final Store<K, V> current = store;
+        if (current != null) {
+            current.cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Removes all cached entries with the given secondary key. Only the entries with that secondary key are visited.
+     *
+     * @throws IllegalStateException if the cache was created without secondary key
+     */
+    public void invalidateSecondaryKey(final String indexKey) {
+        if (secondaryKey == null) {
+            throw new IllegalStateException("The in-memory cache of " + description + " is not indexed.");
+        }
+        final Store<K, V> current = store;
+        if (current == null) {
+            return;
+        }
+        final Set<K> keys = current.index.remove(indexKey);
+        if (keys != null) {
+            for (final K key : keys) {
+                // The key may have been stored again with another secondary key since it was indexed
+                final V value = current.cache.asMap().get(key);
+                if (value != null && indexKey.equals(secondaryKey.apply(key, value))) {
+                    current.cache.asMap().remove(key, value);
+                }
+            }
+        }
+    }
+
+    /** Removes all cached entries that match the predicate. This scans the whole cache. */
+    public void invalidateIf(final BiPredicate<K, V> predicate) {
+        final Store<K, V> current = store;
+        if (current != null) {
+            current.cache.asMap().entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /** Empties the cache. The configuration is read again the next time the cache is used. */
+    public void flush() {
+        final Store<K, V> current = store;
+        store = null;
+        enabled = true;
+        if (current != null) {
+            current.cache.invalidateAll();
+        }
+    }
+
+    /** @return the number of cached entries (for monitoring and tests) */
+    public long size() {
+        final Store<K, V> current = store;
+        return current == null ? 0 : current.cache.estimatedSize();
+    }
+
+    private Store<K, V> getStore() {
+        Store<K, V> current = store;
+        if (current == null && enabled) {
+            synchronized (this) {
+                current = store;
+                if (current == null && enabled) {
+                    current = createStore();
+                    store = current;
+                    enabled = current != null;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Store<K, V> createStore() {
+        final long maxSize = maxBytes.getAsLong();
+        if (maxSize <= 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("In-memory cache of " + description + " is disabled.");
+            }
+            return null;
+        }
+        final long maxTime = maxCacheTime.getAsLong();
+        if (maxTime > 0) {
+            log.info("Enabling in-memory cache of " + description + " with a maximum size of " + maxSize + " bytes and a maximum cache time of "
+                    + maxTime + " ms.");
+        } else {
+            log.warn("Enabling in-memory cache of " + description + " with a maximum size of " + maxSize + " bytes, without maximum cache time."
+                    + " Entries that are invalidated on another node in a cluster may be served until they expire.");
+        }
+        final ConcurrentMap<String, Set<K>> index = secondaryKey == null ? null : new ConcurrentHashMap<>();
+        final Caffeine<K, V> builder = Caffeine.newBuilder()
+                // Maintenance and removal notifications run on the calling threads instead of the common fork join pool
+                .executor(Runnable::run)
+                .maximumWeight(maxSize)
+                .weigher((K key, V value) -> weigher.applyAsInt(key, value) + ENTRY_OVERHEAD_BYTES)
+                .expireAfter(new Expiry<K, V>() {
+                    @Override
+                    public long expireAfterCreate(final K key, final V value, final long currentTime) {
+                        return getTimeToLiveNanos(value, maxTime);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(final K key, final V value, final long currentTime, final long currentDuration) {
+                        return getTimeToLiveNanos(value, maxTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(final K key, final V value, final long currentTime, final long currentDuration) {
+                        return currentDuration;
+                    }
+                });
+        if (index == null) {
+            return new Store<>(builder.build(), null);
+        }
+        final Store<K, V> ret = new Store<>(index);
+        builder.removalListener((K key, V value, RemovalCause cause) -> {
+            if (key != null && value != null) {
+                removeFromIndex(ret, key, secondaryKey.apply(key, value));
+            }
+        });
+        ret.cache = builder.build();
+        return ret;
+    }
+
+    /** Removes a key from the index, unless the key has been stored again with the same secondary key */
+    private void removeFromIndex(final Store<K, V> current, final K key, final String indexKey) {
+        current.index.computeIfPresent(indexKey, (k, keys) -> {
+            final V value = current.cache.asMap().get(key);
+            if (value == null || !indexKey.equals(secondaryKey.apply(key, value))) {
+                keys.remove(key);
+            }
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private long getTimeToLiveNanos(final V value, final long maxTime) {
+        long timeToLive = expireTime.applyAsLong(value) - System.currentTimeMillis();
+        if (maxTime > 0) {
+            timeToLive = Math.min(timeToLive, maxTime);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeToLive));
+    }
+
+    /** A cache and the index of its entries by secondary key, created together from the configuration */
+    private static final class Store<K, V> {
+        /** Set once when the store is created, before it is published */
+        private Cache<K, V> cache;
+        private final ConcurrentMap<String, Set<K>> index;
+
+        private Store(final Cache<K, V> cache, final ConcurrentMap<String, Set<K>> index) {
+            this.cache = cache;
+            this.index = index;
+        }
+
+        private Store(final ConcurrentMap<String, Set<K>> index) {
+            this(null, index);
+        }
+    }
+}
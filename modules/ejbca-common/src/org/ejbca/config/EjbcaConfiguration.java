@@ -295,6 +295,40 @@ public final class EjbcaConfiguration {
         return getBooleanProperty("publish.parallel.enabled", true);
     }
 
+    /** @return the maximum number of CRLs created at the same time for several CAs and CRL partitions in parallel, or 0 or 1 to create them sequentially. */
+    public static int getCrlGenerationThreads() {
+        return getIntProperty("crlgeneration.parallel.threads", 0);
+    }
+
+    /** @return the maximum number of CRLs created in parallel with the same crypto token. */
+    public static int getCrlGenerationThreadsPerCryptoToken() {
+        return getIntProperty("crlgeneration.parallel.pertoken", 1);
+    }
+
+    /**
+     * @return true if base CRLs should be created from the last base CRL and the revocation information that changed since it was created,
+     * instead of from all revoked certificates of the CA.
+     */
+    public static boolean isCrlGenerationIncremental() {
+        return getBooleanProperty("crlgeneration.incremental.enabled", false);
+    }
+
+    /**
+     * @return the interval in milliseconds in which the first base CRL is always created from all revoked certificates, when base CRLs are
+     * created incrementally, or 0 to never do that.
+     */
+    public static long getCrlGenerationIncrementalFullCrlInterval() {
+        return getLongProperty("crlgeneration.incremental.fullcrlinterval", 86400000L);
+    }
+
+    /**
+     * @return the number of CRL entries whose status is updated in each transaction when a CRL is imported in bulk, or 0 to revoke the
+     * certificates of an imported CRL one at a time.
+     */
+    public static int getCrlImportBulkBatchSize() {
+        return getIntProperty("crlimport.bulk.batchsize", 0);
+    }
+
     /** @return true if TCP keep alive should be used for outgoing peer connections. */
     @Deprecated // EJBCA 6.3.0 safety for the new PeerConnector feature. Remove when default is considered stable.
     public static boolean isPeerSoKeepAlive() {
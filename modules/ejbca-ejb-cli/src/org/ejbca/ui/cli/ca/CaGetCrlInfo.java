@@ -58,17 +58,17 @@ public class CaGetCrlInfo extends BaseCaAdminCommand {
             final CrlStoreSessionRemote crlStoreSessionRemote = EjbRemoteHelper.INSTANCE.getRemoteSession(CrlStoreSessionRemote.class);
             if(allCrlPartitionIndexes == null) {
                 outputCrlHeader(stringBuilder, caInfo);
-                final CRLInfo crlInfo = crlStoreSessionRemote.getLastCRLInfo(caInfo.getSubjectDN(), CertificateConstants.NO_CRL_PARTITION, false);
+                final CRLInfo crlInfo = crlStoreSessionRemote.getLastCRLInfoLightWeight(caInfo.getSubjectDN(), CertificateConstants.NO_CRL_PARTITION, false);
                 outputCrlInfo(stringBuilder, crlInfo, null,false);
-                final CRLInfo deltaCrlInfo = crlStoreSessionRemote.getLastCRLInfo(caInfo.getSubjectDN(), CertificateConstants.NO_CRL_PARTITION, true);
+                final CRLInfo deltaCrlInfo = crlStoreSessionRemote.getLastCRLInfoLightWeight(caInfo.getSubjectDN(), CertificateConstants.NO_CRL_PARTITION, true);
                 outputCrlInfo(stringBuilder, deltaCrlInfo, null,true);
             }
             else {
                 for (int crlPartitionIndex = allCrlPartitionIndexes.getMinimumInteger(); crlPartitionIndex <= allCrlPartitionIndexes.getMaximumInteger(); crlPartitionIndex++) {
                     outputCrlHeader(stringBuilder, caInfo);
-                    final CRLInfo crlInfo = crlStoreSessionRemote.getLastCRLInfo(caInfo.getSubjectDN(), crlPartitionIndex, false);
+                    final CRLInfo crlInfo = crlStoreSessionRemote.getLastCRLInfoLightWeight(caInfo.getSubjectDN(), crlPartitionIndex, false);
                     outputCrlInfo(stringBuilder, crlInfo, crlPartitionIndex, false);
-                    final CRLInfo deltaCrlInfo = crlStoreSessionRemote.getLastCRLInfo(caInfo.getSubjectDN(), crlPartitionIndex, true);
+                    final CRLInfo deltaCrlInfo = crlStoreSessionRemote.getLastCRLInfoLightWeight(caInfo.getSubjectDN(), crlPartitionIndex, true);
                     outputCrlInfo(stringBuilder, deltaCrlInfo, crlPartitionIndex,true);
                     if(crlPartitionIndex < allCrlPartitionIndexes.getMaximumInteger()) {
                         stringBuilder.append(System.getProperty("line.separator"));
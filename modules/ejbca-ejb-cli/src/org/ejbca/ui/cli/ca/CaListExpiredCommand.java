@@ -13,15 +13,13 @@
 
 package org.ejbca.ui.cli.ca;
 
-import java.security.cert.Certificate;
-import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.Date;
 
 import org.apache.log4j.Logger;
+import org.cesecore.certificates.certificate.CertificateInfo;
 import org.cesecore.certificates.certificate.CertificateStoreSessionRemote;
 import org.cesecore.util.EjbRemoteHelper;
-import org.ejbca.cvc.CardVerifiableCertificate;
 import org.ejbca.ui.cli.infrastructure.command.CommandResult;
 import org.ejbca.ui.cli.infrastructure.command.EjbcaCommandBase;
 import org.ejbca.ui.cli.infrastructure.parameter.Parameter;
@@ -30,9 +28,7 @@ import org.ejbca.ui.cli.infrastructure.parameter.enums.MandatoryMode;
 import org.ejbca.ui.cli.infrastructure.parameter.enums.ParameterMode;
 import org.ejbca.ui.cli.infrastructure.parameter.enums.StandaloneMode;
 
-import com.keyfactor.util.CertTools;
 import com.keyfactor.util.CryptoProviderTools;
-import com.keyfactor.util.EJBTools;
 
 /**
  * List certificates that will expire, but is not yet expired, within the given number of days.
@@ -75,30 +71,20 @@ public class CaListExpiredCommand extends EjbcaCommandBase {
         findDate.setTime(findDate.getTime() + millis);
         getLogger().info("Looking for certificates that expire before '" + findDate + "', but that are not expired now ("+new Date()+").");
 
-        for (Certificate cert : getExpiredCerts(findDate)) {
-            Date retDate;
-            if (cert instanceof CardVerifiableCertificate) {
-                try {
-                    retDate = ((CardVerifiableCertificate) cert).getCVCertificate().getCertificateBody().getValidTo();
-                } catch (NoSuchFieldException e) {
-                    throw new IllegalStateException("Dependent library failure.", e);
-                }
-            } else {
-                retDate = ((X509Certificate) cert).getNotAfter();
-            }
-            String subjectDN = CertTools.getSubjectDN(cert);
-            String serNo = CertTools.getSerialNumberAsString(cert);
-            getLogger().info("Certificate with subjectDN '" + subjectDN + "' and serialNumber '" + serNo + "' expires at " + retDate + ".");
+        // Only the certificate information is read, the certificates themselves are not needed
+        for (CertificateInfo certInfo : getExpiredCerts(findDate)) {
+            getLogger().info("Certificate with subjectDN '" + certInfo.getSubjectDN() + "' and serialNumber '" + certInfo.getSerialNumberHex()
+                    + "' expires at " + certInfo.getExpireDate() + ".");
         }
         return CommandResult.SUCCESS;
 
     }
 
-    private Collection<Certificate> getExpiredCerts(Date findDate) {
+    private Collection<CertificateInfo> getExpiredCerts(Date findDate) {
         try {
             getLogger().debug("Looking for cert with expireDate=" + findDate);
-            Collection<Certificate> certs = EJBTools.unwrapCertCollection(EjbRemoteHelper.INSTANCE.getRemoteSession(CertificateStoreSessionRemote.class)
-                    .findCertificatesByExpireTimeWithLimit(findDate));
+            Collection<CertificateInfo> certs = EjbRemoteHelper.INSTANCE.getRemoteSession(CertificateStoreSessionRemote.class)
+                    .findCertificateInfosByExpireTimeWithLimit(findDate);
             getLogger().debug("Found " + certs.size() + " certs.");
             return certs;
         } catch (Exception e) {
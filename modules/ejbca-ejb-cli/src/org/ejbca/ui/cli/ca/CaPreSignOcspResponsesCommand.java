@@ -0,0 +1,124 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.ui.cli.ca;
+
+import org.apache.log4j.Logger;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.ca.CADoesntExistsException;
+import org.cesecore.certificates.ca.CAInfo;
+import org.cesecore.certificates.ca.X509CAInfo;
+import org.cesecore.util.EjbRemoteHelper;
+import org.ejbca.core.ejb.ocsp.OcspPreSigningResult;
+import org.ejbca.core.ejb.ocsp.OcspResponseGeneratorSessionRemote;
+import org.ejbca.ui.cli.infrastructure.command.CommandResult;
+import org.ejbca.ui.cli.infrastructure.parameter.Parameter;
+import org.ejbca.ui.cli.infrastructure.parameter.ParameterContainer;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.MandatoryMode;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.ParameterMode;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.StandaloneMode;
+
+import com.keyfactor.util.CryptoProviderTools;
+
+/**
+ * Pre-produces and stores OCSP responses for all certificates issued by a CA.
+ *
+ */
+public class CaPreSignOcspResponsesCommand extends BaseCaAdminCommand {
+
+    private static final Logger log = Logger.getLogger(CaPreSignOcspResponsesCommand.class);
+
+    private static final String CA_NAME_KEY = "--caname";
+    private static final String RESUME_KEY = "--resume";
+    private static final String MAX_KEY = "--max";
+    private static final String INCLUDE_EXPIRED_KEY = "-includeexpired";
+
+    {
+        registerParameter(new Parameter(CA_NAME_KEY, "CA Name", MandatoryMode.MANDATORY, StandaloneMode.ALLOW, ParameterMode.ARGUMENT,
+                "The name of the CA. Pre-production of OCSP responses must be enabled for the CA."));
+        registerParameter(new Parameter(RESUME_KEY, "Serial number", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.ARGUMENT,
+                "Continue with the certificates after this serial number (decimal), as printed by a previous run."));
+        registerParameter(new Parameter(MAX_KEY, "Certificates", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.ARGUMENT,
+                "The maximum number of certificates to process in this run. Default: all certificates."));
+        registerParameter(new Parameter(INCLUDE_EXPIRED_KEY, "", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.FLAG,
+                "Set to also produce responses for expired certificates."));
+    }
+
+    @Override
+    public String getMainCommand() {
+        return "presignocspresponses";
+    }
+
+    @Override
+    public CommandResult execute(ParameterContainer parameters) {
+        CryptoProviderTools.installBCProvider();
+        final String caName = parameters.get(CA_NAME_KEY);
+        final String resumeAfterSerialNumber = parameters.get(RESUME_KEY);
+        final boolean includeExpired = parameters.get(INCLUDE_EXPIRED_KEY) != null;
+        int maxCertificates = 0;
+        if (parameters.get(MAX_KEY) != null) {
+            try {
+                maxCertificates = Integer.parseInt(parameters.get(MAX_KEY));
+            } catch (NumberFormatException e) {
+                log.error(parameters.get(MAX_KEY) + " was not a number.");
+                return CommandResult.CLI_FAILURE;
+            }
+        }
+        final CAInfo caInfo = getCAInfo(getAuthenticationToken(), caName);
+        if (caInfo == null) {
+            log.error("No CA named " + caName + " exists.");
+            return CommandResult.FUNCTIONAL_FAILURE;
+        }
+        if (!(caInfo instanceof X509CAInfo) || !((X509CAInfo) caInfo).isDoPreProduceOcspResponses()) {
+            log.error("Pre-production of OCSP responses is not enabled for CA " + caName + ".");
+            return CommandResult.FUNCTIONAL_FAILURE;
+        }
+        log.info("Pre-producing OCSP responses for certificates issued by " + caName + ". Progress is written to the server log.");
+        final OcspPreSigningResult result;
+        try {
+            result = EjbRemoteHelper.INSTANCE.getRemoteSession(OcspResponseGeneratorSessionRemote.class).preSignOcspResponses(getAuthenticationToken(),
+                    caInfo.getCAId(), resumeAfterSerialNumber, maxCertificates, includeExpired);
+        } catch (AuthorizationDeniedException e) {
+            log.error("CLI user not authorized to CA " + caName + ".");
+            return CommandResult.AUTHORIZATION_FAILURE;
+        } catch (CADoesntExistsException e) {
+            log.error(e.getMessage());
+            return CommandResult.FUNCTIONAL_FAILURE;
+        }
+        log.info("Processed " + result.getProcessedCount() + " certificates, stored " + result.getStoredCount() + " responses, failed "
+                + result.getFailedCount() + ".");
+        if (!result.isComplete() && result.getLastSerialNumber() != null) {
+            log.info("Not all certificates were processed. Run the command again with " + RESUME_KEY + " " + result.getLastSerialNumber()
+                    + " to continue.");
+        }
+        return result.isComplete() && result.getFailedCount() == 0 ? CommandResult.SUCCESS : CommandResult.FUNCTIONAL_FAILURE;
+    }
+
+    @Override
+    public String getCommandDescription() {
+        return "Pre-produces and stores OCSP responses for all certificates issued by a CA.";
+    }
+
+    @Override
+    public String getFullHelpText() {
+        return getCommandDescription() + " Use this e.g. after enabling pre-production of OCSP responses for a CA with existing certificates."
+                + " The certificates are processed in order of serial number, in batches of ocsp.presigning.batchsize certificates signed by"
+                + " ocsp.presigning.threads threads. A run that is limited or interrupted can be resumed after the last serial number that was printed,"
+                + " or that was written to the server log.";
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return log;
+    }
+}
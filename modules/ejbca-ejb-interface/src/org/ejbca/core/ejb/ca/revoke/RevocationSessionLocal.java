@@ -13,6 +13,7 @@
 
 package org.ejbca.core.ejb.ca.revoke;
 
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -104,4 +105,27 @@ public interface RevocationSessionLocal extends RevocationSession {
      */
     int handleIncompletelyIssuedCertsBatched(final AuthenticationToken admin, final long maxIssuanceTimeMillis, final boolean revokePreCerts) throws AuthorizationDeniedException;
 
+    /**
+     * Performs the actions that follow a revocation, for certificates whose status has been changed without revokeCertificate, such as when
+     * the entries of a CRL are imported in bulk. Pre-produced OCSP responses are removed from memory, and removed from the database and
+     * produced again if the CA pre-produces OCSP responses upon revocation. No CRL is generated, see
+     * {@link #generateCrlUponRevocation(AuthenticationToken, int)}.
+     *
+     * @param admin Administrator performing the operation
+     * @param caId the ID of the CA that issued the certificates
+     * @param serialNumbers serial numbers of the certificates whose status was changed
+     * @throws AuthorizationDeniedException if the administrator is not authorized to the CA
+     */
+    void postRevokeCertificates(AuthenticationToken admin, int caId, Collection<BigInteger> serialNumbers) throws AuthorizationDeniedException;
+
+    /**
+     * Generates a new CRL and delta CRL if the CA is configured to do so upon revocation. Used after
+     * {@link #postRevokeCertificates(AuthenticationToken, int, Collection)}, once for all the certificates.
+     *
+     * @param admin Administrator performing the operation
+     * @param caId the ID of the CA
+     * @throws AuthorizationDeniedException if the administrator is not authorized to the CA
+     */
+    void generateCrlUponRevocation(AuthenticationToken admin, int caId) throws AuthorizationDeniedException;
+
 }
@@ -13,6 +13,7 @@
 package org.ejbca.core.ejb.crl;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.Set;
 
 import javax.ejb.Local;
@@ -83,6 +84,28 @@ public interface PublishingCrlSessionLocal extends PublishingCrlSession {
     boolean createDeltaCrlConditioned(AuthenticationToken admin, int caid, long crloverlaptime)
             throws CryptoTokenOfflineException, CAOfflineException, CADoesntExistsException, AuthorizationDeniedException;
 
+    /**
+     * Creates a CRL for a CRL partition if one is needed, with an instance of the CA that is not shared with other CRL partitions.
+     * Used when CRLs are created in parallel, on threads of the managed executor service.
+     * <p>
+     * Internal method, do not use. Needs to be here for transaction management.
+     *
+     * @return true if a CRL was created, false if no CRL was needed
+     */
+    boolean internalCreateCrlForCrlPartition(AuthenticationToken admin, int caId, int crlPartitionIndex, long addToCrlOverlapTime, CrlCreationParams params)
+            throws CryptoTokenOfflineException, CAOfflineException, CADoesntExistsException, AuthorizationDeniedException;
+
+    /**
+     * Creates a delta CRL for a CRL partition if one is needed, with an instance of the CA that is not shared with other CRL partitions.
+     * Used when delta CRLs are created in parallel, on threads of the managed executor service.
+     * <p>
+     * Internal method, do not use. Needs to be here for transaction management.
+     *
+     * @return true if a delta CRL was created, false if no delta CRL was needed
+     */
+    boolean internalCreateDeltaCrlForCrlPartition(AuthenticationToken admin, int caId, int crlPartitionIndex, Date now, long addToCrlOverlapTime)
+            throws CryptoTokenOfflineException, CAOfflineException, CADoesntExistsException, AuthorizationDeniedException;
+
     /** Internal method, do not use. Needs to be here for transaction management. */
     String internalCreateCRL(AuthenticationToken admin, CA ca, int crlPartitionIndex, CRLInfo lastBaseCrlInfo, final CrlCreationParams params)
             throws CAOfflineException, CryptoTokenOfflineException, AuthorizationDeniedException;
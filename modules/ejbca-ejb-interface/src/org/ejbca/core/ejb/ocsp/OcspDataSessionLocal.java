@@ -12,6 +12,8 @@
  *************************************************************************/
 package org.ejbca.core.ejb.ocsp;
 
+import java.util.List;
+
 import javax.ejb.Local;
 
 import org.cesecore.oscp.OcspResponseData;
@@ -36,6 +38,25 @@ public interface OcspDataSessionLocal extends OcspDataSession {
      * @param ocspResponseData
      */
     void storeOcspData(final OcspResponseData ocspResponseData);
+
+    /**
+     * Saves a batch of OCSP data in the table, in a single transaction. Unlike {@link #storeOcspData(OcspResponseData)} this method
+     * runs synchronously, so the data has been committed when it returns.
+     * @param ocspResponseDataList the responses to store
+     */
+    void storeOcspDataBatch(final List<OcspResponseData> ocspResponseDataList);
+
+    /**
+     * Finds stored responses of a CA that expire within the given time window, and for which no response expiring after
+     * the window has been stored yet. The responses are ordered by nextUpdate, so the responses expiring first are returned first.
+     * 
+     * @param caId of the CA
+     * @param now responses that have already expired at this time are not returned
+     * @param refreshTime end of the time window
+     * @param maxNumberOfResults maximum number of responses to return
+     * @return list of responses, never null
+     */
+    List<OcspResponseData> findOcspDataToRefresh(final Integer caId, final long now, final long refreshTime, final int maxNumberOfResults);
     
     /**
      * Deletes all the OCSP data from table corresponding to serialNumber.
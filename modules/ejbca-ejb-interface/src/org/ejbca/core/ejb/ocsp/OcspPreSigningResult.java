@@ -0,0 +1,74 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.ocsp;
+
+import java.io.Serializable;
+
+/**
+ * Progress of pre-producing OCSP responses for the certificates of a CA in bulk.
+ * 
+ * @see OcspResponseGeneratorSessionLocal#preSignOcspResponses(java.security.cert.X509Certificate, String, int, PresignResponseValidity, boolean, String)
+ */
+public class OcspPreSigningResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String lastSerialNumber;
+    private final int processedCount;
+    private final int storedCount;
+    private final int failedCount;
+    private final boolean complete;
+
+    public OcspPreSigningResult(final String lastSerialNumber, final int processedCount, final int storedCount, final int failedCount,
+            final boolean complete) {
+        this.lastSerialNumber = lastSerialNumber;
+        this.processedCount = processedCount;
+        this.storedCount = storedCount;
+        this.failedCount = failedCount;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the serial number of the last certificate for which the response has been stored, or the serial number the run was resumed
+     *      after if nothing was stored. Pass this to the next run to continue where this run stopped.
+     */
+    public String getLastSerialNumber() {
+        return lastSerialNumber;
+    }
+
+    /** @return the number of certificates that were processed */
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    /** @return the number of responses that were stored */
+    public int getStoredCount() {
+        return storedCount;
+    }
+
+    /** @return the number of certificates for which no response could be produced */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /** @return true if all certificates of the CA have been processed */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "processed=" + processedCount + ", stored=" + storedCount + ", failed=" + failedCount + ", complete=" + complete
+                + ", lastSerialNumber=" + lastSerialNumber;
+    }
+}
@@ -15,6 +15,9 @@ package org.ejbca.core.ejb.ocsp;
 import java.security.cert.X509Certificate;
 
 import org.bouncycastle.cert.ocsp.OCSPException;
+import org.cesecore.authentication.tokens.AuthenticationToken;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.ca.CADoesntExistsException;
 import org.cesecore.certificates.ocsp.exception.MalformedRequestException;
 import org.cesecore.certificates.ocsp.logging.AuditLogger;
 import org.cesecore.certificates.ocsp.logging.TransactionLogger;
@@ -54,4 +57,21 @@ public interface OcspResponseGeneratorSession {
 
     /** Clears CT fail fast cache. If CT is not supported in this build, then it does nothing. */
     void clearCTFailFastCache();
+
+    /**
+     * Pre-produces and stores OCSP responses for the certificates issued by a CA, e.g. after pre-production has been enabled for a CA with
+     * existing certificates. The responses get the configured validity and a CertID with the default hash algorithm. See
+     * {@link OcspResponseGeneratorSessionLocal#preSignOcspResponses(X509Certificate, String, int, PresignResponseValidity, boolean, String)}.
+     *
+     * @param authenticationToken the administrator performing the action
+     * @param caId ID of the CA which signs the OCSP responses
+     * @param resumeAfterSerialNumber the last serial number of a previous run, or null to start with the first certificate
+     * @param maxCertificates the maximum number of certificates to process in this run, or 0 for no limit
+     * @param includeExpiredCertificates to include expired certificates
+     * @return the progress of the run, never null
+     * @throws AuthorizationDeniedException if the administrator is not authorized to the CA
+     * @throws CADoesntExistsException if there is no X.509 CA with a CA certificate with the given ID
+     */
+    OcspPreSigningResult preSignOcspResponses(AuthenticationToken authenticationToken, int caId, String resumeAfterSerialNumber, int maxCertificates,
+            boolean includeExpiredCertificates) throws AuthorizationDeniedException, CADoesntExistsException;
 }
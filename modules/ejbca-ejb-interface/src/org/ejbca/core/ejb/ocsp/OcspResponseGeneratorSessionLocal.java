@@ -36,6 +36,9 @@ public interface OcspResponseGeneratorSessionLocal extends OcspResponseGenerator
     /** @see org.cesecore.certificates.ocsp.cache.OcspRequestSignerStatusCache#flush() */
     void clearOcspRequestSignerRevocationStatusCache();
 
+    /** Empties the in-memory caches of pre-produced OCSP responses and of responses to OCSP GET requests, and reads their configuration again. */
+    void clearOcspResponseDataCache();
+
     /**
      * Pre-produces an OCSP response for the provided CA and serial number. The response will
      * be signed according to current OCSP Key Binding settings and OCSP config if applicable.
@@ -51,4 +54,23 @@ public interface OcspResponseGeneratorSessionLocal extends OcspResponseGenerator
      */
     void preSignOcspResponse(X509Certificate cacert, BigInteger serialNr, PresignResponseValidity presignResponseValidity, boolean includeExpiredCertificates, String certIDHashAlgorithm);
 
+    /**
+     * Pre-produces OCSP responses for the certificates issued by a CA, in the same way as 
+     * {@link #preSignOcspResponse(X509Certificate, BigInteger, PresignResponseValidity, boolean, String)}, but for many certificates at once.
+     * <p>
+     * The certificates are processed in order of serial number, in batches of ocsp.presigning.batchsize certificates. The responses of a 
+     * batch are signed by ocsp.presigning.threads threads in parallel and stored in a single transaction. A run can be limited to a number 
+     * of certificates, and a limited, failed or interrupted run can be resumed by passing the last serial number of the returned result.
+     *
+     * @param cacert of the CA which signs the OCSP responses
+     * @param resumeAfterSerialNumber the last serial number of a previous run, or null to start with the first certificate
+     * @param maxCertificates the maximum number of certificates to process in this run, or 0 for no limit
+     * @param presignResponseValidity causes the validity of the responses to be set to 9999. WARNING: This should only be used in the ETSI EN 319 411-2 and -1 usecase. 
+     * @param includeExpiredCertificates to include expired certificates in presigned OCSP responses
+     * @param certIDHashAlgorithm of the certId
+     * @return the progress of the run, never null
+     */
+    OcspPreSigningResult preSignOcspResponses(X509Certificate cacert, String resumeAfterSerialNumber, int maxCertificates,
+            PresignResponseValidity presignResponseValidity, boolean includeExpiredCertificates, String certIDHashAlgorithm);
+
 }
@@ -45,6 +45,7 @@ public class OcspResponseInformation implements Serializable {
     private Long nextUpdate = null;
     private Long thisUpdate = null;
     private String responseHeader = null;
+    private String serialNumber = null;
     private X509Certificate signerCert = null;
 
     public OcspResponseInformation(OCSPResp ocspResponse, long maxAge, X509Certificate signerCert) throws OCSPException {
@@ -90,6 +91,7 @@ public class OcspResponseInformation implements Serializable {
             } else {
                 nextUpdate = singleResponses[0].getNextUpdate().getTime();
                 thisUpdate = singleResponses[0].getThisUpdate().getTime();
+                serialNumber = singleResponses[0].getCertID().getSerialNumber().toString();
                 try {
                     responseHeader = new String(Hex.encode(MessageDigest.getInstance("SHA-1", BouncyCastleProvider.PROVIDER_NAME).digest(this.ocspResponse)));
                 } catch (NoSuchProviderException e) {
@@ -104,6 +106,23 @@ public class OcspResponseInformation implements Serializable {
         }
     }
 
+    /**
+     * Creates a copy of already parsed response information with a different maxAge and signer certificate. Used when serving
+     * cached responses, so the encoded response does not have to be parsed again.
+     */
+    public OcspResponseInformation(final OcspResponseInformation responseInformation, final long maxAge, final X509Certificate signerCert) {
+        this.ocspResponse = responseInformation.ocspResponse;
+        this.status = responseInformation.status;
+        this.addCacheHeaders = responseInformation.addCacheHeaders;
+        this.explicitNoCache = responseInformation.explicitNoCache;
+        this.nextUpdate = responseInformation.nextUpdate;
+        this.thisUpdate = responseInformation.thisUpdate;
+        this.responseHeader = responseInformation.responseHeader;
+        this.serialNumber = responseInformation.serialNumber;
+        this.maxAge = maxAge;
+        this.signerCert = signerCert;
+    }
+
     public byte[] getOcspResponse() {
         return ocspResponse;
     }
@@ -137,6 +156,11 @@ public class OcspResponseInformation implements Serializable {
         return responseHeader;
     }
 
+    /** @return the decimal serial number of the certificate the response is for, or null if the response may not be cached by HTTP caches */
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
     /** @return true if we explicitly should state that the response should not be cached. */
     public boolean isExplicitNoCache() {
         return explicitNoCache;
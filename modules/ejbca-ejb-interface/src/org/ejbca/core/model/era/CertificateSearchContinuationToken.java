@@ -0,0 +1,204 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.era;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.cesecore.certificates.certificate.BaseCertificateData;
+
+/**
+ * Position of the last certificate of a page of certificate search results, used for keyset (seek) pagination. The next page is read
+ * by searching for certificates after this position in the sort order, instead of skipping all certificates of the previous pages.
+ * <p>
+ * The position is the value of the sort column and the fingerprint of the last certificate, since the sort column is not unique. Only
+ * columns without null values can be used for keyset pagination.
+ */
+public final class CertificateSearchContinuationToken {
+
+    /** Sort columns (as mapped by RaMasterApiSessionBean.mapOrderColumn) with numeric values that can not be null */
+    private static final Set<String> NUMERIC_COLUMNS = new HashSet<>(Arrays.asList("status", "type", "expireDate", "revocationDate",
+            "certificateProfileId", "updateTime"));
+    /** Sort columns with string values that can not be null */
+    private static final Set<String> STRING_COLUMNS = new HashSet<>(Arrays.asList("issuerDN", "subjectDN"));
+
+    private static final String SEPARATOR = "\n";
+
+    private final String orderColumn;
+    private final boolean descending;
+    private final String fingerprint;
+    private final Object value;
+
+    /**
+     * @param orderColumn the sort column, or null if sorted by fingerprint only
+     * @param descending true if sorted in descending order
+     * @param fingerprint fingerprint of the last certificate
+     * @param value value of the sort column of the last certificate, Long for numeric columns, or null if sorted by fingerprint only
+     */
+    public CertificateSearchContinuationToken(final String orderColumn, final boolean descending, final String fingerprint, final Object value) {
+        this.orderColumn = orderColumn;
+        this.descending = descending;
+        this.fingerprint = fingerprint;
+        this.value = value;
+    }
+
+    /** @return true if results sorted by the column can be paginated with continuation tokens */
+    public static boolean isSupportedOrderColumn(final String orderColumn) {
+        return orderColumn == null || NUMERIC_COLUMNS.contains(orderColumn) || STRING_COLUMNS.contains(orderColumn);
+    }
+
+    /** @return true if values of the column are numeric */
+    public static boolean isNumericColumn(final String orderColumn) {
+        return NUMERIC_COLUMNS.contains(orderColumn);
+    }
+
+    /**
+     * @return true if the sort order depends on the collation of the database. Results of different databases can then not be merged
+     * into one sort order.
+     */
+    public boolean isCollationDependent() {
+        return STRING_COLUMNS.contains(orderColumn);
+    }
+
+    public String getOrderColumn() {
+        return orderColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Creates a token for continuing a search sorted by fingerprint only, such as a certificate export, after the given certificate.
+     *
+     * @param fingerprint fingerprint of the last certificate that was received
+     * @return the encoded token
+     */
+    public static String afterFingerprint(final String fingerprint) {
+        return new CertificateSearchContinuationToken(null, false, fingerprint.toLowerCase(Locale.ROOT), null).encode();
+    }
+
+    /** @return the token as an opaque string that can be given to clients */
+    public String encode() {
+        final String token = StringUtils.defaultString(orderColumn) + SEPARATOR + (descending ? "DESC" : "ASC") + SEPARATOR + fingerprint + SEPARATOR
+                + (value == null ? "" : String.valueOf(value));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token created by {@link #encode()}.
+     *
+     * @param encoded the encoded token
+     * @param orderColumn the sort column of the current request, or null if sorted by fingerprint only
+     * @param descending true if the current request is sorted in descending order
+     * @return the decoded token
+     * @throws IllegalArgumentException if the token is malformed, or was created for a request with another sort order
+     */
+    public static CertificateSearchContinuationToken decode(final String encoded, final String orderColumn, final boolean descending) {
+        final CertificateSearchContinuationToken token = decode(encoded);
+        if (!StringUtils.equals(orderColumn, token.orderColumn) || descending != token.descending) {
+            throw new IllegalArgumentException("Continuation token does not match the sort order of the request.");
+        }
+        return token;
+    }
+
+    /**
+     * Decodes a token created by {@link #encode()}, with the sort order it was created for.
+     *
+     * @param encoded the encoded token
+     * @return the decoded token
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static CertificateSearchContinuationToken decode(final String encoded) {
+        final String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+        if (parts.length != 4 || parts[2].isEmpty() || !isSupportedOrderColumn(StringUtils.defaultIfEmpty(parts[0], null))) {
+            throw new IllegalArgumentException("Malformed continuation token.");
+        }
+        final String orderColumn = StringUtils.defaultIfEmpty(parts[0], null);
+        final Object value;
+        if (orderColumn == null) {
+            value = null;
+        } else if (isNumericColumn(orderColumn)) {
+            value = Long.valueOf(parts[3]);
+        } else {
+            value = parts[3];
+        }
+        return new CertificateSearchContinuationToken(orderColumn, "DESC".equals(parts[1]), parts[2], value);
+    }
+
+    /** @return true if this position comes before the other position, which must be for the same sort order */
+    public boolean isBefore(final CertificateSearchContinuationToken other) {
+        return compare(value, fingerprint, other.value, other.fingerprint) < 0;
+    }
+
+    /** @return true if the certificate comes after this position in the sort order, and is therefore on a later page */
+    public boolean isAfter(final BaseCertificateData certificateData) {
+        return compare(getValue(certificateData), certificateData.getFingerprint(), value, fingerprint) > 0;
+    }
+
+    /** @return the sort order of this token, as used by the database query */
+    public Comparator<BaseCertificateData> getSortOrder() {
+        return (first, second) -> compare(getValue(first), first.getFingerprint(), getValue(second), second.getFingerprint());
+    }
+
+    private int compare(final Object firstValue, final String firstFingerprint, final Object secondValue, final String secondFingerprint) {
+        int result = 0;
+        if (orderColumn != null) {
+            result = isNumericColumn(orderColumn) ? Long.compare((Long) firstValue, (Long) secondValue)
+                    : ((String) firstValue).compareTo((String) secondValue);
+        }
+        if (result == 0) {
+            result = firstFingerprint.compareTo(secondFingerprint);
+        }
+        return descending ? -result : result;
+    }
+
+    /** @return the value of the sort column of a certificate, of the same type as {@link #getValue()} */
+    private Object getValue(final BaseCertificateData certificateData) {
+        if (orderColumn == null) {
+            return null;
+        }
+        switch (orderColumn) {
+        case "status":
+            return (long) certificateData.getStatus();
+        case "type":
+            return (long) certificateData.getType();
+        case "expireDate":
+            return certificateData.getExpireDate();
+        case "revocationDate":
+            return certificateData.getRevocationDate();
+        case "certificateProfileId":
+            return certificateData.getCertificateProfileId() == null ? 0L : certificateData.getCertificateProfileId().longValue();
+        case "updateTime":
+            return certificateData.getUpdateTime() == null ? 0L : certificateData.getUpdateTime();
+        case "issuerDN":
+            return certificateData.getIssuerDN();
+        default:
+            return certificateData.getSubjectDN();
+        }
+    }
+}
@@ -32,6 +32,7 @@ public class RaCertificateSearchRequestV2 implements Serializable, Comparable<Ra
 
     private int maxResults = DEFAULT_MAX_RESULTS;
     private int pageNumber = 0;
+    private String continuationToken = null;
     private String orderProperty = "";
     private String orderOperation = "";
     private List<Integer> eepIds = new ArrayList<>();
@@ -74,6 +75,7 @@ public class RaCertificateSearchRequestV2 implements Serializable, Comparable<Ra
     public RaCertificateSearchRequestV2(final RaCertificateSearchRequestV2 request) {
         maxResults = request.maxResults;
         pageNumber = request.pageNumber;
+        continuationToken = request.continuationToken;
         orderProperty = request.orderProperty;
         orderOperation = request.orderOperation;
         eepIds.addAll(request.eepIds);
@@ -156,6 +158,30 @@ public class RaCertificateSearchRequestV2 implements Serializable, Comparable<Ra
         this.pageNumber = pageNumber;
     }
 
+    /**
+     * @return the continuation token of the page to return, an empty string for the first page, or null if pages are selected by page number
+     * @see #setContinuationToken(String)
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Selects the page to return with a continuation token instead of a page number. The next page is then found directly in the index
+     * of the sort column, which is much faster than skipping the results of all previous pages when there are many results. The token of
+     * the next page is returned in {@link RaCertificateSearchResponseV2#getNextContinuationToken()}.
+     * <p>
+     * Continuation tokens can not be used when sorting by a column that may be empty (username, tag, notBefore, end entity profile and
+     * external account binding ID). Pages are then selected by page number as usual, and no continuation token is returned. When results
+     * sorted by subject or issuer DN are returned by more than one back end, the search fails, since the back ends may sort text differently.
+     *
+     * @param continuationToken the token returned with the previous page, an empty string for the first page, or null to select pages by
+     * page number.
+     */
+    public void setContinuationToken(final String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
     public void resetMaxResults() {
         this.maxResults = DEFAULT_MAX_RESULTS;
     }
@@ -510,7 +536,7 @@ public class RaCertificateSearchRequestV2 implements Serializable, Comparable<Ra
             return false;
         }
         final RaCertificateSearchRequestV2 request = (RaCertificateSearchRequestV2) object;
-        return compareTo(request) == 0 && request.getPageNumber() == this.pageNumber;
+        return compareTo(request) == 0 && request.getPageNumber() == this.pageNumber && StringUtils.equals(request.getContinuationToken(), this.continuationToken);
     }
 
     // negative = this object is less (more narrow) than other. E.g. only when other contains this and more.
@@ -522,7 +548,7 @@ public class RaCertificateSearchRequestV2 implements Serializable, Comparable<Ra
             return 1;
         }
         // First check if there is any there is any indication that this does not contain the whole other
-        if (maxResults > other.maxResults || pageNumber > other.pageNumber ||
+        if (maxResults > other.maxResults || pageNumber > other.pageNumber || !StringUtils.equals(continuationToken, other.continuationToken) ||
                 isWider(eepIds, other.eepIds) || isWider(cpIds, other.cpIds) || isWider(caIds, other.caIds) ||
                 issuedAfter < other.issuedAfter || issuedBefore > other.issuedBefore ||
                 expiresAfter < other.expiresAfter || expiresBefore > other.expiresBefore ||
@@ -36,6 +36,8 @@ public class RaCertificateSearchResponseV2 implements Serializable {
     private Status status = Status.IN_PROGRESS;
     private List<CertificateDataWrapper> cdws = new ArrayList<>();
     private long totalCount = 0;
+    private String nextContinuationToken = null;
+    private String lastResultContinuationToken = null;
 
     public List<CertificateDataWrapper> getCdws() {
         return cdws;
@@ -53,7 +55,32 @@ public class RaCertificateSearchResponseV2 implements Serializable {
         totalCount = count;
     }
 
+    /**
+     * @return the continuation token of the next page, or null if there are no more results or the request did not use continuation tokens
+     * @see RaCertificateSearchRequestV2#setContinuationToken(String)
+     */
+    public String getNextContinuationToken() {
+        return nextContinuationToken;
+    }
+
+    public void setNextContinuationToken(final String nextContinuationToken) {
+        this.nextContinuationToken = nextContinuationToken;
+    }
+
+    /**
+     * @return the continuation token after the last result, also when there are no more results, or null if there are no results or the
+     * request did not use continuation tokens. Used to merge the results of several back ends in sort order.
+     */
+    public String getLastResultContinuationToken() {
+        return lastResultContinuationToken;
+    }
+
+    public void setLastResultContinuationToken(final String lastResultContinuationToken) {
+        this.lastResultContinuationToken = lastResultContinuationToken;
+    }
+
     public void merge(final RaCertificateSearchResponseV2 other) {
+        final boolean severalBackendsWithResults = !cdws.isEmpty() && !other.cdws.isEmpty();
         final LinkedHashMap<String, CertificateDataWrapper> cdwMap = new LinkedHashMap<>();
         for (final CertificateDataWrapper cdw : cdws) {
             cdwMap.put(cdw.getCertificateData().getFingerprint(), cdw);
@@ -64,12 +91,56 @@ public class RaCertificateSearchResponseV2 implements Serializable {
         this.cdws.clear();
         this.cdws.addAll(cdwMap.values());
         setTotalCount(totalCount + other.totalCount);
+        if (lastResultContinuationToken != null || other.lastResultContinuationToken != null) {
+            mergeContinuationTokens(other, severalBackendsWithResults);
+        }
         // When merging with a reponse with fail status, fail status takes precedence
         if (other.getStatus() == Status.ERROR || other.getStatus() == Status.TIMEOUT) {
             this.setStatus(other.getStatus());
         }
     }
 
+    /**
+     * Continuation tokens are positions in the sort order of one back end. The merged token is the position that comes first, and the
+     * results of other back ends after it are removed, since they are returned again with the next page. Otherwise the results of the back
+     * end with the first position, between that position and the positions of the other back ends, would be skipped. The remaining results
+     * are sorted, so that the results of all back ends are returned in sort order.
+     */
+    private void mergeContinuationTokens(final RaCertificateSearchResponseV2 other, final boolean severalBackendsWithResults) {
+        final CertificateSearchContinuationToken next;
+        final CertificateSearchContinuationToken last;
+        try {
+            final CertificateSearchContinuationToken thisNext = decodeIfPresent(nextContinuationToken);
+            final CertificateSearchContinuationToken otherNext = decodeIfPresent(other.nextContinuationToken);
+            next = thisNext == null || (otherNext != null && otherNext.isBefore(thisNext)) ? otherNext : thisNext;
+            final CertificateSearchContinuationToken thisLast = decodeIfPresent(lastResultContinuationToken);
+            final CertificateSearchContinuationToken otherLast = decodeIfPresent(other.lastResultContinuationToken);
+            last = thisLast == null || (otherLast != null && thisLast.isBefore(otherLast)) ? otherLast : thisLast;
+        } catch (IllegalArgumentException e) {
+            setStatus(Status.ERROR);
+            nextContinuationToken = null;
+            lastResultContinuationToken = null;
+            return;
+        }
+        if (severalBackendsWithResults && last.isCollationDependent()) {
+            // The databases of the back ends may sort text in different orders, so the results can not be merged into one sort order
+            setStatus(Status.ERROR);
+            nextContinuationToken = null;
+            lastResultContinuationToken = null;
+            return;
+        }
+        if (next != null) {
+            cdws.removeIf(cdw -> next.isAfter(cdw.getCertificateData()));
+        }
+        cdws.sort((first, second) -> last.getSortOrder().compare(first.getCertificateData(), second.getCertificateData()));
+        nextContinuationToken = next == null ? null : next.encode();
+        lastResultContinuationToken = next == null ? last.encode() : next.encode();
+    }
+
+    private static CertificateSearchContinuationToken decodeIfPresent(final String continuationToken) {
+        return continuationToken == null ? null : CertificateSearchContinuationToken.decode(continuationToken);
+    }
+
     public void setStatus(final Status newStatus) {
         this.status = newStatus;
     }
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
@@ -32,12 +33,20 @@ import java.security.SecureRandom;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.ejb.Timer;
 import javax.ejb.TimerService;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 import org.apache.log4j.Logger;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
@@ -50,15 +59,20 @@ import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
 import org.bouncycastle.cert.ocsp.CertificateID;
 import org.bouncycastle.cert.ocsp.OCSPException;
 import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
 import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
 import org.bouncycastle.cert.ocsp.SingleResp;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.DigestCalculator;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.cesecore.certificates.ca.CAConstants;
 import org.cesecore.certificates.ca.CaSessionLocal;
 import org.cesecore.certificates.ca.X509CAInfo;
@@ -67,23 +81,29 @@ import org.cesecore.certificates.ca.catoken.CAToken;
 import org.cesecore.certificates.ca.catoken.CATokenConstants;
 import org.cesecore.certificates.certificate.CertificateStatus;
 import org.cesecore.certificates.certificate.CertificateStoreSessionLocal;
+import org.cesecore.certificates.crl.RevokedCertInfo;
 import org.cesecore.certificates.ocsp.cache.OcspDataConfigCache;
 import org.cesecore.certificates.ocsp.cache.OcspDataConfigCacheEntry;
+import org.cesecore.certificates.ocsp.cache.OcspRevocationIndex;
 import org.cesecore.certificates.ocsp.cache.OcspSigningCache;
 import org.cesecore.certificates.ocsp.cache.OcspSigningCacheEntry;
 import org.cesecore.certificates.ocsp.exception.MalformedRequestException;
 import org.cesecore.certificates.ocsp.logging.AuditLogger;
 import org.cesecore.certificates.ocsp.logging.TransactionCounter;
 import org.cesecore.certificates.ocsp.logging.TransactionLogger;
+import org.cesecore.config.ConfigurationHolder;
 import org.cesecore.config.GlobalOcspConfiguration;
+import org.cesecore.config.OcspConfiguration;
 import org.cesecore.configuration.GlobalConfigurationSessionLocal;
 import org.cesecore.keybind.InternalKeyBindingDataSessionLocal;
 import org.cesecore.keybind.impl.OcspKeyBinding;
 import org.cesecore.keybind.impl.OcspKeyBinding.ResponderIdType;
 import org.cesecore.keys.token.CryptoTokenSessionLocal;
 import org.cesecore.oscp.OcspResponseData;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.ejbca.core.ejb.ocsp.OcspDataSessionLocal;
+import org.ejbca.core.ejb.ocsp.OcspPreSigningResult;
 import org.ejbca.core.ejb.ocsp.OcspResponseGeneratorSessionBean;
 import org.ejbca.core.ejb.ocsp.OcspResponseInformation;
 import org.ejbca.core.ejb.ocsp.PresignResponseValidity;
@@ -402,6 +422,73 @@ public class OcspResponseGeneratorSessionUnitTest {
         log.trace("<basicCachedRequestSHA256");
     }
 
+    @Test
+    public void multipleCertIdsWithBatchedStatusLookup() throws Exception {
+        log.trace(">multipleCertIdsWithBatchedStatusLookup");
+        final BigInteger revokedSerial = REQUEST_SERIAL.add(BigInteger.ONE);
+        final BigInteger unknownSerial = REQUEST_SERIAL.add(BigInteger.TEN);
+        final X509CertificateHolder issuerCertHolder = new X509CertificateHolder(getIssuerCert().getEncoded());
+        final DigestCalculator digestCalc = new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1));
+        final OCSPReqBuilder gen = new OCSPReqBuilder();
+        for (final BigInteger serialNumber : Arrays.asList(REQUEST_SERIAL, revokedSerial, unknownSerial)) {
+            gen.addRequest(new CertificateID(digestCalc, issuerCertHolder, serialNumber));
+        }
+        final byte[] req = gen.build().getEncoded();
+        expectLoggerChecks();
+        final Map<BigInteger, CertificateStatus> statuses = new HashMap<>();
+        statuses.put(REQUEST_SERIAL, status);
+        statuses.put(revokedSerial, new CertificateStatus(CertificateStatus.REVOKED.toString(), System.currentTimeMillis(),
+                RevokedCertInfo.REVOCATION_REASON_KEYCOMPROMISE, 0));
+        statuses.put(unknownSerial, CertificateStatus.NOT_AVAILABLE);
+        // A single lookup for all three certificates, and none for each certificate
+        expect(certificateStoreSessionMock.getStatuses(ISSUER_CERT_DN, new HashSet<>(Arrays.asList(REQUEST_SERIAL, revokedSerial, unknownSerial))))
+                .andReturn(statuses).once();
+        GlobalOcspConfiguration ocspConfiguration = new GlobalOcspConfiguration();
+        ocspConfiguration.setDefaultValidityTime(60L);
+        ocspConfiguration.setDefaultResponseMaxAge(30L);
+        expect(globalConfigurationSessionMock.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID)).andReturn(ocspConfiguration).once();
+        replay(caSessionMock, auditLogger, transactionLogger, globalConfigurationSessionMock, certificateStoreSessionMock, ocspDataSessionMock);
+        prepareOcspCache();
+        final OcspResponseInformation respInfo = ocspResponseGeneratorSession.getOcspResponse(req, null, REQUEST_IP, null, null, auditLogger, transactionLogger, false, PresignResponseValidity.CONFIGURATION_BASED, false);
+        verify(certificateStoreSessionMock);
+        assertEquals(OCSPResp.SUCCESSFUL, respInfo.getStatus());
+        final SingleResp[] singleResps = ((BasicOCSPResp) new OCSPResp(respInfo.getOcspResponse()).getResponseObject()).getResponses();
+        assertEquals("Response should contain all CertIDs.", 3, singleResps.length);
+        assertNull("First certificate should be good.", singleResps[0].getCertStatus());
+        assertTrue("Second certificate should be revoked.", singleResps[1].getCertStatus() instanceof RevokedStatus);
+        assertNotNull("Third certificate should not be good.", singleResps[2].getCertStatus());
+        log.trace("<multipleCertIdsWithBatchedStatusLookup");
+    }
+
+    @Test
+    public void goodStatusFromRevocationIndex() throws Exception {
+        log.trace(">goodStatusFromRevocationIndex");
+        final byte[] req = makeOcspRequest(getIssuerCert(), REQUEST_SERIAL, OIWObjectIdentifiers.idSHA1, null);
+        expect(auditLogger.isEnabled()).andReturn(false);
+        expect(transactionLogger.isEnabled()).andReturn(true).anyTimes();
+        // The certificate profile is not known without reading the certificate
+        transactionLogger.paramPut(TransactionLogger.CERT_PROFILE_ID, TransactionLogger.CERT_PROFILE_ID_UNKNOWN);
+        EasyMock.expectLastCall().once();
+        // No status lookup in the database is expected
+        GlobalOcspConfiguration ocspConfiguration = new GlobalOcspConfiguration();
+        ocspConfiguration.setDefaultValidityTime(60L);
+        ocspConfiguration.setDefaultResponseMaxAge(30L);
+        expect(globalConfigurationSessionMock.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID)).andReturn(ocspConfiguration).once();
+        replay(caSessionMock, auditLogger, transactionLogger, globalConfigurationSessionMock, certificateStoreSessionMock, ocspDataSessionMock);
+        prepareOcspCache();
+        final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.createIndex(Collections.emptyList(), 1, System.currentTimeMillis());
+        index.addIssued(REQUEST_SERIAL.toString());
+        OcspRevocationIndex.INSTANCE.putIndex(ISSUER_CERT_DN, index);
+        try {
+            final OcspResponseInformation respInfo = ocspResponseGeneratorSession.getOcspResponse(req, null, REQUEST_IP, null, null, auditLogger, transactionLogger, false, PresignResponseValidity.CONFIGURATION_BASED, false);
+            verify(certificateStoreSessionMock, transactionLogger);
+            assertGoodResponse(respInfo);
+        } finally {
+            OcspRevocationIndex.INSTANCE.flush();
+        }
+        log.trace("<goodStatusFromRevocationIndex");
+    }
+
     @Test
     public void basicCachedRequestSHA384() throws Exception {
         log.trace(">basicCachedRequestSHA256");
@@ -508,6 +595,120 @@ public class OcspResponseGeneratorSessionUnitTest {
         log.trace("<zzzc_basicCachedRequestWithPresigningExpiredCertIncluded");
     }
 
+    @Test
+    public void zzzd_bulkPresigning() throws Exception {
+        log.trace(">zzzd_bulkPresigning");
+        // Parallel signing in batches of two certificates, so the order of the calls to the mocks is not known
+        final CertificateStoreSessionLocal certificateStoreSession = EasyMock.createMock(CertificateStoreSessionLocal.class);
+        final OcspDataSessionLocal ocspDataSession = EasyMock.createMock(OcspDataSessionLocal.class);
+        final CaSessionLocal caSession = EasyMock.createMock(CaSessionLocal.class);
+        ocspResponseGeneratorSession.setMockedCertificateStoreSession(certificateStoreSession);
+        ocspResponseGeneratorSession.setOcspDataSessionLocal(ocspDataSession);
+        ocspResponseGeneratorSession.setMockedCaSession(caSession);
+        // Stands in for the managed executor service of the application server
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        ocspResponseGeneratorSession.setMockedManagedExecutorService((ManagedExecutorService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ManagedExecutorService.class }, (proxy, method, args) -> method.invoke(executor, args)));
+        final String defaultThreads = ConfigurationHolder.getString(OcspConfiguration.PRESIGNING_THREADS);
+        final String defaultBatchSize = ConfigurationHolder.getString(OcspConfiguration.PRESIGNING_BATCH_SIZE);
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.PRESIGNING_THREADS, "2");
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.PRESIGNING_BATCH_SIZE, "2");
+        try {
+            final GlobalOcspConfiguration ocspConfiguration = new GlobalOcspConfiguration();
+            ocspConfiguration.setDefaultValidityTime(60L);
+            expect(globalConfigurationSessionMock.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID)).andReturn(ocspConfiguration).anyTimes();
+            OcspDataConfigCache.INSTANCE.stagingAdd(new OcspDataConfigCacheEntry(getIssuerCert(), ISSUER_CAID, true, false, false));
+            OcspDataConfigCache.INSTANCE.stagingCommit();
+            expect(certificateStoreSession.findSerialNrByIssuerAndExpireDateAfterSerialNr(EasyMock.eq(ISSUER_CERT_DN), anyLong(), EasyMock.eq("10"), EasyMock.eq(2)))
+                    .andReturn(Arrays.asList("11", "12")).once();
+            expect(certificateStoreSession.findSerialNrByIssuerAndExpireDateAfterSerialNr(EasyMock.eq(ISSUER_CERT_DN), anyLong(), EasyMock.eq("12"), EasyMock.eq(2)))
+                    .andReturn(Arrays.asList("13")).once();
+            for (final String serialNumber : Arrays.asList("11", "12", "13")) {
+                expect(certificateStoreSession.getStatus(ISSUER_CERT_DN, new BigInteger(serialNumber))).andReturn(status).once();
+                expect(ocspDataSession.findOcspDataByCaIdSerialNumber(ISSUER_CAID, serialNumber)).andReturn(null).once();
+            }
+            ocspDataSession.storeOcspDataBatch(EasyMock.<List<OcspResponseData>>anyObject());
+            EasyMock.expectLastCall().times(2);
+            final X509CAInfo caInfo = new X509CAInfoBuilder()
+                    .setSubjectDn(ISSUER_CERT_DN)
+                    .setCaId(ISSUER_CAID)
+                    .setStatus(CAConstants.CA_ACTIVE)
+                    .setCertificateChain(Collections.singletonList(getIssuerCert()))
+                    .setCrlPublishers(Collections.emptyList())
+                    .build();
+            expect(caSession.getCAInfoInternal(ISSUER_CAID)).andReturn(caInfo).times(3);
+            replay(globalConfigurationSessionMock, certificateStoreSession, ocspDataSession, caSession);
+            prepareOcspCache();
+            final OcspPreSigningResult result = ocspResponseGeneratorSession.preSignOcspResponses(getIssuerCert(), "10", 0,
+                    PresignResponseValidity.CONFIGURATION_BASED, false, "SHA256");
+            assertEquals("Wrong number of processed certificates: " + result, 3, result.getProcessedCount());
+            assertEquals("Wrong number of stored responses: " + result, 3, result.getStoredCount());
+            assertEquals("Wrong number of failed certificates: " + result, 0, result.getFailedCount());
+            assertEquals("Should be possible to resume after the last certificate.", "13", result.getLastSerialNumber());
+            assertTrue("All certificates should have been processed.", result.isComplete());
+            verify(certificateStoreSession, ocspDataSession, caSession);
+        } finally {
+            ConfigurationHolder.updateConfiguration(OcspConfiguration.PRESIGNING_THREADS, defaultThreads);
+            ConfigurationHolder.updateConfiguration(OcspConfiguration.PRESIGNING_BATCH_SIZE, defaultBatchSize);
+            ocspResponseGeneratorSession.setMockedManagedExecutorService(null);
+            executor.shutdown();
+        }
+        log.trace("<zzzd_bulkPresigning");
+    }
+
+    @Test
+    public void zzze_refreshStoredResponses() throws Exception {
+        log.trace(">zzze_refreshStoredResponses");
+        final OcspDataSessionLocal ocspDataSession = EasyMock.createMock(OcspDataSessionLocal.class);
+        final CaSessionLocal caSession = EasyMock.createMock(CaSessionLocal.class);
+        ocspResponseGeneratorSession.setOcspDataSessionLocal(ocspDataSession);
+        ocspResponseGeneratorSession.setMockedCaSession(caSession);
+        final String defaultInterval = ConfigurationHolder.getString(OcspConfiguration.RESPONSE_REFRESH_INTERVAL);
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_REFRESH_INTERVAL, "60000");
+        try {
+            final GlobalOcspConfiguration ocspConfiguration = new GlobalOcspConfiguration();
+            ocspConfiguration.setDefaultValidityTime(3600L);
+            expect(globalConfigurationSessionMock.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID)).andReturn(ocspConfiguration).anyTimes();
+            OcspDataConfigCache.INSTANCE.stagingAdd(new OcspDataConfigCacheEntry(getIssuerCert(), ISSUER_CAID, true, false, false));
+            OcspDataConfigCache.INSTANCE.stagingCommit();
+            // A stored response that expires in a minute
+            final long nextUpdate = System.currentTimeMillis() + 60000;
+            final OcspResponseData storedResponse = new OcspResponseData("1", ISSUER_CAID, REQUEST_SERIAL.toString(), System.currentTimeMillis(), nextUpdate,
+                    makeOcspResponse(getIssuerCert(), REQUEST_SERIAL, new Date(nextUpdate)).getEncoded());
+            // The stored response is returned again after the new one has been stored, since the mock is not aware of it
+            expect(ocspDataSession.findOcspDataToRefresh(EasyMock.eq(ISSUER_CAID), anyLong(), anyLong(), EasyMock.anyInt()))
+                    .andReturn(Collections.singletonList(storedResponse)).times(2);
+            expect(certificateStoreSessionMock.getStatus(ISSUER_CERT_DN, REQUEST_SERIAL)).andReturn(status).once();
+            expect(ocspDataSession.findOcspDataByCaIdSerialNumber(ISSUER_CAID, REQUEST_SERIAL.toString())).andReturn(storedResponse).once();
+            final Capture<List<OcspResponseData>> storedBatch = EasyMock.newCapture();
+            ocspDataSession.storeOcspDataBatch(EasyMock.capture(storedBatch));
+            EasyMock.expectLastCall().once();
+            final X509CAInfo caInfo = new X509CAInfoBuilder()
+                    .setSubjectDn(ISSUER_CERT_DN)
+                    .setCaId(ISSUER_CAID)
+                    .setStatus(CAConstants.CA_ACTIVE)
+                    .setCertificateChain(Collections.singletonList(getIssuerCert()))
+                    .setCrlPublishers(Collections.emptyList())
+                    .build();
+            expect(caSession.getCAInfoInternal(ISSUER_CAID)).andReturn(caInfo).once();
+            final Timer timer = EasyMock.createNiceMock(Timer.class);
+            expect(timer.getInfo()).andReturn(2).anyTimes();
+            // A new timer is scheduled after each run
+            expect(timerServiceMock.createSingleActionTimer(EasyMock.eq(60000L), anyObject())).andReturn(timer).once();
+            replay(globalConfigurationSessionMock, certificateStoreSessionMock, ocspDataSession, caSession, timer, timerServiceMock);
+            prepareOcspCache();
+            ocspResponseGeneratorSession.timeoutHandler(timer);
+            verify(certificateStoreSessionMock, ocspDataSession, caSession, timerServiceMock);
+            assertEquals("One response should have been refreshed.", 1, storedBatch.getValue().size());
+            final OcspResponseData refreshedResponse = storedBatch.getValue().get(0);
+            assertEquals(REQUEST_SERIAL.toString(), refreshedResponse.getSerialNumber());
+            assertTrue("The new response should expire after the stored one.", refreshedResponse.getNextUpdate() > nextUpdate);
+        } finally {
+            ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_REFRESH_INTERVAL, defaultInterval);
+        }
+        log.trace("<zzze_refreshStoredResponses");
+    }
+
     @Test
     public void uncachedRequest() throws Exception {
         log.trace(">uncachedRequest");
@@ -690,6 +891,17 @@ public class OcspResponseGeneratorSessionUnitTest {
         }
     }
 
+    private OCSPResp makeOcspResponse(final X509Certificate issuerCert, final BigInteger serialNumber, final Date nextUpdate) throws Exception {
+        final X509CertificateHolder issuerCertHolder = new X509CertificateHolder(issuerCert.getEncoded());
+        final DigestCalculator digestCalc = new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1));
+        final BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(new RespID(issuerCertHolder.getSubject()));
+        builder.addResponse(new CertificateID(digestCalc, issuerCertHolder, serialNumber), org.bouncycastle.cert.ocsp.CertificateStatus.GOOD,
+                new Date(), nextUpdate);
+        final BasicOCSPResp basicResponse = builder.build(new JcaContentSignerBuilder(AlgorithmConstants.SIGALG_SHA256_WITH_RSA)
+                .build(getIssuerPrivKey()), null, new Date());
+        return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResponse);
+    }
+
     private X509Certificate getCert(final String pemData) {
         try {
             return CertTools.getCertfromByteArray(pemData.getBytes(StandardCharsets.US_ASCII), X509Certificate.class);
@@ -737,5 +949,7 @@ public class OcspResponseGeneratorSessionUnitTest {
         protected void setMockedTimerService(final TimerService timerService) { super.setMockedTimerService(timerService); }
         @Override
         protected void setOcspDataSessionLocal(final OcspDataSessionLocal ocspDataSessionLocal) { super.setOcspDataSessionLocal(ocspDataSessionLocal); }
+        @Override
+        protected void setMockedManagedExecutorService(final ManagedExecutorService managedExecutorService) { super.setMockedManagedExecutorService(managedExecutorService); }
     }
 }
@@ -0,0 +1,169 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.crl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.keyfactor.util.keys.token.CryptoTokenOfflineException;
+
+/**
+ * Tests scheduling of CRL generation units by {@link ParallelCrlGenerator}.
+ */
+public class ParallelCrlGeneratorUnitTest {
+
+    /** Stands in for the managed executor service, which does not limit the number of units */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testResultsInOrderAndFailuresIsolated() {
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            units.add(new ParallelCrlGenerator.Unit(i / 4, i % 4, i % 3, () -> {
+                if (index == 7) {
+                    throw new CryptoTokenOfflineException("Crypto token is offline.");
+                }
+                return index % 2 == 0;
+            }));
+        }
+        final List<ParallelCrlGenerator.UnitResult> results = new ParallelCrlGenerator(executor, 4, 2).run(units);
+        assertEquals(20, results.size());
+        for (int i = 0; i < 20; i++) {
+            final ParallelCrlGenerator.UnitResult result = results.get(i);
+            assertEquals("Results should be in the order of the units.", units.get(i), result.getUnit());
+            if (i == 7) {
+                assertTrue(result.getFailure() instanceof CryptoTokenOfflineException);
+                assertFalse(result.isCreated());
+            } else {
+                assertNull("Other units should not be affected by the failed one.", result.getFailure());
+                assertEquals(i % 2 == 0, result.isCreated());
+            }
+        }
+    }
+
+    @Test
+    public void testUnitsPerCryptoTokenLimited() {
+        final Map<Integer, AtomicInteger> runningByCryptoToken = new ConcurrentHashMap<>();
+        final Map<Integer, AtomicInteger> maxRunningByCryptoToken = new ConcurrentHashMap<>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            final int cryptoTokenId = i % 3;
+            units.add(new ParallelCrlGenerator.Unit(i, 0, cryptoTokenId, () -> {
+                final int runningWithToken = runningByCryptoToken.computeIfAbsent(cryptoTokenId, id -> new AtomicInteger()).incrementAndGet();
+                maxRunningByCryptoToken.computeIfAbsent(cryptoTokenId, id -> new AtomicInteger()).accumulateAndGet(runningWithToken, Math::max);
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                runningByCryptoToken.get(cryptoTokenId).decrementAndGet();
+                return true;
+            }));
+        }
+        final List<ParallelCrlGenerator.UnitResult> results = new ParallelCrlGenerator(executor, 4, 1).run(units);
+        for (final ParallelCrlGenerator.UnitResult result : results) {
+            assertNull(result.getFailure());
+            assertTrue(result.isCreated());
+            assertTrue(result.getDurationMillis() >= 0);
+        }
+        assertEquals(3, maxRunningByCryptoToken.size());
+        for (final AtomicInteger max : maxRunningByCryptoToken.values()) {
+            assertEquals("Only one CRL should be created at a time with each crypto token.", 1, max.get());
+        }
+        assertTrue("No more CRLs than the number of crypto tokens should be created at the same time.", maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testUnitsLimited() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            units.add(new ParallelCrlGenerator.Unit(i, 0, i, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(10);
+                running.decrementAndGet();
+                return true;
+            }));
+        }
+        for (final ParallelCrlGenerator.UnitResult result : new ParallelCrlGenerator(executor, 4, 1).run(units)) {
+            assertNull(result.getFailure());
+        }
+        assertTrue("No more CRLs than the configured number should be created at the same time.", maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void testRejectedUnitsReportedAsFailed() {
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            units.add(new ParallelCrlGenerator.Unit(i, 0, 0, () -> true));
+        }
+        final ExecutorService shutDownExecutor = Executors.newSingleThreadExecutor();
+        shutDownExecutor.shutdown();
+        final List<ParallelCrlGenerator.UnitResult> results = new ParallelCrlGenerator(shutDownExecutor, 4, 1).run(units);
+        assertEquals(3, results.size());
+        for (final ParallelCrlGenerator.UnitResult result : results) {
+            assertTrue(result.getFailure() instanceof InterruptedException);
+            assertFalse(result.isCreated());
+        }
+    }
+
+    @Test
+    public void testRunningUnitsAwaitedWhenRejected() {
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            units.add(new ParallelCrlGenerator.Unit(i, 0, i, () -> {
+                Thread.sleep(200);
+                return true;
+            }));
+        }
+        // Starts the first unit only
+        final AtomicInteger started = new AtomicInteger();
+        final List<ParallelCrlGenerator.UnitResult> results = new ParallelCrlGenerator(command -> {
+            if (started.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("Rejected for test.");
+            }
+            executor.execute(command);
+        }, 4, 1).run(units);
+        assertEquals(3, results.size());
+        assertNull("The unit that was started should be waited for.", results.get(0).getFailure());
+        assertTrue(results.get(0).isCreated());
+        assertTrue(results.get(1).getFailure() instanceof InterruptedException);
+        assertTrue(results.get(2).getFailure() instanceof InterruptedException);
+    }
+
+    @Test
+    public void testNoUnits() {
+        assertTrue(new ParallelCrlGenerator(executor, 4, 1).run(new ArrayList<>()).isEmpty());
+    }
+}
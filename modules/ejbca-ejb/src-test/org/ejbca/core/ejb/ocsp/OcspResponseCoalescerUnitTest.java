@@ -0,0 +1,185 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+/**
+ * Unit tests of sharing the signing of identical OCSP responses between concurrent requests.
+ */
+public class OcspResponseCoalescerUnitTest {
+
+    private static final String SIG_ALG = "SHA256WithRSA";
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void testConcurrentRequestsShareSigning() throws Exception {
+        final OcspResponseCoalescer.Key key = OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), null);
+        assertNotNull(key);
+        final BasicOCSPResp response = createResponse();
+        final AtomicInteger signatures = new AtomicInteger();
+        final CountDownLatch signing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<BasicOCSPResp> leader = executor.submit(() -> OcspResponseCoalescer.INSTANCE.sign(key, TIMEOUT, () -> {
+                signatures.incrementAndGet();
+                signing.countDown();
+                awaitUninterruptibly(release);
+                return response;
+            }));
+            assertTrue(signing.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals(1, OcspResponseCoalescer.INSTANCE.getInFlightCount());
+            // Let the first request complete once this thread is waiting for it
+            final Thread releaser = releaseLater(release);
+            final BasicOCSPResp shared = OcspResponseCoalescer.INSTANCE.sign(key, TIMEOUT, () -> {
+                signatures.incrementAndGet();
+                return createResponse();
+            });
+            releaser.join();
+            assertSame("The response signed by the first request should have been shared.", response, shared);
+            assertSame(response, leader.get());
+            assertEquals("Only one response should have been signed.", 1, signatures.get());
+            assertEquals(0, OcspResponseCoalescer.INSTANCE.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailurePropagatedToWaitingRequests() throws Exception {
+        final OcspResponseCoalescer.Key key = OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(2, null), null);
+        final CountDownLatch signing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<BasicOCSPResp> leader = executor.submit(() -> OcspResponseCoalescer.INSTANCE.sign(key, TIMEOUT, () -> {
+                signing.countDown();
+                awaitUninterruptibly(release);
+                throw new OCSPException("Signing failed");
+            }));
+            assertTrue(signing.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            final Thread releaser = releaseLater(release);
+            try {
+                OcspResponseCoalescer.INSTANCE.sign(key, TIMEOUT, () -> createResponse());
+                fail("The failure of the signing request should have been propagated.");
+            } catch (OCSPException e) {
+                assertEquals("Signing failed", e.getMessage());
+            }
+            releaser.join();
+            try {
+                leader.get();
+                fail("The signing request should have failed.");
+            } catch (ExecutionException e) {
+                assertEquals(OCSPException.class, e.getCause().getClass());
+            }
+            assertEquals(0, OcspResponseCoalescer.INSTANCE.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNoKeyAlwaysSigns() throws Exception {
+        final AtomicInteger signatures = new AtomicInteger();
+        OcspResponseCoalescer.INSTANCE.sign(null, TIMEOUT, () -> {
+            signatures.incrementAndGet();
+            return createResponse();
+        });
+        OcspResponseCoalescer.INSTANCE.sign(null, TIMEOUT, () -> {
+            signatures.incrementAndGet();
+            return createResponse();
+        });
+        assertEquals(2, signatures.get());
+    }
+
+    @Test
+    public void testCreateKey() {
+        final Extensions nonce = new Extensions(new Extension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new byte[] { 4, 2, 1, 2 }));
+        assertNull("Responses with a nonce must not be shared.", OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), nonce));
+        assertEquals(OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), null),
+                OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), null));
+        assertNotEquals("Responses for different certificates must not be shared.", OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), null),
+                OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(2, null), null));
+        assertNotEquals("Responses with different status must not be shared.", OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), null),
+                OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, new RevokedStatus(new Date(0), 0)), null));
+        assertNotEquals("Responses with different signature algorithms must not be shared.",
+                OcspResponseCoalescer.createKey(null, SIG_ALG, createResponses(1, null), null),
+                OcspResponseCoalescer.createKey(null, "SHA256withECDSA", createResponses(1, null), null));
+    }
+
+    private static BasicOCSPResp createResponse() {
+        return EasyMock.createNiceMock(BasicOCSPResp.class);
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread releaseLater(final CountDownLatch latch) {
+        final Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            latch.countDown();
+        });
+        releaser.start();
+        return releaser;
+    }
+
+    private static List<OCSPResponseItem> createResponses(final long serialNumber, final RevokedStatus status) {
+        final CertID certId = new CertID(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1, DERNull.INSTANCE), new DEROctetString(new byte[20]),
+                new DEROctetString(new byte[20]), new ASN1Integer(BigInteger.valueOf(serialNumber)));
+        return Collections.singletonList(new OCSPResponseItem(new CertificateID(certId), status, 60000));
+    }
+}
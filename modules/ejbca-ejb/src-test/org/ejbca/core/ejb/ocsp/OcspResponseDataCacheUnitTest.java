@@ -0,0 +1,122 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.ocsp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.cesecore.config.ConfigurationHolder;
+import org.cesecore.config.OcspConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the in-memory cache of pre-produced OCSP responses.
+ */
+public class OcspResponseDataCacheUnitTest {
+
+    private static final int CA_ID = 4711;
+    private static final int OTHER_CA_ID = 4712;
+
+    private String defaultMaxBytes;
+
+    @Before
+    public void before() {
+        defaultMaxBytes = ConfigurationHolder.getString(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_BYTES);
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_BYTES, "1048576");
+        OcspResponseDataCache.INSTANCE.flush();
+    }
+
+    @After
+    public void after() {
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_BYTES, defaultMaxBytes);
+        OcspResponseDataCache.INSTANCE.flush();
+    }
+
+    @Test
+    public void testDisabledByConfiguration() throws Exception {
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_BYTES, "0");
+        OcspResponseDataCache.INSTANCE.flush();
+        assertFalse("Cache should be disabled when the maximum size is 0.", OcspResponseDataCache.INSTANCE.isEnabled());
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "1", createResponse(60000));
+        assertNull(OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+    }
+
+    @Test
+    public void testPutAndReplace() throws Exception {
+        assertTrue(OcspResponseDataCache.INSTANCE.isEnabled());
+        final OcspResponseDataCache.CachedResponse first = createResponse(60000);
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "1", first);
+        assertSame(first, OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+        assertNull("Other CA should not share the entry.", OcspResponseDataCache.INSTANCE.get(OTHER_CA_ID, "1"));
+        final OcspResponseDataCache.CachedResponse second = createResponse(120000);
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "1", second);
+        assertSame("A newly stored response should replace the cached one.", second, OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+        final OcspResponseInformation copy = new OcspResponseInformation(second.getResponseInformation(), 1234, null);
+        assertArrayEquals(second.getEncodedResponse(), copy.getOcspResponse());
+        assertEquals(1234, copy.getMaxAge());
+    }
+
+    @Test
+    public void testExpiredResponsesAreNotServed() throws Exception {
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "1", createResponse(60000));
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "1", createResponse(-1000));
+        assertNull("A response past nextUpdate must not be served.", OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+    }
+
+    @Test
+    public void testMaxCacheTime() throws Exception {
+        assertEquals("Responses should not be kept until nextUpdate by default.", 60000, OcspConfiguration.getResponseDataCacheMaxTime());
+        final String defaultMaxTime = ConfigurationHolder.getString(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_TIME);
+        ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_TIME, "100");
+        try {
+            OcspResponseDataCache.INSTANCE.flush();
+            OcspResponseDataCache.INSTANCE.put(CA_ID, "1", createResponse(60000));
+            assertNotNull(OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+            Thread.sleep(300);
+            assertNull("A response should not be served after the maximum cache time.", OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+        } finally {
+            ConfigurationHolder.updateConfiguration(OcspConfiguration.RESPONSE_DATA_CACHE_MAX_TIME, defaultMaxTime);
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "1", createResponse(60000));
+        OcspResponseDataCache.INSTANCE.put(CA_ID, "2", createResponse(60000));
+        OcspResponseDataCache.INSTANCE.put(OTHER_CA_ID, "1", createResponse(60000));
+        OcspResponseDataCache.INSTANCE.put(OTHER_CA_ID, "3", createResponse(60000));
+        OcspResponseDataCache.INSTANCE.invalidate(CA_ID, "2");
+        assertNull(OcspResponseDataCache.INSTANCE.get(CA_ID, "2"));
+        assertNotNull(OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+        OcspResponseDataCache.INSTANCE.invalidateSerialNumber("1");
+        assertNull(OcspResponseDataCache.INSTANCE.get(CA_ID, "1"));
+        assertNull(OcspResponseDataCache.INSTANCE.get(OTHER_CA_ID, "1"));
+        assertNotNull(OcspResponseDataCache.INSTANCE.get(OTHER_CA_ID, "3"));
+        OcspResponseDataCache.INSTANCE.invalidateCa(OTHER_CA_ID);
+        assertNull(OcspResponseDataCache.INSTANCE.get(OTHER_CA_ID, "3"));
+    }
+
+    private OcspResponseDataCache.CachedResponse createResponse(final long validityMs) throws Exception {
+        final OcspResponseInformation responseInformation = new OcspResponseInformation(
+                new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, null), 0, null);
+        return new OcspResponseDataCache.CachedResponse(responseInformation, System.currentTimeMillis() + validityMs, OCSPResponseItem.OCSP_GOOD, -1);
+    }
+}
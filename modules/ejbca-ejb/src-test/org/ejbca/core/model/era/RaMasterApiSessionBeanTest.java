@@ -1,8 +1,13 @@
 package org.ejbca.core.model.era;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
+import org.cesecore.certificates.certificate.CertificateData;
+import org.cesecore.certificates.certificate.CertificateDataWrapper;
 import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.EasyMock;
@@ -12,7 +17,9 @@ import org.junit.Test;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class RaMasterApiSessionBeanTest {
     private EntityManager entityManager;
@@ -68,4 +75,108 @@ public class RaMasterApiSessionBeanTest {
         
         assertFalse(parameters.getValues().contains("serialNumber"));
     }
+
+    @Test
+    public void testCreateKeysetQuery() throws Exception {
+        RaCertificateSearchRequestV2 request = new RaCertificateSearchRequestV2();
+        request.setOrderProperty("EXPIRE_DATE");
+        request.setOrderOperation("DESC");
+        request.setContinuationToken(new CertificateSearchContinuationToken("expireDate", true, "abc123", 1700000000000L).encode());
+        RaMasterApiSessionBean.createQuery(entityManager, request, false, null, null, false, null, false);
+
+        assertTrue(queryString.getValue().startsWith("SELECT a.fingerprint, a.expireDate FROM"));
+        assertTrue(queryString.getValue().contains(
+                "AND (a.expireDate < :keysetValue OR (a.expireDate = :keysetValue AND a.fingerprint < :keysetFingerprint))"));
+        assertTrue(queryString.getValue().endsWith("ORDER BY a.expireDate DESC, a.fingerprint DESC"));
+        assertTrue(parameters.getValues().contains("keysetValue"));
+        assertTrue(parameters.getValues().contains("keysetFingerprint"));
+    }
+
+    @Test
+    public void testCreateFirstKeysetQuery() throws Exception {
+        RaCertificateSearchRequestV2 request = new RaCertificateSearchRequestV2();
+        request.setContinuationToken("");
+        RaMasterApiSessionBean.createQuery(entityManager, request, false, null, null, false, null, false);
+
+        assertFalse(queryString.getValue().contains(":keyset"));
+        assertTrue(queryString.getValue().endsWith("ORDER BY a.fingerprint ASC"));
+    }
+
+    @Test
+    public void testContinuationToken() throws Exception {
+        final String encoded = new CertificateSearchContinuationToken("subjectDN", false, "abc123", "CN=Foo\nBar").encode();
+        final CertificateSearchContinuationToken token = CertificateSearchContinuationToken.decode(encoded, "subjectDN", false);
+        assertEquals("abc123", token.getFingerprint());
+        assertEquals("CN=Foo\nBar", token.getValue());
+        assertEquals(Long.valueOf(17), CertificateSearchContinuationToken.decode(
+                new CertificateSearchContinuationToken("status", true, "abc123", 17L).encode(), "status", true).getValue());
+        // Tokens can not be used with another sort order
+        for (final Object[] sortOrder : new Object[][] { { "subjectDN", true }, { "issuerDN", false }, { null, false } }) {
+            try {
+                CertificateSearchContinuationToken.decode(encoded, (String) sortOrder[0], (Boolean) sortOrder[1]);
+                fail("Continuation token should not be accepted for another sort order.");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        assertFalse(CertificateSearchContinuationToken.isSupportedOrderColumn("username"));
+    }
+
+    @Test
+    public void testMergeContinuationTokens() {
+        // Two back ends with certificates sorted by expire date, the first back end has more results than fit on the page
+        final RaCertificateSearchResponseV2 first = createResponse("expireDate", new long[] { 10, 20, 30 }, "a", true);
+        final RaCertificateSearchResponseV2 second = createResponse("expireDate", new long[] { 15, 25, 35 }, "b", false);
+        final RaCertificateSearchResponseV2 merged = new RaCertificateSearchResponseV2();
+        merged.merge(second);
+        merged.merge(first);
+        assertEquals(RaCertificateSearchResponseV2.Status.IN_PROGRESS, merged.getStatus());
+        // Results of the second back end after the last result of the first back end are returned with the next page
+        final List<String> fingerprints = new ArrayList<>();
+        for (final CertificateDataWrapper cdw : merged.getCdws()) {
+            fingerprints.add(cdw.getCertificateData().getFingerprint());
+        }
+        assertEquals("[a10, b15, a20, b25, a30]", fingerprints.toString());
+        assertEquals(first.getNextContinuationToken(), merged.getNextContinuationToken());
+        // The smallest position is kept when both back ends have more results
+        final RaCertificateSearchResponseV2 mergedBoth = new RaCertificateSearchResponseV2();
+        mergedBoth.merge(createResponse("expireDate", new long[] { 10, 20, 30 }, "a", true));
+        mergedBoth.merge(createResponse("expireDate", new long[] { 15, 25 }, "b", true));
+        assertEquals(4, mergedBoth.getCdws().size());
+        assertEquals("b25", CertificateSearchContinuationToken.decode(mergedBoth.getNextContinuationToken()).getFingerprint());
+        // The results of the last page are sorted, although no back end has more results
+        final RaCertificateSearchResponseV2 mergedLast = new RaCertificateSearchResponseV2();
+        mergedLast.merge(createResponse("expireDate", new long[] { 40 }, "b", false));
+        mergedLast.merge(createResponse("expireDate", new long[] { 35, 45 }, "a", false));
+        assertEquals("a35", mergedLast.getCdws().get(0).getCertificateData().getFingerprint());
+        assertEquals("a45", mergedLast.getCdws().get(2).getCertificateData().getFingerprint());
+        assertNull(mergedLast.getNextContinuationToken());
+        // Databases may sort text differently, so results sorted by a DN can not be merged
+        final RaCertificateSearchResponseV2 mergedText = new RaCertificateSearchResponseV2();
+        mergedText.merge(createResponse("subjectDN", new long[] { 10 }, "a", true));
+        mergedText.merge(createResponse("subjectDN", new long[] { 15 }, "b", false));
+        assertEquals(RaCertificateSearchResponseV2.Status.ERROR, mergedText.getStatus());
+        assertNull(mergedText.getNextContinuationToken());
+    }
+
+    /** @return a response with certificates that have the given expire dates, and a continuation token after the last one if there are more */
+    private static RaCertificateSearchResponseV2 createResponse(final String orderColumn, final long[] expireDates, final String fingerprintPrefix,
+            final boolean more) {
+        final RaCertificateSearchResponseV2 response = new RaCertificateSearchResponseV2();
+        for (final long expireDate : expireDates) {
+            final CertificateData certificateData = new CertificateData();
+            certificateData.setFingerprint(fingerprintPrefix + expireDate);
+            certificateData.setExpireDate(expireDate);
+            certificateData.setSubjectDN("CN=" + fingerprintPrefix + expireDate);
+            response.getCdws().add(new CertificateDataWrapper(certificateData, null));
+        }
+        final long last = expireDates[expireDates.length - 1];
+        final Object value = "expireDate".equals(orderColumn) ? (Object) last : "CN=" + fingerprintPrefix + last;
+        response.setLastResultContinuationToken(new CertificateSearchContinuationToken(orderColumn, false, fingerprintPrefix + last, value).encode());
+        if (more) {
+            response.setNextContinuationToken(response.getLastResultContinuationToken());
+        }
+        response.setStatus(RaCertificateSearchResponseV2.Status.SUCCESSFUL);
+        return response;
+    }
 }
@@ -35,6 +35,7 @@ import java.util.logging.LogManager;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
@@ -42,6 +43,7 @@ import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
@@ -63,6 +65,7 @@ import org.cesecore.certificates.certificate.CertificateStoreSessionLocal;
 import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLocal;
 import org.cesecore.certificates.endentity.EndEntityConstants;
 import org.cesecore.certificates.endentity.EndEntityInformation;
+import org.cesecore.certificates.ocsp.logging.AsyncLogWriter;
 import org.cesecore.config.CesecoreConfiguration;
 import org.cesecore.config.ConfigurationHolder;
 import org.cesecore.config.GlobalCesecoreConfiguration;
@@ -140,10 +143,16 @@ public class StartupSingletonBean {
     @EJB
     private OcspResponseCleanupSessionLocal ocspResponseCleanupSession;
 
+    /** Creates the thread writing buffered OCSP log rows, so that it is managed by the container and stopped on undeploy */
+    @Resource
+    private ManagedThreadFactory managedThreadFactory;
+
     @PreDestroy
     private void shutdown() {
         String iMsg = InternalEjbcaResources.getInstance().getLocalizedMessage("startservice.shutdown");
         log.info(iMsg);
+        // Write any OCSP log rows that are still buffered, and stop the background writer
+        AsyncLogWriter.INSTANCE.shutdown();
         // Make a log row that EJBCA is stopping
         //final Map<String, Object> details = new LinkedHashMap<String, Object>();
         //details.put("msg", iMsg);
@@ -210,6 +219,7 @@ public class StartupSingletonBean {
         // Log a startup message
         String iMsg = InternalEjbcaResources.getInstance().getLocalizedMessage("startservice.startup", GlobalConfiguration.EJBCA_VERSION);
         log.info(iMsg);
+        AsyncLogWriter.INSTANCE.start(managedThreadFactory);
 
         if (new Date().after(EjbcaConfiguration.getExpireAfter())) {
             throw new RuntimeException(InternalEjbcaResources.getInstance().getLocalizedMessage("startservice.build_expired"));
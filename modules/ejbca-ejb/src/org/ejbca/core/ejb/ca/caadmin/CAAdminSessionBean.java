@@ -3575,7 +3575,7 @@ public class CAAdminSessionBean implements CAAdminSessionLocal, CAAdminSessionRe
                                      boolean doPublishDeltaCRL) throws AuthorizationDeniedException {
         final byte[] crl = crlStoreSession.getLastCRL(issuerDn, crlPartitionIndex, false);
         if (crl != null) {
-            final int nr = crlStoreSession.getLastCRLInfo(issuerDn, crlPartitionIndex, false).getLastCRLNumber();
+            final int nr = crlStoreSession.getLastCRLNumber(issuerDn, crlPartitionIndex, false);
             publisherSession.storeCRL(admin, usedpublishers, crl, caCertFingerprint, nr, caDataDN);
         }
         if (!doPublishDeltaCRL) {
@@ -3583,7 +3583,7 @@ public class CAAdminSessionBean implements CAAdminSessionLocal, CAAdminSessionRe
         }
         final byte[] deltaCrl = crlStoreSession.getLastCRL(issuerDn, crlPartitionIndex, true);
         if (deltaCrl != null) {
-            final int nr = crlStoreSession.getLastCRLInfo(issuerDn, crlPartitionIndex, true).getLastCRLNumber();
+            final int nr = crlStoreSession.getLastCRLNumber(issuerDn, crlPartitionIndex, true);
             publisherSession.storeCRL(admin, usedpublishers, deltaCrl, caCertFingerprint, nr, caDataDN);
         }
     }
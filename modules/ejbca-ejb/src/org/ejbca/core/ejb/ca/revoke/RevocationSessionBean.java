@@ -13,6 +13,7 @@
 
 package org.ejbca.core.ejb.ca.revoke;
 
+import java.math.BigInteger;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
@@ -72,10 +73,12 @@ import org.ejbca.core.ejb.ca.publisher.PublisherSessionLocal;
 import org.ejbca.core.ejb.crl.CrlCreationParams;
 import org.ejbca.core.ejb.crl.PublishingCrlSessionLocal;
 import org.ejbca.core.ejb.ocsp.OcspDataSessionLocal;
+import org.ejbca.core.ejb.ocsp.OcspResponseDataCache;
 import org.ejbca.core.ejb.ocsp.OcspResponseGeneratorSessionLocal;
 import org.ejbca.core.ejb.ocsp.PresignResponseValidity;
 import org.ejbca.core.model.InternalEjbcaResources;
 import org.ejbca.core.model.ca.publisher.BasePublisher;
+import org.ejbca.ui.web.protocol.OcspGetResponseCache;
 
 import com.keyfactor.util.CertTools;
 import com.keyfactor.util.keys.token.CryptoTokenOfflineException;
@@ -201,16 +204,48 @@ public class RevocationSessionBean implements RevocationSessionLocal, Revocation
         BaseCertificateData baseCertificateData = cdw.getBaseCertificateData();
         final int caId = baseCertificateData.getIssuerDN().hashCode();
         final CAInfo caInfo = caSession.getCAInfo(admin, caId);
+        // Never serve a response to a GET request from memory that was produced before the revocation
+        OcspGetResponseCache.INSTANCE.invalidateSerialNumber(baseCertificateData.getSerialNumber());
 
         //If it's an X509 CA, we may have the option to immediately pre-compute an OCSP response
         if(caInfo != null && caInfo.getCAType() == X509CAInfo.CATYPE_X509) {
-            preSignOcspResponse((X509CAInfo) caInfo, (X509Certificate) cdw.getCertificate());
+            // Never serve a response from memory that was produced before the revocation
+            OcspResponseDataCache.INSTANCE.invalidate(caId, baseCertificateData.getSerialNumber());
+            final X509Certificate x509Certificate = (X509Certificate) cdw.getCertificate();
+            if (x509Certificate != null) {
+                preSignOcspResponse((X509CAInfo) caInfo, CertTools.getSerialNumber(x509Certificate));
+            }
+        }
+        generateCrlUponRevocation(admin, caInfo);
+    }
 
+    @Override
+    public void postRevokeCertificates(final AuthenticationToken admin, final int caId, final Collection<BigInteger> serialNumbers)
+            throws AuthorizationDeniedException {
+        final CAInfo caInfo = caSession.getCAInfo(admin, caId);
+        for (final BigInteger serialNumber : serialNumbers) {
+            // Never serve a response to a GET request from memory that was produced before the revocation
+            OcspGetResponseCache.INSTANCE.invalidateSerialNumber(serialNumber.toString());
         }
-        
+        if (caInfo != null && caInfo.getCAType() == X509CAInfo.CATYPE_X509) {
+            for (final BigInteger serialNumber : serialNumbers) {
+                // Never serve a response from memory that was produced before the revocation
+                OcspResponseDataCache.INSTANCE.invalidate(caId, serialNumber.toString());
+                preSignOcspResponse((X509CAInfo) caInfo, serialNumber);
+            }
+        }
+    }
+
+    @Override
+    public void generateCrlUponRevocation(final AuthenticationToken admin, final int caId) throws AuthorizationDeniedException {
+        generateCrlUponRevocation(admin, caSession.getCAInfo(admin, caId));
+    }
+
+    private void generateCrlUponRevocation(final AuthenticationToken admin, final CAInfo caInfo) {
         // ECA-9716 caInfo == null with self-signed certificates stored in DB before revoking
         // an end entity (found in EndEntityManagementSessionTest.testRevokeEndEntity)
         if (caInfo != null && caInfo.isGenerateCrlUponRevocation()) {
+            final int caId = caInfo.getCAId();
             log.info("Generate new CRL upon revocation for CA '" + caId + "'.");
             AuthenticationToken newAdmin = getOrCreateAuthorizedTokenCreateCrl(admin, caInfo.getName());
             try {
@@ -228,18 +263,18 @@ public class RevocationSessionBean implements RevocationSessionLocal, Revocation
     }
 
 
-    private void preSignOcspResponse(final X509CAInfo x509caInfo, final X509Certificate x509Certificate) {
+    private void preSignOcspResponse(final X509CAInfo x509caInfo, final BigInteger certificateSerialNumber) {
         if ((x509caInfo.isDoPreProduceOcspResponses() && x509caInfo.isDoPreProduceOcspResponseUponIssuanceAndRevocation())
-                && (x509Certificate != null && !x509caInfo.getCertificateChain().isEmpty())) {
-            deleteOcspIfExists(x509caInfo.getCAId(), x509Certificate);
+                && !x509caInfo.getCertificateChain().isEmpty()) {
+            deleteOcspIfExists(x509caInfo.getCAId(), certificateSerialNumber);
             ocspResponseGeneratorSession.preSignOcspResponse((X509Certificate) x509caInfo.getCertificateChain().get(0),
-                    CertTools.getSerialNumber(x509Certificate), PresignResponseValidity.CONFIGURATION_BASED, true, CertificateConstants.DEFAULT_CERTID_HASH_ALGORITHM);
+                    certificateSerialNumber, PresignResponseValidity.CONFIGURATION_BASED, true, CertificateConstants.DEFAULT_CERTID_HASH_ALGORITHM);
 
         }
     }
     
-    private void deleteOcspIfExists(final int caId, final X509Certificate x509Certificate) {
-        final String serialNumber = CertTools.getSerialNumberAsString(x509Certificate);
+    private void deleteOcspIfExists(final int caId, final BigInteger certificateSerialNumber) {
+        final String serialNumber = certificateSerialNumber.toString(16).toUpperCase();
         if (ocspDataSession.findOcspDataByCaIdSerialNumber(caId, serialNumber) != null) {
             ocspDataSession.deleteOcspDataByCaIdSerialNumber(caId, serialNumber); 
         }
@@ -415,7 +450,7 @@ public class RevocationSessionBean implements RevocationSessionLocal, Revocation
             return revocationDate;
         }
 
-        final CRLInfo baseCrlInfo = crlStoreSession.getLastCRLInfo(issuerDN, cdw.getBaseCertificateData().getCrlPartitionIndex(), false);
+        final CRLInfo baseCrlInfo = crlStoreSession.getLastCRLInfoLightWeight(issuerDN, cdw.getBaseCertificateData().getCrlPartitionIndex(), false);
         if (baseCrlInfo == null || baseCrlInfo.getCreateDate().before(revocationDate)) { // if not on base CRL
             return null;
         } else {
@@ -42,6 +42,7 @@ import org.ejbca.core.ejb.ca.caadmin.CAAdminSessionLocal;
 import org.ejbca.core.ejb.ca.publisher.PublisherSessionLocal;
 import org.ejbca.core.ejb.ocsp.OcspResponseGeneratorSessionLocal;
 import org.ejbca.core.ejb.ra.raadmin.EndEntityProfileSessionLocal;
+import org.ejbca.core.model.services.workers.CrlDownloadCache;
 import org.ejbca.core.protocol.msae.KecCache;
 
 import com.keyfactor.util.keys.token.CryptoToken;
@@ -162,6 +163,10 @@ public class ClearCacheSessionBean implements ClearCacheSessionLocal {
         if (log.isDebugEnabled()) {
             log.debug("OCSP request signer revocation status cache cleared.");
         }
+        ocspResponseGeneratorSession.clearOcspResponseDataCache();
+        if (log.isDebugEnabled()) {
+            log.debug("OCSP pre-produced and GET response caches cleared.");
+        }
         certificateStoreSession.reloadCaCertificateCache(); 
         if(log.isDebugEnabled()) {
             log.debug("Certificate Store cache cleared and reloaded.");
@@ -178,6 +183,10 @@ public class ClearCacheSessionBean implements ClearCacheSessionLocal {
         if(log.isDebugEnabled()) {
             log.debug("Key exchange certificate cache cleared.");
         }
+        CrlDownloadCache.INSTANCE.flush();
+        if (log.isDebugEnabled()) {
+            log.debug("CRL download validator cache cleared, all CRLs are downloaded again.");
+        }
         
     }
     
@@ -22,8 +22,14 @@ import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.ejb.EJB;
@@ -33,23 +39,40 @@ import javax.ejb.TransactionAttributeType;
 
 import org.apache.log4j.Logger;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.cesecore.audit.enums.EventStatus;
+import org.cesecore.audit.enums.EventTypes;
+import org.cesecore.audit.enums.ModuleTypes;
+import org.cesecore.audit.enums.ServiceTypes;
+import org.cesecore.audit.log.SecurityEventsLoggerSessionLocal;
 import org.cesecore.authentication.tokens.AuthenticationToken;
 import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.authorization.AuthorizationSessionLocal;
 import org.cesecore.certificates.ca.CAInfo;
 import org.cesecore.certificates.certificate.CertificateConstants;
+import org.cesecore.certificates.certificate.CertificateData;
 import org.cesecore.certificates.certificate.CertificateDataWrapper;
 import org.cesecore.certificates.certificate.CertificateStoreSessionLocal;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLocal;
 import org.cesecore.certificates.crl.CrlImportException;
 import org.cesecore.certificates.crl.CrlStoreException;
 import org.cesecore.certificates.crl.CrlStoreSessionLocal;
+import org.cesecore.certificates.crl.RevokedCertInfo;
 import org.cesecore.certificates.util.cert.CrlExtensions;
 import org.cesecore.jndi.JndiConstants;
+import org.ejbca.config.EjbcaConfiguration;
+import org.ejbca.core.ejb.ca.revoke.RevocationSessionLocal;
+import org.ejbca.core.ejb.ca.publisher.PublisherSessionLocal;
+import org.ejbca.core.ejb.ocsp.OcspResponseDataCache;
 import org.ejbca.core.ejb.ra.EndEntityManagementSessionLocal;
 import org.ejbca.core.ejb.ra.NoSuchEndEntityException;
+import org.ejbca.core.model.InternalEjbcaResources;
 import org.ejbca.core.model.approval.ApprovalException;
+import org.ejbca.core.model.authorization.AccessRulesConstants;
 import org.ejbca.core.model.approval.WaitingForApprovalException;
 import org.ejbca.core.model.ra.AlreadyRevokedException;
 import org.ejbca.core.model.ra.RevokeBackDateNotAllowedForProfileException;
+import org.ejbca.ui.web.protocol.OcspGetResponseCache;
 
 import com.keyfactor.util.CertTools;
 import com.keyfactor.util.certificate.DnComponents;
@@ -59,6 +82,7 @@ import com.keyfactor.util.certificate.DnComponents;
 public class ImportCrlSessionBean implements ImportCrlSessionLocal, ImportCrlSessionRemote {
 
     private static final Logger log = Logger.getLogger(ImportCrlSessionBean.class);
+    private static final InternalEjbcaResources intres = InternalEjbcaResources.getInstance();
 
     @EJB
     private CertificateStoreSessionLocal certStoreSession;
@@ -66,6 +90,16 @@ public class ImportCrlSessionBean implements ImportCrlSessionLocal, ImportCrlSes
     private CrlStoreSessionLocal crlStoreSession;
     @EJB
     private EndEntityManagementSessionLocal endentityManagementSession;
+    @EJB
+    private AuthorizationSessionLocal authorizationSession;
+    @EJB
+    private SecurityEventsLoggerSessionLocal auditSession;
+    @EJB
+    private CertificateProfileSessionLocal certificateProfileSession;
+    @EJB
+    private PublisherSessionLocal publisherSession;
+    @EJB
+    private RevocationSessionLocal revocationSession;
     
     @Override
     public void importCrl(final AuthenticationToken authenticationToken, final CAInfo cainfo, final byte[] crlbytes, final int crlPartitionIndex)
@@ -117,44 +151,11 @@ public class ImportCrlSessionBean implements ImportCrlSessionLocal, ImportCrlSes
             }
         
             log.info("Found " + crlEntries.size() + " new entires in " + (isDeltaCrl?"delta":"full")+ " CRL number " + downloadedCrlNumber + " issued by '" + issuerDn + "' compared to previous.");
-            // For each entry that was updated after the last known CRL, create/update a new database entry with the new status
-            for (final X509CRLEntry crlEntry : crlEntries) {
-                final Date revocationDate = crlEntry.getRevocationDate();
-                final BigInteger serialNumber = crlEntry.getSerialNumber();
-                Date invalidityDate = null;
-                ASN1GeneralizedTime asn1GeneralizedTime = CrlExtensions.extractInvalidityDate(crlEntry);
-                if (asn1GeneralizedTime != null) {
-                    try {
-                        invalidityDate = asn1GeneralizedTime.getDate();
-                    } catch (ParseException e) {
-                        log.info("Failed to parse invalidityDate for crl entry with serial number " + serialNumber);
-                    }
-                }
-                final int reasonCode = CrlExtensions.extractReasonCode(crlEntry);
-                if (crlEntry.getCertificateIssuer()!=null) {
-                    final String entryIssuerDn = DnComponents.stringToBCDNString(crlEntry.getCertificateIssuer().getName());
-                    if (!issuerDn.equals(entryIssuerDn)) {
-                        log.warn("CA's subjectDN does not match CRL entry's issuerDn '"+entryIssuerDn+"' and entry with serialNumber " + serialNumber + " will be ignored.");
-                    }
-                }
-                
-                final CertificateDataWrapper cdw = certStoreSession.getCertificateDataByIssuerAndSerno(issuerDn, serialNumber);
-                if(isLimitedCertificate(issuerDn, serialNumber, cdw)) {
-                    // Store as much as possible about what we know about the certificate and its status (which is limited) in the database
-                    certStoreSession.updateLimitedCertificateDataStatus(authenticationToken, cainfo.getCAId(), issuerDn, serialNumber, revocationDate, reasonCode, caFingerprint, invalidityDate);
-                } else {
-                    final String serialHex = serialNumber.toString(16).toUpperCase();
-                    log.info("Revoking '" + serialHex + "' " + "(" + serialNumber.toString() + ")");
-                    try {
-                        //log.info("Reason code: " + reason);
-                        endentityManagementSession.revokeCert(authenticationToken, serialNumber, crlEntry.getRevocationDate(), invalidityDate, issuerDn, reasonCode, false);
-                    } catch (AlreadyRevokedException e) {
-                        log.warn("Failed to revoke '" + serialHex + "'. (Status might be 'Archived'.) Error message was: " + e.getMessage());
-                    } catch (ApprovalException | RevokeBackDateNotAllowedForProfileException | NoSuchEndEntityException | WaitingForApprovalException e) {
-                        throw new CrlImportException("Failed to revoke certificate with serial number " + serialHex, e);
-                    }
-                    
-                }
+            final int bulkBatchSize = EjbcaConfiguration.getCrlImportBulkBatchSize();
+            if (bulkBatchSize > 0 && !cainfo.isUseNoConflictCertificateData()) {
+                importCrlEntriesInBulk(authenticationToken, cainfo, issuerDn, caFingerprint, crlEntries, isDeltaCrl, downloadedCrlNumber, bulkBatchSize);
+            } else {
+                importCrlEntries(authenticationToken, cainfo, issuerDn, caFingerprint, crlEntries);
             }
         }
         // Calculate (make up) the CRL Number if the number was not present
@@ -169,6 +170,127 @@ public class ImportCrlSessionBean implements ImportCrlSessionLocal, ImportCrlSes
         crlStoreSession.storeCRL(authenticationToken, x509crl.getEncoded(), caFingerprint, newCrlNumber, issuerDn, crlPartitionIndex, x509crl.getThisUpdate(), x509crl.getNextUpdate(), isDeltaCrl?1:-1);
     
     }
+
+    /** Revokes the certificates of the CRL entries one at a time, with the same checks, audit logging and publishing as a revocation by an administrator */
+    private void importCrlEntries(final AuthenticationToken authenticationToken, final CAInfo cainfo, final String issuerDn, final String caFingerprint,
+            final Set<X509CRLEntry> crlEntries) throws CrlImportException, AuthorizationDeniedException {
+        // For each entry that was updated after the last known CRL, create/update a new database entry with the new status
+        for (final X509CRLEntry crlEntry : crlEntries) {
+            final Date revocationDate = crlEntry.getRevocationDate();
+            final BigInteger serialNumber = crlEntry.getSerialNumber();
+            final Date invalidityDate = getInvalidityDate(crlEntry);
+            final int reasonCode = CrlExtensions.extractReasonCode(crlEntry);
+            if (crlEntry.getCertificateIssuer()!=null) {
+                final String entryIssuerDn = DnComponents.stringToBCDNString(crlEntry.getCertificateIssuer().getName());
+                if (!issuerDn.equals(entryIssuerDn)) {
+                    log.warn("CA's subjectDN does not match CRL entry's issuerDn '"+entryIssuerDn+"' and entry with serialNumber " + serialNumber + " will be ignored.");
+                }
+            }
+            
+            final CertificateDataWrapper cdw = certStoreSession.getCertificateDataByIssuerAndSerno(issuerDn, serialNumber);
+            if(isLimitedCertificate(issuerDn, serialNumber, cdw)) {
+                // Store as much as possible about what we know about the certificate and its status (which is limited) in the database
+                certStoreSession.updateLimitedCertificateDataStatus(authenticationToken, cainfo.getCAId(), issuerDn, serialNumber, revocationDate, reasonCode, caFingerprint, invalidityDate);
+            } else {
+                final String serialHex = serialNumber.toString(16).toUpperCase();
+                log.info("Revoking '" + serialHex + "' " + "(" + serialNumber.toString() + ")");
+                try {
+                    //log.info("Reason code: " + reason);
+                    endentityManagementSession.revokeCert(authenticationToken, serialNumber, crlEntry.getRevocationDate(), invalidityDate, issuerDn, reasonCode, false);
+                } catch (AlreadyRevokedException e) {
+                    log.warn("Failed to revoke '" + serialHex + "'. (Status might be 'Archived'.) Error message was: " + e.getMessage());
+                } catch (ApprovalException | RevokeBackDateNotAllowedForProfileException | NoSuchEndEntityException | WaitingForApprovalException e) {
+                    throw new CrlImportException("Failed to revoke certificate with serial number " + serialHex, e);
+                }
+                
+            }
+        }
+    }
+
+    /**
+     * Updates the status of the certificates of the CRL entries in batches, each in its own transaction. The current statuses are read with
+     * set queries, entries that are already up to date are skipped, one audit log event is written for the whole CRL and revoked certificates
+     * are published by the publishers in their certificate profiles. Pre-produced OCSP responses are handled after each
+     * batch, and a CRL is generated once for the whole CRL if the CA generates CRLs upon revocation, as when revoking one certificate.
+     * <p>
+     * Approvals and end entity notifications are not used, since the certificates have already been revoked by the CA that issued the CRL.
+     */
+    private void importCrlEntriesInBulk(final AuthenticationToken authenticationToken, final CAInfo cainfo, final String issuerDn,
+            final String caFingerprint, final Set<X509CRLEntry> crlEntries, final boolean isDeltaCrl, final int crlNumber, final int batchSize)
+            throws AuthorizationDeniedException {
+        if (!authorizationSession.isAuthorizedNoLogging(authenticationToken, AccessRulesConstants.REGULAR_REVOKEENDENTITY)) {
+            throw new AuthorizationDeniedException(intres.getLocalizedMessage("ra.errorauthrevoke"));
+        }
+        final Map<Integer, Collection<Integer>> publishersByCertificateProfile = new HashMap<>();
+        final List<RevokedCertInfo> batch = new ArrayList<>(Math.min(batchSize, crlEntries.size()));
+        int processed = 0;
+        int changed = 0;
+        boolean completed = false;
+        try {
+            for (final X509CRLEntry crlEntry : crlEntries) {
+                final BigInteger serialNumber = crlEntry.getSerialNumber();
+                if (crlEntry.getCertificateIssuer()!=null) {
+                    final String entryIssuerDn = DnComponents.stringToBCDNString(crlEntry.getCertificateIssuer().getName());
+                    if (!issuerDn.equals(entryIssuerDn)) {
+                        log.warn("CA's subjectDN does not match CRL entry's issuerDn '"+entryIssuerDn+"' and entry with serialNumber " + serialNumber + " will be ignored.");
+                    }
+                }
+                final Date invalidityDate = getInvalidityDate(crlEntry);
+                batch.add(new RevokedCertInfo(null, serialNumber.toByteArray(), crlEntry.getRevocationDate().getTime(), CrlExtensions.extractReasonCode(crlEntry),
+                        0, invalidityDate == null ? null : invalidityDate.getTime()));
+                if (batch.size() == batchSize) {
+                    changed += importCrlEntryBatch(authenticationToken, cainfo.getCAId(), issuerDn, caFingerprint, batch, publishersByCertificateProfile);
+                    processed += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                changed += importCrlEntryBatch(authenticationToken, cainfo.getCAId(), issuerDn, caFingerprint, batch, publishersByCertificateProfile);
+                processed += batch.size();
+            }
+            if (changed > 0) {
+                revocationSession.generateCrlUponRevocation(authenticationToken, cainfo.getCAId());
+            }
+            completed = true;
+        } finally {
+            final String msg = intres.getLocalizedMessage("store.importedcrlentries", isDeltaCrl ? "delta" : "full", crlNumber, issuerDn, changed, processed, crlEntries.size());
+            log.info(msg);
+            final Map<String, Object> details = new LinkedHashMap<>();
+            details.put("msg", msg);
+            auditSession.log(EventTypes.CERT_REVOKED, completed ? EventStatus.SUCCESS : EventStatus.FAILURE, ModuleTypes.CERTIFICATE, ServiceTypes.CORE,
+                    authenticationToken.toString(), String.valueOf(cainfo.getCAId()), null, null, details);
+        }
+    }
+
+    /** @return the number of certificates whose status was changed */
+    private int importCrlEntryBatch(final AuthenticationToken authenticationToken, final int caId, final String issuerDn, final String caFingerprint,
+            final List<RevokedCertInfo> batch, final Map<Integer, Collection<Integer>> publishersByCertificateProfile)
+            throws AuthorizationDeniedException {
+        final List<CertificateData> changed = certStoreSession.updateStatusesFromCrlInNewTransaction(authenticationToken, caId, issuerDn, caFingerprint, batch);
+        final List<BigInteger> changedSerialNumbers = new ArrayList<>(changed.size());
+        for (final CertificateData certificateData : changed) {
+            final BigInteger serialNumber = new BigInteger(certificateData.getSerialNumber());
+            if (CertificateData.getLimitedCertificateDataFingerprint(issuerDn, serialNumber).equals(certificateData.getFingerprint())) {
+                // Limited entries are not published, as when imported one at a time
+                // Never serve a pre-produced OCSP response from memory that was produced before the status change
+                OcspResponseDataCache.INSTANCE.invalidate(caId, certificateData.getSerialNumber());
+                OcspGetResponseCache.INSTANCE.invalidateSerialNumber(certificateData.getSerialNumber());
+                continue;
+            }
+            changedSerialNumbers.add(serialNumber);
+            final Collection<Integer> publishers = publishersByCertificateProfile.computeIfAbsent(certificateData.getCertificateProfileId(), id -> {
+                final CertificateProfile certificateProfile = certificateProfileSession.getCertificateProfile(id);
+                return certificateProfile == null || certificateProfile.getPublisherList() == null ? new ArrayList<>() : certificateProfile.getPublisherList();
+            });
+            if (!publishers.isEmpty()) {
+                // Published directly or queued depending on the publisher, as by revokeCert
+                publisherSession.storeCertificate(authenticationToken, publishers, certificateData.getFingerprint(), null, certificateData.getSubjectDN(), null);
+            }
+        }
+        // Same as revokeCert does for each certificate, after the status changes have been committed
+        revocationSession.postRevokeCertificates(authenticationToken, caId, changedSerialNumbers);
+        return changed.size();
+    }
     
     private void verifyCrlIssuer(final X509CRL crl, final String issuerDN, final X509Certificate cacert) throws CrlImportException {
         log.info("CA: " + issuerDN);
@@ -197,9 +319,20 @@ public class ImportCrlSessionBean implements ImportCrlSessionLocal, ImportCrlSes
         return lastCrlOfSameType;
     }
     
+    private Date getInvalidityDate(final X509CRLEntry crlEntry) {
+        final ASN1GeneralizedTime asn1GeneralizedTime = CrlExtensions.extractInvalidityDate(crlEntry);
+        if (asn1GeneralizedTime != null) {
+            try {
+                return asn1GeneralizedTime.getDate();
+            } catch (ParseException e) {
+                log.info("Failed to parse invalidityDate for crl entry with serial number " + crlEntry.getSerialNumber());
+            }
+        }
+        return null;
+    }
+
     private boolean isLimitedCertificate(final String issuerDn, final BigInteger serialNumber, final CertificateDataWrapper cdw) {
-        final String limitedFingerprint = CertTools.getFingerprintAsString((issuerDn+";"+serialNumber).getBytes());
-        return (cdw==null) || (limitedFingerprint.equals(cdw.getCertificateData().getFingerprint()));
+        return (cdw==null) || (CertificateData.getLimitedCertificateDataFingerprint(issuerDn, serialNumber).equals(cdw.getCertificateData().getFingerprint()));
     }
 
 }
@@ -0,0 +1,243 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.crl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Generates CRLs for several CAs and CRL partitions in parallel, on threads of a given executor, normally the managed executor service
+ * of the application server.
+ * <p>
+ * Each CRL (a CA and a CRL partition) is a unit of work. At most a configured number of units run at the same time, and at most a
+ * configured number of units that use the same crypto token, so that an HSM is not given more signing requests than it can handle, while
+ * units that use other crypto tokens can proceed. A unit that fails does not affect the other units. The result of each unit, including
+ * the time it took, is returned.
+ */
+public class ParallelCrlGenerator {
+
+    private static final Logger log = Logger.getLogger(ParallelCrlGenerator.class);
+
+    /** Creates a CRL */
+    public interface CrlTask {
+        /** @return true if a CRL was created, false if no CRL was needed. */
+        boolean createCrl() throws Exception;
+    }
+
+    /** A CRL to create */
+    public static final class Unit {
+        private final int caId;
+        private final int crlPartitionIndex;
+        private final int cryptoTokenId;
+        private final CrlTask task;
+
+        public Unit(final int caId, final int crlPartitionIndex, final int cryptoTokenId, final CrlTask task) {
+            this.caId = caId;
+            this.crlPartitionIndex = crlPartitionIndex;
+            this.cryptoTokenId = cryptoTokenId;
+            this.task = task;
+        }
+
+        public int getCaId() { return caId; }
+        public int getCrlPartitionIndex() { return crlPartitionIndex; }
+        public int getCryptoTokenId() { return cryptoTokenId; }
+    }
+
+    /** The result of a unit */
+    public static final class UnitResult {
+        private final Unit unit;
+        private final boolean created;
+        private final long durationMillis;
+        private final Exception failure;
+
+        private UnitResult(final Unit unit, final boolean created, final long durationMillis, final Exception failure) {
+            this.unit = unit;
+            this.created = created;
+            this.durationMillis = durationMillis;
+            this.failure = failure;
+        }
+
+        public Unit getUnit() { return unit; }
+        /** @return true if a CRL was created */
+        public boolean isCreated() { return created; }
+        /** @return the time it took to create the CRL, or to find out that no CRL was needed */
+        public long getDurationMillis() { return durationMillis; }
+        /** @return the exception thrown by the unit, or null if it did not fail */
+        public Exception getFailure() { return failure; }
+    }
+
+    private final Executor executor;
+    private final int maxUnits;
+    private final int maxUnitsPerCryptoToken;
+
+    /**
+     * @param executor the executor that runs the units. It is not shut down by this class.
+     * @param maxUnits the maximum number of CRLs created at the same time
+     * @param maxUnitsPerCryptoToken the maximum number of CRLs created at the same time with the same crypto token
+     */
+    public ParallelCrlGenerator(final Executor executor, final int maxUnits, final int maxUnitsPerCryptoToken) {
+        this.executor = executor;
+        this.maxUnits = Math.max(1, maxUnits);
+        this.maxUnitsPerCryptoToken = Math.max(1, maxUnitsPerCryptoToken);
+    }
+
+    /**
+     * Runs the units and waits for all of them to complete.
+     *
+     * @param units the CRLs to create
+     * @return the results, in the same order as the units. If the executor rejects a unit, units that have not started yet are not started,
+     * and are returned as failed when the running units have completed. If interrupted while waiting, units that have not started yet are
+     * not started, and are returned as failed together with units that are still running, which complete in the background.
+     */
+    public List<UnitResult> run(final List<Unit> units) {
+        final UnitResult[] results = new UnitResult[units.size()];
+        if (units.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Units waiting for their crypto token, in the order they were given
+        final Map<Integer, Queue<Integer>> waitingByCryptoToken = new HashMap<>();
+        for (int i = 0; i < units.size(); i++) {
+            waitingByCryptoToken.computeIfAbsent(units.get(i).getCryptoTokenId(), id -> new ArrayDeque<>()).add(i);
+        }
+        final CountDownLatch completed = new CountDownLatch(units.size());
+        final Scheduler scheduler = new Scheduler(units, results, waitingByCryptoToken, completed);
+        try {
+            scheduler.startNext();
+            completed.await();
+        } catch (InterruptedException e) {
+            log.info("Interrupted while waiting for CRLs to be generated.");
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler.cancel();
+        }
+        return scheduler.getResults();
+    }
+
+    /** Starts units while below the limits, and starts the next units when one completes */
+    private final class Scheduler {
+        private final List<Unit> units;
+        private final UnitResult[] results;
+        private final Map<Integer, Queue<Integer>> waitingByCryptoToken;
+        private final Map<Integer, Integer> runningByCryptoToken = new HashMap<>();
+        private final CountDownLatch completed;
+        private int running = 0;
+        private boolean cancelled = false;
+
+        private Scheduler(final List<Unit> units, final UnitResult[] results, final Map<Integer, Queue<Integer>> waitingByCryptoToken,
+                final CountDownLatch completed) {
+            this.units = units;
+            this.results = results;
+            this.waitingByCryptoToken = waitingByCryptoToken;
+            this.completed = completed;
+        }
+
+        /** Starts as many waiting units as the limits allow */
+        private void startNext() {
+            final List<Integer> indexes = new ArrayList<>();
+            synchronized (this) {
+                for (final Map.Entry<Integer, Queue<Integer>> entry : waitingByCryptoToken.entrySet()) {
+                    while (!cancelled && running < maxUnits && runningByCryptoToken.getOrDefault(entry.getKey(), 0) < maxUnitsPerCryptoToken
+                            && !entry.getValue().isEmpty()) {
+                        indexes.add(entry.getValue().poll());
+                        runningByCryptoToken.merge(entry.getKey(), 1, Integer::sum);
+                        running++;
+                    }
+                }
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                final int index = indexes.get(i);
+                try {
+                    executor.execute(() -> runUnit(index));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Could not start generation of CRL for CA " + units.get(index).getCaId() + " and CRL partition "
+                            + units.get(index).getCrlPartitionIndex() + ": " + e.getMessage());
+                    cancelNotStarted(indexes.subList(i, indexes.size()));
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Stops starting units. The given units, which could not be started, and the units that are still waiting are reported as not
+         * completed, while the units that are already running are still waited for.
+         */
+        private void cancelNotStarted(final List<Integer> rejectedIndexes) {
+            int notStarted = rejectedIndexes.size();
+            synchronized (this) {
+                cancelled = true;
+                for (final Integer index : rejectedIndexes) {
+                    runningByCryptoToken.merge(units.get(index).getCryptoTokenId(), -1, Integer::sum);
+                    running--;
+                }
+                for (final Queue<Integer> waiting : waitingByCryptoToken.values()) {
+                    notStarted += waiting.size();
+                    waiting.clear();
+                }
+            }
+            for (int i = 0; i < notStarted; i++) {
+                completed.countDown();
+            }
+        }
+
+        private void runUnit(final int index) {
+            final Unit unit = units.get(index);
+            final long startTime = System.currentTimeMillis();
+            boolean created = false;
+            Exception failure = null;
+            try {
+                created = unit.task.createCrl();
+            } catch (Exception e) {
+                failure = e;
+            } catch (Error e) {
+                failure = new IllegalStateException(e);
+                throw e;
+            } finally {
+                final long durationMillis = System.currentTimeMillis() - startTime;
+                if (log.isDebugEnabled()) {
+                    log.debug("CRL generation for CA " + unit.getCaId() + " and CRL partition " + unit.getCrlPartitionIndex() + " took " + durationMillis
+                            + " ms." + (failure == null ? (created ? " A CRL was created." : " No CRL was needed.") : " It failed: " + failure.getMessage()));
+                }
+                synchronized (this) {
+                    results[index] = new UnitResult(unit, created, durationMillis, failure);
+                    runningByCryptoToken.merge(unit.getCryptoTokenId(), -1, Integer::sum);
+                    running--;
+                }
+                completed.countDown();
+                startNext();
+            }
+        }
+
+        /** @return the results, with a failure for the units that have not completed */
+        private synchronized List<UnitResult> getResults() {
+            final List<UnitResult> ret = new ArrayList<>(results.length);
+            for (int i = 0; i < results.length; i++) {
+                ret.add(results[i] != null ? results[i]
+                        : new UnitResult(units.get(i), false, 0, new InterruptedException("CRL generation was interrupted before it completed.")));
+            }
+            return ret;
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+        }
+    }
+}
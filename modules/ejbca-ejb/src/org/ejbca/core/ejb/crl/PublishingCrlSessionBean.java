@@ -13,7 +13,9 @@
 package org.ejbca.core.ejb.crl;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.cert.CRLException;
+import java.security.cert.CRLReason;
 import java.security.cert.Certificate;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
@@ -36,6 +38,7 @@ import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 import org.apache.commons.lang.math.IntRange;
 import org.apache.log4j.Logger;
@@ -73,11 +76,14 @@ import org.cesecore.certificates.crl.RevokedCertInfo;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.util.LogRedactionUtils;
+import org.ejbca.config.EjbcaConfiguration;
 import org.ejbca.core.ejb.ca.publisher.PublisherSessionLocal;
 
 import com.keyfactor.CesecoreException;
 import com.keyfactor.util.CertTools;
 import com.keyfactor.util.CryptoProviderTools;
+import com.keyfactor.util.StringTools;
+import com.keyfactor.util.certificate.DnComponents;
 import com.keyfactor.util.keys.token.CryptoTokenOfflineException;
 
 /**
@@ -94,6 +100,8 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
 
     @Resource
     private SessionContext sessionContext;
+    @Resource
+    private ManagedExecutorService managedExecutorService;
 
     @EJB
     private CaSessionLocal caSession;
@@ -140,6 +148,9 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
         } else {
             caIdsToProcess = caids;
         }
+        if (EjbcaConfiguration.getCrlGenerationThreads() > 1 && managedExecutorService != null) {
+            return createCRLsInParallel(admin, caIdsToProcess, addtocrloverlaptime, params);
+        }
         Set<Integer> createdcrls = new HashSet<>();
         for (final int caid : caIdsToProcess) {
             if (log.isDebugEnabled()) {
@@ -168,6 +179,9 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
         } else {
             caIdsToProcess = caids;
         }
+        if (EjbcaConfiguration.getCrlGenerationThreads() > 1 && managedExecutorService != null) {
+            return createDeltaCRLsInParallel(admin, caIdsToProcess, crloverlaptime);
+        }
         Set<Integer> createddeltacrls = new HashSet<>();
         for (final int caid : caIdsToProcess) {
             if (log.isDebugEnabled()) {
@@ -194,54 +208,220 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
     public boolean createCRLNewConditioned(AuthenticationToken admin, int caId, long addToCrlOverlapTime, final CrlCreationParams params) throws CryptoTokenOfflineException, CADoesntExistsException, AuthorizationDeniedException, CAOfflineException {
         // Get CA checks authorization to the CA
         final CA ca = (CA) caSession.getCA(admin, caId);
-        final CAInfo cainfo = ca.getCAInfo();
         try {
-            if (cainfo.getStatus() == CAConstants.CA_EXTERNAL) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate CRL for external CA "+cainfo.getName());
+            final Certificate cacert = getCaCertificateIfCrlsCanBeCreated(ca.getCAInfo(), params.getValidFrom(), false);
+            if (cacert == null) {
+                return false;
+            }
+            boolean result = true;
+            for (final int crlPartitionIndex : getCrlPartitionIndexesToCreate(ca.getCAInfo())) {
+                result &= createCrlForActiveCa(admin, ca, cacert, crlPartitionIndex, addToCrlOverlapTime, params);
+            }
+            return result;
+        } catch (CryptoTokenOfflineException e) {
+            log.warn("Crypto token is offline for CA "+caId+" generating CRL.");
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if CRLs can be created for a CA, and logs the reason if they can not.
+     *
+     * @param cainfo the CA
+     * @param now the time the CRL will be valid from, CRLs are not created for CAs that have expired at this time.
+     * @param deltaCrl true if checking for delta CRLs, which are only created if they are enabled for the CA.
+     * @return the CA certificate, or null if no CRLs should be created for the CA.
+     */
+    private Certificate getCaCertificateIfCrlsCanBeCreated(final CAInfo cainfo, final Date now, final boolean deltaCrl) {
+        final String crlType = deltaCrl ? "delta CRL" : "CRL";
+        if (cainfo.getStatus() == CAConstants.CA_EXTERNAL) {
+            if (log.isDebugEnabled()) {
+                log.debug("Not trying to generate "+crlType+" for external CA "+cainfo.getName());
+            }
+        } else if (cainfo.getStatus() == CAConstants.CA_WAITING_CERTIFICATE_RESPONSE) {
+            if (log.isDebugEnabled()) {
+                log.debug("Not trying to generate "+crlType+" for CA "+cainfo.getName() +" awaiting certificate response.");
+            }
+        } else if (cainfo.getStatus() == CAConstants.CA_REVOKED) {
+            if (log.isDebugEnabled()) {
+                log.debug("Not trying to generate "+crlType+" for CA "+cainfo.getName() +" that is revoked.");
+            }
+        } else if (cainfo.getStatus() == CAConstants.CA_UNINITIALIZED) {
+            if (log.isDebugEnabled()) {
+                log.debug("Not trying to generate "+crlType+" for CA "+cainfo.getName() +" that is uninitialized.");
+            }
+        } else if (cainfo instanceof X509CAInfo) {
+            final Certificate cacert = getCaCertificate(cainfo);
+            // Don't create CRLs if the CA has expired
+            if (cacert != null && CertTools.getNotAfter(cacert).after(now)) {
+                if (deltaCrl && cainfo.getDeltaCRLPeriod() <= 0) {
+                    return null;
                 }
-            } else if (cainfo.getStatus() == CAConstants.CA_WAITING_CERTIFICATE_RESPONSE) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate CRL for CA "+cainfo.getName() +" awaiting certificate response.");
+                if (cainfo.getStatus() == CAConstants.CA_OFFLINE )  {
+                    // Normal event to not create CRLs for CAs that are deliberately set off line
+                    String msg = intres.getLocalizedMessage("createcrl.caoffline", cainfo.getName(), cainfo.getCAId());
+                    log.info(msg);
+                } else {
+                    return cacert;
                 }
-            } else if (cainfo.getStatus() == CAConstants.CA_REVOKED) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate CRL for CA "+cainfo.getName() +" that is revoked.");
+            } else if (log.isDebugEnabled() && cacert != null) {
+                log.debug("Not creating "+crlType+" for expired CA "+cainfo.getName()+". CA subjectDN='"+CertTools.getSubjectDN(cacert)+"', expired: "+CertTools.getNotAfter(cacert));
+            } else if (log.isDebugEnabled()) {
+                log.debug("Not creating "+crlType+" for CA without CA certificate: "+cainfo.getName());
+            }
+        }
+        return null;
+    }
+
+    /** @return the main CRL partition followed by the CRL partitions of the CA, if it uses partitioned CRLs */
+    private List<Integer> getCrlPartitionIndexesToCreate(final CAInfo cainfo) {
+        final List<Integer> crlPartitionIndexes = new ArrayList<>();
+        crlPartitionIndexes.add(CertificateConstants.NO_CRL_PARTITION);
+        final IntRange crlPartitions = cainfo.getAllCrlPartitionIndexes();
+        if (crlPartitions != null) {
+            for (int crlPartitionIndex = crlPartitions.getMinimumInteger(); crlPartitionIndex <= crlPartitions.getMaximumInteger(); crlPartitionIndex++) {
+                crlPartitionIndexes.add(crlPartitionIndex);
+            }
+        }
+        return crlPartitionIndexes;
+    }
+
+    /** Creates the CRLs of the CAs and their CRL partitions in parallel, see {@link EjbcaConfiguration#getCrlGenerationThreads()} */
+    private Set<Integer> createCRLsInParallel(final AuthenticationToken admin, final Collection<Integer> caIdsToProcess, final long addToCrlOverlapTime,
+            final CrlCreationParams params) throws AuthorizationDeniedException {
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (final int caid : caIdsToProcess) {
+            // Get CA checks authorization to the CA
+            final CA ca = (CA) caSession.getCA(admin, caid);
+            if (ca == null) {
+                log.info(intres.getLocalizedMessage("createcrl.errorcreate", caid, "CA does not exist."));
+                continue;
+            }
+            final Certificate cacert = getCaCertificateIfCrlsCanBeCreated(ca.getCAInfo(), params.getValidFrom(), false);
+            if (cacert != null) {
+                for (final int crlPartitionIndex : getCrlPartitionIndexesToCreate(ca.getCAInfo())) {
+                    // Each unit reads its own instance of the CA, through the business interface since it runs on a managed thread
+                    units.add(new ParallelCrlGenerator.Unit(caid, crlPartitionIndex, ca.getCAToken().getCryptoTokenId(),
+                            () -> publishingCrlSession.internalCreateCrlForCrlPartition(admin, caid, crlPartitionIndex, addToCrlOverlapTime, params)));
                 }
-            } else if (cainfo.getStatus() == CAConstants.CA_UNINITIALIZED) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate CRL for CA "+cainfo.getName() +" that is uninitialized.");
+            }
+        }
+        return runInParallel(admin, units, false);
+    }
+
+    /** Creates the delta CRLs of the CAs and their CRL partitions in parallel, see {@link EjbcaConfiguration#getCrlGenerationThreads()} */
+    private Set<Integer> createDeltaCRLsInParallel(final AuthenticationToken admin, final Collection<Integer> caIdsToProcess, final long addToCrlOverlapTime)
+            throws AuthorizationDeniedException {
+        final Date now = new Date();
+        final List<ParallelCrlGenerator.Unit> units = new ArrayList<>();
+        for (final int caid : caIdsToProcess) {
+            // Get CA checks authorization to the CA
+            final CA ca = (CA) caSession.getCA(admin, caid);
+            if (ca == null) {
+                log.info(intres.getLocalizedMessage("createcrl.errorcreate", caid, "CA does not exist."));
+                continue;
+            }
+            final Certificate cacert = getCaCertificateIfCrlsCanBeCreated(ca.getCAInfo(), now, true);
+            if (cacert != null) {
+                for (final int crlPartitionIndex : getCrlPartitionIndexesToCreate(ca.getCAInfo())) {
+                    // Each unit reads its own instance of the CA, through the business interface since it runs on a managed thread
+                    units.add(new ParallelCrlGenerator.Unit(caid, crlPartitionIndex, ca.getCAToken().getCryptoTokenId(),
+                            () -> publishingCrlSession.internalCreateDeltaCrlForCrlPartition(admin, caid, crlPartitionIndex, now, addToCrlOverlapTime)));
+                }
+            }
+        }
+        return runInParallel(admin, units, true);
+    }
+
+    /**
+     * Runs the units, and logs the failed ones.
+     * @return the IDs of the CAs for which all CRLs were created
+     * @throws AuthorizationDeniedException if not authorized to create any of the CRLs, after all units have completed.
+     */
+    private Set<Integer> runInParallel(final AuthenticationToken admin, final List<ParallelCrlGenerator.Unit> units, final boolean deltaCrl)
+            throws AuthorizationDeniedException {
+        final long startTime = System.currentTimeMillis();
+        final ParallelCrlGenerator generator = new ParallelCrlGenerator(managedExecutorService, EjbcaConfiguration.getCrlGenerationThreads(),
+                EjbcaConfiguration.getCrlGenerationThreadsPerCryptoToken());
+        final List<ParallelCrlGenerator.UnitResult> results = generator.run(units);
+        final Map<Integer, Boolean> createdByCa = new LinkedHashMap<>();
+        final Set<Integer> failedCas = new HashSet<>();
+        AuthorizationDeniedException authorizationDenied = null;
+        ParallelCrlGenerator.UnitResult slowest = null;
+        int created = 0;
+        for (final ParallelCrlGenerator.UnitResult result : results) {
+            final int caid = result.getUnit().getCaId();
+            final Exception failure = result.getFailure();
+            if (failure == null) {
+                createdByCa.merge(caid, result.isCreated(), Boolean::logicalAnd);
+                if (result.isCreated()) {
+                    created++;
                 }
             } else {
-                if (cainfo instanceof X509CAInfo) {
-                    final Certificate cacert = getCaCertificate(cainfo);
-                    // Don't create CRLs if the CA has expired
-                    if (cacert != null && CertTools.getNotAfter(cacert).after(params.getValidFrom())) {
-                        if (cainfo.getStatus() == CAConstants.CA_OFFLINE )  {
-                            // Normal event to not create CRLs for CAs that are deliberately set off line
-                            String msg = intres.getLocalizedMessage("createcrl.caoffline", cainfo.getName(), cainfo.getCAId());
-                            log.info(msg);
-                        } else {
-                            boolean result = createCrlForActiveCa(admin, ca, cacert, CertificateConstants.NO_CRL_PARTITION, addToCrlOverlapTime, params);
-                            final IntRange crlPartitions = cainfo.getAllCrlPartitionIndexes();
-                            if (crlPartitions != null) {
-                                for (int crlPartitionIndex = crlPartitions.getMinimumInteger(); crlPartitionIndex <= crlPartitions.getMaximumInteger(); crlPartitionIndex++) {
-                                    result &= createCrlForActiveCa(admin, ca, cacert, crlPartitionIndex, addToCrlOverlapTime, params);
-                                }
-                            }
-                            return result;
-                        }
-                    } else if (log.isDebugEnabled() && cacert != null) {
-                        log.debug("Not creating CRL for expired CA "+cainfo.getName()+". CA subjectDN='"+CertTools.getSubjectDN(cacert)+"', expired: "+CertTools.getNotAfter(cacert));
-                    } else if (log.isDebugEnabled()) {
-                        log.debug("Not creating CRL for CA without CA certificate: "+cainfo.getName());
+                createdByCa.put(caid, false);
+                if (failure instanceof AuthorizationDeniedException) {
+                    if (authorizationDenied == null) {
+                        authorizationDenied = (AuthorizationDeniedException) failure;
                     }
+                } else if (failedCas.add(caid)) {
+                    // Don't fail all generation just because one of the CAs had token offline or similar.
+                    logCrlCreationFailure(admin, caid, failure, deltaCrl);
                 }
             }
-            return false;
-        } catch (CryptoTokenOfflineException e) {
-            log.warn("Crypto token is offline for CA "+caId+" generating CRL.");
-            throw e;
+            if (slowest == null || result.getDurationMillis() > slowest.getDurationMillis()) {
+                slowest = result;
+            }
+        }
+        if (slowest != null) {
+            log.info("Created " + created + " " + (deltaCrl ? "delta CRLs" : "CRLs") + " after checking " + results.size() + " CRL partitions of "
+                    + createdByCa.size() + " CAs in parallel, in " + (System.currentTimeMillis() - startTime) + " ms. The slowest was CA "
+                    + slowest.getUnit().getCaId() + " CRL partition " + slowest.getUnit().getCrlPartitionIndex() + " in " + slowest.getDurationMillis() + " ms.");
+        }
+        if (authorizationDenied != null) {
+            throw authorizationDenied;
+        }
+        final Set<Integer> createdCas = new HashSet<>();
+        for (final Map.Entry<Integer, Boolean> entry : createdByCa.entrySet()) {
+            if (entry.getValue()) {
+                createdCas.add(entry.getKey());
+            }
+        }
+        return createdCas;
+    }
+
+    @Override
+    public boolean internalCreateCrlForCrlPartition(final AuthenticationToken admin, final int caId, final int crlPartitionIndex, final long addToCrlOverlapTime,
+            final CrlCreationParams params) throws CryptoTokenOfflineException, CAOfflineException, CADoesntExistsException, AuthorizationDeniedException {
+        final CA ca = getCaForCrlPartition(admin, caId);
+        final Certificate cacert = getCaCertificateIfCrlsCanBeCreated(ca.getCAInfo(), params.getValidFrom(), false);
+        return cacert != null && createCrlForActiveCa(admin, ca, cacert, crlPartitionIndex, addToCrlOverlapTime, params);
+    }
+
+    @Override
+    public boolean internalCreateDeltaCrlForCrlPartition(final AuthenticationToken admin, final int caId, final int crlPartitionIndex, final Date now,
+            final long addToCrlOverlapTime) throws CryptoTokenOfflineException, CAOfflineException, CADoesntExistsException, AuthorizationDeniedException {
+        final CA ca = getCaForCrlPartition(admin, caId);
+        final Certificate cacert = getCaCertificateIfCrlsCanBeCreated(ca.getCAInfo(), now, true);
+        return cacert != null && createDeltaCrlForActiveCa(admin, ca, cacert, crlPartitionIndex, now, addToCrlOverlapTime);
+    }
+
+    /** @return an instance of the CA that is not shared with other CRL partitions, which are created at the same time */
+    private CA getCaForCrlPartition(final AuthenticationToken admin, final int caId) throws CADoesntExistsException, AuthorizationDeniedException {
+        // Read from the database and not from the CA cache. Checks authorization to the CA.
+        final CA ca = (CA) caSession.getCAForEdit(admin, caId);
+        if (ca == null) {
+            throw new CADoesntExistsException("CA with ID " + caId + " does not exist.");
+        }
+        return ca;
+    }
+
+    private void logCrlCreationFailure(final AuthenticationToken admin, final int caid, final Exception e, final boolean deltaCrl) {
+        final String msg = intres.getLocalizedMessage("createcrl.errorcreate", caid, e.getMessage());
+        log.error(msg, e);
+        if (deltaCrl) {
+            final Map<String, Object> details = new LinkedHashMap<>();
+            details.put("msg", msg);
+            logSession.log(EventTypes.CRL_CREATION, EventStatus.FAILURE, ModuleTypes.CRL, ServiceTypes.CORE, admin.toString(), String.valueOf(caid), null, null, details);
         }
     }
 
@@ -261,7 +441,8 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
             log.debug("addtocrloverlaptime="+addToCrlOverlapTime);
             log.debug("validFrom="+validFrom);
         }
-        final CRLInfo lastBaseCrlInfo = crlSession.getLastCRLInfo(certSubjectDN, crlPartitionIndex, false);
+        // Only the CRL number and dates are needed to check if a new CRL is due
+        final CRLInfo lastBaseCrlInfo = crlSession.getLastCRLInfoLightWeight(certSubjectDN, crlPartitionIndex, false);
         if (log.isDebugEnabled()) {
             if (lastBaseCrlInfo == null) {
                 log.debug("Crlinfo was null");
@@ -308,7 +489,8 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
             if (log.isDebugEnabled()) {
                 log.debug("Creating CRL for CA, because:"+(validFrom+overlap)+" >= "+nextScheduledUpdate);
             }
-            return (internalCreateCRL(admin, ca, crlPartitionIndex, lastBaseCrlInfo, params) != null);
+            // Read the last CRL again, since the cached information may be slightly out of date
+            return (internalCreateCRL(admin, ca, crlPartitionIndex, crlSession.getLastCRLInfo(certSubjectDN, crlPartitionIndex, false), params) != null);
         }
         return false;
     }
@@ -316,60 +498,22 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
     @Override
     public boolean createDeltaCrlConditioned(AuthenticationToken admin, int caid, long addToCrlOverlapTime)
             throws CryptoTokenOfflineException, CAOfflineException, CADoesntExistsException, AuthorizationDeniedException {
-        boolean ret = false;
         final Date now = new Date();
         final CA ca = (CA) caSession.getCA(admin, caid);
-        final CAInfo cainfo = ca.getCAInfo();
         try{
-            if (cainfo.getStatus() == CAConstants.CA_EXTERNAL) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate delta CRL for external CA "+cainfo.getName());
-                }
-            } else if (cainfo.getStatus() == CAConstants.CA_WAITING_CERTIFICATE_RESPONSE) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate delta CRL for CA "+cainfo.getName() +" awaiting certificate response.");
-                }
-            } else if (cainfo.getStatus() == CAConstants.CA_REVOKED) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate delta CRL for CA "+cainfo.getName() +" that is revoked.");
-                }
-            } else if (cainfo.getStatus() == CAConstants.CA_UNINITIALIZED) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Not trying to generate delta CRL for CA "+cainfo.getName() +" that is uninitialized.");
-                }
-            } else {
-                if (cainfo instanceof X509CAInfo) {
-                    final Certificate cacert = getCaCertificate(cainfo);
-                    // Don't create CRLs if the CA has expired
-                    if (cacert != null && CertTools.getNotAfter(cacert).after(now)) {
-                        if (cainfo.getDeltaCRLPeriod() > 0) {
-                            if (cainfo.getStatus() == CAConstants.CA_OFFLINE) {
-                                // Normal event to not create CRLs for CAs that are deliberately set off line
-                                String msg = intres.getLocalizedMessage("createcrl.caoffline", cainfo.getName(), cainfo.getCAId());
-                                log.info(msg);
-                            } else {
-                                boolean result = createDeltaCrlForActiveCa(admin, ca, cacert, CertificateConstants.NO_CRL_PARTITION, now, addToCrlOverlapTime);
-                                final IntRange crlPartitions = cainfo.getAllCrlPartitionIndexes();
-                                if (crlPartitions != null) {
-                                    for (int crlPartitionIndex = crlPartitions.getMinimumInteger(); crlPartitionIndex <= crlPartitions.getMaximumInteger(); crlPartitionIndex++) {
-                                        result &= createDeltaCrlForActiveCa(admin, ca, cacert, crlPartitionIndex, now, addToCrlOverlapTime);
-                                    }
-                                }
-                                return result;
-                            }
-                        }
-                    } else if (log.isDebugEnabled() && cacert != null) {
-                        log.debug("Not creating delta CRL for expired CA "+cainfo.getName()+". CA subjectDN='"+CertTools.getSubjectDN(cacert)+"', expired: "+CertTools.getNotAfter(cacert));
-                    } else if (log.isDebugEnabled()) {
-                        log.debug("Not creating delta CRL for CA without CA certificate: "+cainfo.getName());
-                    }
-                }
+            final Certificate cacert = getCaCertificateIfCrlsCanBeCreated(ca.getCAInfo(), now, true);
+            if (cacert == null) {
+                return false;
+            }
+            boolean result = true;
+            for (final int crlPartitionIndex : getCrlPartitionIndexesToCreate(ca.getCAInfo())) {
+                result &= createDeltaCrlForActiveCa(admin, ca, cacert, crlPartitionIndex, now, addToCrlOverlapTime);
             }
+            return result;
         } catch (CryptoTokenOfflineException e) {
             log.warn("Crypto token is offline for CA "+caid+" generating CRL.");
             throw e;
         }
-        return ret;
     }
 
     /** Creates a Delta CRL for a CRL partition. The CA is assumed to be active (no checks are performed) */
@@ -379,7 +523,7 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
             log.debug("Checking to see if CA '"+ca.getName()+"' needs Delta CRL generation.");
         }
         final String certSubjectDN = CertTools.getSubjectDN(cacert);
-        final CRLInfo lastDeltaCrlInfo = crlSession.getLastCRLInfo(certSubjectDN, crlPartitionIndex, true);
+        final CRLInfo lastDeltaCrlInfo = crlSession.getLastCRLInfoLightWeight(certSubjectDN, crlPartitionIndex, true);
         if (log.isDebugEnabled()) {
             if (lastDeltaCrlInfo == null) {
                 log.debug("DeltaCrlinfo was null");
@@ -488,6 +632,8 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
         final CAInfo cainfo = ca.getCAInfo();
         String ret = null;
         Collection<RevokedCertInfo> revokedCertificates = null;
+        // Certificates to archive that are not included on the new CRL, when it is created from the last base CRL
+        final Collection<RevokedCertInfo> expiredOnLastBaseCrl = new ArrayList<>();
         try {
             final Certificate cacert = getCaCertificate(cainfo);
             // DN from the CA issuing the CRL to be used when searching for the CRL in the database.
@@ -505,8 +651,13 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
                     final long freeMemory = Runtime.getRuntime().maxMemory() - Runtime.getRuntime().totalMemory() + Runtime.getRuntime().freeMemory();
                     log.debug("Listing revoked certificates. Free memory=" + freeMemory);
                 }
-                revokedCertificates = noConflictCertificateStoreSession.listRevokedCertInfo(caCertSubjectDN, false,
-                        crlPartitionIndex, lastBaseCrlCreationDate.getTime(), keepExpiredCertsOnCrl, getAllowInvalidityDate(cainfo));
+                if (isIncrementalBaseCrlPossible(ca, lastBaseCrlInfo, params.getValidFrom())) {
+                    revokedCertificates = listRevokedCertInfoSinceLastBaseCrl(cainfo, caCertSubjectDN, crlPartitionIndex, lastBaseCrlInfo,
+                            keepExpiredCertsOnCrl, expiredOnLastBaseCrl);
+                } else {
+                    revokedCertificates = noConflictCertificateStoreSession.listRevokedCertInfo(caCertSubjectDN, false,
+                            crlPartitionIndex, lastBaseCrlCreationDate.getTime(), keepExpiredCertsOnCrl, getAllowInvalidityDate(cainfo));
+                }
 
                 //if X509 CA is marked as it has gone through Name Change add certificates revoked with old names
                 if(ca.getCAType()==CAInfo.CATYPE_X509 && ((X509CA)ca).getNameChanged()){
@@ -561,7 +712,14 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
                         System.currentTimeMillis() + CrlCreationParams.MINIMUM_ARCHIVAL_MILLISECS);
                 boolean loggedTimeLimitExceeded = false;
                 long numArchived = 0;
-                for (final RevokedCertInfo revokedCertInfo : revokedCertificates) {
+                final Collection<RevokedCertInfo> certificatesToCheck;
+                if (expiredOnLastBaseCrl.isEmpty()) {
+                    certificatesToCheck = revokedCertificates;
+                } else {
+                    certificatesToCheck = new ArrayList<>(revokedCertificates);
+                    certificatesToCheck.addAll(expiredOnLastBaseCrl);
+                }
+                for (final RevokedCertInfo revokedCertInfo : certificatesToCheck) {
                     // We want to include certificates that were revoked after the last CRL was issued, but before this one
                     // so the revoked certs are included in ONE CRL at least. See RFC5280 section 3.3.
                     // If chosen to keep expired certificates on CRL, we will NOT do this but keep them (ISO 9594-8 par. 8.5.2.12)
@@ -617,7 +775,7 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
                 log.info(msg);
                 throw new CAOfflineException(msg);
             }
-        } catch (FinderException e) {
+        } catch (FinderException | CRLException e) {
             // Should really not happen
             log.error(e);
             throw new EJBException(e);
@@ -684,20 +842,7 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
                             continue;
                         }
                         // The invalidity date of the certificate in the previous base CRL is determined in order to compare it to the current up to date invalidity date value
-                        if (crlEntry.hasExtensions()) {
-                            final byte[] extensionValue = crlEntry.getExtensionValue(Extension.invalidityDate.getId());
-                            if (extensionValue != null) {
-                                try {
-                                    final ASN1GeneralizedTime invalidityDateExtension = ASN1GeneralizedTime.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionValue));
-                                    if (invalidityDateExtension != null) {
-                                        lastInvDate = invalidityDateExtension.getDate();
-                                    }
-                                } catch (IOException | ParseException e) {
-                                    log.debug("Failed to parse invalidity date of CRLEntry: " + e.getMessage());
-                                    throw new CRLException(e);
-                                }
-                            }
-                        }
+                        lastInvDate = getInvalidityDate(crlEntry);
                         // Also include the revoked certificate entry in the delta CRL if invalidity date has changed since the last base CRL
                         if (revCertInfo.getInvalidityDate() != null && !revCertInfo.getInvalidityDate().equals(lastInvDate)) {
                             filteredRevCertInfos.add(revCertInfo);
@@ -838,6 +983,111 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
         return certificateChain.isEmpty() ? null : certificateChain.iterator().next();
     }
     
+    /**
+     * Checks if a base CRL can be created from the last base CRL and the revocation information that changed since it was created,
+     * see {@link EjbcaConfiguration#isCrlGenerationIncremental()}. CRLs of CAs that have gone through a name change, or that may have
+     * revocation information in NoConflictCertificateData, are always created from all revoked certificates.
+     */
+    private boolean isIncrementalBaseCrlPossible(final CA ca, final CRLInfo lastBaseCrlInfo, final Date validFrom) {
+        if (!EjbcaConfiguration.isCrlGenerationIncremental() || lastBaseCrlInfo == null || ca.getCAType() != CAInfo.CATYPE_X509) {
+            return false;
+        }
+        final CAInfo cainfo = ca.getCAInfo();
+        if (((X509CA)ca).getNameChanged() || !cainfo.isUseCertificateStorage() || cainfo.isAcceptRevocationNonExistingEntry()) {
+            return false;
+        }
+        // Create a CRL from all revoked certificates at least once per interval, so that anything missed by the incremental queries is corrected
+        final long fullCrlInterval = EjbcaConfiguration.getCrlGenerationIncrementalFullCrlInterval();
+        if (fullCrlInterval > 0 && validFrom.getTime() / fullCrlInterval != lastBaseCrlInfo.getCreateDate().getTime() / fullCrlInterval) {
+            if (log.isDebugEnabled()) {
+                log.debug("Creating base CRL for CA '" + cainfo.getName() + "' from all revoked certificates, since it is the first one in this interval.");
+            }
+            return false;
+        }
+        // Information about the last base CRL may have been read without the CRL itself
+        return lastBaseCrlInfo.getCrl() != null;
+    }
+
+    /**
+     * Lists the revoked certificates for a new base CRL by merging the entries of the last base CRL with the revocation information that
+     * changed since it was created, instead of listing all revoked certificates of the CA.
+     *
+     * @param expiredOnLastBaseCrl is filled with the certificates that expired before the last base CRL was created and were on it. They should
+     * be archived, but are not included on the new CRL.
+     * @return the revoked certificates for the new CRL. The ones from the last base CRL have no fingerprint or expire date.
+     */
+    private Collection<RevokedCertInfo> listRevokedCertInfoSinceLastBaseCrl(final CAInfo cainfo, final String caCertSubjectDN, final int crlPartitionIndex,
+            final CRLInfo lastBaseCrlInfo, final boolean keepExpiredCertsOnCrl, final Collection<RevokedCertInfo> expiredOnLastBaseCrl) throws CRLException {
+        final String issuerDN = DnComponents.stringToBCDNString(StringTools.strip(caCertSubjectDN));
+        final boolean allowInvalidityDate = getAllowInvalidityDate(cainfo);
+        final long lastBaseCrlDate = lastBaseCrlInfo.getCreateDate().getTime();
+        final Map<BigInteger, RevokedCertInfo> revokedCertificates = new LinkedHashMap<>();
+        final Set<? extends X509CRLEntry> lastBaseCrlEntries = lastBaseCrlInfo.getCrl().getRevokedCertificates();
+        if (lastBaseCrlEntries != null) {
+            for (final X509CRLEntry crlEntry : lastBaseCrlEntries) {
+                final CRLReason reason = crlEntry.getRevocationReason();
+                final Date invalidityDate = allowInvalidityDate ? getInvalidityDate(crlEntry) : null;
+                revokedCertificates.put(crlEntry.getSerialNumber(), new RevokedCertInfo(null, crlEntry.getSerialNumber().toByteArray(),
+                        crlEntry.getRevocationDate().getTime(), reason == null ? RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED : reason.ordinal(), 0,
+                        invalidityDate == null ? null : invalidityDate.getTime()));
+            }
+        }
+        final int numberOnLastBaseCrl = revokedCertificates.size();
+        // Certificates that expired before the last base CRL have been on at least one base CRL if they were on the last one (RFC5280 section 3.3)
+        final Set<BigInteger> removedAsExpired = new HashSet<>();
+        final List<RevokedCertInfo> expiredNotOnLastBaseCrl = new ArrayList<>();
+        if (!keepExpiredCertsOnCrl) {
+            for (final RevokedCertInfo revokedCertInfo : certificateDataSession.getRevokedCertInfosExpiredBefore(issuerDN, crlPartitionIndex, lastBaseCrlDate,
+                    allowInvalidityDate)) {
+                if (revokedCertificates.remove(revokedCertInfo.getUserCertificate()) != null) {
+                    removedAsExpired.add(revokedCertInfo.getUserCertificate());
+                    expiredOnLastBaseCrl.add(revokedCertInfo);
+                } else {
+                    expiredNotOnLastBaseCrl.add(revokedCertInfo);
+                }
+            }
+        }
+        final Collection<RevokedCertInfo> changed = certificateDataSession.getRevokedCertInfosUpdatedAfter(issuerDN, crlPartitionIndex, lastBaseCrlDate,
+                allowInvalidityDate);
+        for (final RevokedCertInfo revokedCertInfo : changed) {
+            final BigInteger serialNumber = revokedCertInfo.getUserCertificate();
+            if (revokedCertInfo.getReason() == RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL) {
+                // Reactivated after being on hold
+                revokedCertificates.remove(serialNumber);
+            } else if (!removedAsExpired.contains(serialNumber)) {
+                revokedCertificates.put(serialNumber, revokedCertInfo);
+            }
+        }
+        for (final RevokedCertInfo revokedCertInfo : expiredNotOnLastBaseCrl) {
+            revokedCertificates.put(revokedCertInfo.getUserCertificate(), revokedCertInfo);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Creating base CRL for CA '" + cainfo.getName() + "' from the last base CRL with number " + lastBaseCrlInfo.getLastCRLNumber() + " and "
+                    + numberOnLastBaseCrl + " entries, " + changed.size() + " certificates with changed revocation information and "
+                    + (expiredOnLastBaseCrl.size() + expiredNotOnLastBaseCrl.size()) + " expired certificates.");
+        }
+        return new ArrayList<>(revokedCertificates.values());
+    }
+
+    /** @return the invalidity date of a CRL entry, or null if it has none */
+    private Date getInvalidityDate(final X509CRLEntry crlEntry) throws CRLException {
+        if (crlEntry.hasExtensions()) {
+            final byte[] extensionValue = crlEntry.getExtensionValue(Extension.invalidityDate.getId());
+            if (extensionValue != null) {
+                try {
+                    final ASN1GeneralizedTime invalidityDateExtension = ASN1GeneralizedTime.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionValue));
+                    if (invalidityDateExtension != null) {
+                        return invalidityDateExtension.getDate();
+                    }
+                } catch (IOException | ParseException e) {
+                    log.debug("Failed to parse invalidity date of CRLEntry: " + e.getMessage());
+                    throw new CRLException(e);
+                }
+            }
+        }
+        return null;
+    }
+
     private boolean getAllowInvalidityDate(final CAInfo caInfo) {
         return caInfo != null && caInfo.isAllowInvalidityDate();
     }
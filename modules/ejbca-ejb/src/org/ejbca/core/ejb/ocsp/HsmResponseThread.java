@@ -18,7 +18,7 @@ import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.concurrent.Callable;
 
-import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
 import org.bouncycastle.cert.ocsp.OCSPException;
@@ -43,19 +43,32 @@ public class HsmResponseThread implements Callable<BasicOCSPResp> {
     private final BasicOCSPRespBuilder basicRes;
     private final String signingAlgorithm;
     private final PrivateKey signerKey;
-    private final JcaX509CertificateHolder[] chain;
+    private final X509CertificateHolder[] chain;
     private final String provider;
     private final Date producedAt;
 
     public HsmResponseThread(final BasicOCSPRespBuilder basicRes, final String signingAlgorithm, final PrivateKey signerKey,
             final X509Certificate[] chain, final String provider, final Date producedAt) throws OcspFailureException {
+        this(basicRes, signingAlgorithm, signerKey, convertChain(chain), provider, producedAt);
+    }
+
+    /**
+     * @param chain the certificates to include in the response, already decoded (e.g. from the OcspSigningCacheEntry), so that they
+     * don't have to be decoded for each response.
+     */
+    public HsmResponseThread(final BasicOCSPRespBuilder basicRes, final String signingAlgorithm, final PrivateKey signerKey,
+            final X509CertificateHolder[] chain, final String provider, final Date producedAt) {
         this.basicRes = basicRes;
         this.signingAlgorithm = signingAlgorithm;
         this.signerKey = signerKey;
+        this.chain = chain;
         this.provider = provider;
         this.producedAt = producedAt;
+    }
+
+    private static X509CertificateHolder[] convertChain(final X509Certificate[] chain) throws OcspFailureException {
         try {
-            this.chain = CertTools.convertToX509CertificateHolder(chain);
+            return CertTools.convertToX509CertificateHolder(chain);
         } catch (CertificateEncodingException e) {
             throw new OcspFailureException(LogRedactionUtils.getRedactedException(e));
         }
@@ -51,6 +51,20 @@ public class OcspDataSessionBean implements OcspDataSessionLocal, OcspDataSessio
         log.trace("<persistOcspData");
     }
 
+    @Override
+    public void storeOcspDataBatch(final List<OcspResponseData> responseDataList) {
+        log.trace(">storeOcspDataBatch");
+        for (final OcspResponseData responseData : responseDataList) {
+            this.entityManager.persist(responseData);
+        }
+        // Write the rows now, in JDBC batches if database.jdbc.batchsize is set, and don't keep the entities around until commit
+        this.entityManager.flush();
+        this.entityManager.clear();
+        if (log.isTraceEnabled()) {
+            log.trace("<storeOcspDataBatch stored " + responseDataList.size() + " responses.");
+        }
+    }
+
     @Override
     public List<OcspResponseData> findOcspDataByCaId(final Integer caId) {
         log.trace(">findOcspDataByCaId");
@@ -118,12 +132,28 @@ public class OcspDataSessionBean implements OcspDataSessionLocal, OcspDataSessio
                            .collect(Collectors.toList());
     }
     
+    @Override
+    public List<OcspResponseData> findOcspDataToRefresh(final Integer caId, final long now, final long refreshTime, final int maxNumberOfResults) {
+        log.trace(">findOcspDataToRefresh");
+        final TypedQuery<OcspResponseData> query = this.entityManager.createNamedQuery(OcspResponseData.FIND_OCSP_DATA_TO_REFRESH_BY_CAID, OcspResponseData.class);
+        query.setParameter("caId", caId);
+        query.setParameter("now", now);
+        query.setParameter("refreshTime", refreshTime);
+        query.setMaxResults(maxNumberOfResults);
+        final List<OcspResponseData> result = query.getResultList();
+        if (log.isTraceEnabled()) {
+            log.trace("<findOcspDataToRefresh(" + caId + ") yielded " + result.size() + " results.");
+        }
+        return result;
+    }
+
     @Override
     public void deleteOcspDataByCaId(final Integer caId) {
         log.trace(">deleteOcspDataByCaId");
         final Query query = this.entityManager.createNamedQuery("deleteOcspDataByCaId");
         query.setParameter("caId", caId);
         final int rowsDeleted = query.executeUpdate();
+        OcspResponseDataCache.INSTANCE.invalidateCa(caId);
         if (log.isTraceEnabled()) {
             log.trace("deleteOcspDataByCaId(" + caId + ") yielded the " + rowsDeleted + " rows deleted! ");
         }
@@ -136,6 +166,7 @@ public class OcspDataSessionBean implements OcspDataSessionLocal, OcspDataSessio
         final Query query = this.entityManager.createNamedQuery("deleteOcspDataBySerialNumber");
         query.setParameter("serialNumber", serialNumber);
         final int rowsDeleted = query.executeUpdate();
+        OcspResponseDataCache.INSTANCE.invalidateSerialNumber(serialNumber);
         if (log.isTraceEnabled()) {
             log.trace("deleteOcspDataBySerialNumber(" + serialNumber + ") yielded the " + rowsDeleted + " rows deleted! ");
         }
@@ -149,6 +180,7 @@ public class OcspDataSessionBean implements OcspDataSessionLocal, OcspDataSessio
         query.setParameter("caId", caId);
         query.setParameter("serialNumber", serialNumber);
         final int rowsDeleted = query.executeUpdate();
+        OcspResponseDataCache.INSTANCE.invalidate(caId, serialNumber);
         if (log.isTraceEnabled()) {
             log.trace("deleteOcspDataByCaIdSerialNumber(" + caId + ", " + serialNumber + ") yielded the " + rowsDeleted + " rows deleted! ");
         }
@@ -0,0 +1,204 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.ocsp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.cesecore.certificates.ocsp.cache.OcspSigningCacheEntry;
+import org.cesecore.certificates.ocsp.exception.OcspFailureException;
+
+import com.keyfactor.util.keys.token.CryptoTokenOfflineException;
+
+/**
+ * Lets concurrent requests that result in the same OCSP response share a single signing operation.
+ * <p>
+ * The first request for a given response (the same signer, signature algorithm, single responses and extensions) signs it, and
+ * requests for the same response that arrive while it is being signed wait for it and return the same signed response instead of
+ * signing one of their own. Only the signing is shared, each request still looks up the certificate status and is logged as usual.
+ * The shared response has the thisUpdate and producedAt of the first request, which are at most the time it takes to sign
+ * a response earlier than they would otherwise have been.
+ * <p>
+ * Responses with a nonce are never shared, since the nonce is unique for each request.
+ */
+public enum OcspResponseCoalescer {
+    INSTANCE;
+
+    private static final Logger log = Logger.getLogger(OcspResponseCoalescer.class);
+
+    /** Responses being signed, removed as soon as the signing has completed */
+    private final ConcurrentMap<Key, CompletableFuture<BasicOCSPResp>> inFlight = new ConcurrentHashMap<>();
+
+    /** Signs an OCSP response, see {@link OcspResponseCoalescer#sign(Key, long, Signer)} */
+    public interface Signer {
+        BasicOCSPResp sign() throws OCSPException, CryptoTokenOfflineException;
+    }
+
+    /**
+     * Signs a response, or waits for the same response that is already being signed.
+     *
+     * @param key the key of the response, see {@link #createKey(OcspSigningCacheEntry, String, List, Extensions)}, or null to always sign.
+     * @param timeoutMillis maximum time to wait for a response being signed by another request.
+     * @param signer signs the response if it is not already being signed.
+     * @return the signed response
+     * @throws OCSPException if the response could not be created, by this or the request that signed it.
+     * @throws CryptoTokenOfflineException if the signing key is not available, by this or the request that signed it, or if waiting timed out.
+     */
+    public BasicOCSPResp sign(final Key key, final long timeoutMillis, final Signer signer) throws OCSPException, CryptoTokenOfflineException {
+        if (key == null) {
+            return signer.sign();
+        }
+        final CompletableFuture<BasicOCSPResp> future = new CompletableFuture<>();
+        final CompletableFuture<BasicOCSPResp> existing = inFlight.putIfAbsent(key, future);
+        if (existing == null) {
+            try {
+                final BasicOCSPResp response = signer.sign();
+                future.complete(response);
+                return response;
+            } catch (OCSPException | CryptoTokenOfflineException | RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Waiting for identical OCSP response that is being signed by another request.");
+        }
+        try {
+            return existing.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OcspFailureException("Interrupted while waiting for OCSP response to be signed.", e);
+        } catch (TimeoutException e) {
+            throw new CryptoTokenOfflineException("Timed out while waiting for OCSP response to be signed by another request.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof OCSPException) {
+                throw new OCSPException(cause.getMessage(), cause);
+            } else if (cause instanceof CryptoTokenOfflineException) {
+                throw new CryptoTokenOfflineException(cause.getMessage(), cause);
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new OcspFailureException("Failure encountered while signing OCSP response.", cause);
+        }
+    }
+
+    /** @return the number of responses currently being signed (for monitoring and tests) */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Creates the key of a response, from everything that goes into the signed response except the times.
+     *
+     * @param ocspSigningCacheEntry the entry used to sign the response
+     * @param sigAlg the signature algorithm
+     * @param responses the single responses
+     * @param exts the response extensions, or null if there are none.
+     * @return the key, or null if the response should not be shared with other requests.
+     */
+    public static Key createKey(final OcspSigningCacheEntry ocspSigningCacheEntry, final String sigAlg, final List<OCSPResponseItem> responses,
+            final Extensions exts) {
+        if (exts != null && exts.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce) != null) {
+            return null;
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(sigAlg);
+            for (final OCSPResponseItem item : responses) {
+                out.write(item.getCertID().toASN1Primitive().getEncoded());
+                writeStatus(out, item.getCertStatus());
+                out.writeLong(item.getNextUpdate() == null ? -1 : item.getNextUpdate().getTime() - item.getThisUpdate().getTime());
+                final Extensions singleExtensions = item.buildExtensions();
+                if (singleExtensions != null) {
+                    out.write(singleExtensions.getEncoded());
+                }
+                out.writeByte(0);
+            }
+            if (exts != null) {
+                out.write(exts.getEncoded());
+            }
+            out.flush();
+            return new Key(ocspSigningCacheEntry, bytes.toByteArray());
+        } catch (IOException e) {
+            log.debug("Failed to encode OCSP response items, not sharing the response with other requests.", e);
+            return null;
+        }
+    }
+
+    private static void writeStatus(final DataOutputStream out, final CertificateStatus status) throws IOException {
+        if (status == null) {
+            out.writeByte(OCSPResponseItem.OCSP_GOOD);
+        } else if (status instanceof RevokedStatus) {
+            final RevokedStatus revokedStatus = (RevokedStatus) status;
+            out.writeByte(OCSPResponseItem.OCSP_REVOKED);
+            out.writeLong(revokedStatus.getRevocationTime().getTime());
+            out.writeInt(revokedStatus.hasRevocationReason() ? revokedStatus.getRevocationReason() : -1);
+        } else if (status instanceof UnknownStatus) {
+            out.writeByte(OCSPResponseItem.OCSP_UNKNOWN);
+        } else {
+            throw new IOException("Unsupported certificate status " + status.getClass().getName());
+        }
+    }
+
+    /** Identifies a response signed with a given signing cache entry */
+    public static final class Key {
+        private final OcspSigningCacheEntry ocspSigningCacheEntry;
+        private final byte[] encoded;
+        private final int hashCode;
+
+        private Key(final OcspSigningCacheEntry ocspSigningCacheEntry, final byte[] encoded) {
+            this.ocspSigningCacheEntry = ocspSigningCacheEntry;
+            this.encoded = encoded;
+            this.hashCode = 31 * System.identityHashCode(ocspSigningCacheEntry) + Arrays.hashCode(encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            // Signing cache entries are replaced when the cache is reloaded, so responses are not shared across reloads
+            return ocspSigningCacheEntry == other.ocspSigningCacheEntry && Arrays.equals(encoded, other.encoded);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.ocsp;
+
+import java.util.Objects;
+
+import org.cesecore.config.OcspConfiguration;
+import org.ejbca.util.ExpiringWeightedCache;
+
+/**
+ * Node local, in-memory tier in front of the pre-produced OCSP responses stored in OcspResponseData.
+ * <p>
+ * The cache holds the encoded responses keyed by CA id and certificate serial number, together with the information
+ * that was extracted from the response when it was first parsed. Serving a response from the cache therefore requires
+ * neither a database round trip nor parsing of the response.
+ * <p>
+ * The cache is bounded by the total size of the cached responses in bytes (see {@link OcspConfiguration#getResponseDataCacheMaxBytes()})
+ * and is disabled when the size is 0. Entries expire at the nextUpdate of the response, or after the maximum cache time
+ * (see {@link OcspConfiguration#getResponseDataCacheMaxTime()}) if that is earlier. Entries are replaced when a new response is stored
+ * for the same certificate and removed when the certificate is revoked or the stored response is deleted on this node. Other nodes in a
+ * cluster are not notified, so the maximum cache time bounds how long they serve a response produced before the revocation.
+ */
+public enum OcspResponseDataCache {
+    INSTANCE;
+
+    private final ExpiringWeightedCache<CacheKey, CachedResponse> cache = new ExpiringWeightedCache<>("pre-produced OCSP responses",
+            OcspConfiguration::getResponseDataCacheMaxBytes, OcspConfiguration::getResponseDataCacheMaxTime,
+            (key, value) -> value.getEncodedResponse().length, CachedResponse::getNextUpdate, (key, value) -> key.serialNumber);
+
+    /** @return true if the cache is enabled by configuration */
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * @param caId the id of the CA that issued the certificate
+     * @param serialNumber decimal serial number of the certificate, as stored in OcspResponseData
+     * @return the cached response or null if there is no cached response that is still valid.
+     */
+    public CachedResponse get(final int caId, final String serialNumber) {
+        return cache.get(new CacheKey(caId, serialNumber));
+    }
+
+    /**
+     * Adds or replaces the cached response for a certificate. Responses that have already expired are ignored.
+     *
+     * @param caId the id of the CA that issued the certificate
+     * @param serialNumber decimal serial number of the certificate, as stored in OcspResponseData
+     * @param cachedResponse the response to cache
+     */
+    public void put(final int caId, final String serialNumber, final CachedResponse cachedResponse) {
+        cache.put(new CacheKey(caId, serialNumber), cachedResponse);
+    }
+
+    /** Removes the cached response for a certificate. */
+    public void invalidate(final int caId, final String serialNumber) {
+        cache.invalidate(new CacheKey(caId, serialNumber));
+    }
+
+    /** Removes the cached responses for all certificates with the given serial number, regardless of issuer. */
+    public void invalidateSerialNumber(final String serialNumber) {
+        cache.invalidateSecondaryKey(serialNumber);
+    }
+
+    /** Removes the cached responses for all certificates issued by the given CA. */
+    public void invalidateCa(final int caId) {
+        cache.invalidateIf((key, value) -> key.caId == caId);
+    }
+
+    /** Empties the cache. The configuration is read again the next time the cache is used. */
+    public void flush() {
+        cache.flush();
+    }
+
+    /** @return the number of cached responses (for monitoring and tests) */
+    public long size() {
+        return cache.size();
+    }
+
+    /** A cached pre-produced response, together with the information needed to serve and log it without parsing it. */
+    public static final class CachedResponse {
+        private final OcspResponseInformation responseInformation;
+        private final long nextUpdate;
+        private final int certStatus;
+        private final int revocationReason;
+
+        /**
+         * @param responseInformation the response information created when the response was parsed
+         * @param nextUpdate nextUpdate of the (single) response in the OCSP response
+         * @param certStatus one of OCSPResponseItem.OCSP_GOOD, OCSP_REVOKED or OCSP_UNKNOWN
+         * @param revocationReason the revocation reason of a revoked status, or -1 if not revoked or if the reason is not present
+         */
+        public CachedResponse(final OcspResponseInformation responseInformation, final long nextUpdate, final int certStatus,
+                final int revocationReason) {
+            this.responseInformation = responseInformation;
+            this.nextUpdate = nextUpdate;
+            this.certStatus = certStatus;
+            this.revocationReason = revocationReason;
+        }
+
+        /** @return the response information created when the response was parsed. Use the copy constructor to adjust maxAge. */
+        public OcspResponseInformation getResponseInformation() { return responseInformation; }
+
+        /** @return the DER encoded OCSP response */
+        public byte[] getEncodedResponse() { return responseInformation.getOcspResponse(); }
+
+        public long getNextUpdate() { return nextUpdate; }
+
+        public int getCertStatus() { return certStatus; }
+
+        public int getRevocationReason() { return revocationReason; }
+
+        public boolean hasRevocationReason() { return revocationReason >= 0; }
+    }
+
+    private static final class CacheKey {
+        private final int caId;
+        private final String serialNumber;
+
+        private CacheKey(final int caId, final String serialNumber) {
+            this.caId = caId;
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * caId + serialNumber.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return caId == other.caId && Objects.equals(serialNumber, other.serialNumber);
+        }
+    }
+}
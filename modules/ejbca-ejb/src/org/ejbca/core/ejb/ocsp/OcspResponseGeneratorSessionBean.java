@@ -54,6 +54,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -74,6 +75,7 @@ import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
@@ -122,6 +124,7 @@ import org.cesecore.authentication.tokens.UsernamePrincipal;
 import org.cesecore.authorization.AuthorizationDeniedException;
 import org.cesecore.certificates.ca.CAConstants;
 import org.cesecore.certificates.ca.CAData;
+import org.cesecore.certificates.ca.CADoesntExistsException;
 import org.cesecore.certificates.ca.CAInfo;
 import org.cesecore.certificates.ca.CaSessionLocal;
 import org.cesecore.certificates.ca.InvalidAlgorithmException;
@@ -131,6 +134,7 @@ import org.cesecore.certificates.ca.X509CAInfo;
 import org.cesecore.certificates.ca.catoken.CAToken;
 import org.cesecore.certificates.ca.catoken.CATokenConstants;
 import org.cesecore.certificates.ca.internal.CaCertificateCache;
+import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.certificates.certificate.CertificateDataWrapper;
 import org.cesecore.certificates.certificate.CertificateInfo;
 import org.cesecore.certificates.certificate.CertificateStatus;
@@ -146,6 +150,7 @@ import org.cesecore.certificates.ocsp.cache.OcspDataConfigCache;
 import org.cesecore.certificates.ocsp.cache.OcspDataConfigCacheEntry;
 import org.cesecore.certificates.ocsp.cache.OcspExtensionsCache;
 import org.cesecore.certificates.ocsp.cache.OcspRequestSignerStatusCache;
+import org.cesecore.certificates.ocsp.cache.OcspRevocationIndex;
 import org.cesecore.certificates.ocsp.cache.OcspSigningCache;
 import org.cesecore.certificates.ocsp.cache.OcspSigningCacheEntry;
 import org.cesecore.certificates.ocsp.exception.CryptoProviderException;
@@ -189,6 +194,7 @@ import org.cesecore.util.log.ProbableErrorHandler;
 import org.cesecore.util.provider.EkuPKIXCertPathChecker;
 import org.ejbca.core.ejb.ca.publisher.PublisherSessionLocal;
 import org.ejbca.core.model.ca.publisher.PublisherException;
+import org.ejbca.ui.web.protocol.OcspGetResponseCache;
 
 import com.keyfactor.util.CeSecoreNameStyle;
 import com.keyfactor.util.CertTools;
@@ -214,6 +220,12 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
     private static final int MAX_REQUEST_SIZE = 100000;
     /** Timer identifiers */
     private static final int TIMERID_OCSPSIGNINGCACHE = 1;
+    private static final int TIMERID_OCSPRESPONSEREFRESH = 2;
+    private static final int TIMERID_OCSPREVOCATIONINDEX = 3;
+    /** Number of serial numbers read at a time when the revocation index of a CA is built */
+    private static final int REVOCATION_INDEX_BATCH_SIZE = 10000;
+    /** Changes are read from the database with this overlap, to account for transactions that commit late and clock skew between nodes */
+    private static final long REVOCATION_INDEX_UPDATE_MARGIN = 300000L;
 
     private static final Logger log = Logger.getLogger(OcspResponseGeneratorSessionBean.class);
 
@@ -223,6 +235,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
     
     @Resource
     private SessionContext sessionContext;
+    @Resource
+    private ManagedExecutorService managedExecutorService;
     /* When the sessionContext is injected, the timerService should be looked up.
      * This is due to the Glassfish EJB verifier complaining. 
      */
@@ -258,6 +272,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
     protected void setMockedGlobalConfigurationSession(final GlobalConfigurationSessionLocal globalConfigurationSession) { this.globalConfigurationSession = globalConfigurationSession; }
     protected void setMockedTimerService(final TimerService timerService) { this.timerService = timerService; }
     protected void setOcspDataSessionLocal(final OcspDataSessionLocal ocspDataSession) { this.ocspDataSession = ocspDataSession; }
+    protected void setMockedManagedExecutorService(final ManagedExecutorService managedExecutorService) { this.managedExecutorService = managedExecutorService; }
 
     @PostConstruct
     public void init() {
@@ -273,6 +288,12 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         } else {
             log.info("Not initing OCSP reload timers, there are already some.");
         }
+        if (getTimerCount(TIMERID_OCSPRESPONSEREFRESH) == 0) {
+            addTimer(OcspConfiguration.getResponseRefreshInterval(), TIMERID_OCSPRESPONSEREFRESH);
+        }
+        if (getTimerCount(TIMERID_OCSPREVOCATIONINDEX) == 0) {
+            addTimer(OcspConfiguration.getRevocationIndexRefreshInterval(), TIMERID_OCSPREVOCATIONINDEX);
+        }
     }
     
     @Override
@@ -296,6 +317,13 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         OcspRequestSignerStatusCache.INSTANCE.flush();
     }
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void clearOcspResponseDataCache() {
+        OcspResponseDataCache.INSTANCE.flush();
+        OcspGetResponseCache.INSTANCE.flush();
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void reloadOcspSigningCache() {
@@ -1247,8 +1275,14 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         if (log.isTraceEnabled()) {
             log.trace(">timeoutHandler: " + timer.getInfo().toString());
         }
-        // reloadTokenAndChainCache cancels old timers and adds a new timer
-        reloadOcspSigningCache();
+        if (Integer.valueOf(TIMERID_OCSPRESPONSEREFRESH).equals(timer.getInfo())) {
+            refreshStoredOcspResponses();
+        } else if (Integer.valueOf(TIMERID_OCSPREVOCATIONINDEX).equals(timer.getInfo())) {
+            updateOcspRevocationIndex();
+        } else {
+            // reloadTokenAndChainCache cancels old timers and adds a new timer
+            reloadOcspSigningCache();
+        }
         if (log.isTraceEnabled()) {
             log.trace("<timeoutHandler");
         }
@@ -1355,6 +1389,19 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
             final String xForwardedFor, StringBuffer requestUrl, final AuditLogger auditLogger, final TransactionLogger transactionLogger,
             final boolean isPreSigning, final PresignResponseValidity preResponseValidity, final boolean includeExpiredCertificates)
             throws MalformedRequestException, OCSPException {
+        return getOcspResponse(request, requestCertificates, remoteAddress, xForwardedFor, requestUrl, auditLogger, transactionLogger, isPreSigning,
+                preResponseValidity, includeExpiredCertificates, null);
+    }
+
+    /**
+     * @param responseBatch if not null, a response that should be stored is added to this list instead of being persisted directly. 
+     *      The caller is then responsible for storing and publishing the responses. Must be thread safe if shared between threads. 
+     * @see #getOcspResponse(byte[], X509Certificate[], String, String, StringBuffer, AuditLogger, TransactionLogger, boolean, PresignResponseValidity, boolean)
+     */
+    private OcspResponseInformation getOcspResponse(final byte[] request, final X509Certificate[] requestCertificates, final String remoteAddress,
+            final String xForwardedFor, StringBuffer requestUrl, final AuditLogger auditLogger, final TransactionLogger transactionLogger,
+            final boolean isPreSigning, final PresignResponseValidity preResponseValidity, final boolean includeExpiredCertificates,
+            final List<OcspResponseData> responseBatch) throws MalformedRequestException, OCSPException {
         //Check parameters
         if (auditLogger == null) {
             throw new InvalidParameterException("Illegal to pass a null audit logger to OcspResponseSession.getOcspResponse");
@@ -1376,7 +1423,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         }
         if (!isPreSigning  && auditLogger.isEnabled()) {
             auditLogger.paramPut(PatternLogger.PROCESS_TIME, PatternLogger.PROCESS_TIME);
-            auditLogger.paramPut(AuditLogger.OCSPREQUEST, StringTools.hex(request));
+            auditLogger.paramPut(AuditLogger.OCSPREQUEST, request);
         }
         
         GlobalOcspConfiguration ocspConfiguration = (GlobalOcspConfiguration) globalConfigurationSession
@@ -1423,6 +1470,9 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
             // If the Extended Revoked Definition should be added for certificates that we can not find in the database, see RFC6960 4.4.8
             boolean addExtendedRevokedExtension = false;
             Date producedAt = null;
+            // Look up the status of all certificates of the same issuer at once, instead of one at a time in the loop below
+            final Map<String, Map<BigInteger, CertificateStatus>> prefetchedStatuses = ocspRequests.length > 1 ? getCertificateStatuses(ocspRequests)
+                    : Collections.emptyMap();
             
             for (Req ocspRequest : ocspRequests) {
                 CertificateID certId = ocspRequest.getCertID();
@@ -1477,53 +1527,45 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                                 
                 // We only store pre-produced single responses
                 if (ocspRequests.length == 1 && ocspDataConfig != null && ocspDataConfig.isPreProductionEnabled()) {
-                    
-                    final OcspResponseData ocspResponseData = ocspDataSession.findOcspDataByCaIdSerialNumber(ocspDataConfig.getCaId(), certId.getSerialNumber().toString());
+                    final boolean okToStoreResponse = reqHasExtensionsOkToStoreResponse(req, ocspSigningCacheEntry);
+                    final String serialNumber = certId.getSerialNumber().toString();
+                    final long preProducedMaxAge;
+                    if (ocspSigningCacheEntry != null && ocspSigningCacheEntry.isUsingSeparateOcspSigningCertificate()) {
+                        preProducedMaxAge = ocspSigningCacheEntry.getOcspKeyBinding().getMaxAge() * 1000L;
+                    } else {
+                        preProducedMaxAge = maxAge;
+                    }
+                    // Serve the response from memory if we have it, without touching the database or parsing it again
+                    if (!isPreSigning && okToStoreResponse) {
+                        final OcspResponseDataCache.CachedResponse cachedResponse = OcspResponseDataCache.INSTANCE.get(ocspDataConfig.getCaId(), serialNumber);
+                        if (cachedResponse != null) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Returning cached pre-produced OCSP response for CA " + ocspDataConfig.getCaId() + " and cert serial " + serialNumber);
+                            }
+                            logPreProducedResponse(auditLogger, transactionLogger, ocspSigningCacheEntry, cachedResponse);
+                            return new OcspResponseInformation(cachedResponse.getResponseInformation(), preProducedMaxAge, signerCert);
+                        }
+                    }
+
+                    final OcspResponseData ocspResponseData = ocspDataSession.findOcspDataByCaIdSerialNumber(ocspDataConfig.getCaId(), serialNumber);
 
                     // 1. If no stored response exists. Skip this, produce and new one and store it later on (if storing on-demand is enabled)
                     // 2. If a response is stored, still valid and request has only supported extensions: return it.
                     // 3. If a response is stored and nextUpdate is null: Ignore it and produce new response.
                     if (!isPreSigning && ocspResponseData != null && ocspResponseData.getNextUpdate() != null
                             && ocspResponseData.getNextUpdate() > System.currentTimeMillis()
-                            && reqHasExtensionsOkToStoreResponse(req, ocspSigningCacheEntry)) {
-                        OCSPResp ocspResp = null;
+                            && okToStoreResponse) {
                         try {
-                            ocspResp = new OCSPResp(ocspResponseData.getOcspResponse());
-                            if (ocspSigningCacheEntry != null && ocspSigningCacheEntry.isUsingSeparateOcspSigningCertificate()) {
-                                maxAge = ocspSigningCacheEntry.getOcspKeyBinding().getMaxAge() * 1000L;
-                            }
+                            final OCSPResp ocspResp = new OCSPResp(ocspResponseData.getOcspResponse());
                             if (log.isDebugEnabled()) {
                                 log.debug("Returning pre-produced OCSP response for CA " + ocspResponseData.getCaId() + " and cert serial "
                                         + ocspResponseData.getSerialNumber());
                             }
-
+                            final OcspResponseDataCache.CachedResponse cachedResponse = createCachedResponse(ocspResp, ocspResponseData.getNextUpdate());
+                            OcspResponseDataCache.INSTANCE.put(ocspDataConfig.getCaId(), serialNumber, cachedResponse);
                             // Audit ant transaction log before returning the response info (if not a pre-signing situation).
-                            if (auditLogger.isEnabled()) {
-                                auditLogger.paramPut(AuditLogger.OCSPRESPONSE, StringTools.hex(ocspResponseData.getOcspResponse()));
-                                auditLogger.writeln();
-                                auditLogger.flush();
-                            }
-
-                            if (transactionLogger.isEnabled()) {
-                                if (ocspSigningCacheEntry != null) {
-                                    transactionLogger.paramPut(TransactionLogger.OCSP_CERT_ISSUER_NAME_DN,
-                                            ocspSigningCacheEntry.getSigningCertificateIssuerDn());
-                                    transactionLogger.paramPut(TransactionLogger.OCSP_CERT_ISSUER_NAME_DN_RAW,
-                                            ocspSigningCacheEntry.getSigningCertificateIssuerDnRaw());
-                                    // Issuer of the requested certificate is not logged to save database lookup
-                                }
-                                org.bouncycastle.cert.ocsp.CertificateStatus status = ((BasicOCSPResp) ocspResp.getResponseObject()).getResponses()[0]
-                                        .getCertStatus();
-
-                                transactionLogger.paramPut(TransactionLogger.CERT_STATUS, fetchCertStatus(status));
-
-                                if (!Objects.isNull(status) && ((RevokedStatus) status).hasRevocationReason()) {
-                                    transactionLogger.paramPut(TransactionLogger.REV_REASON, ((RevokedStatus) status).getRevocationReason());
-                                }
-                                transactionLogger.writeln();
-                                transactionLogger.flush();
-                            }
-                            return new OcspResponseInformation(ocspResp, maxAge, signerCert);
+                            logPreProducedResponse(auditLogger, transactionLogger, ocspSigningCacheEntry, cachedResponse);
+                            return new OcspResponseInformation(cachedResponse.getResponseInformation(), preProducedMaxAge, signerCert);
                         } catch (IOException e) {
                             log.warn("Pre-produced OCSP response for certificate with serialNr '" + certId.getSerialNumber()
                                     + "' was malformed. Producing new response.");
@@ -1531,7 +1573,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                     }
                     // All prerequisites for pre-production are OK. However, no valid response is persisted. Setting the serialNrForResponseStore will
                     // result in the produced one to be stored. Don't store responses without nextUpdate set.
-                    if ((ocspDataConfig.isStoreResponseOnDemand() || isPreSigning) && reqHasExtensionsOkToStoreResponse(req, ocspSigningCacheEntry)) {
+                    if ((ocspDataConfig.isStoreResponseOnDemand() || isPreSigning) && okToStoreResponse) {
                         TimeZone tz = TimeZone.getTimeZone("GMT");
                         Calendar finalResponseTime = Calendar.getInstance(tz);
                         finalResponseTime.clear();
@@ -1718,13 +1760,24 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                      * the certificate in the same transaction.
                      */
                     CertificateStatus status;
+                    boolean statusFromRevocationIndex = false;
                     String issuerDnOcspRequest = caCertificateSubjectDn;
                     if(signedBehalfOfCaSubjectDn!=null) {
                         issuerDnOcspRequest = signedBehalfOfCaSubjectDn;
                         // we will also use certificate profile settings for issuing certificate
                     }
                     if (extensionOids.isEmpty()) {
-                        status = certificateStoreSession.getStatus(issuerDnOcspRequest, certId.getSerialNumber());
+                        final Map<BigInteger, CertificateStatus> issuerStatuses = prefetchedStatuses.get(issuerDnOcspRequest);
+                        status = issuerStatuses != null ? issuerStatuses.get(certId.getSerialNumber()) : null;
+                        if (status == null && !isPreSigning && OcspRevocationIndex.INSTANCE.isNotRevoked(issuerDnOcspRequest, certId.getSerialNumber())) {
+                            // Issued and not revoked according to the in-memory index. The certificate profile is not known, but the
+                            // index is only used when there are no certificate profile specific settings.
+                            status = CertificateStatus.OK;
+                            statusFromRevocationIndex = true;
+                        }
+                        if (status == null) {
+                            status = certificateStoreSession.getStatus(issuerDnOcspRequest, certId.getSerialNumber());
+                        }
                     } else {
                         certificateStatusHolder = certificateStoreSession.getCertificateAndStatus(issuerDnOcspRequest, certId.getSerialNumber());
                         status = certificateStatusHolder.getCertificateStatus();
@@ -1733,7 +1786,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                         return null; // do not store response for expired certificates
                     }
                     if (!isPreSigning && transactionLogger.isEnabled()) {
-                        transactionLogger.paramPut(TransactionLogger.CERT_PROFILE_ID, String.valueOf(status.certificateProfileId));
+                        transactionLogger.paramPut(TransactionLogger.CERT_PROFILE_ID, statusFromRevocationIndex ? TransactionLogger.CERT_PROFILE_ID_UNKNOWN
+                                : String.valueOf(status.certificateProfileId));
                     }
                     // If we have an OcspKeyBinding configured for this request, we override the default value
                     if (ocspSigningCacheEntry.isUsingSeparateOcspSigningCertificate()) {
@@ -2027,7 +2081,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         try {
             respBytes = ocspResponse.getEncoded();
             if (!isPreSigning && auditLogger.isEnabled()) {
-                auditLogger.paramPut(AuditLogger.OCSPRESPONSE, StringTools.hex(respBytes));
+                auditLogger.paramPut(AuditLogger.OCSPRESPONSE, respBytes);
                 auditLogger.writeln();
                 auditLogger.flush();
             }
@@ -2059,7 +2113,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         if (serialNrForResponseStore != null && caIdForResponseStore != 0 && 
                 ocspResponse.getStatus() == OCSPRespBuilder.SUCCESSFUL) { 
             try {
-                storeOcspResponse(caIdForResponseStore, serialNrForResponseStore, ocspResponse);
+                storeOcspResponse(caIdForResponseStore, serialNrForResponseStore, ocspResponse, responseBatch);
             } catch (OCSPException | IOException e) {
                 // Log the error and reply anyway
                 log.warn("Error storing OCSP response for certificate with serialNr '" + serialNrForResponseStore);
@@ -2068,6 +2122,39 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         return new OcspResponseInformation(ocspResponse, maxAge, signerCert);
     }
 
+    /**
+     * Looks up the status of the certificates in a request with multiple CertIDs, with one database query per issuer. Only 
+     * certificates for which the loop in getOcspResponse would have looked up the status alone are included, i.e. certificates of 
+     * CAs in the signing cache that don't sign on behalf of other CAs and don't have OCSP extensions that need the certificate.
+     * 
+     * @return map from issuer DN to a map from serial number to status. Certificates that are not included are looked up one by one.
+     */
+    private Map<String, Map<BigInteger, CertificateStatus>> getCertificateStatuses(final Req[] ocspRequests) {
+        final Map<String, Set<BigInteger>> serialNumbersByIssuer = new HashMap<>();
+        for (final Req ocspRequest : ocspRequests) {
+            final OcspSigningCacheEntry ocspSigningCacheEntry = OcspSigningCache.INSTANCE.getEntry(ocspRequest.getCertID());
+            if (ocspSigningCacheEntry == null || ocspSigningCacheEntry.getIssuerCaCertificate() == null
+                    || !ocspSigningCacheEntry.getSignedBehalfOfCaIds().isEmpty()
+                    || (ocspSigningCacheEntry.getOcspKeyBinding() != null && !ocspSigningCacheEntry.getOcspKeyBinding().getOcspExtensions().isEmpty())) {
+                continue;
+            }
+            final String issuerDn = CertTools.getSubjectDN(ocspSigningCacheEntry.getIssuerCaCertificate());
+            if (OcspRevocationIndex.INSTANCE.isNotRevoked(issuerDn, ocspRequest.getCertID().getSerialNumber())) {
+                // Answered from the in-memory index
+                continue;
+            }
+            serialNumbersByIssuer.computeIfAbsent(issuerDn, dn -> new HashSet<>()).add(ocspRequest.getCertID().getSerialNumber());
+        }
+        final Map<String, Map<BigInteger, CertificateStatus>> ret = new HashMap<>();
+        for (final Map.Entry<String, Set<BigInteger>> entry : serialNumbersByIssuer.entrySet()) {
+            // A single certificate is looked up as usual
+            if (entry.getValue().size() > 1) {
+                ret.put(entry.getKey(), certificateStoreSession.getStatuses(entry.getKey(), entry.getValue()));
+            }
+        }
+        return ret;
+    }
+
     private int fetchCertStatus(org.bouncycastle.cert.ocsp.CertificateStatus certStatus) {
         if (Objects.isNull(certStatus)) {
             return OCSPResponseItem.OCSP_GOOD;
@@ -2078,7 +2165,50 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         }
     }
 
-    private void storeOcspResponse(final int caId, final String serialNr, final OCSPResp ocspResponse) throws OCSPException, IOException {
+    /**
+     * Extracts the information needed to serve and log a pre-produced response from the parsed response.
+     * 
+     * @param ocspResp a successful OCSP response with a single response
+     * @param nextUpdate the nextUpdate of the single response
+     */
+    private OcspResponseDataCache.CachedResponse createCachedResponse(final OCSPResp ocspResp, final long nextUpdate) throws OCSPException {
+        final org.bouncycastle.cert.ocsp.CertificateStatus status = ((BasicOCSPResp) ocspResp.getResponseObject()).getResponses()[0].getCertStatus();
+        int revocationReason = -1;
+        if (status instanceof RevokedStatus && ((RevokedStatus) status).hasRevocationReason()) {
+            revocationReason = ((RevokedStatus) status).getRevocationReason();
+        }
+        return new OcspResponseDataCache.CachedResponse(new OcspResponseInformation(ocspResp, 0, null), nextUpdate, fetchCertStatus(status),
+                revocationReason);
+    }
+
+    /** Writes the audit and transaction log entries for a pre-produced response that is returned as is. */
+    private void logPreProducedResponse(final AuditLogger auditLogger, final TransactionLogger transactionLogger,
+            final OcspSigningCacheEntry ocspSigningCacheEntry, final OcspResponseDataCache.CachedResponse cachedResponse) {
+        if (auditLogger.isEnabled()) {
+            auditLogger.paramPut(AuditLogger.OCSPRESPONSE, cachedResponse.getEncodedResponse());
+            auditLogger.writeln();
+            auditLogger.flush();
+        }
+        if (transactionLogger.isEnabled()) {
+            if (ocspSigningCacheEntry != null) {
+                transactionLogger.paramPut(TransactionLogger.OCSP_CERT_ISSUER_NAME_DN, ocspSigningCacheEntry.getSigningCertificateIssuerDn());
+                transactionLogger.paramPut(TransactionLogger.OCSP_CERT_ISSUER_NAME_DN_RAW, ocspSigningCacheEntry.getSigningCertificateIssuerDnRaw());
+                // Issuer of the requested certificate is not logged to save database lookup
+            }
+            transactionLogger.paramPut(TransactionLogger.CERT_STATUS, cachedResponse.getCertStatus());
+            if (cachedResponse.hasRevocationReason()) {
+                transactionLogger.paramPut(TransactionLogger.REV_REASON, cachedResponse.getRevocationReason());
+            }
+            transactionLogger.writeln();
+            transactionLogger.flush();
+        }
+    }
+
+    /**
+     * @param responseBatch if not null, the response is added to this list instead of being persisted and published
+     */
+    private void storeOcspResponse(final int caId, final String serialNr, final OCSPResp ocspResponse, final List<OcspResponseData> responseBatch)
+            throws OCSPException, IOException {
         // Redundantly storing producedAt and nextUpdate, next to the canned response itself for faster querying. 
         // Assuming this is a single response (we don't store it otherwise), we can safely pick nextUpdate from first index.
         long producedAt = ((BasicOCSPResp)ocspResponse.getResponseObject()).getProducedAt().getTime();
@@ -2090,8 +2220,18 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         }
         nextUpdate = nextUpdateDate.getTime();
         final OcspResponseData responseData = new OcspResponseData(UUID.randomUUID().toString(), caId, serialNr, producedAt, nextUpdate, ocspResponse.getEncoded());
-        ocspDataSession.storeOcspData(responseData);
-        publishOcspResponse(caId, responseData);
+        if (responseBatch == null) {
+            ocspDataSession.storeOcspData(responseData);
+        } else {
+            responseBatch.add(responseData);
+        }
+        if (OcspResponseDataCache.INSTANCE.isEnabled()) {
+            // Replace any previously cached response for this certificate
+            OcspResponseDataCache.INSTANCE.put(caId, serialNr, createCachedResponse(ocspResponse, nextUpdate));
+        }
+        if (responseBatch == null) {
+            publishOcspResponse(caId, responseData);
+        }
     }
     
     private void publishOcspResponse(final int caId, final OcspResponseData responseData) {
@@ -2311,38 +2451,344 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
     @Override
     public void preSignOcspResponse(final X509Certificate cacert, final BigInteger serialNr, final PresignResponseValidity presignResponseValidity,
             final boolean includeExpiredCertificates, final String certIDHashAlgorithm) {
-        final OCSPReq req;
-        final OCSPReqBuilder gen = new OCSPReqBuilder();
+        try {
+            preSignOcspResponse(createCertificateId(cacert, serialNr, certIDHashAlgorithm), presignResponseValidity, includeExpiredCertificates, null);
+        } catch (OCSPException | OperatorCreationException | CertificateEncodingException e) {
+            logPreSigningError(e);
+        }
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public OcspPreSigningResult preSignOcspResponses(final AuthenticationToken authenticationToken, final int caId, final String resumeAfterSerialNumber,
+            final int maxCertificates, final boolean includeExpiredCertificates) throws AuthorizationDeniedException, CADoesntExistsException {
+        final CAInfo caInfo = caSession.getCAInfo(authenticationToken, caId);
+        if (!(caInfo instanceof X509CAInfo) || CollectionUtils.isEmpty(caInfo.getCertificateChain())) {
+            throw new CADoesntExistsException("No X.509 CA with a CA certificate and ID " + caId + " exists.");
+        }
+        final X509Certificate cacert = (X509Certificate) caInfo.getCertificateChain().get(0);
+        return preSignOcspResponses(cacert, resumeAfterSerialNumber, maxCertificates, PresignResponseValidity.CONFIGURATION_BASED,
+                includeExpiredCertificates, CertificateConstants.DEFAULT_CERTID_HASH_ALGORITHM);
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public OcspPreSigningResult preSignOcspResponses(final X509Certificate cacert, final String resumeAfterSerialNumber, final int maxCertificates,
+            final PresignResponseValidity presignResponseValidity, final boolean includeExpiredCertificates, final String certIDHashAlgorithm) {
+        final String issuerDn = CertTools.getSubjectDN(cacert);
+        final int batchSize = OcspConfiguration.getPreSigningBatchSize();
+        final int threads = OcspConfiguration.getPreSigningThreads();
+        final long startTime = System.currentTimeMillis();
+        final long expireDate = includeExpiredCertificates ? 0 : startTime;
+        final CertificateID template;
+        try {
+            template = createCertificateId(cacert, BigInteger.ONE, certIDHashAlgorithm);
+        } catch (OCSPException | OperatorCreationException | CertificateEncodingException e) {
+            logPreSigningError(e);
+            return new OcspPreSigningResult(resumeAfterSerialNumber, 0, 0, 0, false);
+        }
+        log.info("Pre-producing OCSP responses for certificates issued by '" + issuerDn + "'"
+                + (resumeAfterSerialNumber == null ? "" : " with serial number after " + resumeAfterSerialNumber)
+                + ", using " + threads + " threads and batches of " + batchSize + " certificates.");
+        String lastSerialNumber = resumeAfterSerialNumber;
+        int processed = 0;
+        int stored = 0;
+        int failed = 0;
+        boolean complete = false;
+        try {
+            while (maxCertificates <= 0 || processed < maxCertificates) {
+                final int limit = maxCertificates <= 0 ? batchSize : Math.min(batchSize, maxCertificates - processed);
+                final List<String> serialNumbers = certificateStoreSession.findSerialNrByIssuerAndExpireDateAfterSerialNr(issuerDn, expireDate,
+                        lastSerialNumber, limit);
+                if (!serialNumbers.isEmpty()) {
+                    final List<CertificateID> certIds = new ArrayList<>(serialNumbers.size());
+                    for (final String serialNumber : serialNumbers) {
+                        certIds.add(CertificateID.deriveCertificateID(template, new BigInteger(serialNumber)));
+                    }
+                    final List<OcspResponseData> responseBatch = Collections.synchronizedList(new ArrayList<>(serialNumbers.size()));
+                    final int batchFailed = preSignOcspResponseBatch(certIds, presignResponseValidity, includeExpiredCertificates, responseBatch, threads);
+                    storeOcspResponseBatch(responseBatch);
+                    // Only move forward once the batch has been stored, so an aborted run can be resumed from here
+                    processed += serialNumbers.size();
+                    stored += responseBatch.size();
+                    failed += batchFailed;
+                    lastSerialNumber = serialNumbers.get(serialNumbers.size() - 1);
+                    final long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+                    log.info("Pre-produced OCSP responses for " + processed + " certificates issued by '" + issuerDn + "' (" + stored + " stored, "
+                            + failed + " failed, " + (processed * 1000L / elapsed) + " certificates/s). Last serial number: " + lastSerialNumber);
+                }
+                if (serialNumbers.size() < limit) {
+                    complete = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Pre-production of OCSP responses for '" + issuerDn + "' was interrupted after serial number " + lastSerialNumber + ".");
+        } catch (EJBException e) {
+            log.error("Pre-production of OCSP responses for '" + issuerDn + "' failed after serial number " + lastSerialNumber + ": " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to pre-produce OCSP responses.", e);
+            }
+        }
+        return new OcspPreSigningResult(lastSerialNumber, processed, stored, failed, complete);
+    }
+
+    /**
+     * Pre-produces responses for a batch of certificates. The batch is split into one part per thread, and the parts are signed in parallel
+     * on the managed executor service. Each thread signs with the same key, so the number of threads limits the load on the crypto token.
+     * 
+     * @return the number of certificates for which no response could be produced
+     */
+    private int preSignOcspResponseBatch(final List<CertificateID> certIds, final PresignResponseValidity presignResponseValidity,
+            final boolean includeExpiredCertificates, final List<OcspResponseData> responseBatch, final int threads) throws InterruptedException {
+        if (threads <= 1 || certIds.size() <= 1 || managedExecutorService == null) {
+            return preSignOcspResponses(certIds, presignResponseValidity, includeExpiredCertificates, responseBatch);
+        }
+        final int partSize = (certIds.size() + threads - 1) / threads;
+        final List<Callable<Integer>> tasks = new ArrayList<>(threads);
+        for (int i = 0; i < certIds.size(); i += partSize) {
+            final List<CertificateID> part = certIds.subList(i, Math.min(i + partSize, certIds.size()));
+            tasks.add(() -> preSignOcspResponses(part, presignResponseValidity, includeExpiredCertificates, responseBatch));
+        }
+        int failed = 0;
+        final List<Future<Integer>> results = managedExecutorService.invokeAll(tasks);
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                failed += results.get(i).get();
+            } catch (ExecutionException e) {
+                logPreSigningError(e.getCause());
+                failed += Math.min(partSize, certIds.size() - i * partSize);
+            }
+        }
+        return failed;
+    }
+
+    /** @return the number of certificates for which no response could be produced */
+    private int preSignOcspResponses(final List<CertificateID> certIds, final PresignResponseValidity presignResponseValidity,
+            final boolean includeExpiredCertificates, final List<OcspResponseData> responseBatch) {
+        int failed = 0;
+        for (final CertificateID certId : certIds) {
+            if (!preSignOcspResponse(certId, presignResponseValidity, includeExpiredCertificates, responseBatch)) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /** Stores the responses produced for a batch in a single transaction, and publishes them once they have been stored. */
+    private void storeOcspResponseBatch(final List<OcspResponseData> responseBatch) {
+        if (responseBatch.isEmpty()) {
+            return;
+        }
+        ocspDataSession.storeOcspDataBatch(responseBatch);
+        for (final OcspResponseData responseData : responseBatch) {
+            publishOcspResponse(responseData.getCaId(), responseData);
+        }
+    }
+
+    /**
+     * Replaces stored responses that expire within the configured time ahead with new responses, starting with the responses expiring
+     * first, and at most the configured number of responses per run. Until a new response has been stored, the current response is
+     * still valid and is served as usual.
+     */
+    private void refreshStoredOcspResponses() {
+        final long interval = OcspConfiguration.getResponseRefreshInterval();
+        try {
+            if (interval <= 0) {
+                return;
+            }
+            final long now = System.currentTimeMillis();
+            final long refreshTime = now + OcspConfiguration.getResponseRefreshAheadTime();
+            final int batchSize = OcspConfiguration.getPreSigningBatchSize();
+            final int threads = OcspConfiguration.getPreSigningThreads();
+            int remaining = OcspConfiguration.getResponseRefreshMaxResponses();
+            int refreshed = 0;
+            int failed = 0;
+            for (final OcspDataConfigCacheEntry ocspDataConfig : OcspDataConfigCache.INSTANCE.getEntries()) {
+                if (!ocspDataConfig.isPreProductionEnabled()) {
+                    continue;
+                }
+                // Responses that were not replaced remain in the time window, so skip them instead of trying them again in this run
+                final Set<String> attemptedSerialNumbers = new HashSet<>();
+                int notReplaced = 0;
+                while (remaining > 0) {
+                    final List<CertificateID> certIds = new ArrayList<>();
+                    for (final OcspResponseData responseData : ocspDataSession.findOcspDataToRefresh(ocspDataConfig.getCaId(), now, refreshTime,
+                            Math.min(batchSize, remaining) + notReplaced)) {
+                        if (certIds.size() < remaining && attemptedSerialNumbers.add(responseData.getSerialNumber())) {
+                            final CertificateID certId = getCertificateId(responseData);
+                            if (certId != null) {
+                                certIds.add(certId);
+                            }
+                        }
+                    }
+                    if (certIds.isEmpty()) {
+                        break;
+                    }
+                    final List<OcspResponseData> responseBatch = Collections.synchronizedList(new ArrayList<>(certIds.size()));
+                    failed += preSignOcspResponseBatch(certIds, PresignResponseValidity.CONFIGURATION_BASED, false, responseBatch, threads);
+                    storeOcspResponseBatch(responseBatch);
+                    refreshed += responseBatch.size();
+                    notReplaced += certIds.size() - responseBatch.size();
+                    remaining -= certIds.size();
+                }
+            }
+            if (refreshed > 0 || failed > 0) {
+                log.info("Refreshed " + refreshed + " stored OCSP responses expiring before " + ValidityDate.formatAsISO8601ServerTZ(refreshTime, 
+                        TimeZone.getDefault()) + (failed > 0 ? ", failed to refresh " + failed + " responses." : "."));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Failed to refresh stored OCSP responses: " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to refresh stored OCSP responses.", e);
+            }
+        } finally {
+            addTimer(interval, TIMERID_OCSPRESPONSEREFRESH);
+        }
+    }
+
+    /**
+     * Builds the in-memory index of revoked certificates for the CAs in the signing cache, and applies the changes that were made in the
+     * database since the last run to the existing indexes. Changes made on this node are applied immediately by CertificateStoreSession.
+     * The index is removed if it has been disabled, or if the validity of responses depends on the certificate profile.
+     */
+    private void updateOcspRevocationIndex() {
+        final long interval = OcspConfiguration.getRevocationIndexRefreshInterval();
+        try {
+            if (interval <= 0 || OcspConfiguration.isCertificateProfileSpecificValidityConfigured()) {
+                if (interval > 0) {
+                    log.warn("Not using the in-memory OCSP revocation index, since untilNextUpdate or maxAge is configured for specific certificate profiles.");
+                }
+                OcspRevocationIndex.INSTANCE.flush();
+                return;
+            }
+            final Set<String> issuerDns = new HashSet<>();
+            for (final OcspSigningCacheEntry ocspSigningCacheEntry : OcspSigningCache.INSTANCE.getEntries()) {
+                if (ocspSigningCacheEntry.getIssuerCaCertificate() != null) {
+                    issuerDns.add(CertTools.getSubjectDN(ocspSigningCacheEntry.getIssuerCaCertificate()));
+                }
+            }
+            for (final String issuerDn : OcspRevocationIndex.INSTANCE.getIssuerDns()) {
+                if (!issuerDns.contains(issuerDn)) {
+                    OcspRevocationIndex.INSTANCE.removeIndex(issuerDn);
+                }
+            }
+            for (final String issuerDn : issuerDns) {
+                final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.INSTANCE.getIndex(issuerDn);
+                if (index == null || index.isRebuildNeeded()) {
+                    buildOcspRevocationIndex(issuerDn);
+                } else {
+                    final long updateTime = System.currentTimeMillis() - REVOCATION_INDEX_UPDATE_MARGIN;
+                    // Changed certificates are marked before new certificates are added, so a certificate revoked in between is never added
+                    for (final String serialNumber : certificateStoreSession.findSerialNrByIssuerAndUpdateTimeAfter(issuerDn, index.getUpdateTime(), false)) {
+                        index.markChanged(serialNumber);
+                    }
+                    for (final String serialNumber : certificateStoreSession.findSerialNrByIssuerAndUpdateTimeAfter(issuerDn, index.getUpdateTime(), true)) {
+                        index.addIssued(serialNumber);
+                    }
+                    index.setUpdateTime(updateTime);
+                }
+            }
+        } catch (RuntimeException e) {
+            // The existing indexes are kept, and the changes are applied when the database is available again
+            log.error("Failed to update the OCSP revocation index: " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to update the OCSP revocation index.", e);
+            }
+        } finally {
+            addTimer(interval, TIMERID_OCSPREVOCATIONINDEX);
+        }
+    }
+
+    /** Builds the in-memory index of revoked certificates for a CA, replacing any existing index. */
+    private void buildOcspRevocationIndex(final String issuerDn) {
+        // Changes made on this node while the index is built are applied when it is added, and changes made on other nodes by the next update
+        OcspRevocationIndex.INSTANCE.startBuildingIndex(issuerDn);
+        final long now = System.currentTimeMillis();
+        final long updateTime = now - REVOCATION_INDEX_UPDATE_MARGIN;
+        final List<String> notActiveSerialNumbers = certificateStoreSession.findNotActiveSerialNrByIssuerAndExpireDateAfter(issuerDn, now);
+        final OcspRevocationIndex.IssuerIndex index = OcspRevocationIndex.createIndex(notActiveSerialNumbers,
+                certificateStoreSession.countByIssuerAndExpireDateAfter(issuerDn, now), updateTime);
+        long count = 0;
+        String lastSerialNumber = null;
+        List<String> serialNumbers;
+        do {
+            serialNumbers = certificateStoreSession.findSerialNrByIssuerAndExpireDateAfterSerialNr(issuerDn, now, lastSerialNumber,
+                    REVOCATION_INDEX_BATCH_SIZE);
+            for (final String serialNumber : serialNumbers) {
+                index.addIssued(serialNumber);
+            }
+            if (!serialNumbers.isEmpty()) {
+                lastSerialNumber = serialNumbers.get(serialNumbers.size() - 1);
+                count += serialNumbers.size();
+            }
+        } while (serialNumbers.size() == REVOCATION_INDEX_BATCH_SIZE);
+        OcspRevocationIndex.INSTANCE.putIndex(issuerDn, index);
+        log.info("Built OCSP revocation index for issuer '" + issuerDn + "' with " + count + " unexpired certificates, of which "
+                + notActiveSerialNumbers.size() + " are not active.");
+    }
+
+    /** @return the CertID of a stored response, so the new response is produced for the same CertID, or null if the response can not be parsed */
+    private CertificateID getCertificateId(final OcspResponseData responseData) {
+        try {
+            final BasicOCSPResp basicResponse = (BasicOCSPResp) new OCSPResp(responseData.getOcspResponse()).getResponseObject();
+            return basicResponse.getResponses()[0].getCertID();
+        } catch (IOException | OCSPException | RuntimeException e) {
+            log.warn("Stored OCSP response for certificate with serialNr '" + responseData.getSerialNumber() + "' was malformed. Not refreshing it.");
+            return null;
+        }
+    }
+
+    /**
+     * Pre-produces a response for a single certificate.
+     * 
+     * @param responseBatch if not null, the response is added to this list instead of being stored
+     * @return true if a successful response was produced (even if it was not stored because a final response already exists)
+     */
+    private boolean preSignOcspResponse(final CertificateID certId, final PresignResponseValidity presignResponseValidity,
+            final boolean includeExpiredCertificates, final List<OcspResponseData> responseBatch) {
         final int localTransactionId = TransactionCounter.INSTANCE.getTransactionNumber();
         final String remoteAddress = "127.0.0.1";
         final GlobalOcspConfiguration ocspConfiguration = (GlobalOcspConfiguration)
                 globalConfigurationSession.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
         AuditLogger auditLogger = new AuditLogger("", localTransactionId, GuidHolder.INSTANCE.getGlobalUid(), remoteAddress, ocspConfiguration);
         TransactionLogger transactionLogger = new TransactionLogger(localTransactionId, GuidHolder.INSTANCE.getGlobalUid(), remoteAddress, ocspConfiguration);
-        CertificateID certId;
         try {
-            if (isHashAlg(certIDHashAlgorithm, HashAlgorithm.sha1)) {
-                certId = new JcaCertificateID(SHA1DigestCalculator.buildSha1Instance(), cacert, serialNr);
-            } else if (isHashAlg(certIDHashAlgorithm, HashAlgorithm.sha384)) {
-                certId = new JcaCertificateID(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha384)), cacert, serialNr);
-            } else if (isHashAlg(certIDHashAlgorithm, HashAlgorithm.sha512)) {
-                certId = new JcaCertificateID(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha512)), cacert, serialNr);
-            } else {
-                certId = new JcaCertificateID(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256)), cacert, serialNr);
-            }
-
+            final OCSPReqBuilder gen = new OCSPReqBuilder();
             gen.addRequest(certId);
-            req = gen.build();
-            getOcspResponse(req.getEncoded(), null, remoteAddress, null, null, auditLogger, transactionLogger, true, presignResponseValidity, includeExpiredCertificates);
-
+            final OCSPReq req = gen.build();
+            final OcspResponseInformation response = getOcspResponse(req.getEncoded(), null, remoteAddress, null, null, auditLogger, transactionLogger,
+                    true, presignResponseValidity, includeExpiredCertificates, responseBatch);
+            // No response is produced for expired certificates, unless they should be included
+            return response == null || response.getStatus() == OCSPRespBuilder.SUCCESSFUL;
         } catch (Throwable e) {
-            final String errMsg = intres.getLocalizedMessage("ocsp.errorprocessreq", LogRedactionUtils.getRedactedMessage(e.getMessage()));
-            log.info(errMsg);
-            if (log.isDebugEnabled()) {
-                log.debug(errMsg, LogRedactionUtils.getRedactedThrowable(e));
-            }
+            logPreSigningError(e);
+            return false;
+        }
+    }
+
+    private void logPreSigningError(final Throwable e) {
+        final String errMsg = intres.getLocalizedMessage("ocsp.errorprocessreq", LogRedactionUtils.getRedactedMessage(e.getMessage()));
+        log.info(errMsg);
+        if (log.isDebugEnabled()) {
+            log.debug(errMsg, LogRedactionUtils.getRedactedThrowable(e));
+        }
+    }
+
+    private CertificateID createCertificateId(final X509Certificate cacert, final BigInteger serialNr, final String certIDHashAlgorithm)
+            throws OCSPException, OperatorCreationException, CertificateEncodingException {
+        if (isHashAlg(certIDHashAlgorithm, HashAlgorithm.sha1)) {
+            return new JcaCertificateID(SHA1DigestCalculator.buildSha1Instance(), cacert, serialNr);
+        } else if (isHashAlg(certIDHashAlgorithm, HashAlgorithm.sha384)) {
+            return new JcaCertificateID(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha384)), cacert, serialNr);
+        } else if (isHashAlg(certIDHashAlgorithm, HashAlgorithm.sha512)) {
+            return new JcaCertificateID(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha512)), cacert, serialNr);
+        } else {
+            return new JcaCertificateID(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256)), cacert, serialNr);
         }
-        
     }
 
     private boolean isHashAlg(String algorithmName, short askedHashAlg) {
@@ -2361,8 +2807,13 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
             log.debug("Signing algorithm: " + sigAlg);
         }
         try {
+            // Identical concurrent requests share the signing, but not responses with a fixed producedAt (final responses)
+            final OcspResponseCoalescer.Key coalescingKey = producedAt == null && OcspConfiguration.isCoalesceSigning()
+                    ? OcspResponseCoalescer.createKey(ocspSigningCacheEntry, sigAlg, responseList, exts)
+                    : null;
             // Now we can use the returned OCSPServiceResponse to get private key and certificate chain to sign the ocsp response
-            final BasicOCSPResp ocspresp = generateBasicOcspResp(exts, responseList, sigAlg, signerCert, ocspSigningCacheEntry, producedAt);
+            final BasicOCSPResp ocspresp = OcspResponseCoalescer.INSTANCE.sign(coalescingKey, TimeUnit.SECONDS.toMillis(HsmResponseThread.HSM_TIMEOUT_SECONDS),
+                    () -> generateBasicOcspResp(exts, responseList, sigAlg, signerCert, ocspSigningCacheEntry, producedAt));
             if (CertTools.isCertificateValid(signerCert, false, 0)) { // Don't warn about signer validity for each OCSP response...
                 return ocspresp;
             } else {
@@ -2400,6 +2851,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         if (log.isDebugEnabled()) {
             log.debug("The response certificate chain contains " + chain.length + " certificates");
         }
+        // The chain is decoded once for each cache entry, unless that failed
+        final X509CertificateHolder[] chainHolders = ocspSigningCacheEntry.getResponseCertChainHolders();
         /*
          * The below code breaks the EJB standard by creating its own thread pool and creating a single thread (of the HsmResponseThread 
          * type). The reason for this is that the HSM may deadlock when requesting an OCSP response, which we need to guard against. Since 
@@ -2408,7 +2861,9 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
          * Note that this does in no way break the spirit of the EJB standard, which is to not interrupt EJB's transaction handling by 
          * competing with its own thread pool, since these operations have no database impact.
          */
-        final Future<BasicOCSPResp> task = service.submit(new HsmResponseThread(basicRes, sigAlg, signerKey, chain, provider, producedAt));
+        final Future<BasicOCSPResp> task = service.submit(chainHolders != null
+                ? new HsmResponseThread(basicRes, sigAlg, signerKey, chainHolders, provider, producedAt)
+                : new HsmResponseThread(basicRes, sigAlg, signerKey, chain, provider, producedAt));
         try {
             returnval = task.get(HsmResponseThread.HSM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
@@ -2425,7 +2880,9 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
             log.debug("Signing OCSP response with OCSP signer cert: " + signerCert.getSubjectDN().getName());
         }
         
-        if (!returnval.getResponderId().equals(ocspSigningCacheEntry.getRespId())) {
+        // The builder puts the ResponderID of the cache entry in the response as is, so it is normally the same object
+        if (returnval.getResponderId().toASN1Primitive() != ocspSigningCacheEntry.getRespId().toASN1Primitive()
+                && !returnval.getResponderId().equals(ocspSigningCacheEntry.getRespId())) {
             log.error("Response responderId does not match signer certificate responderId!");
             throw new OcspFailureException("Response responderId does not match signer certificate responderId!");
         }
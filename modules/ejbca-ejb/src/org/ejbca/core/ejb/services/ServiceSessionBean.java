@@ -78,6 +78,7 @@ import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
@@ -113,6 +114,8 @@ public class ServiceSessionBean implements ServiceSessionLocal, ServiceSessionRe
 
     @Resource
     private SessionContext sessionContext;
+    @Resource
+    private ManagedExecutorService managedExecutorService;
     private TimerService timerService; // When the sessionContext is injected, the timerService should be looked up.
 
     @EJB
@@ -793,6 +796,7 @@ public class ServiceSessionBean implements ServiceSessionLocal, ServiceSessionRe
             ejbs.put(OcspResponseGeneratorSessionLocal.class, ocspGeneratorResponseSessionLocal);
             ejbs.put(OcspDataSessionLocal.class, ocspDataSessionLocal);
             ejbs.put(RevocationSessionLocal.class, revocationSession);
+            ejbs.put(ManagedExecutorService.class, managedExecutorService);
             ServiceExecutionResult result = worker.work(ejbs);
             final String msg = "Service " + serviceName + " executed with the following result: " + result.getResult().getOutput() + "." + result.getMessage();
             log.info(msg);
@@ -841,6 +845,7 @@ public class ServiceSessionBean implements ServiceSessionLocal, ServiceSessionRe
             ejbs.put(OcspResponseGeneratorSessionLocal.class, ocspGeneratorResponseSessionLocal);
             ejbs.put(OcspDataSessionLocal.class, ocspDataSessionLocal);
             ejbs.put(RevocationSessionLocal.class, revocationSession);
+            ejbs.put(ManagedExecutorService.class, managedExecutorService);
             ServiceExecutionResult result = worker.work(ejbs);            
             final String msg = "Service " + serviceName + " executed with the following result: " + result.getResult().getOutput() + "." + result.getMessage();
             log.info(msg);
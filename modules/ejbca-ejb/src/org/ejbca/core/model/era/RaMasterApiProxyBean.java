@@ -974,6 +974,12 @@ public class RaMasterApiProxyBean implements RaMasterApiProxyBeanLocal {
                         log.warn("Search operation 'BEGINS_WITH' not supported by Peer connected instance");
                         throw new UnsupportedOperationException("Operation 'BEGINS_WITH' not supported by instance");
                 }
+                if (raMasterApi.getApiVersion() < 19 && raCertificateSearchRequest.getContinuationToken() != null) {
+                    // Older instances ignore the continuation token and would return the first page again
+                    log.warn("Continuation tokens are not supported by Peer connected instance with API version " + raMasterApi.getApiVersion() + ".");
+                    ret.setStatus(RaCertificateSearchResponseV2.Status.ERROR);
+                    continue;
+                }
                 try {
                     ret.merge(raMasterApi.searchForCertificatesV2(authenticationToken, raCertificateSearchRequest));
                 } catch (UnsupportedOperationException e) {
@@ -985,6 +991,10 @@ public class RaMasterApiProxyBean implements RaMasterApiProxyBeanLocal {
                     if (log.isDebugEnabled()) {
                         log.debug("Timeout during back end invocation.", e);
                     }
+                    if (raCertificateSearchRequest.getContinuationToken() != null) {
+                        // The results of the back end on this page would be skipped, since the next page starts after the merged position
+                        ret.setStatus(RaCertificateSearchResponseV2.Status.TIMEOUT);
+                    }
                 }
             }
         }
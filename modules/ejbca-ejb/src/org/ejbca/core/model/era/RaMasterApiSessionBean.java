@@ -63,6 +63,7 @@ import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.certificates.certificate.CertificateCreateException;
 import org.cesecore.certificates.certificate.CertificateCreateSessionLocal;
 import org.cesecore.certificates.certificate.CertificateDataWrapper;
+import org.cesecore.certificates.certificate.CertificateInfo;
 import org.cesecore.certificates.certificate.CertificateRevokeException;
 import org.cesecore.certificates.certificate.CertificateStatus;
 import org.cesecore.certificates.certificate.CertificateStoreSessionLocal;
@@ -370,9 +371,10 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
      * <tr><th>16<td>=<td>8.1.0
      * <tr><th>17<td>=<td>8.2.0
      * <tr><th>18<td>=<td>8.3.0
+     * <tr><th>19<td>=<td>8.4.0
      * </table>
      */
-    private static final int RA_MASTER_API_VERSION = 18;
+    private static final int RA_MASTER_API_VERSION = 19;
 
     /**
      * Cached value of an active CA, so we don't have to list through all CAs every time as this is a critical path executed every time
@@ -1304,14 +1306,29 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
                                                                        final Collection<Integer> authorizedEepIds, final boolean accessAnyEepAvailable) {
         final RaCertificateSearchResponseV2 response = new RaCertificateSearchResponseV2();
         final boolean countOnly = request.getPageNumber() == -1;
-        final Query query = createQuery(entityManager, request, countOnly, issuerDns, authorizedCpIds, accessAnyCpAvailable, authorizedEepIds, accessAnyEepAvailable);
+        final boolean keysetPagination = isKeysetPagination(request, countOnly);
+        final Query query;
+        try {
+            query = createQuery(entityManager, request, countOnly, issuerDns, authorizedCpIds, accessAnyCpAvailable, authorizedEepIds, accessAnyEepAvailable);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(RaCertificateSearchResponseV2.Status.ERROR);
+            log.info("Requested search query by " + authenticationToken + " had an invalid continuation token. " + e.getMessage());
+            return response;
+        }
         int maxResults = -1;
         int offset = -1;
         if (!countOnly) {
             maxResults = Math.min(getGlobalCesecoreConfiguration().getMaximumQueryCount(), request.getMaxResults());
-            offset = (request.getPageNumber() - 1) * maxResults;
-            query.setMaxResults(maxResults);
-            query.setFirstResult(offset);
+            if (keysetPagination) {
+                // Read one more result to know if there is a next page
+                query.setMaxResults(maxResults + 1);
+            } else {
+                offset = (request.getPageNumber() - 1) * maxResults;
+                query.setMaxResults(maxResults);
+                query.setFirstResult(offset);
+            }
+            // Non-portable hint to read the whole page in one round trip. Some JDBC drivers fetch only 10 rows at a time by default.
+            query.setHint("org.hibernate.fetchSize", maxResults + 1);
         }
 
         /* Try to use the non-portable hint (depends on DB and JDBC driver) to specify how long in milliseconds the query may run. Possible behaviors:
@@ -1335,9 +1352,19 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
                 }
             } else {
                 final List<?> resultList = query.getResultList();
-                for (final Object fingerprintRecord : resultList) {
-                    final String fingerprint = ValueExtractor.extractStringValue(fingerprintRecord);
-                    response.getCdws().add(certificateStoreSession.getCertificateData(fingerprint));
+                final int pageSize = keysetPagination ? Math.min(resultList.size(), maxResults) : resultList.size();
+                final List<String> fingerprints = new ArrayList<>(pageSize);
+                for (final Object fingerprintRecord : resultList.subList(0, pageSize)) {
+                    // Keyset pagination also selects the sort column
+                    fingerprints.add(ValueExtractor.extractStringValue(fingerprintRecord instanceof Object[] ? ((Object[]) fingerprintRecord)[0] : fingerprintRecord));
+                }
+                response.getCdws().addAll(certificateStoreSession.getCertificateDatas(fingerprints));
+                if (keysetPagination && pageSize > 0) {
+                    final String lastResultContinuationToken = createContinuationToken(request, resultList.get(pageSize - 1));
+                    response.setLastResultContinuationToken(lastResultContinuationToken);
+                    if (resultList.size() > maxResults) {
+                        response.setNextContinuationToken(lastResultContinuationToken);
+                    }
                 }
                 response.setStatus(RaCertificateSearchResponseV2.Status.SUCCESSFUL);
                 if (log.isDebugEnabled()) {
@@ -1388,11 +1415,20 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
         final String externalAccountIdSearchString = request.getExternalAccountIdSearchString();
         final String serialNumberSearchStringFromDec = request.getSerialNumberSearchStringFromDec();
         final String serialNumberSearchStringFromHex = request.getSerialNumberSearchStringFromHex();
+        final boolean keysetPagination = isKeysetPagination(request, countOnly);
+        final String orderColumn = keysetPagination ? getOrderColumn(request) : null;
+        final boolean descending = orderColumn != null && "DESC".equalsIgnoreCase(request.getOrderOperation().trim());
+        final CertificateSearchContinuationToken continuationToken = keysetPagination && !request.getContinuationToken().isEmpty()
+                ? CertificateSearchContinuationToken.decode(request.getContinuationToken(), orderColumn, descending)
+                : null;
         final StringBuilder sb = new StringBuilder("SELECT ");
         if (countOnly) {
             sb.append("count(*)");
         } else {
             sb.append("a.fingerprint");
+            if (keysetPagination && orderColumn != null) {
+                sb.append(", a.").append(orderColumn);
+            }
         }
         sb.append(" FROM CertificateData a");
         sb.append(" WHERE a.issuerDN IN (:issuerDN)");
@@ -1439,9 +1475,27 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
             sb.append(" AND (a.endEntityProfileId IN (:endEntityProfileId))");
         }
 
+        if (continuationToken != null) {
+            // Results after the last result of the previous page. The fingerprint makes the sort order unique.
+            final String comparison = descending ? " < " : " > ";
+            if (orderColumn == null) {
+                sb.append(" AND (a.fingerprint").append(comparison).append(":keysetFingerprint)");
+            } else {
+                sb.append(" AND (a.").append(orderColumn).append(comparison).append(":keysetValue OR (a.").append(orderColumn)
+                        .append(" = :keysetValue AND a.fingerprint").append(comparison).append(":keysetFingerprint))");
+            }
+        }
+
         String orderProperty = request.getOrderProperty();
         String orderOperation = request.getOrderOperation();
-        if (!countOnly && StringUtils.isNotBlank(orderProperty) && StringUtils.isNotBlank(orderOperation)) {
+        if (keysetPagination) {
+            if (orderColumn == null) {
+                sb.append(" ORDER BY a.fingerprint ASC");
+            } else {
+                final String direction = descending ? " DESC" : " ASC";
+                sb.append(" ORDER BY a.").append(orderColumn).append(direction).append(", a.fingerprint").append(direction);
+            }
+        } else if (!countOnly && StringUtils.isNotBlank(orderProperty) && StringUtils.isNotBlank(orderOperation)) {
             orderOperation = orderOperation.trim();
             if("ASC".equalsIgnoreCase(orderOperation) || "DESC".equalsIgnoreCase(orderOperation)) {
                 orderProperty = mapOrderColumn(orderProperty);
@@ -1455,6 +1509,12 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
 
         final Query query = entityManager.createNativeQuery(sb.toString());
         query.setParameter("issuerDN", issuerDns);
+        if (continuationToken != null) {
+            query.setParameter("keysetFingerprint", continuationToken.getFingerprint());
+            if (orderColumn != null) {
+                query.setParameter("keysetValue", continuationToken.getValue());
+            }
+        }
         if (!accessAnyCpAvailable || !request.getCpIds().isEmpty()) {
             query.setParameter("certificateProfileId", authorizedCpIds);
         }
@@ -1584,6 +1644,41 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
         return query;
     }
 
+    /**
+     * @return true if the page should be selected with a continuation token. Otherwise it is selected with the page number.
+     */
+    private static boolean isKeysetPagination(final RaCertificateSearchRequestV2 request, final boolean countOnly) {
+        return !countOnly && request.getContinuationToken() != null && CertificateSearchContinuationToken.isSupportedOrderColumn(getOrderColumn(request));
+    }
+
+    /**
+     * @return the column to sort the results by, or null if the results are not sorted
+     */
+    private static String getOrderColumn(final RaCertificateSearchRequestV2 request) {
+        final String orderOperation = request.getOrderOperation();
+        if (StringUtils.isBlank(request.getOrderProperty()) || StringUtils.isBlank(orderOperation)
+                || !("ASC".equalsIgnoreCase(orderOperation.trim()) || "DESC".equalsIgnoreCase(orderOperation.trim()))) {
+            return null;
+        }
+        return mapOrderColumn(request.getOrderProperty());
+    }
+
+    /**
+     * @param lastResult the last result of the current page, as selected by a query for keyset pagination
+     * @return the continuation token of the next page
+     */
+    private static String createContinuationToken(final RaCertificateSearchRequestV2 request, final Object lastResult) {
+        final String orderColumn = getOrderColumn(request);
+        final boolean descending = orderColumn != null && "DESC".equalsIgnoreCase(request.getOrderOperation().trim());
+        if (orderColumn == null) {
+            return new CertificateSearchContinuationToken(null, false, ValueExtractor.extractStringValue(lastResult), null).encode();
+        }
+        final Object[] row = (Object[]) lastResult;
+        final Object value = CertificateSearchContinuationToken.isNumericColumn(orderColumn) ? ValueExtractor.extractLongValue(row[1])
+                : ValueExtractor.extractStringValue(row[1]);
+        return new CertificateSearchContinuationToken(orderColumn, descending, ValueExtractor.extractStringValue(row[0]), value).encode();
+    }
+
     static String buildStringSearchClause(RaCertificateSearchRequestV2 raRequest) {
         ArrayList<String> comparisons = new ArrayList<String>();
         // Add requested search criteria. Operation 'BEGINS_WITH' must be case sensitive to leverage indexes. 
@@ -2757,25 +2852,25 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
         }
         final List<CertificateWrapper> retValues = new ArrayList<>();
         if (endEntityAccessSession.findUser(authenticationToken, username) != null) { // checks authorization on CA and profiles and view_end_entity
-            Collection<CertificateWrapper> certs = certificateStoreSession.findCertificatesByUsername(username);
-            if (certs.size() > 0) {
-                // The latest certificate will be first
-                CertificateWrapper firstCert = certs.iterator().next();
-                Certificate lastCert;
-                if (firstCert != null) {
-                    retValues.add(firstCert);
-                    lastCert = firstCert.getCertificate();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Found certificate for user with subjectDN: " +
-                                LogRedactionUtils.getSubjectDnLogSafe(CertTools.getSubjectDN(lastCert)) + " and serialNo: "
-                                + CertTools.getSerialNumberAsString(lastCert));
-                    }
-                    // If we added a certificate, we will also append the CA certificate chain
-                    appendCaChain(retValues, lastCert);
-
-                } else {
-                    log.debug("Found no certificate (in non null list??) for user " + username);
+            // The latest certificate will be first. Only that certificate is read from the database, skipping any that are not stored.
+            Certificate lastCert = null;
+            for (final CertificateInfo certificateInfo : certificateStoreSession.findCertificateInfosByUsername(username)) {
+                lastCert = certificateStoreSession.findCertificateByFingerprint(certificateInfo.getFingerprint());
+                if (lastCert != null) {
+                    break;
+                }
+            }
+            if (lastCert != null) {
+                retValues.add(EJBTools.wrap(lastCert));
+                if (log.isDebugEnabled()) {
+                    log.debug("Found certificate for user with subjectDN: " +
+                            LogRedactionUtils.getSubjectDnLogSafe(CertTools.getSubjectDN(lastCert)) + " and serialNo: "
+                            + CertTools.getSerialNumberAsString(lastCert));
                 }
+                // If we added a certificate, we will also append the CA certificate chain
+                appendCaChain(retValues, lastCert);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Found no certificate for user " + username);
             }
         }
         if (log.isTraceEnabled()) {
@@ -22,20 +22,36 @@ import static org.ejbca.ui.web.rest.api.Assert.EjbcaAssert.assertJsonContentType
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.cesecore.authentication.tokens.AuthenticationToken;
 import org.cesecore.authentication.tokens.UsernamePrincipal;
 import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.certificate.CertificateData;
 import org.cesecore.certificates.certificate.CertificateDataSessionLocal;
+import org.cesecore.certificates.certificate.CertificateDataWrapper;
 import org.cesecore.mock.authentication.tokens.UsernameBasedAuthenticationToken;
+import org.easymock.EasyMock;
 import org.easymock.EasyMockRunner;
 import org.easymock.Mock;
+import org.easymock.MockType;
 import org.easymock.TestSubject;
+import org.ejbca.core.model.era.CertificateSearchContinuationToken;
+import org.ejbca.core.model.era.RaCertificateSearchRequestV2;
+import org.ejbca.core.model.era.RaCertificateSearchResponseV2;
+import org.ejbca.core.model.era.RaMasterApi;
+import org.ejbca.core.model.era.RaMasterApiProxyBean;
+import org.ejbca.core.model.era.RaMasterApiProxyBeanLocal;
 import org.ejbca.ui.web.rest.api.InMemoryRestServer;
 import org.ejbca.ui.web.rest.api.resource.swagger.CertificateRestResourceV2Swagger;
 import org.json.simple.JSONObject;
@@ -78,6 +94,9 @@ public class CertificateRestResourceV2UnitTest {
 	@Mock
 	private CertificateDataSessionLocal certificateDataSession;
 
+	@Mock(MockType.NICE)
+	private RaMasterApiProxyBeanLocal raMasterApi;
+
 	@BeforeClass
 	public static void beforeClass() throws IOException {
 		server = InMemoryRestServer.create(TEST_CLASS);
@@ -176,4 +195,150 @@ public class CertificateRestResourceV2UnitTest {
 		assertEquals(ERROR_MESSAGE, errorMessage);
 		assertJsonContentType(actualResponse);
 	}
+
+	@Test
+	public void shouldRejectUnknownExportFormat() throws ParseException {
+		// given
+		final String requestBody = "{\"criteria\":[{\"property\":\"STATUS\",\"value\":\"CERT_ACTIVE\",\"operation\":\"EQUAL\"}]}";
+
+		// when
+		final Invocation.Builder request = server.newRequest("/v2/certificate/export?format=der").request();
+		final Response actualResponse = request.post(Entity.entity(requestBody, MediaType.APPLICATION_JSON));
+		final JSONObject actualJsonObject = (JSONObject) jsonParser.parse(actualResponse.readEntity(String.class));
+
+		// then
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), actualResponse.getStatus());
+		assertEquals("Invalid export format 'der'.", actualJsonObject.get("error_message"));
+	}
+
+	@Test
+	public void shouldRejectInvalidExportResumptionFingerprint() throws ParseException {
+		// given
+		final String requestBody = "{\"criteria\":[{\"property\":\"STATUS\",\"value\":\"CERT_ACTIVE\",\"operation\":\"EQUAL\"}]}";
+
+		// when
+		final Invocation.Builder request = server.newRequest("/v2/certificate/export?after=xyz'").request();
+		final Response actualResponse = request.post(Entity.entity(requestBody, MediaType.APPLICATION_JSON));
+		final JSONObject actualJsonObject = (JSONObject) jsonParser.parse(actualResponse.readEntity(String.class));
+
+		// then
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), actualResponse.getStatus());
+		assertEquals("Invalid certificate fingerprint.", actualJsonObject.get("error_message"));
+	}
+
+	@Test
+	public void shouldExportAllPages() {
+		// given
+		expect(raMasterApi.getAuthorizedEndEntityProfileIdsToNameMap(anyObject(AuthenticationToken.class))).andReturn(Collections.emptyMap());
+		expect(raMasterApi.getAuthorizedCertificateProfileIdsToNameMap(anyObject(AuthenticationToken.class))).andReturn(Collections.emptyMap());
+		expect(raMasterApi.getAuthorizedCas(anyObject(AuthenticationToken.class))).andReturn(Collections.emptyList());
+		final List<String> requestedTokens = new ArrayList<>();
+		final List<String> pageTokens = new ArrayList<>(Arrays.asList("page2", "page3", null));
+		expect(raMasterApi.searchForCertificatesV2(anyObject(AuthenticationToken.class), anyObject(RaCertificateSearchRequestV2.class))).andAnswer(() -> {
+			requestedTokens.add(((RaCertificateSearchRequestV2) EasyMock.getCurrentArguments()[1]).getContinuationToken());
+			final RaCertificateSearchResponseV2 page = new RaCertificateSearchResponseV2();
+			page.setStatus(RaCertificateSearchResponseV2.Status.SUCCESSFUL);
+			page.setNextContinuationToken(pageTokens.remove(0));
+			return page;
+		}).times(3);
+		replay(raMasterApi);
+		final String requestBody = "{\"criteria\":[{\"property\":\"STATUS\",\"value\":\"CERT_ACTIVE\",\"operation\":\"EQUAL\"}]}";
+
+		// when
+		final Invocation.Builder request = server.newRequest("/v2/certificate/export").request();
+		final Response actualResponse = request.post(Entity.entity(requestBody, MediaType.APPLICATION_JSON));
+		actualResponse.readEntity(String.class);
+
+		// then
+		verify(raMasterApi);
+		assertEquals(Response.Status.OK.getStatusCode(), actualResponse.getStatus());
+		assertEquals(CertificateRestResourceV2.MEDIA_TYPE_NDJSON, actualResponse.getMediaType().toString());
+		assertEquals(Arrays.asList("", "page2", "page3"), requestedTokens);
+	}
+
+	@Test
+	public void shouldExportAllPagesFromSeveralBackends() {
+		// given two back ends, which return at most two certificates per page as if limited by their maximum query count
+		final RaMasterApiProxyBean proxy = new RaMasterApiProxyBean(null, null, null,
+				createBackend(19, "01", "03", "05", "07", "09"), createBackend(19, "02", "04", "06", "08"));
+		final List<String> exportedFingerprints = new ArrayList<>();
+		expectExportThroughProxy(proxy, exportedFingerprints);
+		final String requestBody = "{\"criteria\":[{\"property\":\"STATUS\",\"value\":\"CERT_ACTIVE\",\"operation\":\"EQUAL\"}]}";
+
+		// when
+		final Invocation.Builder request = server.newRequest("/v2/certificate/export").request();
+		final Response actualResponse = request.post(Entity.entity(requestBody, MediaType.APPLICATION_JSON));
+		actualResponse.readEntity(String.class);
+
+		// then
+		assertEquals(Response.Status.OK.getStatusCode(), actualResponse.getStatus());
+		assertEquals("All certificates of both back ends should be exported once, in order.",
+				Arrays.asList("01", "02", "03", "04", "05", "06", "07", "08", "09"), exportedFingerprints);
+	}
+
+	@Test
+	public void shouldFailExportWithBackendWithoutContinuationTokens() {
+		// given a back end of a version that ignores continuation tokens, and would return the first page again
+		final RaMasterApiProxyBean proxy = new RaMasterApiProxyBean(null, null, null,
+				createBackend(18, "01", "03", "05"), createBackend(19, "02", "04", "06"));
+		expectExportThroughProxy(proxy, new ArrayList<>());
+		final String requestBody = "{\"criteria\":[{\"property\":\"STATUS\",\"value\":\"CERT_ACTIVE\",\"operation\":\"EQUAL\"}]}";
+
+		// when
+		final Invocation.Builder request = server.newRequest("/v2/certificate/export").request();
+		final Response actualResponse = request.post(Entity.entity(requestBody, MediaType.APPLICATION_JSON));
+
+		// then
+		assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), actualResponse.getStatus());
+	}
+
+	private void expectExportThroughProxy(final RaMasterApiProxyBean proxy, final List<String> exportedFingerprints) {
+		expect(raMasterApi.getAuthorizedEndEntityProfileIdsToNameMap(anyObject(AuthenticationToken.class))).andReturn(Collections.emptyMap());
+		expect(raMasterApi.getAuthorizedCertificateProfileIdsToNameMap(anyObject(AuthenticationToken.class))).andReturn(Collections.emptyMap());
+		expect(raMasterApi.getAuthorizedCas(anyObject(AuthenticationToken.class))).andReturn(Collections.emptyList());
+		expect(raMasterApi.searchForCertificatesV2(anyObject(AuthenticationToken.class), anyObject(RaCertificateSearchRequestV2.class))).andAnswer(() -> {
+			final RaCertificateSearchResponseV2 page = proxy.searchForCertificatesV2(authenticationToken,
+					(RaCertificateSearchRequestV2) EasyMock.getCurrentArguments()[1]);
+			for (final CertificateDataWrapper cdw : page.getCdws()) {
+				exportedFingerprints.add(cdw.getCertificateData().getFingerprint());
+			}
+			return page;
+		}).anyTimes();
+		replay(raMasterApi);
+	}
+
+	/** @return a back end with certificates with the given fingerprints, which returns at most two of them per page */
+	private static RaMasterApi createBackend(final int apiVersion, final String... fingerprints) {
+		final RaMasterApi backend = EasyMock.createNiceMock(RaMasterApi.class);
+		expect(backend.isBackendAvailable()).andReturn(true).anyTimes();
+		expect(backend.getApiVersion()).andReturn(apiVersion).anyTimes();
+		expect(backend.searchForCertificatesV2(anyObject(AuthenticationToken.class), anyObject(RaCertificateSearchRequestV2.class))).andAnswer(() -> {
+			final String continuationToken = ((RaCertificateSearchRequestV2) EasyMock.getCurrentArguments()[1]).getContinuationToken();
+			// Older versions do not know about continuation tokens
+			final String after = apiVersion < 19 || continuationToken.isEmpty() ? "" : CertificateSearchContinuationToken.decode(continuationToken).getFingerprint();
+			final List<String> remaining = new ArrayList<>();
+			for (final String fingerprint : fingerprints) {
+				if (fingerprint.compareTo(after) > 0) {
+					remaining.add(fingerprint);
+				}
+			}
+			final RaCertificateSearchResponseV2 page = new RaCertificateSearchResponseV2();
+			for (final String fingerprint : remaining.subList(0, Math.min(2, remaining.size()))) {
+				final CertificateData certificateData = new CertificateData();
+				certificateData.setFingerprint(fingerprint);
+				page.getCdws().add(new CertificateDataWrapper(certificateData, null));
+			}
+			if (apiVersion >= 19 && !remaining.isEmpty()) {
+				final String lastResult = remaining.get(Math.min(2, remaining.size()) - 1);
+				page.setLastResultContinuationToken(new CertificateSearchContinuationToken(null, false, lastResult, null).encode());
+				if (remaining.size() > 2) {
+					page.setNextContinuationToken(page.getLastResultContinuationToken());
+				}
+			}
+			page.setStatus(RaCertificateSearchResponseV2.Status.SUCCESSFUL);
+			return page;
+		}).anyTimes();
+		replay(backend);
+		return backend;
+	}
 }
@@ -98,7 +98,7 @@ public class CertificateRestResourceV2Swagger extends CertificateRestResourceV2
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(
             value = "Searches for certificates confirming given criteria and pagination.",
-            notes = "Insert as many search criteria as needed. A reference about allowed values for criteria could be found below, under SearchCertificateCriteriaRestRequestV2 model. Use -1 for current_page to get total number of certificate for the request criteria.",
+            notes = "Insert as many search criteria as needed. A reference about allowed values for criteria could be found below, under SearchCertificateCriteriaRestRequestV2 model. Use -1 for current_page to get total number of certificate for the request criteria. For large result sets, use continuation_token instead of current_page: give an empty continuation_token for the first page, and the next_continuation_token of the response for the following pages.",
             response = SearchCertificatesRestResponseV2.class
     )
     public Response searchCertificates(
@@ -108,6 +108,28 @@ public class CertificateRestResourceV2Swagger extends CertificateRestResourceV2
         return super.searchCertificates(requestContext, searchCertificatesRestRequest);
     }
 
+    @Override
+    @POST
+    @Path("/export")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({CertificateRestResourceV2.MEDIA_TYPE_NDJSON, CertificateRestResourceV2.MEDIA_TYPE_PEM})
+    @ApiOperation(
+            value = "Exports all certificates confirming given criteria.",
+            notes = "Streams all matching certificates sorted by fingerprint, either as one JSON certificate per line (ndjson) or as concatenated PEM certificates (pem). "
+                    + "The number of certificates is not limited by the maximum query count. Pagination and sort of the request are ignored. "
+                    + "An interrupted export can be resumed by giving the fingerprint of the last certificate received in the 'after' parameter. "
+                    + "If a back end does not support the export or does not respond, the export fails with an error code, or is interrupted if "
+                    + "certificates have already been sent, instead of returning a partial result."
+    )
+    public Response exportCertificates(
+            @Context HttpServletRequest requestContext,
+            @ApiParam(value = "Export format, 'ndjson' (default) or 'pem'") @QueryParam("format") final String format,
+            @ApiParam(value = "Fingerprint of the last certificate received, to resume an interrupted export") @QueryParam("after") final String afterFingerprint,
+            @ApiParam(value = "Collection of search criterias.") final SearchCertificatesRestRequestV2 searchCertificatesRestRequest
+    ) throws AuthorizationDeniedException, RestException {
+        return super.exportCertificates(requestContext, format, afterFingerprint, searchCertificatesRestRequest);
+    }
+
     @Override
     @GET
     @Path("/profile/{profile_name}")
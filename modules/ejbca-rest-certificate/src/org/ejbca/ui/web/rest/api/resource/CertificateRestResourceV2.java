@@ -12,8 +12,15 @@
  *************************************************************************/
 package org.ejbca.ui.web.rest.api.resource;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
 import java.security.cert.CertificateParsingException;
 import java.util.Map;
 
@@ -24,6 +31,7 @@ import javax.ejb.TransactionAttributeType;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -31,19 +39,28 @@ import org.cesecore.authentication.tokens.AuthenticationToken;
 import org.cesecore.authorization.AuthorizationDeniedException;
 import org.cesecore.certificates.ca.CADoesntExistsException;
 import org.cesecore.certificates.certificate.CertificateDataSessionLocal;
+import org.cesecore.certificates.certificate.CertificateDataWrapper;
+import org.cesecore.certificates.certificate.ssh.SshCertificate;
 import org.ejbca.config.GlobalConfiguration;
 import org.ejbca.core.EjbcaException;
 import org.ejbca.core.model.approval.WaitingForApprovalException;
+import org.ejbca.core.model.era.CertificateSearchContinuationToken;
 import org.ejbca.core.model.era.RaCertificateProfileResponseV2;
 import org.ejbca.core.model.era.RaCertificateSearchRequestV2;
 import org.ejbca.core.model.era.RaCertificateSearchResponseV2;
 import org.ejbca.core.model.era.RaMasterApiProxyBeanLocal;
+import org.ejbca.ui.web.rest.api.config.ObjectMapperContextResolver;
 import org.ejbca.ui.web.rest.api.exception.RestException;
 import org.ejbca.ui.web.rest.api.io.request.SearchCertificatesRestRequestV2;
 import org.ejbca.ui.web.rest.api.io.response.CertificateCountResponse;
 import org.ejbca.ui.web.rest.api.io.response.CertificateProfileInfoRestResponseV2;
+import org.ejbca.ui.web.rest.api.io.response.CertificateRestResponseV2;
 import org.ejbca.ui.web.rest.api.io.response.RestResourceStatusRestResponse;
 import org.ejbca.ui.web.rest.api.io.response.SearchCertificatesRestResponseV2;
+import org.ejbca.ui.web.rest.api.io.response.SearchCertificatesRestResponseV2.SearchCertificatesRestResponseConverterV2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.keyfactor.util.CertTools;
 
 /**
  * JAX-RS resource handling certificate-related requests version 2.
@@ -55,6 +72,14 @@ public class CertificateRestResourceV2 extends BaseRestResource {
     private static final String RESOURCE_STATUS = "OK";
     protected static final String RESOURCE_VERSION = "2.0";
 
+    /** Export formats, see {@link #exportCertificates(HttpServletRequest, String, String, SearchCertificatesRestRequestV2)} */
+    public static final String EXPORT_FORMAT_NDJSON = "ndjson";
+    public static final String EXPORT_FORMAT_PEM = "pem";
+    public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    public static final String MEDIA_TYPE_PEM = "application/x-pem-file";
+    /** Number of certificates read per query during export. The maximum query count of the system configuration still applies. */
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
     @EJB
     private RaMasterApiProxyBeanLocal raMasterApi;
     private static final Logger log = Logger.getLogger(CertificateRestResourceV2.class);
@@ -116,6 +141,110 @@ public class CertificateRestResourceV2 extends BaseRestResource {
         return Response.ok(restResponse).build();
     }
     
+    /**
+     * Exports all certificates matching the given criteria, sorted by fingerprint. The certificates are written to the response as they
+     * are read, one page at a time, so the number of certificates is not limited by the maximum query count and the memory used does
+     * not depend on the number of certificates.
+     * <p>
+     * The pagination and sort of the request are ignored. An interrupted export can be resumed by giving the fingerprint of the last
+     * certificate received. If a back end does not support continuation tokens or does not respond, the export fails with an error code,
+     * or the response is interrupted if certificates have already been written, so that a partial export is never mistaken for a complete one.
+     *
+     * @param requestContext the HTTP request context
+     * @param format {@link #EXPORT_FORMAT_NDJSON} (default) for one JSON certificate per line, or {@link #EXPORT_FORMAT_PEM} for
+     *      concatenated PEM certificates
+     * @param afterFingerprint fingerprint of the last certificate of an interrupted export, or null to start from the beginning
+     * @param searchCertificatesRestRequest the search criteria
+     * @return HTTP Response streaming the certificates, or error response
+     * @throws AuthorizationDeniedException
+     * @throws RestException In case of malformed criteria or format.
+     */
+    public Response exportCertificates(final HttpServletRequest requestContext, final String format, final String afterFingerprint,
+            @Valid final SearchCertificatesRestRequestV2 searchCertificatesRestRequest) throws AuthorizationDeniedException, RestException {
+        final boolean pem;
+        if (StringUtils.isEmpty(format) || EXPORT_FORMAT_NDJSON.equalsIgnoreCase(format)) {
+            pem = false;
+        } else if (EXPORT_FORMAT_PEM.equalsIgnoreCase(format)) {
+            pem = true;
+        } else {
+            throw new RestException(Response.Status.BAD_REQUEST.getStatusCode(), "Invalid export format '" + format + "'.");
+        }
+        if (afterFingerprint != null && !afterFingerprint.matches("[0-9a-fA-F]+")) {
+            throw new RestException(Response.Status.BAD_REQUEST.getStatusCode(), "Invalid certificate fingerprint.");
+        }
+        final AuthenticationToken authenticationToken = getAdmin(requestContext, true);
+        final Map<Integer, String> availableEndEntityProfiles =
+                CertificateRestResourceUtil.loadAuthorizedEndEntityProfiles(authenticationToken, raMasterApi);
+        final Map<Integer, String> availableCertificateProfiles =
+                CertificateRestResourceUtil.loadAuthorizedCertificateProfiles(authenticationToken, raMasterApi);
+        final Map<Integer, String> availableCAs =
+                CertificateRestResourceUtil.loadAuthorizedCAs(authenticationToken, raMasterApi);
+        CertificateRestResourceUtil.authorizeSearchCertificatesRestRequestReferences(
+                authenticationToken, raMasterApi, searchCertificatesRestRequest,
+                availableEndEntityProfiles, availableCertificateProfiles, availableCAs);
+        searchCertificatesRestRequest.setPagination(null);
+        searchCertificatesRestRequest.setSort(null);
+        final RaCertificateSearchRequestV2 raRequest = SearchCertificatesRestRequestV2.converter().toEntity(searchCertificatesRestRequest);
+        raRequest.setMaxResults(EXPORT_PAGE_SIZE);
+        raRequest.setContinuationToken(afterFingerprint == null ? "" : CertificateSearchContinuationToken.afterFingerprint(afterFingerprint));
+        // The first page is read before the response is committed, so that failures can still be reported with an error code
+        final RaCertificateSearchResponseV2 firstPage = raMasterApi.searchForCertificatesV2(authenticationToken, raRequest);
+        if (isFailed(firstPage)) {
+            log.info("Certificate export database query failed or timed out, responding with HTTP 500 error code.");
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+        final StreamingOutput output = outputStream -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            final ObjectMapper objectMapper = new ObjectMapperContextResolver().getContext(CertificateRestResponseV2.class);
+            final SearchCertificatesRestResponseConverterV2 converter = SearchCertificatesRestResponseV2.converter();
+            RaCertificateSearchResponseV2 page = firstPage;
+            long count = 0;
+            while (true) {
+                for (final CertificateDataWrapper cdw : page.getCdws()) {
+                    try {
+                        if (pem) {
+                            final Certificate certificate = converter.getCertificate(cdw);
+                            // SSH certificates have no PEM encoding
+                            if (certificate != null && !SshCertificate.CERTIFICATE_TYPE.equals(certificate.getType())) {
+                                writer.write(CertTools.getPemFromCertificate(certificate));
+                                count++;
+                            }
+                        } else {
+                            final CertificateRestResponseV2 certificate = converter.toCertificateRestResponse(cdw, availableEndEntityProfiles,
+                                    availableCertificateProfiles);
+                            if (certificate != null) {
+                                writer.write(objectMapper.writeValueAsString(certificate));
+                                writer.write('\n');
+                                count++;
+                            }
+                        }
+                    } catch (CertificateException e) {
+                        throw new IOException("Failed to export certificate with fingerprint " + cdw.getCertificateData().getFingerprint(), e);
+                    }
+                }
+                writer.flush();
+                if (page.getNextContinuationToken() == null) {
+                    break;
+                }
+                raRequest.setContinuationToken(page.getNextContinuationToken());
+                page = raMasterApi.searchForCertificatesV2(authenticationToken, raRequest);
+                if (isFailed(page)) {
+                    // The client sees an incomplete response, and can resume after the last certificate received
+                    throw new IOException("Certificate export database query failed or timed out after " + count + " certificates.");
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Exported " + count + " certificates for " + authenticationToken);
+            }
+        };
+        return Response.ok(output, pem ? MEDIA_TYPE_PEM : MEDIA_TYPE_NDJSON).build();
+    }
+
+    private static boolean isFailed(final RaCertificateSearchResponseV2 raResponse) {
+        return raResponse.getStatus() == RaCertificateSearchResponseV2.Status.TIMEOUT
+                || raResponse.getStatus() == RaCertificateSearchResponseV2.Status.ERROR;
+    }
+
     /**
      * Get Certificate Profile Info
      * 
@@ -19,7 +19,7 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 /**
  * JSON output for pagination summary.
  */
-@JsonPropertyOrder({ "page_size", "current_page", "total_certs" })
+@JsonPropertyOrder({ "page_size", "current_page", "total_certs", "next_continuation_token" })
 public class PaginationSummary {
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -34,6 +34,10 @@ public class PaginationSummary {
     @JsonProperty("current_page")
     private Integer currentPage;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("next_continuation_token")
+    private String nextContinuationToken;
+
     public PaginationSummary() {
         super();
     }
@@ -73,6 +77,15 @@ public class PaginationSummary {
         this.currentPage = currentPage;
     }
 
+    /** @return the continuation token of the next page, or null if there are no more results or no continuation token was requested */
+    public String getNextContinuationToken() {
+        return nextContinuationToken;
+    }
+
+    public void setNextContinuationToken(final String nextContinuationToken) {
+        this.nextContinuationToken = nextContinuationToken;
+    }
+
 //    /**
 //     * Returns the number of pages starting at 1 or null if totalCerts is null.
 //     * 
@@ -145,7 +145,13 @@ public class SearchCertificatesRestRequestV2 implements SearchCertificateCriteri
             final Pagination pagination = restRequest.getPagination();
             if (pagination != null) {
                 raRequest.setMaxResults(pagination.getPageSize());
-                raRequest.setPageNumber(pagination.getCurrentPage());
+                if (pagination.getContinuationToken() != null) {
+                    // The page number is only used if continuation tokens can not be used for the requested sort order
+                    raRequest.setPageNumber(1);
+                    raRequest.setContinuationToken(pagination.getContinuationToken());
+                } else {
+                    raRequest.setPageNumber(pagination.getCurrentPage());
+                }
             }
             final SearchCertificateSortRestRequest orderBy = restRequest.getSort();
             if (orderBy != null) {
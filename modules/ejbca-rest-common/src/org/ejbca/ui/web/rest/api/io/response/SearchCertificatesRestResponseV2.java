@@ -117,7 +117,10 @@ public class SearchCertificatesRestResponseV2 {
             final int count = raCertificateSearchResponse.getCdws().size();
             
             final PaginationSummary summary;
-            if (pagination != null) {
+            if (pagination != null && pagination.getContinuationToken() != null) {
+                summary = new PaginationSummary(pagination.getPageSize(), null);
+                summary.setNextContinuationToken(raCertificateSearchResponse.getNextContinuationToken());
+            } else if (pagination != null) {
                 final int pageSize = pagination.getPageSize();
                 final int currentPage = pagination.getCurrentPage();
                 summary = new PaginationSummary(pageSize, currentPage);
@@ -131,60 +134,87 @@ public class SearchCertificatesRestResponseV2 {
             }
             result.setPaginationSummary(summary);
             for(final CertificateDataWrapper cdw : raCertificateSearchResponse.getCdws()) {
-                Certificate certificate = cdw.getCertificate();
-                final CertificateData cd = cdw.getCertificateData();
-                final Base64CertData base64CertData = cdw.getBase64CertData();
-
-                if (certificate == null && base64CertData != null && base64CertData.getBase64Cert() != null) {
-                    try {
-                        certificate = CertTools.getCertfromByteArray(Base64.decode(base64CertData.getBase64Cert().getBytes()), Certificate.class);
-                    } catch (CertificateParsingException e) {
-                        // Should not happen.
-                        log.warn("Failed to parse certificate stored in the Base64CertData with issuer '" + cd.getIssuerDN() + "' and SN '" + cd.getSerialNumberHex() + "'.");
-                        throw e;
-                    }
-                }
-                
-                if (certificate != null && cd != null) {
-                    byte[] certificateBytes = certificate.getEncoded();
-                    byte[] encodedCertificateBytes = certificateBytes;
-                    if (!certificate.getType().equals(SshCertificate.CERTIFICATE_TYPE)) {
-                        encodedCertificateBytes = Base64.encode(certificateBytes);
-                    }
-                    final byte[] skidBytes = CertTools.getSubjectKeyId(certificate);
-                    String skid = "";
-                    if (skidBytes != null && skidBytes.length > 0) {
-                        skid = new String(Hex.encode(skidBytes));
-                    }
-                    final CertificateRestResponseV2 response = CertificateRestResponseV2.builder()
-                        .setFingerprint(CertTools.getFingerprintAsString(certificateBytes))
-                        .setCAFingerprint(cd.getCaFingerprint())
-                        .setCertificateProfileId(cd.getCertificateProfileId())
-                        .setCertificateProfile(availableCertificateProfiles.get(cd.getCertificateProfileId()))
-                        .setEndEntityProfileId(cd.getEndEntityProfileId())
-                        .setEndEntityProfile(availableEndEntityProfiles.get(cd.getEndEntityProfileId()))
-                        .setExpireDate(cd.getExpireDate())
-                        .setIssuerDN(cd.getIssuerDN())
-                        .setNotBefore(cd.getNotBefore())
-                        .setRevocationDate(cd.getRevocationDate())
-                        .setRevocationReason(cd.getRevocationReason())
-                        .setSerialNumber(CertTools.getSerialNumberAsString(certificate))
-                        .setStatus(cd.getStatus())
-                        .setSubjectAltName(cd.getSubjectAltName())
-                        .setSubjectDN(cd.getSubjectDN())
-                        .setSubjectKeyId(skid)
-                        .setTag(cd.getTag())
-                        .setType(cd.getType())
-                        .setUpdateTime(cd.getUpdateTime())
-                        .setUsername(cd.getUsername())
-                        .setCertificate(encodedCertificateBytes)
-                        .setCertificateRequest(cd.getCertificateRequest())
-                        .setInvalidityDate(cd.getInvalidityDateNeverNull())
-                        .build();
+                final CertificateRestResponseV2 response = toCertificateRestResponse(cdw, availableEndEntityProfiles, availableCertificateProfiles);
+                if (response != null) {
                     result.getCertificates().add(response);
                 }
             }
             return result;
         }
+
+        /**
+         * Returns the certificate of a search result, decoding it from the Base64CertData table if needed.
+         *
+         * @param cdw the search result
+         * @return the certificate, or null if it is not stored
+         * @throws CertificateParsingException if the stored certificate could not be parsed
+         */
+        public Certificate getCertificate(final CertificateDataWrapper cdw) throws CertificateParsingException {
+            final Certificate certificate = cdw.getCertificate();
+            final Base64CertData base64CertData = cdw.getBase64CertData();
+            if (certificate == null && base64CertData != null && base64CertData.getBase64Cert() != null) {
+                try {
+                    return CertTools.getCertfromByteArray(Base64.decode(base64CertData.getBase64Cert().getBytes()), Certificate.class);
+                } catch (CertificateParsingException e) {
+                    // Should not happen.
+                    final CertificateData cd = cdw.getCertificateData();
+                    log.warn("Failed to parse certificate stored in the Base64CertData with issuer '" + cd.getIssuerDN() + "' and SN '" + cd.getSerialNumberHex() + "'.");
+                    throw e;
+                }
+            }
+            return certificate;
+        }
+
+        /**
+         * Converts a single search result.
+         *
+         * @param cdw the search result
+         * @param availableEndEntityProfiles names of the end entity profiles by id
+         * @param availableCertificateProfiles names of the certificate profiles by id
+         * @return the certificate, or null if the certificate is not stored
+         */
+        public CertificateRestResponseV2 toCertificateRestResponse(final CertificateDataWrapper cdw, final Map<Integer, String> availableEndEntityProfiles,
+                final Map<Integer, String> availableCertificateProfiles) throws CertificateEncodingException, CertificateParsingException {
+            final Certificate certificate = getCertificate(cdw);
+            final CertificateData cd = cdw.getCertificateData();
+            if (certificate == null || cd == null) {
+                return null;
+            }
+            byte[] certificateBytes = certificate.getEncoded();
+            byte[] encodedCertificateBytes = certificateBytes;
+            if (!certificate.getType().equals(SshCertificate.CERTIFICATE_TYPE)) {
+                encodedCertificateBytes = Base64.encode(certificateBytes);
+            }
+            final byte[] skidBytes = CertTools.getSubjectKeyId(certificate);
+            String skid = "";
+            if (skidBytes != null && skidBytes.length > 0) {
+                skid = new String(Hex.encode(skidBytes));
+            }
+            return CertificateRestResponseV2.builder()
+                .setFingerprint(CertTools.getFingerprintAsString(certificateBytes))
+                .setCAFingerprint(cd.getCaFingerprint())
+                .setCertificateProfileId(cd.getCertificateProfileId())
+                .setCertificateProfile(availableCertificateProfiles.get(cd.getCertificateProfileId()))
+                .setEndEntityProfileId(cd.getEndEntityProfileId())
+                .setEndEntityProfile(availableEndEntityProfiles.get(cd.getEndEntityProfileId()))
+                .setExpireDate(cd.getExpireDate())
+                .setIssuerDN(cd.getIssuerDN())
+                .setNotBefore(cd.getNotBefore())
+                .setRevocationDate(cd.getRevocationDate())
+                .setRevocationReason(cd.getRevocationReason())
+                .setSerialNumber(CertTools.getSerialNumberAsString(certificate))
+                .setStatus(cd.getStatus())
+                .setSubjectAltName(cd.getSubjectAltName())
+                .setSubjectDN(cd.getSubjectDN())
+                .setSubjectKeyId(skid)
+                .setTag(cd.getTag())
+                .setType(cd.getType())
+                .setUpdateTime(cd.getUpdateTime())
+                .setUsername(cd.getUsername())
+                .setCertificate(encodedCertificateBytes)
+                .setCertificateRequest(cd.getCertificateRequest())
+                .setInvalidityDate(cd.getInvalidityDateNeverNull())
+                .build();
+        }
     }
 }
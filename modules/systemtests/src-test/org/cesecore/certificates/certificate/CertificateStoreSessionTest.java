@@ -171,6 +171,11 @@ public class CertificateStoreSessionTest extends RoleUsingTestCase {
         Collection<Certificate> certs2 = EJBTools.unwrapCertCollection(certificateStoreSession.findCertificatesByExpireTimeWithLimit(findDate));
         log.debug("findCertificatesByExpireTime returned " + certs2.size() + " certs.");
         assertNotEquals("Some certs should have expired before this date", 0, certs2.size());
+        final List<CertificateInfo> certInfos = certificateStoreSession.findCertificateInfosByExpireTimeWithLimit(findDate);
+        assertEquals("The same certificates should be found without reading the certificates", certs2.size(), certInfos.size());
+        for (final CertificateInfo certInfo : certInfos) {
+            assertTrue("This cert is not expired by the specified Date.", certInfo.getExpireDate().getTime() < findDate.getTime());
+        }
         usernames = certificateStoreSession.findUsernamesByExpireTimeWithLimit(findDate);
         log.debug("findUsernamesByExpireTimeWithLimit returned " + usernames.size() + " usernames.");
         assertNotEquals("Some certs should have expired before this date", 0, usernames.size());
@@ -851,6 +856,9 @@ public class CertificateStoreSessionTest extends RoleUsingTestCase {
             assertTrue("Expected expired certificate to not be returned", isCertificatePresentInList(cdws3, fingerprint1, fingerprint3, fingerprint4));
             final List<CertificateDataWrapper> cdws4 = certificateStoreSession.getCertificateDataByUsername(USERNAME, true, Arrays.asList(CertificateConstants.CERT_REVOKED));
             assertTrue("Expected expired and revoked certificate to not be returned", isCertificatePresentInList(cdws4, fingerprint1, fingerprint3));
+            final List<CertificateInfo> certInfos = certificateStoreSession.findCertificateInfosByUsername(USERNAME);
+            assertEquals("Expected information about all certificates for user.", 4, certInfos.size());
+            assertEquals("Expected the certificate with the first expire date to be last.", fingerprint2, certInfos.get(3).getFingerprint());
         } finally {
             // Clean up
             internalCertStoreSession.removeCertificate(fingerprint1);
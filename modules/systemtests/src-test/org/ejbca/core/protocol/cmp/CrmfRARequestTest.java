@@ -19,11 +19,15 @@ import java.security.KeyPair;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.keyfactor.util.CertTools;
 import com.keyfactor.util.CryptoProviderTools;
@@ -949,10 +953,9 @@ public class CrmfRARequestTest extends CmpTestCase {
              // Step 2 ->  If Allow Extension Override is setted to true but the OIDs for these extensions were added in the lists OverridableExtensionOIDs and NonOverridableExtensionOIDs these extensions will not be overridden.
                 CertificateProfile cp = this.certProfileSession.getCertificateProfile(this.cpDnOverrideId);             
                 cp.setAllowExtensionOverride(true);
-                cp.getOverridableExtensionOIDs().add("2.5.29.15"); // <- keyUsage
-                cp.getOverridableExtensionOIDs().add("2.5.29.37"); // <- extendedKeyUsage
-                cp.getNonOverridableExtensionOIDs().add("2.5.29.15"); // <- keyUsage
-                cp.getNonOverridableExtensionOIDs().add("2.5.29.37"); // <- extendedKeyUsage
+                // keyUsage and extendedKeyUsage
+                cp.setOverridableExtensionOIDs(new LinkedHashSet<>(Arrays.asList("2.5.29.15", "2.5.29.37")));
+                cp.setNonOverridableExtensionOIDs(new LinkedHashSet<>(Arrays.asList("2.5.29.15", "2.5.29.37")));
                 this.certProfileSession.changeCertificateProfile(ADMIN, CP_DN_OVERRIDE_NAME, cp);
                 
             }
@@ -997,7 +1000,9 @@ public class CrmfRARequestTest extends CmpTestCase {
                //            Extended Key Usage as overridable extension.
                CertificateProfile cp = this.certProfileSession.getCertificateProfile(this.cpDnOverrideId);             
                cp.setAllowExtensionOverride(true);               
-               cp.getNonOverridableExtensionOIDs().remove("2.5.29.37"); // <- extendedKeyUsage
+               final Set<String> nonOverridableExtensionOids = cp.getNonOverridableExtensionOIDs();
+               nonOverridableExtensionOids.remove("2.5.29.37"); // <- extendedKeyUsage
+               cp.setNonOverridableExtensionOIDs(nonOverridableExtensionOids);
                this.certProfileSession.changeCertificateProfile(ADMIN, CP_DN_OVERRIDE_NAME, cp);
                
            }
@@ -1040,7 +1045,9 @@ public class CrmfRARequestTest extends CmpTestCase {
               //            Extended Key Usage as overridable extension.
               CertificateProfile cp = this.certProfileSession.getCertificateProfile(this.cpDnOverrideId);             
               cp.setAllowExtensionOverride(true);               
-              cp.getNonOverridableExtensionOIDs().remove("2.5.29.15"); // <- keyUsage
+              final Set<String> nonOverridableExtensionOids = cp.getNonOverridableExtensionOIDs();
+              nonOverridableExtensionOids.remove("2.5.29.15"); // <- keyUsage
+              cp.setNonOverridableExtensionOIDs(nonOverridableExtensionOids);
               this.certProfileSession.changeCertificateProfile(ADMIN, CP_DN_OVERRIDE_NAME, cp);
               
           }
@@ -1208,7 +1215,7 @@ public class CrmfRARequestTest extends CmpTestCase {
         {
             final CertificateProfile cp = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
             cp.setAllowExtensionOverride(true);
-            cp.getOverridableExtensionOIDs().add("2.5.29.32"); // <- certificatePolicies
+            cp.setOverridableExtensionOIDs(Collections.singleton("2.5.29.32")); // <- certificatePolicies
             cp.setUseCertificatePolicies(true);
             List<CertificatePolicy> l = cp.getCertificatePolicies();
             assertEquals(0, l.size());
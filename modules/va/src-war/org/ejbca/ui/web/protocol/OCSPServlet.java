@@ -13,19 +13,37 @@
 
 package org.ejbca.ui.web.protocol;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLDecoder;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.bouncycastle.cert.ocsp.OCSPException;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
 import org.cesecore.certificates.ocsp.cache.OcspConfigurationCache;
@@ -72,6 +90,51 @@ public class OCSPServlet extends HttpServlet {
     @EJB
     private GlobalConfigurationSessionLocal globalConfigurationSession;
 
+    /** Creates the responses to requests received in async mode, so that the EJB calls are made on threads managed by the container */
+    @Resource
+    private transient ManagedExecutorService managedExecutorService;
+
+    /** Maximum number of requests processed at the same time in async mode, or 0 if requests are processed synchronously */
+    private volatile int asyncThreads;
+    private volatile int asyncQueueSize;
+    /** Requests received in async mode that wait to be processed. Also guards {@link #runningAsyncRequests} */
+    private final transient Deque<AsyncOcspRequest> waitingAsyncRequests = new ArrayDeque<>();
+    private int runningAsyncRequests;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        final int threads = OcspConfiguration.getAsyncThreads();
+        if (threads > 0) {
+            if (managedExecutorService == null) {
+                log.warn("OCSP requests are processed synchronously, since no managed executor service is available for async mode.");
+                return;
+            }
+            asyncQueueSize = OcspConfiguration.getAsyncQueueSize();
+            asyncThreads = threads;
+            log.info("OCSP requests are processed in async mode, " + threads + " at a time, with at most " + asyncQueueSize + " waiting requests.");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        final List<AsyncOcspRequest> abandonedRequests;
+        synchronized (waitingAsyncRequests) {
+            // Requests received from now on are answered with tryLater, since nothing can be queued
+            asyncThreads = 0;
+            asyncQueueSize = 0;
+            abandonedRequests = new ArrayList<>(waitingAsyncRequests);
+            waitingAsyncRequests.clear();
+        }
+        if (!abandonedRequests.isEmpty()) {
+            log.info(abandonedRequests.size() + " waiting OCSP requests answered with HTTP 503, since the OCSP servlet is stopping.");
+        }
+        for (final AsyncOcspRequest asyncRequest : abandonedRequests) {
+            asyncRequest.respondServiceUnavailable();
+        }
+        super.destroy();
+    }
+
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
         try {
@@ -95,6 +158,7 @@ public class OCSPServlet extends HttpServlet {
                 log.info(intres.getLocalizedMessage("ocsp.reloadkeys", remote));
                 // Reload CA certificates
                 integratedOcspResponseGeneratorSession.reloadOcspSigningCache();
+                OcspGetResponseCache.INSTANCE.flush();
                 return;
             }
             if (doNewConfig) {
@@ -112,12 +176,14 @@ public class OCSPServlet extends HttpServlet {
                 // This setting is cached and must be cleared on config update
                 OcspConfiguration.clearAcceptedSignatureAlgorithmCache();
                 OcspConfigurationCache.INSTANCE.reloadConfiguration();
+                OcspGetResponseCache.INSTANCE.flush();
                 log.info("Call from " + remote + " to update configuration");
                 return;
             }
             if (doRestoreConfig) {
                 ConfigurationHolder.restoreConfiguration();
                 OcspConfigurationCache.INSTANCE.reloadConfiguration();
+                OcspGetResponseCache.INSTANCE.flush();
                 log.info("Call from " + remote + " to restore configuration.");
                 return;
             }
@@ -183,13 +249,95 @@ public class OCSPServlet extends HttpServlet {
     }
 
     private void processOcspRequest(HttpServletRequest request, HttpServletResponse response, final HttpMethod httpMethod) throws ServletException {
-        final String remoteAddress = request.getRemoteAddr();
-        final String xForwardedFor = StringTools.getCleanXForwardedFor(request.getHeader("X-Forwarded-For"));
+        if (isGetResponseCacheUsed(httpMethod)) {
+            final OcspResponseInformation cachedResponseInformation = OcspGetResponseCache.INSTANCE.get(request.getRequestURI());
+            if (cachedResponseInformation != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Answering OCSP GET request from " + request.getRemoteAddr() + " with cached response.");
+                }
+                writeOcspResponse(request, response, httpMethod, cachedResponseInformation);
+                return;
+            }
+        }
+        if (asyncThreads > 0 && request.isAsyncSupported()) {
+            try {
+                new AsyncOcspRequest(request.startAsync(), httpMethod).start();
+            } catch (IOException e) {
+                log.error("", e);
+            }
+            return;
+        }
+        final OcspResponseInformation ocspResponseInformation = createOcspResponse(readOcspRequest(request, httpMethod, null), httpMethod);
+        if (ocspResponseInformation != null) {
+            writeOcspResponse(request, response, httpMethod, ocspResponseInformation);
+        }
+    }
+
+    /**
+     * Responses served from the GET response cache are not written to the transaction and audit logs, so the cache is only used while both
+     * logs are disabled.
+     *
+     * @return true if the response to the request may be read from and stored in the GET response cache
+     */
+    private boolean isGetResponseCacheUsed(final HttpMethod httpMethod) {
+        if (!HttpMethod.GET.equals(httpMethod)) {
+            return false;
+        }
+        final GlobalOcspConfiguration configuration = (GlobalOcspConfiguration) globalConfigurationSession
+                .getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
+        return !configuration.getIsOcspTransactionLoggingEnabled() && !configuration.getIsOcspAuditLoggingEnabled();
+    }
+
+    /** Writes an OCSP response, or only its headers if the client already has it. */
+    private void writeOcspResponse(final HttpServletRequest request, final HttpServletResponse response, final HttpMethod httpMethod,
+            final OcspResponseInformation ocspResponseInformation) {
+        try {
+            if (prepareOcspResponse(request, response, httpMethod, ocspResponseInformation)) {
+                response.getOutputStream().write(ocspResponseInformation.getOcspResponse());
+                response.getOutputStream().flush();
+            }
+        } catch (Exception e) {
+            log.error("", e);
+        }
+    }
+
+    /**
+     * Reads what is needed to create the response to an OCSP request from the HTTP request. Must be called by a thread of the servlet
+     * container, before the request is handed to another thread in async mode.
+     *
+     * @param request the HTTP request
+     * @param httpMethod the HTTP method of the request
+     * @param postedBytes the body of a POST request if it has already been read, or null to read it from the request.
+     * @return the OCSP request
+     */
+    private ReceivedOcspRequest readOcspRequest(final HttpServletRequest request, final HttpMethod httpMethod, final byte[] postedBytes) {
         StringBuffer requestUrl = request.getRequestURL();
-        
         if (request.getQueryString() != null) {
             requestUrl = requestUrl.append("?" + request.getQueryString());
         }
+        byte[] requestBytes = null;
+        Exception requestException = null;
+        try {
+            requestBytes = checkAndGetRequestBytes(request, httpMethod, postedBytes);
+        } catch (Exception e) { // NOPMD, handled when the response is created
+            requestException = e;
+        }
+        return new ReceivedOcspRequest(request.getRemoteAddr(), StringTools.getCleanXForwardedFor(request.getHeader("X-Forwarded-For")), requestUrl,
+                request.getRequestURI(), (X509Certificate[]) request.getAttribute("javax.servlet.request.X509Certificate"), requestBytes,
+                requestException);
+    }
+
+    /**
+     * Creates the response to an OCSP request. Does not use the HTTP request, so it can be called from any thread in async mode.
+     *
+     * @param ocspRequest the OCSP request, see {@link #readOcspRequest(HttpServletRequest, HttpMethod, byte[])}
+     * @param httpMethod the HTTP method of the request
+     * @return the OCSP response, or null if an unexpected error occurred.
+     */
+    private OcspResponseInformation createOcspResponse(final ReceivedOcspRequest ocspRequest, final HttpMethod httpMethod) {
+        final String remoteAddress = ocspRequest.remoteAddress;
+        final String xForwardedFor = ocspRequest.xForwardedFor;
+        final StringBuffer requestUrl = ocspRequest.requestUrl;
 
         final int localTransactionId = TransactionCounter.INSTANCE.getTransactionNumber();
         final GlobalOcspConfiguration configuration = (GlobalOcspConfiguration) globalConfigurationSession.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
@@ -210,8 +358,8 @@ public class OCSPServlet extends HttpServlet {
             OCSPRespBuilder responseGenerator = new OCSPRespBuilder();
             OcspResponseInformation ocspResponseInformation = null;
             try {
-                byte[] requestBytes = checkAndGetRequestBytes(request, httpMethod);
-                X509Certificate[] requestCertificates = (X509Certificate[]) request.getAttribute("javax.servlet.request.X509Certificate");
+                byte[] requestBytes = ocspRequest.getRequestBytes();
+                X509Certificate[] requestCertificates = ocspRequest.requestCertificates;
                 ocspResponseInformation = integratedOcspResponseGeneratorSession.getOcspResponse(
                         requestBytes, requestCertificates, remoteAddress, xForwardedFor, requestUrl, auditLogger, transactionLogger, false, PresignResponseValidity.CONFIGURATION_BASED, false);
             } catch (MalformedRequestException e) {
@@ -274,32 +422,81 @@ public class OCSPServlet extends HttpServlet {
                 auditLogger.flush();
             }
 
-            byte[] ocspResponseBytes = ocspResponseInformation.getOcspResponse();
-            response.setContentType("application/ocsp-response");
-            response.setContentLength(ocspResponseBytes.length);
-
-            GlobalOcspConfiguration ocspConfig = (GlobalOcspConfiguration) globalConfigurationSession
-                .getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
-            if (ocspResponseInformation.getStatus() == OCSPResp.UNAUTHORIZED && ocspConfig.getExplicitNoCacheUnauthorizedResponsesEnabled()) {
-                addHeaderNoCache(response);
+            if (isGetResponseCacheUsed(httpMethod)) {
+                OcspGetResponseCache.INSTANCE.put(ocspRequest.requestUri, ocspResponseInformation);
             }
-            addRfc5019CacheHeaders(request, response, ocspResponseInformation);
-      
-            
-            if (HttpMethod.POST.equals(httpMethod)) {
-                addOcspPostHeaders(response, ocspResponseInformation);
-            }
-            
-            response.getOutputStream().write(ocspResponseBytes);
-            response.getOutputStream().flush();
-            
+            return ocspResponseInformation;
         } catch (Exception e) {
             log.error("", e);
             transactionLogger.flush();
             auditLogger.flush();
+            return null;
         }
     }
-    
+
+    /**
+     * Adds the HTTP headers of an OCSP response. For GET requests with If-None-Match or If-Modified-Since (RFC 7232) that match the response,
+     * the status is set to 304 Not Modified instead, and the response must not be written.
+     *
+     * @return true if the response should be written, false if the client already has it.
+     */
+    private boolean prepareOcspResponse(final HttpServletRequest request, final HttpServletResponse response, final HttpMethod httpMethod,
+            final OcspResponseInformation ocspResponseInformation) throws IOException, OCSPException {
+        GlobalOcspConfiguration ocspConfig = (GlobalOcspConfiguration) globalConfigurationSession
+            .getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
+        if (ocspResponseInformation.getStatus() == OCSPResp.UNAUTHORIZED && ocspConfig.getExplicitNoCacheUnauthorizedResponsesEnabled()) {
+            addHeaderNoCache(response);
+        }
+        addRfc5019CacheHeaders(request, response, ocspResponseInformation);
+
+        if (HttpMethod.POST.equals(httpMethod)) {
+            addOcspPostHeaders(response, ocspResponseInformation);
+        } else if (HttpMethod.GET.equals(httpMethod) && isNotModified(request, ocspResponseInformation)) {
+            if (log.isDebugEnabled()) {
+                log.debug("OCSP response for GET request from " + request.getRemoteAddr() + " has not been modified.");
+            }
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        response.setContentType("application/ocsp-response");
+        response.setContentLength(ocspResponseInformation.getOcspResponse().length);
+        return true;
+    }
+
+    /**
+     * Evaluates the conditional headers of a GET request (RFC 7232) against the ETag and Last-Modified headers added by
+     * {@link #addRfc5019CacheHeaders(HttpServletRequest, HttpServletResponse, OcspResponseInformation)}.
+     *
+     * @return true if the client already has the response.
+     */
+    private boolean isNotModified(final HttpServletRequest request, final OcspResponseInformation ocspResponseInformation) {
+        if (!ocspResponseInformation.shouldAddCacheHeaders() || ocspResponseInformation.getMaxAge() <= 0) {
+            // No ETag or Last-Modified was sent, so there is nothing the client could have
+            return false;
+        }
+        // RFC 7232 3.3: If-Modified-Since is ignored when If-None-Match is present
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            final String etag = "\"" + ocspResponseInformation.getResponseHeader() + "\"";
+            for (final String tag : ifNoneMatch.split(",")) {
+                final String trimmed = StringUtils.removeStart(tag.trim(), "W/");
+                if ("*".equals(trimmed) || etag.equals(trimmed)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // RFC 7232 3.3: An invalid date is ignored
+            return false;
+        }
+        // HTTP dates have a resolution of seconds
+        return ifModifiedSince >= 0 && ocspResponseInformation.getThisUpdate() / 1000L <= ifModifiedSince / 1000L;
+    }
+
     private void addOcspPostHeaders(HttpServletResponse response, OcspResponseInformation ocspResponseInformation) {
         
         if (!ocspResponseInformation.shouldAddCacheHeaders()) {
@@ -339,7 +536,7 @@ public class OCSPServlet extends HttpServlet {
      * @throws IOException, org.bouncycastle.cert.ocsp.OCSPException 
      */
     private void addRfc5019CacheHeaders(HttpServletRequest request, HttpServletResponse response, OcspResponseInformation ocspResponseInformation) 
-                throws IOException, org.bouncycastle.cert.ocsp.OCSPException {
+                throws IOException, OCSPException {
         if (!ocspResponseInformation.shouldAddCacheHeaders()) {
             return;
         } 
@@ -402,17 +599,323 @@ public class OCSPServlet extends HttpServlet {
         response.setHeader("Pragma", "no-cache"); //HTTP 1.0
     }
 
+    /** What is needed from the HTTP request to create the response to an OCSP request */
+    private static final class ReceivedOcspRequest {
+        private final String remoteAddress;
+        private final String xForwardedFor;
+        private final StringBuffer requestUrl;
+        private final String requestUri;
+        private final X509Certificate[] requestCertificates;
+        private final byte[] requestBytes;
+        private final Exception requestException;
+
+        private ReceivedOcspRequest(final String remoteAddress, final String xForwardedFor, final StringBuffer requestUrl, final String requestUri,
+                final X509Certificate[] requestCertificates, final byte[] requestBytes, final Exception requestException) {
+            this.remoteAddress = remoteAddress;
+            this.xForwardedFor = xForwardedFor;
+            this.requestUrl = requestUrl;
+            this.requestUri = requestUri;
+            this.requestCertificates = requestCertificates;
+            this.requestBytes = requestBytes;
+            this.requestException = requestException;
+        }
+
+        /** @throws Exception the exception thrown when the request bytes were read, typically a {@link MalformedRequestException} */
+        private byte[] getRequestBytes() throws Exception {
+            if (requestException != null) {
+                throw requestException;
+            }
+            return requestBytes;
+        }
+    }
+
+    /**
+     * Hands a request received in async mode to the managed executor service, or puts it in the queue if {@link #asyncThreads} requests
+     * are already being processed.
+     *
+     * @return false if the queue is full
+     */
+    private boolean dispatchAsyncRequest(final AsyncOcspRequest asyncRequest) {
+        synchronized (waitingAsyncRequests) {
+            if (runningAsyncRequests >= asyncThreads) {
+                if (waitingAsyncRequests.size() >= asyncQueueSize) {
+                    return false;
+                }
+                waitingAsyncRequests.add(asyncRequest);
+                return true;
+            }
+            runningAsyncRequests++;
+        }
+        executeAsyncRequest(asyncRequest);
+        return true;
+    }
+
+    /** @return the next waiting request to process when a request has been processed, or null if no request is waiting */
+    private AsyncOcspRequest nextAsyncRequest() {
+        synchronized (waitingAsyncRequests) {
+            final AsyncOcspRequest asyncRequest = waitingAsyncRequests.poll();
+            if (asyncRequest == null) {
+                runningAsyncRequests--;
+            }
+            return asyncRequest;
+        }
+    }
+
+    private void executeAsyncRequest(AsyncOcspRequest asyncRequest) {
+        while (asyncRequest != null) {
+            try {
+                managedExecutorService.execute(asyncRequest);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.info("OCSP request from " + asyncRequest.ocspRequest.remoteAddress
+                        + " answered with tryLater, since it was rejected by the managed executor service.");
+                asyncRequest.respondTryLater(false);
+                asyncRequest = nextAsyncRequest();
+            }
+        }
+    }
+
+    /**
+     * An OCSP request processed in async mode. The body of a POST request is read and the response is written with non-blocking I/O,
+     * so that slow clients don't hold a thread while they send the request or receive the response. The response is created by a thread
+     * of the managed executor service. When too many requests are waiting to be processed, or when the response is not created in time,
+     * the request is answered with "tryLater" instead.
+     * <p>
+     * Whoever sets {@link #responded} first, the thread creating the response or a listener called by the servlet container, is the
+     * only one that writes the response and completes the request.
+     */
+    private class AsyncOcspRequest implements ReadListener, AsyncListener, Runnable {
+        private final AsyncContext asyncContext;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final HttpMethod httpMethod;
+        private final ByteArrayOutputStream postedBytes = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[4096];
+        /** Set when the request has been handed to the executor, to make sure it is only handed over once */
+        private final AtomicBoolean submitted = new AtomicBoolean();
+        /** Set when a response is about to be written, after that the request and response must not be used by anyone else */
+        private final AtomicBoolean responded = new AtomicBoolean();
+        private ServletInputStream in;
+        /** Read from the HTTP request before the request is handed to the executor */
+        private volatile ReceivedOcspRequest ocspRequest;
+        /** Set when the response is written with non-blocking I/O, after the response has been handed to the servlet container */
+        private volatile ResponseWriter responseWriter;
+
+        private AsyncOcspRequest(final AsyncContext asyncContext, final HttpMethod httpMethod) {
+            this.asyncContext = asyncContext;
+            this.request = (HttpServletRequest) asyncContext.getRequest();
+            this.response = (HttpServletResponse) asyncContext.getResponse();
+            this.httpMethod = httpMethod;
+        }
+
+        private void start() throws IOException {
+            asyncContext.setTimeout(OcspConfiguration.getAsyncTimeout());
+            asyncContext.addListener(this);
+            // Requests that are too large are rejected by checkAndGetRequestBytes without reading them
+            if (HttpMethod.POST.equals(httpMethod) && request.getContentLength() <= LimitLengthASN1Reader.MAX_REQUEST_SIZE) {
+                in = request.getInputStream();
+                in.setReadListener(this);
+            } else {
+                submit();
+            }
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            int length;
+            while (in.isReady() && !in.isFinished() && (length = in.read(buffer)) != -1) {
+                postedBytes.write(buffer, 0, length);
+                if (postedBytes.size() > LimitLengthASN1Reader.MAX_REQUEST_SIZE) {
+                    // Don't read more than the largest request we accept, checkAndGetRequestBytes handles what we have got.
+                    submit();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            submit();
+        }
+
+        /** Called by a thread of the servlet container when the request has been received */
+        private void submit() {
+            if (!submitted.compareAndSet(false, true)) {
+                return;
+            }
+            ocspRequest = readOcspRequest(request, httpMethod, HttpMethod.POST.equals(httpMethod) ? postedBytes.toByteArray() : null);
+            if (!dispatchAsyncRequest(this)) {
+                log.info("OCSP request from " + ocspRequest.remoteAddress + " answered with tryLater, since " + asyncQueueSize
+                        + " requests are already waiting to be processed.");
+                respondTryLater(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (responded.get()) {
+                    // Timed out while waiting in the queue, the client has already been answered
+                    return;
+                }
+                final OcspResponseInformation ocspResponseInformation = createOcspResponse(ocspRequest, httpMethod);
+                if (ocspResponseInformation == null) {
+                    if (responded.compareAndSet(false, true)) {
+                        asyncContext.complete();
+                    }
+                    return;
+                }
+                respond(ocspResponseInformation, false);
+            } finally {
+                executeAsyncRequest(nextAsyncRequest());
+            }
+        }
+
+        /**
+         * Adds the headers and writes the response, unless another response has already been written.
+         *
+         * @param blocking true to write the response before returning, false to write it with non-blocking I/O.
+         */
+        private void respond(final OcspResponseInformation ocspResponseInformation, final boolean blocking) {
+            if (!responded.compareAndSet(false, true)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Not writing OCSP response to " + ocspRequest.remoteAddress + ", since the request has already been answered.");
+                }
+                return;
+            }
+            try {
+                if (!prepareOcspResponse(request, response, httpMethod, ocspResponseInformation)) {
+                    asyncContext.complete();
+                } else if (blocking) {
+                    response.getOutputStream().write(ocspResponseInformation.getOcspResponse());
+                    asyncContext.complete();
+                } else {
+                    responseWriter = new ResponseWriter(ocspResponseInformation.getOcspResponse());
+                    response.getOutputStream().setWriteListener(responseWriter);
+                }
+            } catch (Exception e) {
+                log.error("", e);
+                asyncContext.complete();
+            }
+        }
+
+        private void respondTryLater(final boolean blocking) {
+            try {
+                final GlobalOcspConfiguration configuration = (GlobalOcspConfiguration) globalConfigurationSession
+                        .getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
+                respond(new OcspResponseInformation(new OCSPRespBuilder().build(OCSPRespBuilder.TRY_LATER, null),
+                        configuration.getDefaultResponseMaxAge() * 1000L, null), blocking);
+            } catch (OCSPException e) {
+                log.error("", e);
+                if (responded.compareAndSet(false, true)) {
+                    asyncContext.complete();
+                }
+            }
+        }
+
+        /** Answers a request that will not be processed, since the servlet is stopping */
+        private void respondServiceUnavailable() {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            } catch (IOException | IllegalStateException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to answer OCSP request from " + request.getRemoteAddr() + ": " + e.getMessage());
+                }
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            if (!responded.get()) {
+                log.info("OCSP request from " + request.getRemoteAddr() + " answered with tryLater, since it was not processed within "
+                        + OcspConfiguration.getAsyncTimeout() + " ms.");
+                respondTryLater(true);
+            } else if (responseWriter != null) {
+                // The response is being written, but the client is too slow to receive it
+                asyncContext.complete();
+            }
+            // Otherwise the thread creating the response is writing it, and completes the request when done
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            // Failed to read the request, typically because the client has disconnected
+            if (log.isDebugEnabled()) {
+                log.debug("I/O error reading OCSP request from " + request.getRemoteAddr() + ": " + throwable.getMessage());
+            }
+            if (responded.compareAndSet(false, true)) {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error processing OCSP request from " + request.getRemoteAddr() + ": " + event.getThrowable());
+            }
+            responded.set(true);
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            // Nothing to clean up
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // Not restarted
+        }
+
+        /** Writes the response with non-blocking I/O, once the thread that created it is done with the request */
+        private class ResponseWriter implements WriteListener {
+            private volatile byte[] responseBytes;
+
+            private ResponseWriter(final byte[] responseBytes) {
+                this.responseBytes = responseBytes;
+            }
+
+            @Override
+            public void onWritePossible() throws IOException {
+                final ServletOutputStream out = response.getOutputStream();
+                final byte[] bytes = responseBytes;
+                if (bytes != null && out.isReady()) {
+                    responseBytes = null;
+                    out.write(bytes);
+                }
+                // If the response could not be written at once, we are called again when the rest has been written
+                if (responseBytes == null && out.isReady()) {
+                    asyncContext.complete();
+                }
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                // Failed to write the response, typically because the client has disconnected
+                if (log.isDebugEnabled()) {
+                    log.debug("I/O error writing OCSP response to " + request.getRemoteAddr() + ": " + throwable.getMessage());
+                }
+                asyncContext.complete();
+            }
+        }
+    }
+
     /**
      * Reads the request bytes and verifies min and max size of the request. If an error occurs it throws a MalformedRequestException. 
      * Can get request bytes both from a HTTP GET and POST request
      * 
      * @param request
      * @param httpMethod
+     * @param postedBytes the body of a POST request if it has already been read (in async mode), or null to read it from the request.
      * @return the request bytes or null if an error occured.
      * @throws IOException In case there is no stream to read
      * @throws MalformedRequestException 
      */
-    private byte[] checkAndGetRequestBytes(HttpServletRequest request, HttpMethod httpMethod) throws IOException, MalformedRequestException {
+    private byte[] checkAndGetRequestBytes(HttpServletRequest request, HttpMethod httpMethod, byte[] postedBytes) throws IOException, MalformedRequestException {
         final byte[] ret;
         // Get the request data
         final int n = request.getContentLength();
@@ -428,7 +931,8 @@ public class OCSPServlet extends HttpServlet {
         // So we passed basic tests, now we can read the bytes, but still keep an eye on the size
         // we can not fully trust the sent content length.
         if (HttpMethod.POST.equals(httpMethod)) {
-            final ServletInputStream in = request.getInputStream(); // ServletInputStream does not have to be closed, container handles this
+            // ServletInputStream does not have to be closed, container handles this
+            final InputStream in = postedBytes != null ? new ByteArrayInputStream(postedBytes) : request.getInputStream();
             LimitLengthASN1Reader limitLengthASN1Reader = new LimitLengthASN1Reader(in, n);
             try {
                 ret = limitLengthASN1Reader.readFirstASN1Object();